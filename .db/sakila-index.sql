@@ -0,0 +1,20 @@
+-- Indexes on (last_update, <primary key>) for reading each table in the order of its change feed.
+-- Declared, as well, by @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE) of each entity.
+
+USE sakila;
+
+ALTER TABLE actor ADD INDEX idx_last_update (last_update, actor_id);
+ALTER TABLE address ADD INDEX idx_last_update (last_update, address_id);
+ALTER TABLE category ADD INDEX idx_last_update (last_update, category_id);
+ALTER TABLE city ADD INDEX idx_last_update (last_update, city_id);
+ALTER TABLE country ADD INDEX idx_last_update (last_update, country_id);
+ALTER TABLE customer ADD INDEX idx_last_update (last_update, customer_id);
+ALTER TABLE film ADD INDEX idx_last_update (last_update, film_id);
+ALTER TABLE film_actor ADD INDEX idx_last_update (last_update, actor_id, film_id);
+ALTER TABLE film_category ADD INDEX idx_last_update (last_update, film_id, category_id);
+ALTER TABLE inventory ADD INDEX idx_last_update (last_update, inventory_id);
+ALTER TABLE language ADD INDEX idx_last_update (last_update, language_id);
+ALTER TABLE payment ADD INDEX idx_last_update (last_update, payment_id);
+ALTER TABLE rental ADD INDEX idx_last_update (last_update, rental_id);
+ALTER TABLE staff ADD INDEX idx_last_update (last_update, staff_id);
+ALTER TABLE store ADD INDEX idx_last_update (last_update, store_id);
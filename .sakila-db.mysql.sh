@@ -0,0 +1,3 @@
+#!/bin/sh
+mysql -h127.0.0.1 -P33306 -usakila -psakila -Dsakila
+
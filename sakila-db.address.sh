@@ -0,0 +1,11 @@
+#!/bin/sh
+exists=$(docker ps --filter "name=^/sakila-db$" --format '{{.Names}}')
+if [[ "$exists" = sakila-db ]];
+then
+    echo sakila-db exists.
+    address=$(docker inspect -f '{{range .NetworkSettings.Networks}}{{.IPAddress}}{{end}}' sakila-db)
+    echo sakila-db is currently running at $address.
+else
+    echo no name for sakila-db. exiting...
+    exit 0;
+fi
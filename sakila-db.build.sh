@@ -0,0 +1,3 @@
+#!/bin/sh
+docker build -t jinahya/sakila-db .
+q
\ No newline at end of file
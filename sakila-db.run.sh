@@ -0,0 +1,5 @@
+#!/bin/sh
+echo trying to stop previously running container...
+sh ./sakila-db.stop.sh
+echo running the container...
+docker run --rm -d --name sakila-db -p 33306:3306 jinahya/sakila-db
@@ -24,6 +24,7 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
@@ -47,7 +48,12 @@ import static com.github.jinahya.sakila.persistence.BaseEntity.ATTRIBUTE_NAME_ID
  */
 @Entity
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = Actor.COLUMN_NAME_ACTOR_ID, nullable = false))
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Actor.INDEX_NAME_IDX_ACTOR_LAST_NAME, columnList = FullNamedEntity.COLUMN_NAME_LAST_NAME),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Actor.COLUMN_NAME_ACTOR_ID)
+       })
 public class Actor extends FullNamedBaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -59,6 +65,13 @@ public class Actor extends FullNamedBaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code last_name} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_ACTOR_LAST_NAME = "idx_actor_last_name";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The primary key column name of this entity class. The value is {@value}.
      * <blockquote>
@@ -157,7 +170,7 @@ public class Actor extends FullNamedBaseEntity {
         if (film == null) {
             throw new NullPointerException("film is null");
         }
-        final boolean filmAdded = getFilms().add(film); // TODO: 2019-07-23 equals/hashCode???
+        final boolean filmAdded = getFilms().add(film);
         if (!film.getActors().contains(this)) {
             final boolean addedToFilm = film.addActor(this);
         }
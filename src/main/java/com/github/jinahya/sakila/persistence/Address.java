@@ -24,6 +24,7 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -55,7 +56,12 @@ import static java.util.Comparator.comparing;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_ADDRESS_ID, nullable = false))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Address.INDEX_NAME_IDX_FK_CITY_ID, columnList = Address.COLUMN_NAME_CITY_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Address.COLUMN_NAME_ADDRESS_ID)
+       })
 public class Address extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -67,6 +73,13 @@ public class Address extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code city_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_CITY_ID = "idx_fk_city_id";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The primary key column name of this entity. The value is {@value}.
      * <blockquote>
@@ -249,13 +262,25 @@ public class Address extends BaseEntity {
      */
     public static final Comparator<Address> COMPARING_DISTRICT = comparing(Address::getDistrict);
 
+    /**
+     * A comparator for comparing addresses with {@link #ATTRIBUTE_NAME_DISTRICT district} attributes, ignoring case, in
+     * the order of the database collation.
+     *
+     * @see #getDistrictCollationKey()
+     */
     public static final Comparator<Address> COMPARING_DISTRICT_IGNORE_CASE
-            = (a1, a2) -> a1.district.compareToIgnoreCase(a2.district);
+            = comparing(Address::getDistrictCollationKey);
 
     public static final Comparator<Address> COMPARING_ADDRESS = comparing(Address::getAddress);
 
+    /**
+     * A comparator for comparing addresses with {@link #ATTRIBUTE_NAME_ADDRESS address} attributes, ignoring case, in
+     * the order of the database collation.
+     *
+     * @see #getAddressCollationKey()
+     */
     public static final Comparator<Address> COMPARING_ADDRESS_IGNORE_CASE
-            = (a1, a2) -> a1.address.compareToIgnoreCase(a2.address);
+            = comparing(Address::getAddressCollationKey);
 
     // -----------------------------------------------------------------------------------------------------------------
 
@@ -279,7 +304,7 @@ public class Address extends BaseEntity {
                + "address=" + address
                + ",address2=" + address2
                + ",district=" + district
-               + ",city=" + city
+               + ",city=" + EntityToString.reference(this, ATTRIBUTE_NAME_CITY, () -> city)
                + ",postalCode=" + postalCode
                + ",phone=" + phone
                + ",location=" + Arrays.toString(location)
@@ -304,6 +329,17 @@ public class Address extends BaseEntity {
      */
     public void setAddress(final String address) {
         this.address = address;
+        addressCollationKey = null;
+    }
+
+    /**
+     * Returns a collation key of current value of {@link #ATTRIBUTE_NAME_ADDRESS address} attribute. The key is cached
+     * until the value changes.
+     *
+     * @return a collation key of current value of {@link #ATTRIBUTE_NAME_ADDRESS address} attribute.
+     */
+    public CollationKey getAddressCollationKey() {
+        return addressCollationKey = CollationKey.of(addressCollationKey, getAddress());
     }
 
     // -------------------------------------------------------------------------------------------------------- address2
@@ -333,6 +369,17 @@ public class Address extends BaseEntity {
 
     public void setDistrict(final String district) {
         this.district = district;
+        districtCollationKey = null;
+    }
+
+    /**
+     * Returns a collation key of current value of {@link #ATTRIBUTE_NAME_DISTRICT district} attribute. The key is
+     * cached until the value changes.
+     *
+     * @return a collation key of current value of {@link #ATTRIBUTE_NAME_DISTRICT district} attribute.
+     */
+    public CollationKey getDistrictCollationKey() {
+        return districtCollationKey = CollationKey.of(districtCollationKey, getDistrict());
     }
 
     // ------------------------------------------------------------------------------------------------------------ city
@@ -342,10 +389,10 @@ public class Address extends BaseEntity {
 
     public void setCity(final City city) {
         if (this.city != null) {
-            final boolean removedFromOldCity = this.city.getAddresses().remove(this); // TODO: 2019-07-12 equality???
+            final boolean removedFromOldCity = this.city.getAddresses().remove(this);
         }
         this.city = city;
-        if (this.city != null && !this.city.getAddresses().contains(this)) { // TODO: 2019-07-12 equality???
+        if (this.city != null && !this.city.getAddresses().contains(this)) {
             this.city.addAddress(this);
         }
     }
@@ -504,4 +551,9 @@ public class Address extends BaseEntity {
     @Column(name = COLUMN_NAME_LOCATION, nullable = false)
     @NamedAttribute(ATTRIBUTE_NAME_LOCATION)
     private byte[] location; // +
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient CollationKey addressCollationKey;
+
+    private transient CollationKey districtCollationKey;
 }
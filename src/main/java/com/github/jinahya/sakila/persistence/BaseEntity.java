@@ -21,6 +21,7 @@ package com.github.jinahya.sakila.persistence;
  */
 
 import javax.persistence.Column;
+import javax.persistence.Entity;
 import javax.persistence.EntityManager;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -73,6 +74,12 @@ public abstract class BaseEntity {
      */
     public static final String ATTRIBUTE_NAME_LAST_UPDATE = "lastUpdate";
 
+    /**
+     * The name of the index on {@link #COLUMN_NAME_LAST_UPDATE} column, followed by the primary key columns, of each
+     * table. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_LAST_UPDATE = "idx_last_update";
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -84,6 +91,23 @@ public abstract class BaseEntity {
         return natural ? COMPARING_ID : COMPARING_ID.reversed();
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The nearest {@link Entity entity} class, of each class, which excludes provider-generated proxy subclasses.
+     */
+    static final ClassValue<Class<?>> ENTITY_CLASS = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(final Class<?> type) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                if (c.isAnnotationPresent(Entity.class)) {
+                    return c;
+                }
+            }
+            return type;
+        }
+    };
+
     // -----------------------------------------------------------------------------------------------------------------
     private static <T extends BaseEntity, R> R query(
             final EntityManager entityManager, final Class<T> entityClass,
@@ -136,22 +160,62 @@ public abstract class BaseEntity {
      */
     @Override
     public String toString() {
-        return super.toString() + "{"
+        return EntityToString.identity(this) + "{"
                + "id=" + id
                + ",lastUpdate=" + lastUpdate
                + "}";
     }
 
-    // TODO: 2019-07-12 remove!!!
+    /**
+     * Indicates whether some other object is "equal to" this entity.
+     * <p>
+     * Two entities are equal if they are of the same entity class and have the same, non-null, {@link
+     * #ATTRIBUTE_NAME_ID id}. An entity without an id is equal only to itself, and so is an entity whose {@link
+     * #hashCode() hash code} has been asked while it had no id, even after it gets an id.
+     *
+     * @param obj the reference object with which to compare.
+     * @return {@code true} if this entity is the same as the {@code obj} argument; {@code false} otherwise.
+     */
     @Override
     public boolean equals(final Object obj) {
-        return super.equals(obj);
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BaseEntity)) {
+            return false;
+        }
+        final BaseEntity that = (BaseEntity) obj;
+        if (hashedWithoutId || that.hashedWithoutId) {
+            return false;
+        }
+        if (ENTITY_CLASS.get(getClass()) != ENTITY_CLASS.get(that.getClass())) {
+            return false;
+        }
+        final Integer thisId = getId();
+        return thisId != null && thisId.equals(that.getId());
     }
 
-    // TODO: 2019-07-12 remove!!!
+    /**
+     * Returns a hash code value for this entity.
+     * <p>
+     * The value is computed from the entity class and the {@link #ATTRIBUTE_NAME_ID id} so that entities of a single
+     * class spread over hash-based collections. An entity asked while it has no id, e.g. added to a hash-based
+     * collection while transient, keeps its identity hash code for good so that it stays in the collection after it
+     * gets persisted; such an entity is, consistently, {@link #equals(Object) equal} only to itself.
+     *
+     * @return a hash code value for this entity.
+     */
     @Override
     public int hashCode() {
-        return super.hashCode();
+        if (hashedWithoutId) {
+            return System.identityHashCode(this);
+        }
+        final Integer id = getId();
+        if (id == null) {
+            hashedWithoutId = true;
+            return System.identityHashCode(this);
+        }
+        return 31 * ENTITY_CLASS.get(getClass()).hashCode() + id;
     }
 
     // -------------------------------------------------------------------------------------------------------------- id
@@ -204,4 +268,7 @@ public abstract class BaseEntity {
     @Column(name = COLUMN_NAME_LAST_UPDATE, nullable = /* ??? */ false, insertable = false, updatable = false)
     @NamedAttribute(ATTRIBUTE_NAME_LAST_UPDATE)
     private Date lastUpdate;
+
+    // whether hashCode() has been asked while the id was null
+    private transient boolean hashedWithoutId;
 }
@@ -25,6 +25,7 @@ import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
@@ -49,7 +50,11 @@ import static java.util.Comparator.comparing;
  */
 @Entity
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_CATEGORY_ID, nullable = false))
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Category.COLUMN_NAME_CATEGORY_ID)
+       })
 public class Category extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -141,8 +146,6 @@ public class Category extends BaseEntity {
                + "}";
     }
 
-    // TODO: 2019-07-11 equals/hashCode???
-
     // ------------------------------------------------------------------------------------------------------------ name
 
     /**
@@ -192,7 +195,7 @@ public class Category extends BaseEntity {
         if (film == null) {
             throw new NullPointerException("film is null");
         }
-        final boolean filmAdded = getFilms().add(film); // TODO: 2019-07-17 equals/hashCode???
+        final boolean filmAdded = getFilms().add(film);
         if (!film.getCategories().contains(this)) {
             final boolean addedToFilm = film.addCategory(this);
         }
@@ -224,5 +227,5 @@ public class Category extends BaseEntity {
             targetEntity = Film.class // default; void.class
             )
     @NamedAttribute(ATTRIBUTE_NAME_FILMS)
-    private Set<Film> films; // TODO: 2019-07-23 equals/hashCode???
+    private Set<Film> films;
 }
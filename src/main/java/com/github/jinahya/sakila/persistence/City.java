@@ -24,15 +24,16 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import static com.github.jinahya.sakila.persistence.BaseEntity.ATTRIBUTE_NAME_ID;
 import static java.util.Comparator.comparing;
@@ -52,7 +53,12 @@ import static java.util.Comparator.comparing;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = City.COLUMN_NAME_CITY_ID, nullable = false))
 @Entity
-@Table(name = City.TABLE_NAME)
+@Table(name = City.TABLE_NAME,
+       indexes = {
+               @Index(name = City.INDEX_NAME_IDX_FK_COUNTRY_ID, columnList = City.COLUMN_NAME_COUNTRY_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + City.COLUMN_NAME_CITY_ID)
+       })
 public class City extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -64,6 +70,13 @@ public class City extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code country_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_COUNTRY_ID = "idx_fk_country_id";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The primary key column name of this table. The value is {@value}.
      * <blockquote>
@@ -126,7 +139,13 @@ public class City extends BaseEntity {
         return naturalOrder ? COMPARING_CITY : COMPARING_CITY.reversed();
     }
 
-    public static final Comparator<City> COMPARING_CITY_IGNORE_CASE = (c1, c2) -> c1.city.compareToIgnoreCase(c2.city);
+    /**
+     * A comparator for comparing cities with {@link #ATTRIBUTE_NAME_CITY city} attributes, ignoring case, in the order
+     * of the database collation.
+     *
+     * @see #getCityCollationKey()
+     */
+    public static final Comparator<City> COMPARING_CITY_IGNORE_CASE = comparing(City::getCityCollationKey);
 
     public static Comparator<City> comparingCityIgnoreCase(final boolean naturalOrder) {
         return naturalOrder ? COMPARING_CITY_IGNORE_CASE : COMPARING_CITY_IGNORE_CASE.reversed();
@@ -152,12 +171,10 @@ public class City extends BaseEntity {
     public String toString() {
         return super.toString() + "{"
                + "city=" + city
-               + ",country=" + country
+               + ",country=" + EntityToString.reference(this, ATTRIBUTE_NAME_COUNTRY, () -> country)
                + "}";
     }
 
-    // TODO: 2019-07-12 equals/hashCode ???
-
     // ------------------------------------------------------------------------------------------------------------ city
 
     /**
@@ -176,6 +193,17 @@ public class City extends BaseEntity {
      */
     public void setCity(final String city) {
         this.city = city;
+        cityCollationKey = null;
+    }
+
+    /**
+     * Returns a collation key of current value of {@link #ATTRIBUTE_NAME_CITY} attribute. The key is cached until the
+     * value changes.
+     *
+     * @return a collation key of current value of {@link #ATTRIBUTE_NAME_CITY} attribute.
+     */
+    public CollationKey getCityCollationKey() {
+        return cityCollationKey = CollationKey.of(cityCollationKey, getCity());
     }
 
     // --------------------------------------------------------------------------------------------------------- country
@@ -185,10 +213,10 @@ public class City extends BaseEntity {
 
     public void setCountry(final Country country) {
         if (this.country != null) {
-            final boolean removedFromOldCountry = this.country.getCities().remove(this); // TODO: 2019-07-12 equals???
+            final boolean removedFromOldCountry = this.country.getCities().remove(this);
         }
         this.country = country;
-        if (this.country != null && !this.country.getCities().contains(this)) { // TODO: 2019-07-12 equals???
+        if (this.country != null && !this.country.getCities().contains(this)) {
             final boolean addedToNewCountry = this.country.addCity(this);
         }
     }
@@ -196,9 +224,9 @@ public class City extends BaseEntity {
     // ------------------------------------------------------------------------------------------------------- addresses
     // TODO: 2019-07-10 remove!!!
     @Deprecated
-    public List<Address> getAddresses() {
+    public Set<Address> getAddresses() {
         if (addresses == null) {
-            addresses = new ArrayList<>();
+            addresses = new HashSet<>();
         }
         return addresses;
     }
@@ -231,5 +259,8 @@ public class City extends BaseEntity {
     @Deprecated // forRemoval = true
     @OneToMany(mappedBy = Address.ATTRIBUTE_NAME_CITY)
     @NamedAttribute(ATTRIBUTE_NAME_ADDRESSES)
-    private @Size(min = SIZE_MIN_ADDRESSES, max = SIZE_MAX_ADDRESSES) List<@NotNull Address> addresses;
+    private @Size(min = SIZE_MIN_ADDRESSES, max = SIZE_MAX_ADDRESSES) Set<@NotNull Address> addresses;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient CollationKey cityCollationKey;
 }
@@ -0,0 +1,207 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * A precomputed sort key of a string compatible with MySQL's {@code utf8mb4_general_ci} collation.
+ * <p>
+ * Each character is weighed once, when the key is created, by its upper case with diacritics removed, e.g. {@code a},
+ * {@code A} and {@code á} all weigh as {@code A}; characters outside the basic multilingual plane weigh as {@code
+ * U+FFFD}, and trailing spaces are ignored, as the collation pads with spaces. Comparing two keys then compares their
+ * weights without any case folding; the first four weights are packed into a single {@code long} so that most
+ * comparisons end with a single unsigned comparison.
+ * <p>
+ * Note that, unlike {@link String#compareToIgnoreCase(String)}, which folds to lower case, the collation folds to
+ * upper case; e.g. {@code _} sorts after {@code z} as it does with {@code ORDER BY}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public final class CollationKey implements Comparable<CollationKey> {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of weights packed into the prefix.
+     */
+    private static final int PREFIX_LENGTH = Long.SIZE / Character.SIZE;
+
+    /**
+     * Returns the weight of specified character.
+     *
+     * @param c the character.
+     * @return the weight of the character.
+     */
+    static char weight(final char c) {
+        if (c < 0x80) {
+            return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+        }
+        if (Character.isSurrogate(c)) {
+            return '\uFFFD';
+        }
+        if (c == '\u00DF') { // sharp s
+            return 'S';
+        }
+        final String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        final char base = decomposed.charAt(0);
+        if (base != c) {
+            return weight(base);
+        }
+        return Character.toUpperCase(c);
+    }
+
+    /**
+     * Returns a key of specified value.
+     *
+     * @param value the value; may be {@code null}.
+     * @return a key of the value; {@code null} if {@code value} is {@code null}.
+     */
+    public static CollationKey of(final String value) {
+        if (value == null) {
+            return null;
+        }
+        int length = value.length();
+        while (length > 0 && value.charAt(length - 1) == ' ') {
+            length--;
+        }
+        final char[] weights = new char[value.codePointCount(0, length)];
+        for (int i = 0, j = 0; i < length; j++) {
+            final char c = value.charAt(i);
+            weights[j] = weight(c);
+            i += Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))
+                 ? 2 : 1;
+        }
+        return new CollationKey(value, weights);
+    }
+
+    /**
+     * Returns specified cached key if it's still of specified value, or a new key of the value otherwise.
+     *
+     * @param cached the cached key; may be {@code null}.
+     * @param value  the value; may be {@code null}.
+     * @return a key of the value; {@code null} if {@code value} is {@code null}.
+     */
+    static CollationKey of(final CollationKey cached, final String value) {
+        if (cached != null && cached.source == value) {
+            return cached;
+        }
+        return of(value);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private CollationKey(final String source, final char[] weights) {
+        super();
+        this.source = source;
+        this.weights = weights;
+        long prefix = 0L;
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+            prefix = (prefix << Character.SIZE) | (i < weights.length ? weights[i] : 0);
+        }
+        this.prefix = prefix;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + "{"
+               + "source=" + source
+               + "}";
+    }
+
+    /**
+     * Indicates whether some other object is a key of equal weights.
+     *
+     * @param obj the reference object with which to compare.
+     * @return {@code true} if {@code obj} is a key of equal weights; {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CollationKey)) {
+            return false;
+        }
+        final CollationKey that = (CollationKey) obj;
+        return prefix == that.prefix && Arrays.equals(weights, that.weights);
+    }
+
+    /**
+     * Returns a hash code value of the weights of this key.
+     *
+     * @return a hash code value of the weights.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(weights);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Compares the weights of this key with the weights of specified key.
+     *
+     * @param o the key to compare.
+     * @return a negative integer, zero, or a positive integer as this key is less than, equal to, or greater than
+     * {@code o}.
+     */
+    @Override
+    public int compareTo(final CollationKey o) {
+        final int result = Long.compareUnsigned(prefix, o.prefix);
+        if (result != 0) {
+            return result;
+        }
+        final int length = Math.min(weights.length, o.weights.length);
+        for (int i = PREFIX_LENGTH; i < length; i++) {
+            if (weights[i] != o.weights[i]) {
+                return weights[i] - o.weights[i];
+            }
+        }
+        return weights.length - o.weights.length;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the string from which this key is created.
+     *
+     * @return the source string.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final String source;
+
+    private final char[] weights;
+
+    private final long prefix;
+}
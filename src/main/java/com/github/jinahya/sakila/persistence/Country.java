@@ -24,6 +24,7 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotBlank;
@@ -53,7 +54,11 @@ import static java.util.Objects.requireNonNull;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_COUNTRY_ID, nullable = false))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Country.COLUMN_NAME_COUNTRY_ID)
+       })
 public class Country extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -105,8 +110,14 @@ public class Country extends BaseEntity {
     public static final int SIZE_MAX_CITIES = Integer.MAX_VALUE;
 
     // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * A comparator for comparing countries with {@link #ATTRIBUTE_NAME_COUNTRY country} attributes, ignoring case, in
+     * the order of the database collation.
+     *
+     * @see #getCountryCollationKey()
+     */
     public static final Comparator<Country> COMPARING_COUNTRY_IGNORE_CASE
-            = (c1, c2) -> c1.country.compareToIgnoreCase(c2.country);
+            = comparing(Country::getCountryCollationKey);
 
     public static Comparator<Country> comparingCountryIgnoreCase(final boolean naturalOrder) {
         return naturalOrder ? COMPARING_COUNTRY_IGNORE_CASE : COMPARING_COUNTRY_IGNORE_CASE.reversed();
@@ -159,6 +170,17 @@ public class Country extends BaseEntity {
      */
     public void setCountry(final String country) {
         this.country = country;
+        countryCollationKey = null;
+    }
+
+    /**
+     * Returns a collation key of current value of {@link #ATTRIBUTE_NAME_COUNTRY} attribute. The key is cached until
+     * the value changes.
+     *
+     * @return a collation key of current value of {@link #ATTRIBUTE_NAME_COUNTRY} attribute.
+     */
+    public CollationKey getCountryCollationKey() {
+        return countryCollationKey = CollationKey.of(countryCollationKey, getCountry());
     }
 
     // ---------------------------------------------------------------------------------------------------------- cities
@@ -197,4 +219,7 @@ public class Country extends BaseEntity {
                targetEntity = City.class)
     @NamedAttribute(ATTRIBUTE_NAME_CITIES)
     private Set<@NotNull City> cities;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient CollationKey countryCollationKey;
 }
@@ -24,6 +24,7 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -39,7 +40,14 @@ import static com.github.jinahya.sakila.persistence.FullNamedEntity.COLUMN_NAME_
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = Customer.COLUMN_NAME_CUSTOMER_ID))
 @Entity
-@Table(name = Customer.TABLE_NAME)
+@Table(name = Customer.TABLE_NAME,
+       indexes = {
+               @Index(name = Customer.INDEX_NAME_IDX_FK_STORE_ID, columnList = Customer.COLUMN_NAME_STORE_ID),
+               @Index(name = Customer.INDEX_NAME_IDX_FK_ADDRESS_ID, columnList = Customer.COLUMN_NAME_ADDRESS_ID),
+               @Index(name = Customer.INDEX_NAME_IDX_LAST_NAME, columnList = FullNamedEntity.COLUMN_NAME_LAST_NAME),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Customer.COLUMN_NAME_CUSTOMER_ID)
+       })
 public class Customer extends BaseEntity implements FullNamed {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -49,6 +57,23 @@ public class Customer extends BaseEntity implements FullNamed {
      */
     public static final String TABLE_NAME = "customer";
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The name of the index on {@code store_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_STORE_ID = "idx_fk_store_id";
+
+    /**
+     * The name of the index on {@code address_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_ADDRESS_ID = "idx_fk_address_id";
+
+    /**
+     * The name of the index on {@code last_name} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_LAST_NAME = "idx_last_name";
+
     // -----------------------------------------------------------------------------------------------------------------
     public static final String COLUMN_NAME_CUSTOMER_ID = "customer_id";
 
@@ -93,17 +118,15 @@ public class Customer extends BaseEntity implements FullNamed {
     @Override
     public String toString() {
         return super.toString() + "{"
-               + "store=" + store
-               + "firstName=" + firstName
+               + "store=" + EntityToString.reference(this, ATTRIBUTE_NAME_STORE, () -> store)
+               + ",firstName=" + firstName
                + ",lastName=" + lastName
                + ",email=" + email
-               + ",address=" + address
+               + ",address=" + EntityToString.reference(this, ATTRIBUTE_NAME_ADDRESS, () -> address)
                + ",active=" + active
                + "}";
     }
 
-    // TODO: 2019-07-10 equals/hashCode???
-
     // ----------------------------------------------------------------------------------------------------------- store
     public Store getStore() {
         return store;
@@ -122,6 +145,13 @@ public class Customer extends BaseEntity implements FullNamed {
     @Override
     public void setFirstName(final String firstName) {
         this.firstName = firstName;
+        formattedFullName = null;
+        firstNameCollationKey = null;
+    }
+
+    @Override
+    public CollationKey getFirstNameCollationKey() {
+        return firstNameCollationKey = CollationKey.of(firstNameCollationKey, getFirstName());
     }
 
     // -------------------------------------------------------------------------------------------------------- lastName
@@ -133,6 +163,20 @@ public class Customer extends BaseEntity implements FullNamed {
     @Override
     public void setLastName(final String lastName) {
         this.lastName = lastName;
+        formattedFullName = null;
+        lastNameCollationKey = null;
+    }
+
+    @Override
+    public CollationKey getLastNameCollationKey() {
+        return lastNameCollationKey = CollationKey.of(lastNameCollationKey, getLastName());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public String getFullName(final FullNameFormatter formatter, final String delimiter) {
+        return (formattedFullName = FullNameFormatter.Formatted.of(formattedFullName, this, formatter, delimiter))
+                .value;
     }
 
     // ----------------------------------------------------------------------------------------------------------- email
@@ -199,4 +243,11 @@ public class Customer extends BaseEntity implements FullNamed {
     @Column(name = COLUMN_NAME_ACTIVE, nullable = false)
     @NamedAttribute(ATTRIBUTE_NAME_ACTIVE)
     private boolean active;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient CollationKey firstNameCollationKey;
+
+    private transient CollationKey lastNameCollationKey;
+
+    private transient FullNameFormatter.Formatted formattedFullName;
 }
@@ -0,0 +1,106 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceUtil;
+import java.util.function.Supplier;
+
+/**
+ * Utilities for bounded string representations of entities.
+ * <p>
+ * An association is represented only with the entity name and the id of the referenced entity, e.g. {@code City#1},
+ * so that a string representation never recurses into the entity graph. An attribute which is not loaded yet is
+ * represented as {@value #UNLOADED} without being read, so that a string representation never triggers a fetch.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+final class EntityToString {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The string representation of an attribute not loaded yet. The value is {@value}.
+     */
+    static final String UNLOADED = "<unloaded>";
+
+    private static final PersistenceUtil PERSISTENCE_UTIL = Persistence.getPersistenceUtil();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the identity string of specified object, as {@link Object#toString()} does, without invoking its {@link
+     * Object#hashCode()}.
+     *
+     * @param object the object.
+     * @return the identity string of {@code object}.
+     */
+    static String identity(final Object object) {
+        return object.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(object));
+    }
+
+    /**
+     * Returns a string representation of an entity referenced by specified attribute.
+     *
+     * @param owner         the entity owns the attribute.
+     * @param attributeName the name of the attribute.
+     * @param value         a supplier for the value of the attribute; invoked only if the attribute is loaded.
+     * @return a string representation of the referenced entity.
+     */
+    static String reference(final Object owner, final String attributeName, final Supplier<?> value) {
+        if (!PERSISTENCE_UTIL.isLoaded(owner, attributeName)) {
+            return UNLOADED;
+        }
+        final Object reference = value.get();
+        if (reference == null) {
+            return String.valueOf((Object) null);
+        }
+        if (reference instanceof BaseEntity) {
+            return BaseEntity.ENTITY_CLASS.get(reference.getClass()).getSimpleName() + "#"
+                   + ((BaseEntity) reference).getId();
+        }
+        return reference.getClass().getSimpleName();
+    }
+
+    /**
+     * Returns a string representation of a lazily fetched basic attribute.
+     *
+     * @param owner         the entity owns the attribute.
+     * @param attributeName the name of the attribute.
+     * @param value         a supplier for the value of the attribute; invoked only if the attribute is loaded.
+     * @return a string representation of the attribute.
+     */
+    static String basic(final Object owner, final String attributeName, final Supplier<?> value) {
+        if (!PERSISTENCE_UTIL.isLoaded(owner, attributeName)) {
+            return UNLOADED;
+        }
+        final Object basic = value.get();
+        if (basic instanceof byte[]) {
+            return "byte[" + ((byte[]) basic).length + "]";
+        }
+        return String.valueOf(basic);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private EntityToString() {
+        super();
+    }
+}
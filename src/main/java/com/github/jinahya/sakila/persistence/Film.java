@@ -31,6 +31,7 @@ import javax.persistence.Convert;
 import javax.persistence.Converter;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
@@ -71,7 +72,15 @@ import static java.util.stream.Collectors.toCollection;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_FILM_ID, nullable = false))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Film.INDEX_NAME_IDX_TITLE, columnList = Film.COLUMN_NAME_TITLE),
+               @Index(name = Film.INDEX_NAME_IDX_FK_LANGUAGE_ID, columnList = Film.COLUMN_NAME_LANGUAGE_ID),
+               @Index(name = Film.INDEX_NAME_IDX_FK_ORIGINAL_LANGUAGE_ID,
+                      columnList = Film.COLUMN_NAME_ORIGINAL_LANGUAGE_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Film.COLUMN_NAME_FILM_ID)
+       })
 public class Film extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -83,6 +92,23 @@ public class Film extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code title} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_TITLE = "idx_title";
+
+    /**
+     * The name of the index on {@code language_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_LANGUAGE_ID = "idx_fk_language_id";
+
+    /**
+     * The name of the index on {@code original_language_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_ORIGINAL_LANGUAGE_ID = "idx_fk_original_language_id";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The primary key column name of this entity. The value is {@value}.
      * <blockquote>
@@ -550,10 +576,11 @@ public class Film extends BaseEntity {
     public String toString() {
         return super.toString() + "{"
                + "title=" + title
-               + ",description=" + description
+               + ",description=" + EntityToString.basic(this, ATTRIBUTE_NAME_DESCRIPTION, () -> description)
                + ",releaseYear=" + releaseYear
-               + ",language=" + language
-               + ",originalLanguage=" + originalLanguage
+               + ",language=" + EntityToString.reference(this, ATTRIBUTE_NAME_LANGUAGE, () -> language)
+               + ",originalLanguage="
+               + EntityToString.reference(this, ATTRIBUTE_NAME_ORIGINAL_LANGUAGE, () -> originalLanguage)
                + ",rentalDuration=" + rentalDuration
                + ",rentalRate=" + rentalRate
                + ",length=" + length
@@ -563,8 +590,6 @@ public class Film extends BaseEntity {
                + "}";
     }
 
-    // TODO: 2019-07-09 equals/hashCode???
-
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -753,7 +778,7 @@ public class Film extends BaseEntity {
         if (category == null) {
             throw new NullPointerException("category is null");
         }
-        final boolean categoryAdded = getCategories().add(category); // TODO: 2019-07-17 equals/hashCode???
+        final boolean categoryAdded = getCategories().add(category);
         if (!category.getFilms().contains(this)) {
             final boolean addedToCategory = category.addFilm(this);
         }
@@ -776,7 +801,7 @@ public class Film extends BaseEntity {
         if (actor == null) {
             throw new NullPointerException("actor is null");
         }
-        final boolean actorAdded = getActors().add(actor); // TODO: 2019-07-23 equals/hashCode???
+        final boolean actorAdded = getActors().add(actor);
         if (!actor.getFilms().contains(this)) {
             final boolean addedToActor = actor.addFilm(this);
         }
@@ -792,7 +817,7 @@ public class Film extends BaseEntity {
     private String title;
 
     @Size(max = SIZE_MAX_DESCRIPTION)
-    @Basic(optional = true)
+    @Basic(optional = true, fetch = FetchType.LAZY) // effective only with the build-time enhancement
     @Column(name = COLUMN_NAME_DESCRIPTION)
     @NamedAttribute(ATTRIBUTE_NAME_DESCRIPTION)
     private String description;
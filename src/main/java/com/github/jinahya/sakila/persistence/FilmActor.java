@@ -24,6 +24,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -40,7 +41,13 @@ import static com.github.jinahya.sakila.persistence.BaseEntity.COLUMN_NAME_LAST_
  */
 @IdClass(FilmActorId.class)
 @Entity
-@Table(name = FilmActor.TABLE_NAME)
+@Table(name = FilmActor.TABLE_NAME,
+       indexes = {
+               @Index(name = FilmActor.INDEX_NAME_IDX_FK_FILM_ID, columnList = FilmActor.COLUMN_NAME_FILM_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + FilmActor.COLUMN_NAME_ACTOR_ID + ","
+                                   + FilmActor.COLUMN_NAME_FILM_ID)
+       })
 public class FilmActor {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -52,6 +59,13 @@ public class FilmActor {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code film_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_FILM_ID = "idx_fk_film_id";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The table column name for {@value #ATTRIBUTE_NAME_ACTOR} attribute. The value is {@value}.
      * <blockquote>
@@ -94,11 +108,11 @@ public class FilmActor {
      */
     @Override
     public String toString() {
-        return super.toString() + "{" +
-               "actor=" + actor
-               + ",film=" + film
+        return super.toString() + "{"
+               + "actor=" + EntityToString.reference(this, ATTRIBUTE_NAME_ACTOR, () -> actor)
+               + ",film=" + EntityToString.reference(this, ATTRIBUTE_NAME_FILM, () -> film)
                + ",lastUpdate=" + lastUpdate
-               + '}';
+               + "}";
     }
 
     // TODO: 2019-07-10 equals/hashCode???
@@ -24,6 +24,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -50,7 +51,14 @@ import static java.util.Optional.ofNullable;
  */
 @IdClass(FilmCategoryId.class)
 @Entity
-@Table(name = FilmCategory.TABLE_NAME)
+@Table(name = FilmCategory.TABLE_NAME,
+       indexes = {
+               @Index(name = FilmCategory.INDEX_NAME_FK_FILM_CATEGORY_CATEGORY,
+                      columnList = FilmCategory.COLUMN_NAME_CATEGORY_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + FilmCategory.COLUMN_NAME_FILM_ID + ","
+                                   + FilmCategory.COLUMN_NAME_CATEGORY_ID)
+       })
 public class FilmCategory {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -62,6 +70,13 @@ public class FilmCategory {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code category_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_FK_FILM_CATEGORY_CATEGORY = "fk_film_category_category";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The database column name for {@value #ATTRIBUTE_NAME_FILM} attribute. The value is {@value}.
      * <blockquote>
@@ -106,8 +121,8 @@ public class FilmCategory {
     @Override
     public String toString() {
         return super.toString() + "{"
-               + "film=" + film
-               + ",category=" + category
+               + "film=" + EntityToString.reference(this, ATTRIBUTE_NAME_FILM, () -> film)
+               + ",category=" + EntityToString.reference(this, ATTRIBUTE_NAME_CATEGORY, () -> category)
                + ",lastUpdate=" + lastUpdate
                + "}";
     }
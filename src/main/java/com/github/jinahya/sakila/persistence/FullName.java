@@ -138,6 +138,7 @@ public class FullName implements FullNamed, Serializable {
     @Override
     public void setFirstName(final String firstName) {
         this.firstName = firstName;
+        formattedFullName = null;
     }
 
     public FullName firstName(final String firstName) {
@@ -165,6 +166,7 @@ public class FullName implements FullNamed, Serializable {
     @Override
     public void setLastName(final String lastName) {
         this.lastName = lastName;
+        formattedFullName = null;
     }
 
     public FullName lastName(final String lastName) {
@@ -172,6 +174,13 @@ public class FullName implements FullNamed, Serializable {
         return this;
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public String getFullName(final FullNameFormatter formatter, final String delimiter) {
+        return (formattedFullName = FullNameFormatter.Formatted.of(formattedFullName, this, formatter, delimiter))
+                .value;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     @Size(min = SIZE_MIN_FIRST_NAME, max = SIZE_MAX_FIRST_NAME)
     @NotNull
@@ -186,4 +195,7 @@ public class FullName implements FullNamed, Serializable {
     @Column(name = COLUMN_NAME_LAST_NAME, nullable = false, length = SIZE_MAX_LAST_NAME)
     @NamedAttribute(ATTRIBUTE_NAME_LAST_NAME)
     private String lastName;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient FullNameFormatter.Formatted formattedFullName;
 }
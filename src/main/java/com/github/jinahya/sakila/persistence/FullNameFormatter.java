@@ -20,8 +20,16 @@ package com.github.jinahya.sakila.persistence;
  * #L%
  */
 
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
 /**
  * Constants for ordering names.
+ * <p>
+ * Each constant may {@link #appendTo(StringBuilder, FullNamed, String) append} a full name into a caller-supplied
+ * builder, or any {@link #appendTo(Appendable, FullNamed, String) appendable}, without creating intermediate strings.
+ * Entities cache their last formatted full name, with {@link Formatted}, until either name changes.
  */
 public enum FullNameFormatter {
 
@@ -30,8 +38,15 @@ public enum FullNameFormatter {
      */
     FIRST_NAME_FIRST() {
         @Override
-        String format(final FullNamed object, final String delimiter) {
-            return object.getFirstName() + delimiter + object.getLastName();
+        public StringBuilder appendTo(final StringBuilder builder, final FullNamed object, final String delimiter) {
+            return builder.append(object.getFirstName()).append(delimiter).append(object.getLastName());
+        }
+
+        @Override
+        public <T extends Appendable> T appendTo(final T appendable, final FullNamed object, final String delimiter)
+                throws IOException {
+            appendable.append(object.getFirstName()).append(delimiter).append(object.getLastName());
+            return appendable;
         }
     },
 
@@ -40,11 +55,71 @@ public enum FullNameFormatter {
      */
     LAST_NAME_FIRST() {
         @Override
-        String format(final FullNamed object, final String delimiter) {
-            return object.getLastName() + delimiter + object.getFirstName();
+        public StringBuilder appendTo(final StringBuilder builder, final FullNamed object, final String delimiter) {
+            return builder.append(object.getLastName()).append(delimiter).append(object.getFirstName());
+        }
+
+        @Override
+        public <T extends Appendable> T appendTo(final T appendable, final FullNamed object, final String delimiter)
+                throws IOException {
+            appendable.append(object.getLastName()).append(delimiter).append(object.getFirstName());
+            return appendable;
         }
     };
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A formatted full name cached by an entity; valid only for the names, the formatter, and the delimiter with which
+     * it's formatted.
+     */
+    static final class Formatted {
+
+        /**
+         * Returns specified cached value if it's formatted with specified formatter and delimiter, or formats
+         * specified object otherwise.
+         *
+         * @param cached    the cached value; may be {@code null}.
+         * @param object    the full name to format.
+         * @param formatter the formatter.
+         * @param delimiter the delimiter.
+         * @return a value formatted with {@code formatter} and {@code delimiter}.
+         */
+        static Formatted of(final Formatted cached, final FullNamed object, final FullNameFormatter formatter,
+                            final String delimiter) {
+            final String firstName = object.getFirstName();
+            final String lastName = object.getLastName();
+            if (cached != null && cached.firstName == firstName && cached.lastName == lastName
+                && cached.formatter == formatter && cached.delimiter.equals(delimiter)) {
+                return cached;
+            }
+            return new Formatted(firstName, lastName, formatter, delimiter, formatter.format(object, delimiter));
+        }
+
+        private Formatted(final String firstName, final String lastName, final FullNameFormatter formatter,
+                          final String delimiter, final String value) {
+            super();
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.formatter = requireNonNull(formatter, "formatter is null");
+            this.delimiter = requireNonNull(delimiter, "delimiter is null");
+            this.value = value;
+        }
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private final FullNameFormatter formatter;
+
+        private final String delimiter;
+
+        /**
+         * The formatted full name.
+         */
+        final String value;
+    }
+
     // -------------------------------------------------------------------------------------------------------------
 
     /**
@@ -54,5 +129,34 @@ public enum FullNameFormatter {
      * @param delimiter a delimiter between names.
      * @return a formatted value for specified full name.
      */
-    abstract String format(final FullNamed object, final String delimiter);
+    String format(final FullNamed object, final String delimiter) {
+        final String firstName = object.getFirstName();
+        final String lastName = object.getLastName();
+        final int capacity = (firstName == null ? 4 : firstName.length()) + delimiter.length()
+                             + (lastName == null ? 4 : lastName.length());
+        return appendTo(new StringBuilder(capacity), object, delimiter).toString();
+    }
+
+    /**
+     * Appends specified full name, using specified delimiter, to specified string builder.
+     *
+     * @param builder   the string builder to which the full name is appended.
+     * @param object    the full name to format.
+     * @param delimiter a delimiter between names.
+     * @return given {@code builder}.
+     */
+    public abstract StringBuilder appendTo(StringBuilder builder, FullNamed object, String delimiter);
+
+    /**
+     * Appends specified full name, using specified delimiter, to specified appendable.
+     *
+     * @param appendable the appendable to which the full name is appended.
+     * @param object     the full name to format.
+     * @param delimiter  a delimiter between names.
+     * @param <T>        appendable type parameter
+     * @return given {@code appendable}.
+     * @throws IOException if an I/O error occurs.
+     */
+    public abstract <T extends Appendable> T appendTo(T appendable, FullNamed object, String delimiter)
+            throws IOException;
 }
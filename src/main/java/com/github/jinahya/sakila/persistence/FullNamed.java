@@ -69,8 +69,13 @@ public interface FullNamed {
         return naturalOrder ? COMPARING_FIRST_NAME : COMPARING_FIRST_NAME.reversed();
     }
 
-    Comparator<FullNamed> COMPARING_FIRST_NAME_IGNORE_CASE
-            = (f1, f2) -> f1.getFirstName().compareToIgnoreCase(f2.getFirstName());
+    /**
+     * A comparator for comparing with {@value #ATTRIBUTE_NAME_FIRST_NAME} attribute, ignoring case, in the order of the
+     * database collation.
+     *
+     * @see #getFirstNameCollationKey()
+     */
+    Comparator<FullNamed> COMPARING_FIRST_NAME_IGNORE_CASE = comparing(FullNamed::getFirstNameCollationKey);
 
     static Comparator<FullNamed> comparingFirstNameIgnoreCase(final boolean naturalOrder) {
         return naturalOrder ? COMPARING_FIRST_NAME_IGNORE_CASE : COMPARING_FIRST_NAME_IGNORE_CASE.reversed();
@@ -83,8 +88,13 @@ public interface FullNamed {
         return naturalOrder ? COMPARING_LAST_NAME : COMPARING_LAST_NAME.reversed();
     }
 
-    Comparator<FullNamed> COMPARING_LAST_NAME_IGNORE_CASE
-            = (f1, f2) -> f1.getLastName().compareToIgnoreCase(f2.getLastName());
+    /**
+     * A comparator for comparing with {@value #ATTRIBUTE_NAME_LAST_NAME} attribute, ignoring case, in the order of the
+     * database collation.
+     *
+     * @see #getLastNameCollationKey()
+     */
+    Comparator<FullNamed> COMPARING_LAST_NAME_IGNORE_CASE = comparing(FullNamed::getLastNameCollationKey);
 
     static Comparator<FullNamed> getComparingLastNameIgnoreCase(final boolean naturalOrder) {
         return naturalOrder ? COMPARING_LAST_NAME_IGNORE_CASE : COMPARING_LAST_NAME_IGNORE_CASE.reversed();
@@ -127,6 +137,16 @@ public interface FullNamed {
      */
     void setFirstName(String firstName);
 
+    /**
+     * Returns a collation key of current value of {@value #ATTRIBUTE_NAME_FIRST_NAME} attribute. The default
+     * implementation creates a new key on each invocation; entities override it to cache the key.
+     *
+     * @return a collation key of current value of {@value #ATTRIBUTE_NAME_FIRST_NAME} attribute.
+     */
+    default CollationKey getFirstNameCollationKey() {
+        return CollationKey.of(getFirstName());
+    }
+
     // -------------------------------------------------------------------------------------------------------- lastName
 
     /**
@@ -143,6 +163,16 @@ public interface FullNamed {
      */
     void setLastName(String lastName);
 
+    /**
+     * Returns a collation key of current value of {@value #ATTRIBUTE_NAME_LAST_NAME} attribute. The default
+     * implementation creates a new key on each invocation; entities override it to cache the key.
+     *
+     * @return a collation key of current value of {@value #ATTRIBUTE_NAME_LAST_NAME} attribute.
+     */
+    default CollationKey getLastNameCollationKey() {
+        return CollationKey.of(getLastName());
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     default String getFullName(final FullNameFormatter formatter, final String delimiter) {
         return formatter.format(this, delimiter);
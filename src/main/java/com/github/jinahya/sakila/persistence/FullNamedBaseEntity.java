@@ -85,6 +85,13 @@ abstract class FullNamedBaseEntity extends BaseEntity implements FullNamed {
     @Override
     public void setFirstName(final String firstName) {
         this.firstName = firstName;
+        formattedFullName = null;
+        firstNameCollationKey = null;
+    }
+
+    @Override
+    public CollationKey getFirstNameCollationKey() {
+        return firstNameCollationKey = CollationKey.of(firstNameCollationKey, getFirstName());
     }
 
     // -------------------------------------------------------------------------------------------------------- lastName
@@ -96,6 +103,20 @@ abstract class FullNamedBaseEntity extends BaseEntity implements FullNamed {
     @Override
     public void setLastName(final String lastName) {
         this.lastName = lastName;
+        formattedFullName = null;
+        lastNameCollationKey = null;
+    }
+
+    @Override
+    public CollationKey getLastNameCollationKey() {
+        return lastNameCollationKey = CollationKey.of(lastNameCollationKey, getLastName());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public String getFullName(final FullNameFormatter formatter, final String delimiter) {
+        return (formattedFullName = FullNameFormatter.Formatted.of(formattedFullName, this, formatter, delimiter))
+                .value;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -112,4 +133,11 @@ abstract class FullNamedBaseEntity extends BaseEntity implements FullNamed {
     @Column(name = COLUMN_NAME_LAST_NAME, nullable = false, length = SIZE_MAX_LAST_NAME)
     @NamedAttribute(ATTRIBUTE_NAME_LAST_NAME)
     private String lastName;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient CollationKey firstNameCollationKey;
+
+    private transient CollationKey lastNameCollationKey;
+
+    private transient FullNameFormatter.Formatted formattedFullName;
 }
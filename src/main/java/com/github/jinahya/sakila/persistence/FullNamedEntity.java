@@ -62,6 +62,7 @@ abstract class FullNamedEntity implements FullNamed {
     @Override
     public void setFirstName(final String firstName) {
         this.firstName = firstName;
+        formattedFullName = null;
     }
 
     // -------------------------------------------------------------------------------------------------------- lastName
@@ -73,6 +74,14 @@ abstract class FullNamedEntity implements FullNamed {
     @Override
     public void setLastName(final String lastName) {
         this.lastName = lastName;
+        formattedFullName = null;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public String getFullName(final FullNameFormatter formatter, final String delimiter) {
+        return (formattedFullName = FullNameFormatter.Formatted.of(formattedFullName, this, formatter, delimiter))
+                .value;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -89,4 +98,7 @@ abstract class FullNamedEntity implements FullNamed {
     @Column(name = COLUMN_NAME_LAST_NAME, nullable = false, length = SIZE_MAX_LAST_NAME)
     @NamedAttribute(ATTRIBUTE_NAME_LAST_NAME)
     private String lastName;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient FullNameFormatter.Formatted formattedFullName;
 }
@@ -23,6 +23,7 @@ package com.github.jinahya.sakila.persistence;
 import javax.persistence.AttributeOverride;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -47,7 +48,14 @@ import static com.github.jinahya.sakila.persistence.Inventory.TABLE_NAME;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_INVENTORY_ID, nullable = false))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Inventory.INDEX_NAME_IDX_FK_FILM_ID, columnList = Inventory.COLUMN_NAME_FILM_ID),
+               @Index(name = Inventory.INDEX_NAME_IDX_STORE_ID_FILM_ID,
+                      columnList = Inventory.COLUMN_NAME_STORE_ID + "," + Inventory.COLUMN_NAME_FILM_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Inventory.COLUMN_NAME_INVENTORY_ID)
+       })
 public class Inventory extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -59,6 +67,18 @@ public class Inventory extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the index on {@code film_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_FILM_ID = "idx_fk_film_id";
+
+    /**
+     * The name of the index on {@code store_id}, {@code film_id} columns. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_STORE_ID_FILM_ID = "idx_store_id_film_id";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The primary key column name of the table. The value is {@value}.
      * <blockquote>
@@ -119,13 +139,11 @@ public class Inventory extends BaseEntity {
     @Override
     public String toString() {
         return super.toString() + "{"
-               + "film=" + film
-               + ",store=" + store
+               + "film=" + EntityToString.reference(this, ATTRIBUTE_NAME_FILM, () -> film)
+               + ",store=" + EntityToString.reference(this, ATTRIBUTE_NAME_STORE, () -> store)
                + "}";
     }
 
-    // TODO: 2019-07-22 equals/hashCode???
-
     // ------------------------------------------------------------------------------------------------------------ film
 
     /**
@@ -25,6 +25,7 @@ import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotBlank;
@@ -52,7 +53,11 @@ import static java.util.Comparator.comparing;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_LANGUAGE_ID, nullable = false))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Language.COLUMN_NAME_LANGUAGE_ID)
+       })
 public class Language extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -168,8 +173,6 @@ public class Language extends BaseEntity {
                + "}";
     }
 
-    // TODO: 2019-07-17 equals/hashCode???
-
     // ------------------------------------------------------------------------------------------------------------ name
 
     /**
@@ -0,0 +1,186 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A typed accessor of an attribute annotated with {@link NamedAttribute}. Instances of this class are generated, per
+ * entity class, into {@code <Entity>Attributes} classes by the {@code NamedAttributeProcessor}.
+ *
+ * @param <X> entity type parameter
+ * @param <Y> attribute type parameter
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public final class NamedAttributeAccessor<X, Y> {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     *
+     * @param entityClass the entity class.
+     * @param name        the attribute name.
+     * @param type        the attribute type.
+     * @param getter      a function for getting the attribute value from an entity.
+     * @param setter      a consumer for setting the attribute value to an entity; {@code null} if not writable.
+     * @param attribute   a supplier of the static metamodel attribute.
+     */
+    public NamedAttributeAccessor(final Class<X> entityClass, final String name, final Class<Y> type,
+                                  final Function<? super X, ? extends Y> getter,
+                                  final BiConsumer<? super X, ? super Y> setter,
+                                  final Supplier<? extends SingularAttribute<? super X, Y>> attribute) {
+        super();
+        this.entityClass = requireNonNull(entityClass, "entityClass is null");
+        this.name = requireNonNull(name, "name is null");
+        this.type = requireNonNull(type, "type is null");
+        this.getter = requireNonNull(getter, "getter is null");
+        this.setter = setter;
+        this.attribute = requireNonNull(attribute, "attribute is null");
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + "{"
+               + "entityClass=" + entityClass
+               + ",name=" + name
+               + ",type=" + type
+               + "}";
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value of this attribute from specified entity.
+     *
+     * @param entity the entity.
+     * @return the value of this attribute.
+     */
+    public Y get(final X entity) {
+        return getter.apply(entity);
+    }
+
+    /**
+     * Indicates whether this attribute is writable.
+     *
+     * @return {@code true} if writable; {@code false} otherwise.
+     */
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Replaces the value of this attribute of specified entity with specified value.
+     *
+     * @param entity the entity.
+     * @param value  new value for this attribute.
+     * @throws UnsupportedOperationException if this attribute is not {@link #isWritable() writable}.
+     */
+    public void set(final X entity, final Y value) {
+        if (setter == null) {
+            throw new UnsupportedOperationException("not writable: " + name);
+        }
+        setter.accept(entity, value);
+    }
+
+    /**
+     * Returns a comparator comparing with this attribute. Note that the comparator is not null-safe.
+     *
+     * @param natural a flag for comparison direction; {@code true} for natural direction, {@code false} for reverse
+     *                direction.
+     * @return a comparator.
+     * @throws ClassCastException if the attribute type is not {@link Comparable}.
+     */
+    @SuppressWarnings({"unchecked"})
+    public Comparator<X> comparing(final boolean natural) {
+        final Comparator<X> comparator = Comparator.comparing(e -> (Comparable<Object>) get(e));
+        return natural ? comparator : comparator.reversed();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the entity class.
+     *
+     * @return the entity class.
+     */
+    public Class<X> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * Returns the attribute name.
+     *
+     * @return the attribute name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the attribute type.
+     *
+     * @return the attribute type.
+     */
+    public Class<Y> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the static metamodel attribute of this attribute.
+     *
+     * @return the static metamodel attribute.
+     * @throws IllegalStateException if the static metamodel is not initialized yet.
+     */
+    public SingularAttribute<? super X, Y> getAttribute() {
+        final SingularAttribute<? super X, Y> value = attribute.get();
+        if (value == null) {
+            throw new IllegalStateException("metamodel is not initialized yet: " + name);
+        }
+        return value;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Class<X> entityClass;
+
+    private final String name;
+
+    private final Class<Y> type;
+
+    private final Function<? super X, ? extends Y> getter;
+
+    private final BiConsumer<? super X, ? super Y> setter;
+
+    private final Supplier<? extends SingularAttribute<? super X, Y>> attribute;
+}
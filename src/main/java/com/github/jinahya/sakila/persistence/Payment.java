@@ -24,6 +24,7 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.PrePersist;
@@ -41,12 +42,36 @@ import static com.github.jinahya.sakila.persistence.Payment.COLUMN_NAME_PAYMENT_
 
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_PAYMENT_ID, nullable = false))
 @Entity
-@Table(name = Payment.TABLE_NAME)
+@Table(name = Payment.TABLE_NAME,
+       indexes = {
+               @Index(name = Payment.INDEX_NAME_IDX_FK_STAFF_ID, columnList = Payment.COLUMN_NAME_STAFF_ID),
+               @Index(name = Payment.INDEX_NAME_IDX_FK_CUSTOMER_ID, columnList = Payment.COLUMN_NAME_CUSTOMER_ID),
+               @Index(name = Payment.INDEX_NAME_FK_PAYMENT_RENTAL, columnList = Payment.COLUMN_NAME_RENTAL_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Payment.COLUMN_NAME_PAYMENT_ID)
+       })
 public class Payment extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
     public static final String TABLE_NAME = "payment";
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The name of the index on {@code staff_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_STAFF_ID = "idx_fk_staff_id";
+
+    /**
+     * The name of the index on {@code customer_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_CUSTOMER_ID = "idx_fk_customer_id";
+
+    /**
+     * The name of the index on {@code rental_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_FK_PAYMENT_RENTAL = "fk_payment_rental";
+
     // -----------------------------------------------------------------------------------------------------------------
     public static final String COLUMN_NAME_PAYMENT_ID = "payment_id";
 
@@ -155,9 +180,9 @@ public class Payment extends BaseEntity {
     @Override
     public String toString() {
         return super.toString() + "{"
-               + "customer=" + customer
-               + ",staff=" + staff
-               + ",rental=" + rental
+               + "customer=" + EntityToString.reference(this, ATTRIBUTE_NAME_CUSTOMER, () -> customer)
+               + ",staff=" + EntityToString.reference(this, ATTRIBUTE_NAME_STAFF, () -> staff)
+               + ",rental=" + EntityToString.reference(this, ATTRIBUTE_NAME_RENTAL, () -> rental)
                + ",amount=" + amount
                + ",paymentDate=" + paymentDate
                + "}";
@@ -24,6 +24,7 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -38,12 +39,46 @@ import static com.github.jinahya.sakila.persistence.Rental.TABLE_NAME;
 
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_RENTAL_ID, nullable = false))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Rental.INDEX_NAME_RENTAL_DATE,
+                      columnList = Rental.COLUMN_NAME_RENTAL_DATE + "," + Rental.COLUMN_NAME_INVENTORY_ID + ","
+                                   + Rental.COLUMN_NAME_CUSTOMER_ID,
+                      unique = true),
+               @Index(name = Rental.INDEX_NAME_IDX_FK_INVENTORY_ID, columnList = Rental.COLUMN_NAME_INVENTORY_ID),
+               @Index(name = Rental.INDEX_NAME_IDX_FK_CUSTOMER_ID, columnList = Rental.COLUMN_NAME_CUSTOMER_ID),
+               @Index(name = Rental.INDEX_NAME_IDX_FK_STAFF_ID, columnList = Rental.COLUMN_NAME_STAFF_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Rental.COLUMN_NAME_RENTAL_ID)
+       })
 public class Rental extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
     public static final String TABLE_NAME = "rental";
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The name of the unique index on {@code rental_date}, {@code inventory_id}, {@code customer_id} columns. The
+     * value is {@value}.
+     */
+    public static final String INDEX_NAME_RENTAL_DATE = "rental_date";
+
+    /**
+     * The name of the index on {@code inventory_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_INVENTORY_ID = "idx_fk_inventory_id";
+
+    /**
+     * The name of the index on {@code customer_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_CUSTOMER_ID = "idx_fk_customer_id";
+
+    /**
+     * The name of the index on {@code staff_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_STAFF_ID = "idx_fk_staff_id";
+
     // -----------------------------------------------------------------------------------------------------------------
     public static final String COLUMN_NAME_RENTAL_ID = "rental_id";
 
@@ -92,10 +127,10 @@ public class Rental extends BaseEntity {
     public String toString() {
         return super.toString() + "{"
                + "rentalDate=" + rentalDate
-               + ",inventory=" + inventory
-               + ",customer=" + customer
+               + ",inventory=" + EntityToString.reference(this, ATTRIBUTE_NAME_INVENTORY, () -> inventory)
+               + ",customer=" + EntityToString.reference(this, ATTRIBUTE_NAME_CUSTOMER, () -> customer)
                + ",returnDate=" + returnDate
-               + ",staff=" + staff
+               + ",staff=" + EntityToString.reference(this, ATTRIBUTE_NAME_STAFF, () -> staff)
                + "}";
     }
 
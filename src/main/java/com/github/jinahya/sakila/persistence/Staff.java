@@ -27,6 +27,8 @@ import javax.persistence.AttributeOverride;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
@@ -52,12 +54,30 @@ import static java.util.Optional.ofNullable;
 
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_STAFF_ID))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Staff.INDEX_NAME_IDX_FK_STORE_ID, columnList = Staff.COLUMN_NAME_STORE_ID),
+               @Index(name = Staff.INDEX_NAME_IDX_FK_ADDRESS_ID, columnList = Staff.COLUMN_NAME_ADDRESS_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Staff.COLUMN_NAME_STAFF_ID)
+       })
 public class Staff extends BaseEntity implements FullNamed {
 
     // -----------------------------------------------------------------------------------------------------------------
     public static final String TABLE_NAME = "staff";
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The name of the index on {@code store_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_STORE_ID = "idx_fk_store_id";
+
+    /**
+     * The name of the index on {@code address_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_ADDRESS_ID = "idx_fk_address_id";
+
     // -----------------------------------------------------------------------------------------------------------------
     public static final String COLUMN_NAME_STAFF_ID = "staff_id";
 
@@ -109,10 +129,10 @@ public class Staff extends BaseEntity implements FullNamed {
         return super.toString() + "{"
                + "firstName=" + firstName
                + ",lastName=" + lastName
-               + ",address=" + address
-               + ",picture=" + Arrays.toString(picture)
+               + ",address=" + EntityToString.reference(this, ATTRIBUTE_NAME_ADDRESS, () -> address)
+               + ",picture=" + EntityToString.basic(this, ATTRIBUTE_NAME_PICTURE, () -> picture)
                + ",email='" + email + '\''
-               + ",store=" + store
+               + ",store=" + EntityToString.reference(this, ATTRIBUTE_NAME_STORE, () -> store)
                + ",active=" + active
                + ",username=" + username
                + ",password=" + password
@@ -128,6 +148,13 @@ public class Staff extends BaseEntity implements FullNamed {
     @Override
     public void setFirstName(final String firstName) {
         this.firstName = firstName;
+        formattedFullName = null;
+        firstNameCollationKey = null;
+    }
+
+    @Override
+    public CollationKey getFirstNameCollationKey() {
+        return firstNameCollationKey = CollationKey.of(firstNameCollationKey, getFirstName());
     }
 
     // -------------------------------------------------------------------------------------------------------- lastName
@@ -139,6 +166,20 @@ public class Staff extends BaseEntity implements FullNamed {
     @Override
     public void setLastName(final String lastName) {
         this.lastName = lastName;
+        formattedFullName = null;
+        lastNameCollationKey = null;
+    }
+
+    @Override
+    public CollationKey getLastNameCollationKey() {
+        return lastNameCollationKey = CollationKey.of(lastNameCollationKey, getLastName());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public String getFullName(final FullNameFormatter formatter, final String delimiter) {
+        return (formattedFullName = FullNameFormatter.Formatted.of(formattedFullName, this, formatter, delimiter))
+                .value;
     }
 
     // --------------------------------------------------------------------------------------------------------- address
@@ -275,6 +316,7 @@ public class Staff extends BaseEntity implements FullNamed {
     private Address address;
 
     @Lob
+    @Basic(fetch = FetchType.LAZY) // effective only with the build-time enhancement
     @Column(name = COLUMN_NAME_PICTURE)
     @NamedAttribute(ATTRIBUTE_NAME_PICTURE)
     private byte[] picture; // +
@@ -308,4 +350,11 @@ public class Staff extends BaseEntity implements FullNamed {
     @Column(name = COLUMN_NAME_PASSWORD)
     @NamedAttribute(ATTRIBUTE_NAME_PASSWORD)
     private String password;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient CollationKey firstNameCollationKey;
+
+    private transient CollationKey lastNameCollationKey;
+
+    private transient FullNameFormatter.Formatted formattedFullName;
 }
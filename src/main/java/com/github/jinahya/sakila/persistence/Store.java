@@ -23,6 +23,7 @@ package com.github.jinahya.sakila.persistence;
 import javax.persistence.AttributeOverride;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
@@ -42,7 +43,14 @@ import static com.github.jinahya.sakila.persistence.Store.TABLE_NAME;
  */
 @AttributeOverride(name = ATTRIBUTE_NAME_ID, column = @Column(name = COLUMN_NAME_STORE_ID))
 @Entity
-@Table(name = TABLE_NAME)
+@Table(name = TABLE_NAME,
+       indexes = {
+               @Index(name = Store.INDEX_NAME_IDX_UNIQUE_MANAGER,
+                      columnList = Store.COLUMN_NAME_MANAGER_STAFF_ID, unique = true),
+               @Index(name = Store.INDEX_NAME_IDX_FK_ADDRESS_ID, columnList = Store.COLUMN_NAME_ADDRESS_ID),
+               @Index(name = BaseEntity.INDEX_NAME_IDX_LAST_UPDATE,
+                      columnList = BaseEntity.COLUMN_NAME_LAST_UPDATE + "," + Store.COLUMN_NAME_STORE_ID)
+       })
 public class Store extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -54,6 +62,18 @@ public class Store extends BaseEntity {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The name of the unique index on {@code manager_staff_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_UNIQUE_MANAGER = "idx_unique_manager";
+
+    /**
+     * The name of the index on {@code address_id} column. The value is {@value}.
+     */
+    public static final String INDEX_NAME_IDX_FK_ADDRESS_ID = "idx_fk_address_id";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
      * The primary key column name of this entity. The value is {@value} column.
      * <blockquote>
@@ -124,13 +144,11 @@ public class Store extends BaseEntity {
     @Override
     public String toString() {
         return super.toString() + "{"
-               + "manager=" + manager
-               + ",address=" + address
+               + "manager=" + EntityToString.reference(this, ATTRIBUTE_NAME_MANAGER, () -> manager)
+               + ",address=" + EntityToString.reference(this, ATTRIBUTE_NAME_ADDRESS, () -> address)
                + "}";
     }
 
-    // TODO: 2019-07-10 equals/hashCode???
-
     // --------------------------------------------------------------------------------------------------------- manager
 
     /**
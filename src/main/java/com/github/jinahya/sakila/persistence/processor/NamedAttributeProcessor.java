@@ -0,0 +1,349 @@
+package com.github.jinahya.sakila.persistence.processor;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor which generates, for each entity class, a class of static {@code NamedAttributeAccessor}s for
+ * those singular attributes annotated with {@code NamedAttribute}.
+ * <p>
+ * For an entity class of {@code Film}, this processor generates a class named {@code FilmAttributes} whose constants
+ * hold the getter, the setter, and the static metamodel attribute (of {@code Film_}) of each attribute so that no
+ * string lookup nor reflection is required while accessing the attribute.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@SupportedAnnotationTypes({NamedAttributeProcessor.ENTITY, NamedAttributeProcessor.NAMED_ATTRIBUTE})
+public class NamedAttributeProcessor extends AbstractProcessor {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    static final String ENTITY = "javax.persistence.Entity";
+
+    static final String TRANSIENT = "javax.persistence.Transient";
+
+    static final String NAMED_ATTRIBUTE = "com.github.jinahya.sakila.persistence.NamedAttribute";
+
+    static final String ACCESSOR = "com.github.jinahya.sakila.persistence.NamedAttributeAccessor";
+
+    /**
+     * The suffix of generated class names. The value is {@value}.
+     */
+    static final String SUFFIX = "Attributes";
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Converts specified attribute name to a constant name. e.g. {@code rentalDuration} to {@code RENTAL_DURATION}.
+     *
+     * @param attributeName the attribute name.
+     * @return a constant name.
+     */
+    static String constantName(final String attributeName) {
+        final StringBuilder builder = new StringBuilder(attributeName.length() + 4);
+        for (int i = 0; i < attributeName.length(); i++) {
+            final char c = attributeName.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                builder.append('_');
+            }
+            builder.append(Character.toUpperCase(c));
+        }
+        return builder.toString();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A model of a single attribute to generate.
+     */
+    private static final class Attribute {
+
+        private Attribute(final String name, final String type, final String getter, final String setter) {
+            super();
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        private final String name;
+
+        private final String type;
+
+        private final String getter;
+
+        private final String setter;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     */
+    public NamedAttributeProcessor() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final TypeElement entity = processingEnv.getElementUtils().getTypeElement(ENTITY);
+        if (entity == null) {
+            return false;
+        }
+        for (final TypeElement element : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(entity))) {
+            try {
+                generate(element);
+            } catch (final IOException ioe) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "failed to generate; " + ioe, element);
+            }
+        }
+        return false;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Collects attributes of specified entity element, including those declared in its super classes.
+     *
+     * @param entityElement the entity element.
+     * @return a map of attribute names and attributes.
+     */
+    private Map<String, Attribute> attributes(final TypeElement entityElement) {
+        final Map<String, Attribute> attributes = new LinkedHashMap<>();
+        final List<ExecutableElement> methods = new ArrayList<>();
+        for (TypeElement e = entityElement; e != null; e = superclass(e)) {
+            methods.addAll(ElementFilter.methodsIn(e.getEnclosedElements()));
+        }
+        final List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement e = entityElement; e != null; e = superclass(e)) {
+            hierarchy.add(0, e);
+        }
+        for (final TypeElement e : hierarchy) {
+            for (final VariableElement field : ElementFilter.fieldsIn(e.getEnclosedElements())) {
+                final String name = namedAttributeValue(field);
+                if (name == null || field.getModifiers().contains(Modifier.STATIC)
+                    || field.getModifiers().contains(Modifier.TRANSIENT) || annotated(field, TRANSIENT)) {
+                    continue;
+                }
+                final TypeMirror fieldType = field.asType();
+                if (plural(fieldType)) {
+                    continue;
+                }
+                final String fieldName = field.getSimpleName().toString();
+                final String getter = accessor(methods, fieldType, fieldName, true);
+                if (getter == null) { // e.g. FilmText, whose attributes are read by the provider only
+                    processingEnv.getMessager().printMessage(
+                            Diagnostic.Kind.NOTE, "no accessible getter; skipped", field);
+                    continue;
+                }
+                final String setter = accessor(methods, fieldType, fieldName, false);
+                attributes.put(name, new Attribute(name, boxed(fieldType), getter, setter));
+            }
+        }
+        return attributes;
+    }
+
+    private void generate(final TypeElement entityElement) throws IOException {
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(entityElement);
+        final String packageName = packageElement.getQualifiedName().toString();
+        final String entityName = entityElement.getSimpleName().toString();
+        final String className = entityName + SUFFIX;
+        final Map<String, Attribute> attributes = attributes(entityElement);
+        if (attributes.isEmpty()) {
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? className : packageName + '.' + className, entityElement).openWriter())) {
+            if (!packageName.isEmpty()) {
+                writer.printf("package %s;%n%n", packageName);
+            }
+            writer.printf("import %s;%n", ACCESSOR);
+            writer.printf("import java.util.LinkedHashMap;%n");
+            writer.printf("import java.util.Map;%n%n");
+            writer.printf("import static java.util.Collections.unmodifiableMap;%n%n");
+            writer.printf("/**%n * Typed accessors of named attributes of {@link %s}.%n */%n", entityName);
+            writer.printf("@SuppressWarnings({\"deprecation\"})%n");
+            writer.printf("public final class %s {%n%n", className);
+            for (final Attribute attribute : attributes.values()) {
+                writer.printf("    /**%n     * The accessor for {@code %s} attribute.%n     */%n", attribute.name);
+                writer.printf("    public static final NamedAttributeAccessor<%1$s, %2$s> %3$s%n"
+                              + "            = new NamedAttributeAccessor<>(%1$s.class, \"%4$s\", %2$s.class,%n"
+                              + "                                           %1$s::%5$s, %6$s, () -> %1$s_.%7$s);%n%n",
+                              entityName, attribute.type, constantName(attribute.name), attribute.name,
+                              attribute.getter, attribute.setter == null ? "null" : entityName + "::" + attribute.setter,
+                              attribute.name);
+            }
+            writer.printf("    /**%n     * An unmodifiable map of attribute names and accessors.%n     */%n");
+            writer.printf("    public static final Map<String, NamedAttributeAccessor<%s, ?>> ACCESSORS;%n%n",
+                          entityName);
+            writer.printf("    static {%n");
+            writer.printf("        final Map<String, NamedAttributeAccessor<%s, ?>> accessors = new LinkedHashMap<>();%n",
+                          entityName);
+            for (final Attribute attribute : attributes.values()) {
+                writer.printf("        accessors.put(\"%s\", %s);%n", attribute.name, constantName(attribute.name));
+            }
+            writer.printf("        ACCESSORS = unmodifiableMap(accessors);%n");
+            writer.printf("    }%n%n");
+            writer.printf("    private %s() {%n", className);
+            writer.printf("        throw new AssertionError(\"instantiation is not allowed\");%n");
+            writer.printf("    }%n");
+            writer.printf("}%n");
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private TypeElement superclass(final TypeElement element) {
+        final TypeMirror superclass = element.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (superElement.getQualifiedName().contentEquals(Object.class.getName())) {
+            return null;
+        }
+        return superElement;
+    }
+
+    private boolean annotated(final Element element, final String annotationName) {
+        return element.getAnnotationMirrors().stream().anyMatch(
+                m -> ((TypeElement) m.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName));
+    }
+
+    private String namedAttributeValue(final Element element) {
+        return element.getAnnotationMirrors().stream()
+                .filter(m -> ((TypeElement) m.getAnnotationType().asElement()).getQualifiedName()
+                        .contentEquals(NAMED_ATTRIBUTE))
+                .flatMap(m -> m.getElementValues().entrySet().stream())
+                .filter(e -> e.getKey().getSimpleName().contentEquals("value"))
+                .map(e -> (String) e.getValue().getValue())
+                .findFirst()
+                .orElse(null);
+    }
+
+    private boolean plural(final TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        final TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        for (final Class<?> pluralType : new Class<?>[] {java.util.Collection.class, java.util.Map.class}) {
+            final TypeElement pluralElement = processingEnv.getElementUtils().getTypeElement(pluralType.getName());
+            if (processingEnv.getTypeUtils().isAssignable(
+                    erased, processingEnv.getTypeUtils().erasure(pluralElement.asType()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String boxed(final TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+                    .getSimpleName().toString();
+        }
+        return typeName(type);
+    }
+
+    /**
+     * Returns the source name of specified type without any type annotations nor type arguments.
+     *
+     * @param type the type.
+     * @return the source name of {@code type}.
+     */
+    private String typeName(final TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED:
+                return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+            default:
+                return type.getKind().name().toLowerCase();
+        }
+    }
+
+    /**
+     * Finds the name of the non-private getter or setter of specified field.
+     *
+     * @param methods   all methods of the entity class and its super classes.
+     * @param fieldType the type of the field.
+     * @param fieldName the name of the field.
+     * @param getter    {@code true} for a getter; {@code false} for a setter.
+     * @return the name of the method; {@code null} if not found.
+     */
+    private String accessor(final List<ExecutableElement> methods, final TypeMirror fieldType, final String fieldName,
+                            final boolean getter) {
+        final String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        for (final ExecutableElement method : methods) {
+            if (method.getKind() != ElementKind.METHOD || method.getModifiers().contains(Modifier.PRIVATE)
+                || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            final String methodName = method.getSimpleName().toString();
+            if (getter) {
+                if (!method.getParameters().isEmpty()
+                    || !processingEnv.getTypeUtils().isSameType(method.getReturnType(), fieldType)) {
+                    continue;
+                }
+                if (methodName.equals("get" + capitalized)
+                    || (fieldType.getKind() == TypeKind.BOOLEAN && methodName.equals("is" + capitalized))) {
+                    return methodName;
+                }
+            } else {
+                if (method.getParameters().size() != 1
+                    || !processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), fieldType)) {
+                    continue;
+                }
+                if (methodName.equals("set" + capitalized)) {
+                    return methodName;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark for measuring the cost of re-parenting {@link Address}es between two {@link City cities}, which
+ * maintains {@link City#getAddresses()} on both sides.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+@Slf4j
+public class AddressReparentBenchmark {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args command line arguments.
+     * @throws RunnerException if failed to run.
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AddressReparentBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Invocation)
+    public void populateAddresses() {
+        city1 = new City();
+        city2 = new City();
+        addresses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final Address address = new Address();
+            if (persisted) {
+                address.setId(i + 1);
+            }
+            address.setCity(city1);
+            addresses.add(address);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Moves all addresses from one city to another.
+     *
+     * @return the number of addresses re-parented to the new city.
+     */
+    @Benchmark
+    public int reparent() {
+        for (final Address address : addresses) {
+            address.setCity(city2);
+        }
+        return (int) addresses.stream().filter(a -> a.getCity() == city2).count();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of addresses to re-parent.
+     */
+    @Param({"1000", "10000"})
+    public int size;
+
+    /**
+     * A flag for assigning ids to addresses; {@code false} for transient addresses.
+     */
+    @Param({"false", "true"})
+    public boolean persisted;
+
+    private City city1;
+
+    private City city2;
+
+    private List<Address> addresses;
+}
@@ -0,0 +1,158 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Defers actions of entity listeners until the transaction, in which the callbacks are invoked, commits.
+ * <p>
+ * Lifecycle callbacks, such as {@link javax.persistence.PostPersist}, are invoked while changes are being written,
+ * before the transaction commits; a listener which applies them to an in-memory structure right away would keep them
+ * even when the transaction rolls back. Listeners, instead, pass actions, capturing every value they need, to {@link
+ * #run(Runnable)} which, while a transaction is in progress on the current thread, buffers them and runs them only
+ * when the transaction commits; they are discarded when the transaction rolls back. Actions passed to {@link
+ * #compensate(Runnable)}, on the other hand, run only when the transaction rolls back.
+ * <p>
+ * The boundaries of transactions are reported by a persistence provider specific hook; for EclipseLink, {@link
+ * EclipseLinkAfterCommit} which is registered in {@code META-INF/persistence.xml}. Without a hook, actions run right
+ * away.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class AfterCommit {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Actions buffered for the transaction in progress on each thread; {@code null} while no transaction.
+     */
+    private static final ThreadLocal<List<Runnable>> PENDING = new ThreadLocal<>();
+
+    /**
+     * Actions to run when the transaction in progress on each thread rolls back; {@code null} while no transaction.
+     */
+    private static final ThreadLocal<List<Runnable>> COMPENSATING = new ThreadLocal<>();
+
+    /**
+     * Runs specified action when the transaction in progress on the current thread commits, or right away if none.
+     *
+     * @param action the action to run.
+     */
+    static void run(@NotNull final Runnable action) {
+        requireNonNull(action, "action is null");
+        final List<Runnable> pending = PENDING.get();
+        if (pending == null) {
+            action.run();
+            return;
+        }
+        pending.add(action);
+    }
+
+    /**
+     * Runs specified action when the transaction in progress on the current thread rolls back; does nothing if none.
+     *
+     * @param action the action to run.
+     */
+    static void compensate(@NotNull final Runnable action) {
+        requireNonNull(action, "action is null");
+        final List<Runnable> compensating = COMPENSATING.get();
+        if (compensating != null) {
+            compensating.add(action);
+        }
+    }
+
+    /**
+     * Returns the number of actions buffered for the transaction in progress on the current thread.
+     *
+     * @return the number of buffered actions.
+     */
+    static int pending() {
+        final List<Runnable> pending = PENDING.get();
+        return pending == null ? 0 : pending.size();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Notifies that a transaction has begun on the current thread. Calling this method while a transaction is already
+     * in progress does nothing.
+     */
+    static void begun() {
+        if (PENDING.get() == null) {
+            PENDING.set(new ArrayList<>());
+            COMPENSATING.set(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Notifies that the transaction in progress on the current thread has committed and runs all buffered actions, in
+     * order. A failing action is logged and doesn't prevent the others.
+     */
+    static void committed() {
+        final List<Runnable> pending = PENDING.get();
+        PENDING.remove();
+        COMPENSATING.remove();
+        if (pending == null) {
+            return;
+        }
+        run(pending, "commit");
+    }
+
+    /**
+     * Notifies that the transaction in progress on the current thread has rolled back, discards all buffered actions
+     * and runs all compensating actions, in order. A failing action is logged and doesn't prevent the others.
+     */
+    static void rolledBack() {
+        final List<Runnable> pending = PENDING.get();
+        PENDING.remove();
+        final List<Runnable> compensating = COMPENSATING.get();
+        COMPENSATING.remove();
+        if (pending != null && !pending.isEmpty()) {
+            log.debug("discarded {} action(s) of a rolled back transaction", pending.size());
+        }
+        if (compensating != null) {
+            run(compensating, "rollback");
+        }
+    }
+
+    private static void run(final List<Runnable> actions, final String after) {
+        for (final Runnable action : actions) {
+            try {
+                action.run();
+            } catch (final RuntimeException re) {
+                log.error("failed to run an action after {}", after, re);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private AfterCommit() {
+        super();
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link AfterCommit}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class AfterCommitTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts actions run right away while no transaction is in progress.
+     */
+    @Test
+    void assertRunWithoutTransaction() {
+        final List<Integer> ran = new ArrayList<>();
+        AfterCommit.run(() -> ran.add(1));
+        assertThat(ran).containsExactly(1);
+        assertThat(AfterCommit.pending()).isZero();
+    }
+
+    /**
+     * Asserts actions run, in order, when the transaction commits and are discarded when it rolls back.
+     */
+    @Test
+    void assertRunAfterCommit() {
+        final List<Integer> ran = new ArrayList<>();
+        AfterCommit.begun();
+        AfterCommit.run(() -> ran.add(1));
+        AfterCommit.begun(); // nested; ignored
+        AfterCommit.run(() -> {
+            throw new RuntimeException("failing");
+        });
+        AfterCommit.run(() -> ran.add(2));
+        assertThat(ran).isEmpty();
+        assertThat(AfterCommit.pending()).isEqualTo(3);
+        AfterCommit.committed();
+        assertThat(ran).containsExactly(1, 2);
+        assertThat(AfterCommit.pending()).isZero();
+        AfterCommit.begun();
+        AfterCommit.run(() -> ran.add(3));
+        AfterCommit.rolledBack();
+        assertThat(ran).containsExactly(1, 2);
+        AfterCommit.committed(); // nothing in progress
+        assertThat(ran).containsExactly(1, 2);
+    }
+
+    /**
+     * Asserts compensating actions run, in order, only when the transaction rolls back.
+     */
+    @Test
+    void assertCompensateAfterRollback() {
+        final List<Integer> ran = new ArrayList<>();
+        AfterCommit.compensate(() -> ran.add(0)); // nothing in progress
+        AfterCommit.begun();
+        AfterCommit.compensate(() -> ran.add(1));
+        AfterCommit.committed();
+        assertThat(ran).isEmpty();
+        AfterCommit.begun();
+        AfterCommit.run(() -> ran.add(2));
+        AfterCommit.compensate(() -> ran.add(3));
+        AfterCommit.compensate(() -> ran.add(4));
+        AfterCommit.rolledBack();
+        assertThat(ran).containsExactly(3, 4);
+    }
+}
@@ -24,6 +24,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import javax.persistence.metamodel.SingularAttribute;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
@@ -50,10 +51,11 @@ abstract class BaseEntityService<T extends BaseEntity> extends EntityService<T>
      * @param entityClass   the entity class whose id attribute is returned.
      * @param <X>           entity type parameter
      * @return the id attribute.
+     * @throws IllegalArgumentException if {@code entityClass} has no single {@link Integer} id attribute.
      */
     static <X extends BaseEntity> SingularAttribute<? super X, Integer> idAttribute(
             @NotNull final EntityManager entityManager, @NotNull final Class<X> entityClass) {
-        return singularAttribute(entityManager, entityClass, BaseEntity.ATTRIBUTE_NAME_ID, Integer.class);
+        return EntityMetadata.of(entityManager).idAttribute(entityClass, Integer.class);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -75,7 +77,7 @@ abstract class BaseEntityService<T extends BaseEntity> extends EntityService<T>
      * @return the entity whose {@link BaseEntity#ATTRIBUTE_NAME_ID id} attribute is returned.
      */
     SingularAttribute<? super T, Integer> idAttribute() {
-        return idAttribute(entityManager(), entityClass);
+        return entityMetadata().getIdAttribute(Integer.class);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -108,4 +110,30 @@ abstract class BaseEntityService<T extends BaseEntity> extends EntityService<T>
         // TODO: 2019-07-19 implement!!!
         throw new UnsupportedOperationException("not implemented yet");
     }
+
+    /**
+     * Returns a list of entity instances of {@link #entityClass} matches to specified query specification.
+     *
+     * @param querySpec   the query specification whose filters and sort keys are applied.
+     * @param firstResult the position of the first result, numbered from {@code 0}; {@code null} for an unspecified
+     *                    result.
+     * @param maxResults  maximum number of results to retrieve; {@code null} for an unspecified result.
+     * @return a list of entities.
+     * @see QuerySpec#typedQuery(EntityManager)
+     */
+    @NotNull List<T> list(@NotNull final QuerySpec<T> querySpec, @PositiveOrZero @Nullable final Integer firstResult,
+                          @Positive @Nullable final Integer maxResults) {
+        if (querySpec.entityClass != entityClass) {
+            throw new IllegalArgumentException(
+                    "querySpec.entityClass(" + querySpec.entityClass + ") != entityClass(" + entityClass + ")");
+        }
+        final TypedQuery<T> typedQuery = querySpec.typedQuery(entityManager());
+        if (firstResult != null) {
+            typedQuery.setFirstResult(firstResult);
+        }
+        if (maxResults != null) {
+            typedQuery.setMaxResults(maxResults);
+        }
+        return typedQuery.getResultList();
+    }
 }
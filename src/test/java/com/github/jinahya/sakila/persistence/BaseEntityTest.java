@@ -25,9 +25,15 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * A class for testing subclasses of {@link BaseEntity}.
@@ -48,6 +54,74 @@ abstract class BaseEntityTest<T extends BaseEntity> extends EntityTest<T> {
         super(entityClass);
     }
 
+    // -------------------------------------------------------------------------------------------------- equals/hashCode
+
+    /**
+     * Asserts instances without ids are equal only to themselves.
+     */
+    @Test
+    void assertTransientInstancesEqualOnlyToThemselves() {
+        final T instance1 = entityInstance();
+        final T instance2 = entityInstance();
+        assertEquals(instance1, instance1);
+        assertNotEquals(instance1, instance2);
+        assertNotEquals(instance1, null);
+    }
+
+    /**
+     * Asserts instances with the same id are equal and have the same hash code.
+     */
+    @Test
+    void assertInstancesWithSameIdEqual() {
+        final T instance1 = entityInstance();
+        final T instance2 = entityInstance();
+        instance1.setId(1);
+        instance2.setId(1);
+        assertEquals(instance1, instance2);
+        assertEquals(instance1.hashCode(), instance2.hashCode());
+        instance2.setId(2);
+        assertNotEquals(instance1, instance2);
+    }
+
+    /**
+     * Asserts an instance added to a hash set without an id stays in the set after its id is assigned, and that equal
+     * instances have the same hash code afterwards.
+     */
+    @Test
+    void assertHashCodeStableWhenIdAssigned() {
+        final T instance = entityInstance();
+        final Set<T> set = new HashSet<>();
+        assertTrue(set.add(instance));
+        final int hashCode = instance.hashCode();
+        instance.setId(1);
+        assertEquals(hashCode, instance.hashCode());
+        assertTrue(set.contains(instance));
+        final T other = entityInstance();
+        other.setId(1);
+        assertFalse(set.contains(other));
+        // an instance hashed while transient doesn't share a hash code with other instances of its id, nor equals them
+        assertNotEquals(instance, other);
+        assertNotEquals(other, instance);
+        final T another = entityInstance();
+        another.setId(1);
+        assertEquals(other, another);
+        assertEquals(other.hashCode(), another.hashCode());
+    }
+
+    /**
+     * Asserts instances with ids of a single class don't share a hash code.
+     */
+    @Test
+    void assertHashCodesSpreadById() {
+        final Set<Integer> hashCodes = new HashSet<>();
+        for (int id = 1; id <= 100; id++) {
+            final T instance = entityInstance();
+            instance.setId(id);
+            hashCodes.add(instance.hashCode());
+        }
+        assertEquals(100, hashCodes.size());
+    }
+
     // ------------------------------------------------------------------------------------------------------ lastUpdate
 
     /**
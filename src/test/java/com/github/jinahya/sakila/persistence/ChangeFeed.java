@@ -0,0 +1,606 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An incremental change feed of entities polled by their {@code last_update} high-water marks.
+ * <p>
+ * Each {@link Source source} is read in the order of {@code (last_update, key)} with keyset pagination, starting
+ * after its {@link Checkpoint checkpoint}, and each page is emitted as a {@link Batch batch} before the checkpoint is
+ * advanced and saved under a local directory. Rows whose {@code last_update} is within {@code settle} from now are
+ * left for the next poll so that rows updated later within the same second of the high-water mark are not skipped.
+ * Pages are read through the {@value BaseEntity#INDEX_NAME_IDX_LAST_UPDATE} index of each table, on {@code
+ * (last_update, key)}, so a page costs its own size rather than a scan and a sort of the whole table.
+ * <p>
+ * Deletes leave no {@code last_update}; they are detected, every {@code diffPeriod}, by diffing the keys known so far
+ * against a key-only scan of the table. Keys first seen in a page are appended to the keys file of the source before
+ * the checkpoint of the page is saved; the keys file is rewritten only when deletes are detected, or when it's read
+ * with a key partially appended before a crash.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class ChangeFeed {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The name of the properties file of checkpoints. The value is {@value}.
+     */
+    static final String CHECKPOINT_FILE_NAME = "checkpoint.properties";
+
+    /**
+     * The suffix of the file of known keys of each source; a sequence of packed keys. The value is {@value}.
+     */
+    static final String KEYS_FILE_SUFFIX = ".keys";
+
+    /**
+     * Packs specified key components into a single key.
+     *
+     * @param components the key components; one or two.
+     * @return a packed key.
+     */
+    static long pack(final int... components) {
+        switch (components.length) {
+            case 1:
+                return components[0];
+            case 2:
+                return ((long) components[0] << Integer.SIZE) | (components[1] & 0xFFFFFFFFL);
+            default:
+                throw new IllegalArgumentException("components.length(" + components.length + ") not in [1, 2]");
+        }
+    }
+
+    /**
+     * Unpacks specified key into specified number of key components.
+     *
+     * @param key    the key to unpack.
+     * @param length the number of key components; one or two.
+     * @return an array of key components.
+     */
+    static int[] unpack(final long key, final int length) {
+        switch (length) {
+            case 1:
+                return new int[] {(int) key};
+            case 2:
+                return new int[] {(int) (key >> Integer.SIZE), (int) key};
+            default:
+                throw new IllegalArgumentException("length(" + length + ") not in [1, 2]");
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A source of changes; a single entity type with its {@code last_update} attribute and its key attributes.
+     *
+     * @param <T> entity type parameter
+     */
+    static final class Source<T> {
+
+        /**
+         * Returns a source of specified entity class.
+         *
+         * @param entityClass the entity class.
+         * @param <T>         entity type parameter
+         * @return a source of the entity class.
+         */
+        static <T extends BaseEntity> Source<T> of(@NotNull final Class<T> entityClass) {
+            return new Source<>(entityClass, BaseEntity_.lastUpdate, Collections.singletonList(r -> r.get(BaseEntity_.id)));
+        }
+
+        /**
+         * Returns a source of {@link FilmActor}.
+         *
+         * @return a source of {@link FilmActor}.
+         */
+        static Source<FilmActor> filmActor() {
+            return new Source<>(FilmActor.class, FilmActor_.lastUpdate,
+                                Arrays.asList(r -> r.get(FilmActor_.actor).get(BaseEntity_.id),
+                                              r -> r.get(FilmActor_.film).get(BaseEntity_.id)));
+        }
+
+        /**
+         * Returns a source of {@link FilmCategory}.
+         *
+         * @return a source of {@link FilmCategory}.
+         */
+        static Source<FilmCategory> filmCategory() {
+            return new Source<>(FilmCategory.class, FilmCategory_.lastUpdate,
+                                Arrays.asList(r -> r.get(FilmCategory_.film).get(BaseEntity_.id),
+                                              r -> r.get(FilmCategory_.category).get(BaseEntity_.id)));
+        }
+
+        /**
+         * Returns sources of all entity types with a {@code last_update} column, referenced ones first.
+         *
+         * @return a list of sources.
+         */
+        static List<Source<?>> all() {
+            return unmodifiableList(Arrays.asList(
+                    of(Country.class), of(City.class), of(Address.class), of(Language.class), of(Category.class),
+                    of(Actor.class), of(Film.class), filmActor(), filmCategory(), of(Store.class), of(Staff.class),
+                    of(Inventory.class), of(Customer.class), of(Rental.class), of(Payment.class)));
+        }
+
+        private Source(final Class<T> entityClass, final SingularAttribute<? super T, Date> lastUpdate,
+                       final List<Function<Root<T>, Expression<Integer>>> keys) {
+            super();
+            this.entityClass = entityClass;
+            this.lastUpdate = lastUpdate;
+            this.keys = keys;
+        }
+
+        /**
+         * Returns the name of this source.
+         *
+         * @return the name of this source.
+         */
+        String getName() {
+            return entityClass.getSimpleName();
+        }
+
+        /**
+         * Reads a page of rows after specified checkpoint and before specified upper bound.
+         */
+        private List<Tuple> page(final EntityManager entityManager, final Checkpoint checkpoint, final Date before,
+                                 final int pageSize) {
+            final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<T> root = criteria.from(entityClass);
+            final Expression<Date> date = root.get(lastUpdate);
+            final List<Expression<Integer>> paths = new ArrayList<>();
+            keys.forEach(k -> paths.add(k.apply(root)));
+            final List<Selection<?>> selections = new ArrayList<>();
+            selections.add(root);
+            selections.add(date);
+            selections.addAll(paths);
+            criteria.multiselect(selections);
+            Predicate predicate = builder.lessThan(date, before);
+            if (checkpoint.lastUpdate != null) {
+                final int[] components = unpack(checkpoint.key, paths.size());
+                Predicate after = builder.greaterThan(paths.get(paths.size() - 1), components[paths.size() - 1]);
+                for (int i = paths.size() - 2; i >= 0; i--) {
+                    after = builder.or(builder.greaterThan(paths.get(i), components[i]),
+                                       builder.and(builder.equal(paths.get(i), components[i]), after));
+                }
+                final Date mark = checkpoint.lastUpdate;
+                predicate = builder.and(predicate, builder.or(builder.greaterThan(date, mark),
+                                                              builder.and(builder.equal(date, mark), after)));
+            }
+            criteria.where(predicate);
+            final List<Order> orders = new ArrayList<>();
+            orders.add(builder.asc(date));
+            paths.forEach(p -> orders.add(builder.asc(p)));
+            criteria.orderBy(orders);
+            return entityManager.createQuery(criteria).setMaxResults(pageSize).getResultList();
+        }
+
+        /**
+         * Reads all keys.
+         */
+        private Set<Long> keys(final EntityManager entityManager) {
+            final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<T> root = criteria.from(entityClass);
+            final List<Selection<?>> selections = new ArrayList<>();
+            keys.forEach(k -> selections.add(k.apply(root)));
+            criteria.multiselect(selections);
+            final Set<Long> keys = new HashSet<>();
+            for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+                keys.add(key(tuple, 0));
+            }
+            return keys;
+        }
+
+        private long key(final Tuple tuple, final int offset) {
+            final int[] components = new int[keys.size()];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = (Integer) tuple.get(offset + i);
+            }
+            return pack(components);
+        }
+
+        private final Class<T> entityClass;
+
+        private final SingularAttribute<? super T, Date> lastUpdate;
+
+        private final List<Function<Root<T>, Expression<Integer>>> keys;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A batch of changes of a single source.
+     *
+     * @param <T> entity type parameter
+     */
+    static final class Batch<T> {
+
+        private Batch(final Source<T> source, final List<T> changed, final Set<Long> deleted) {
+            super();
+            this.source = source;
+            this.changed = unmodifiableList(changed);
+            this.deleted = unmodifiableSet(deleted);
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "source=" + source.getName()
+                   + ",changed=" + changed.size()
+                   + ",deleted=" + deleted.size()
+                   + "}";
+        }
+
+        /**
+         * Returns the source of this batch.
+         *
+         * @return the source of this batch.
+         */
+        Source<T> getSource() {
+            return source;
+        }
+
+        /**
+         * Returns inserted or updated entities, in the order of {@code (last_update, key)}.
+         *
+         * @return a list of changed entities.
+         */
+        List<T> getChanged() {
+            return changed;
+        }
+
+        /**
+         * Returns packed keys of deleted entities.
+         *
+         * @return a set of deleted keys.
+         * @see #unpack(long, int)
+         */
+        Set<Long> getDeleted() {
+            return deleted;
+        }
+
+        private final Source<T> source;
+
+        private final List<T> changed;
+
+        private final Set<Long> deleted;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The position of a source; the {@code (last_update, key)} of the last emitted row and the keys known so far.
+     */
+    static final class Checkpoint {
+
+        /**
+         * The {@code last_update} of the last emitted row; {@code null} if nothing emitted yet.
+         */
+        Date lastUpdate;
+
+        /**
+         * The packed key of the last emitted row.
+         */
+        long key;
+
+        /**
+         * The keys of rows known to exist.
+         */
+        final Set<Long> keys = new HashSet<>();
+
+        /**
+         * Adds specified key to the known keys.
+         *
+         * @param key the packed key.
+         */
+        void add(final long key) {
+            if (keys.add(key) && !rewrite) {
+                appended.add(key);
+            }
+        }
+
+        /**
+         * Retains only specified keys in the known keys.
+         *
+         * @param current the keys of rows currently exist.
+         */
+        void retainAll(final Set<Long> current) {
+            if (keys.retainAll(current)) {
+                rewrite = true;
+                appended.clear();
+            }
+        }
+
+        /**
+         * Keys added since the keys file was last written; to be appended to the file.
+         */
+        private final List<Long> appended = new ArrayList<>();
+
+        /**
+         * A flag for rewriting the keys file as a whole; set when keys are removed.
+         */
+        private boolean rewrite;
+    }
+
+    /**
+     * Reads checkpoints of specified names from specified directory.
+     *
+     * @param directory the directory.
+     * @param names     the names of sources.
+     * @return a map of names and checkpoints.
+     * @throws IOException if an I/O error occurs.
+     */
+    static Map<String, Checkpoint> read(@NotNull final Path directory, @NotNull final List<String> names)
+            throws IOException {
+        final Properties properties = new Properties();
+        final Path file = directory.resolve(CHECKPOINT_FILE_NAME);
+        if (exists(file)) {
+            try (InputStream stream = newInputStream(file)) {
+                properties.load(stream);
+            }
+        }
+        final Map<String, Checkpoint> checkpoints = new LinkedHashMap<>();
+        for (final String name : names) {
+            final Checkpoint checkpoint = new Checkpoint();
+            final String lastUpdate = properties.getProperty(name + ".lastUpdate");
+            if (lastUpdate != null) {
+                checkpoint.lastUpdate = new Date(Long.parseLong(lastUpdate));
+                checkpoint.key = Long.parseLong(properties.getProperty(name + ".key"));
+            }
+            final Path keys = directory.resolve(name + KEYS_FILE_SUFFIX);
+            if (exists(keys)) {
+                final long size = size(keys);
+                try (DataInputStream stream = new DataInputStream(new BufferedInputStream(
+                        newInputStream(keys)))) {
+                    for (long i = size / Long.BYTES; i > 0L; i--) {
+                        checkpoint.keys.add(stream.readLong());
+                    }
+                }
+                if (size % Long.BYTES != 0L) {
+                    // a key partially appended before a crash; later appends would be misaligned
+                    log.warn("rewriting {} with a partial key", keys);
+                    checkpoint.rewrite = true;
+                }
+            }
+            checkpoints.put(name, checkpoint);
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Writes specified checkpoints to specified directory. Keys added since the last write are appended to keys files,
+     * or keys files of checkpoints whose keys are removed are replaced, before the checkpoint file is replaced
+     * atomically.
+     *
+     * @param directory   the directory.
+     * @param checkpoints the checkpoints to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void write(@NotNull final Path directory, @NotNull final Map<String, Checkpoint> checkpoints)
+            throws IOException {
+        createDirectories(directory);
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, Checkpoint> entry : checkpoints.entrySet()) {
+            final Checkpoint checkpoint = entry.getValue();
+            if (checkpoint.lastUpdate != null) {
+                properties.setProperty(entry.getKey() + ".lastUpdate", Long.toString(checkpoint.lastUpdate.getTime()));
+                properties.setProperty(entry.getKey() + ".key", Long.toString(checkpoint.key));
+            }
+            final Path file = directory.resolve(entry.getKey() + KEYS_FILE_SUFFIX);
+            if (checkpoint.rewrite) {
+                final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                        newOutputStream(temp)))) {
+                    for (final Long key : checkpoint.keys) {
+                        stream.writeLong(key);
+                    }
+                }
+                move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+                checkpoint.rewrite = false;
+            } else if (!checkpoint.appended.isEmpty()) {
+                try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                        newOutputStream(file, CREATE, APPEND)))) {
+                    for (final Long key : checkpoint.appended) {
+                        stream.writeLong(key);
+                    }
+                }
+                checkpoint.appended.clear();
+            }
+        }
+        final Path file = directory.resolve(CHECKPOINT_FILE_NAME);
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = newOutputStream(temp)) {
+            properties.store(stream, null);
+        }
+        move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory  the directory for checkpoints.
+     * @param sources    the sources to poll, in order.
+     * @param pageSize   the maximum number of rows of each batch.
+     * @param clock      the clock.
+     * @param settle     the duration from now within which rows are left for the next poll.
+     * @param diffPeriod the period of detecting deletes.
+     * @throws IOException if an I/O error occurs while reading existing checkpoints.
+     */
+    ChangeFeed(@NotNull final Path directory, @NotNull final List<Source<?>> sources,
+               @Positive final int pageSize, @NotNull final Clock clock, @NotNull final Duration settle,
+               @NotNull final Duration diffPeriod)
+            throws IOException {
+        super();
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize(" + pageSize + ") <= 0");
+        }
+        this.directory = requireNonNull(directory, "directory is null");
+        this.sources = new ArrayList<>(requireNonNull(sources, "sources is null"));
+        this.pageSize = pageSize;
+        this.clock = requireNonNull(clock, "clock is null");
+        this.settle = requireNonNull(settle, "settle is null");
+        this.diffPeriod = requireNonNull(diffPeriod, "diffPeriod is null");
+        final List<String> names = new ArrayList<>();
+        this.sources.forEach(s -> names.add(s.getName()));
+        checkpoints = read(directory, names);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Polls all sources and emits changes, in batches, to specified sink.
+     *
+     * @param entityManager an entity manager.
+     * @param sink          the sink of batches.
+     * @return the number of changed or deleted rows emitted.
+     * @throws IOException if an I/O error occurs while saving checkpoints.
+     */
+    synchronized int poll(@NotNull final EntityManager entityManager, @NotNull final Consumer<? super Batch<?>> sink)
+            throws IOException {
+        requireNonNull(sink, "sink is null");
+        final Date before = new Date(clock.millis() - settle.toMillis());
+        final boolean diff = lastDiff == null || !clock.instant().isBefore(lastDiff.plus(diffPeriod));
+        int count = 0;
+        for (final Source<?> source : sources) {
+            count += poll(entityManager, source, before, sink);
+        }
+        if (diff) {
+            for (final Source<?> source : sources) {
+                count += diff(entityManager, source, sink);
+            }
+            lastDiff = clock.instant();
+        }
+        write(directory, checkpoints);
+        return count;
+    }
+
+    private <T> int poll(final EntityManager entityManager, final Source<T> source, final Date before,
+                         final Consumer<? super Batch<?>> sink)
+            throws IOException {
+        final Checkpoint checkpoint = checkpoints.get(source.getName());
+        int count = 0;
+        for (List<Tuple> page; !(page = source.page(entityManager, checkpoint, before, pageSize)).isEmpty(); ) {
+            final List<T> changed = new ArrayList<>(page.size());
+            for (final Tuple tuple : page) {
+                changed.add(source.entityClass.cast(tuple.get(0)));
+                checkpoint.add(source.key(tuple, 2));
+            }
+            final Tuple last = page.get(page.size() - 1);
+            sink.accept(new Batch<>(source, changed, new HashSet<>()));
+            checkpoint.lastUpdate = (Date) last.get(1);
+            checkpoint.key = source.key(last, 2);
+            write(directory, checkpoints);
+            count += page.size();
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private <T> int diff(final EntityManager entityManager, final Source<T> source,
+                         final Consumer<? super Batch<?>> sink) {
+        final Checkpoint checkpoint = checkpoints.get(source.getName());
+        final Set<Long> current = source.keys(entityManager);
+        final Set<Long> deleted = new HashSet<>(checkpoint.keys);
+        deleted.removeAll(current);
+        checkpoint.retainAll(current);
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+        log.debug("{} deleted from {}", deleted.size(), source.getName());
+        sink.accept(new Batch<>(source, new ArrayList<>(), deleted));
+        return deleted.size();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Path directory;
+
+    private final List<Source<?>> sources;
+
+    private final int pageSize;
+
+    private final Clock clock;
+
+    private final Duration settle;
+
+    private final Duration diffPeriod;
+
+    private final Map<String, Checkpoint> checkpoints;
+
+    private Instant lastDiff;
+}
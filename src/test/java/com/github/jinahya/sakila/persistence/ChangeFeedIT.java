@@ -0,0 +1,80 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ChangeFeed} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class ChangeFeedIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the first poll emits every row, in order, and the next poll, even from a new feed, emits nothing.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertPoll(@TempDir final Path directory) throws IOException {
+        final List<ChangeFeed.Source<?>> sources
+                = Arrays.asList(ChangeFeed.Source.of(Actor.class), ChangeFeed.Source.filmActor());
+        final List<ChangeFeed.Batch<?>> batches = new ArrayList<>();
+        final int count = new ChangeFeed(directory, sources, 100, Clock.systemDefaultZone(), Duration.ofSeconds(1L),
+                                         Duration.ofHours(1L))
+                .poll(entityManager, batches::add);
+        final long expected = ((Number) entityManager.createNativeQuery(
+                "SELECT (SELECT COUNT(*) FROM actor) + (SELECT COUNT(*) FROM film_actor)").getSingleResult())
+                .longValue();
+        assertThat(count).isEqualTo(expected);
+        assertThat(batches).allSatisfy(b -> assertThat(b.getChanged()).hasSizeLessThanOrEqualTo(100));
+        assertThat(new ChangeFeed(directory, sources, 100, Clock.systemDefaultZone(), Duration.ofSeconds(1L),
+                                  Duration.ofHours(1L))
+                           .poll(entityManager, batches::add))
+                .isZero();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,151 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.size;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link ChangeFeed}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class ChangeFeedTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts packed keys unpack to the same components and keep the order of the components.
+     */
+    @Test
+    void assertPackUnpack() {
+        assertThat(ChangeFeed.unpack(ChangeFeed.pack(16049), 1)).containsExactly(16049);
+        assertThat(ChangeFeed.unpack(ChangeFeed.pack(200, 993), 2)).containsExactly(200, 993);
+        assertThat(ChangeFeed.pack(1, 1000)).isLessThan(ChangeFeed.pack(2, 1));
+        assertThatThrownBy(() -> ChangeFeed.pack(1, 2, 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts the table of each source declares an index on {@code last_update} followed by its key columns.
+     *
+     * @throws ClassNotFoundException if an entity class of a source is not found.
+     */
+    @Test
+    void assertLastUpdateIndexes() throws ClassNotFoundException {
+        for (final ChangeFeed.Source<?> source : ChangeFeed.Source.all()) {
+            final Table table = Class.forName(ChangeFeed.class.getPackage().getName() + "." + source.getName())
+                    .getAnnotation(Table.class);
+            assertThat(table.indexes())
+                    .as("indexes of %s", source.getName())
+                    .filteredOn(i -> BaseEntity.INDEX_NAME_IDX_LAST_UPDATE.equals(i.name()))
+                    .extracting(Index::columnList)
+                    .hasSize(1)
+                    .allSatisfy(c -> assertThat(c).startsWith(BaseEntity.COLUMN_NAME_LAST_UPDATE + ","));
+        }
+    }
+
+    /**
+     * Asserts checkpoints, with known keys, survive writing and reading.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertWriteRead(@TempDir final Path directory) throws IOException {
+        final Map<String, ChangeFeed.Checkpoint> written = new LinkedHashMap<>();
+        final ChangeFeed.Checkpoint actor = new ChangeFeed.Checkpoint();
+        actor.lastUpdate = new Date(1139979762000L);
+        actor.key = 200L;
+        Arrays.asList(1L, 2L, 200L).forEach(actor::add);
+        written.put("Actor", actor);
+        written.put("FilmActor", new ChangeFeed.Checkpoint());
+        ChangeFeed.write(directory, written);
+        final Map<String, ChangeFeed.Checkpoint> read
+                = ChangeFeed.read(directory, Arrays.asList("Actor", "FilmActor", "Film"));
+        assertThat(read).containsOnlyKeys("Actor", "FilmActor", "Film");
+        assertThat(read.get("Actor").lastUpdate).isEqualTo(actor.lastUpdate);
+        assertThat(read.get("Actor").key).isEqualTo(200L);
+        assertThat(read.get("Actor").keys).containsExactlyInAnyOrder(1L, 2L, 200L);
+        assertThat(read.get("FilmActor").lastUpdate).isNull();
+        assertThat(read.get("Film").keys).isEmpty();
+    }
+
+    /**
+     * Asserts keys files are appended with new keys only, rewritten only when keys are removed, and read back, and
+     * rewritten on the next write, with a partially appended key.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertKeysWrittenOnlyWhenChanged(@TempDir final Path directory) throws IOException {
+        final Map<String, ChangeFeed.Checkpoint> checkpoints = new LinkedHashMap<>();
+        final ChangeFeed.Checkpoint checkpoint = new ChangeFeed.Checkpoint();
+        checkpoints.put("Actor", checkpoint);
+        final Path file = directory.resolve("Actor" + ChangeFeed.KEYS_FILE_SUFFIX);
+        ChangeFeed.write(directory, checkpoints);
+        assertThat(file).doesNotExist();
+        Arrays.asList(1L, 2L, 3L).forEach(checkpoint::add);
+        ChangeFeed.write(directory, checkpoints);
+        assertThat(size(file)).isEqualTo(Long.BYTES * 3L);
+        final FileTime modified = getLastModifiedTime(file);
+        setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() - 60000L));
+        checkpoint.add(2L); // known already
+        ChangeFeed.write(directory, checkpoints);
+        assertThat(getLastModifiedTime(file).toMillis()).isEqualTo(modified.toMillis() - 60000L);
+        checkpoint.add(4L);
+        ChangeFeed.write(directory, checkpoints);
+        assertThat(size(file)).isEqualTo(Long.BYTES * 4L);
+        checkpoint.retainAll(new HashSet<>(Arrays.asList(1L, 4L, 5L)));
+        checkpoint.add(5L);
+        ChangeFeed.write(directory, checkpoints);
+        assertThat(size(file)).isEqualTo(Long.BYTES * 3L);
+        write(file, new byte[] {0, 0, 0}, APPEND); // a partially appended key
+        final Map<String, ChangeFeed.Checkpoint> read = ChangeFeed.read(directory, Arrays.asList("Actor"));
+        assertThat(read.get("Actor").keys).containsExactlyInAnyOrder(1L, 4L, 5L);
+        read.get("Actor").add(6L);
+        ChangeFeed.write(directory, read);
+        assertThat(size(file)).isEqualTo(Long.BYTES * 4L);
+        assertThat(ChangeFeed.read(directory, Arrays.asList("Actor")).get("Actor").keys)
+                .containsExactlyInAnyOrder(1L, 4L, 5L, 6L);
+    }
+}
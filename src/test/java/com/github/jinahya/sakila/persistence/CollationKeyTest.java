@@ -0,0 +1,87 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Collections.reverse;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link CollationKey}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class CollationKeyTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts keys ignore case, diacritics and trailing spaces.
+     */
+    @Test
+    void assertEquivalence() {
+        assertThat(CollationKey.of("ABC"))
+                .isEqualTo(CollationKey.of("abc"))
+                .isEqualByComparingTo(CollationKey.of("aBc"));
+        assertThat(CollationKey.of("Abc  ")).isEqualByComparingTo(CollationKey.of("abc"));
+        assertThat(CollationKey.of("Zürich")).isEqualByComparingTo(CollationKey.of("ZURICH"));
+        assertThat(CollationKey.of("straße")).isEqualByComparingTo(CollationKey.of("STRASE"));
+        assertThat(CollationKey.of(" abc")).isNotEqualTo(CollationKey.of("abc"));
+        assertThat(CollationKey.of((String) null)).isNull();
+    }
+
+    /**
+     * Asserts keys are ordered by weights beyond the packed prefix, and then by length.
+     */
+    @Test
+    void assertOrder() {
+        final List<String> expected = Arrays.asList("", "a", "abcd", "ABCDe", "abcdEF", "abcdf", "b", "z", "_");
+        final List<String> shuffled = new ArrayList<>(expected);
+        reverse(shuffled);
+        assertThat(shuffled.stream().sorted((s1, s2) -> CollationKey.of(s1).compareTo(CollationKey.of(s2)))
+                           .collect(toList()))
+                .isEqualTo(expected);
+    }
+
+    /**
+     * Asserts entities cache keys until their values change.
+     */
+    @Test
+    void assertCached() {
+        final City city = new City();
+        city.setCity("Seoul");
+        final CollationKey key = city.getCityCollationKey();
+        assertThat(city.getCityCollationKey()).isSameAs(key);
+        city.setCity("Busan");
+        assertThat(city.getCityCollationKey()).isNotSameAs(key).isEqualTo(CollationKey.of("BUSAN"));
+        final Actor actor = new Actor();
+        actor.setFirstName("PENELOPE");
+        assertThat(actor.getFirstNameCollationKey()).isSameAs(actor.getFirstNameCollationKey());
+    }
+}
@@ -0,0 +1,899 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.AttributeOverride;
+import javax.persistence.Convert;
+import javax.persistence.EntityManager;
+import javax.persistence.JoinColumn;
+import javax.validation.constraints.NotNull;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A columnar binary snapshot of all entity tables.
+ * <p>
+ * Each column is stored as a block of a null bitmap followed by fixed-width values; {@code INT}s, {@code DECIMAL}s as
+ * unscaled longs, {@code DATETIME}s as epoch milliseconds, dictionary codes of strings followed by the dictionary, or
+ * an offset index followed by bytes. A directory of tables and offsets of their columns is at the end of the file.
+ * {@link #open(Path) Opening} a snapshot maps the file and reads only the directory; values are decoded, and entities
+ * are {@link Table#entities(Class) materialized}, only when accessed.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class DatasetSnapshot {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The magic number of snapshot files. The value is {@value}.
+     */
+    static final int MAGIC = 0x534B5331; // SKS1
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Types of columns.
+     */
+    enum Type {
+
+        /**
+         * Integral numbers stored in four bytes.
+         */
+        INT,
+
+        /**
+         * Fixed-point numbers stored as unscaled eight-byte longs.
+         */
+        DECIMAL,
+
+        /**
+         * Date-times stored as eight-byte epoch milliseconds of UTC.
+         */
+        DATETIME,
+
+        /**
+         * Strings stored as four-byte dictionary codes.
+         */
+        STRING,
+
+        /**
+         * Bytes stored with an offset index.
+         */
+        BYTES;
+
+        /**
+         * Returns the type of columns of specified SQL data type.
+         *
+         * @param dataType the {@code DATA_TYPE} of {@code information_schema.COLUMNS}.
+         * @return the type for the {@code dataType}.
+         */
+        static Type of(final String dataType) {
+            switch (dataType.toLowerCase()) {
+                case "bit":
+                case "tinyint":
+                case "smallint":
+                case "mediumint":
+                case "int":
+                case "year":
+                    return INT;
+                case "decimal":
+                    return DECIMAL;
+                case "date":
+                case "datetime":
+                case "timestamp":
+                    return DATETIME;
+                case "binary":
+                case "varbinary":
+                case "tinyblob":
+                case "blob":
+                case "mediumblob":
+                case "longblob":
+                case "geometry":
+                    return BYTES;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Rows of a table to be {@link #write(Path, List) written}.
+     */
+    static final class Source {
+
+        /**
+         * Creates a new instance for specified table.
+         *
+         * @param table the name of the table.
+         */
+        Source(@NotNull final String table) {
+            super();
+            this.table = requireNonNull(table, "table is null");
+        }
+
+        /**
+         * Adds a column.
+         *
+         * @param name  the name of the column.
+         * @param type  the type of the column.
+         * @param scale the scale of the column; meaningful only for {@link Type#DECIMAL}.
+         * @return this source.
+         */
+        Source column(@NotNull final String name, @NotNull final Type type, final int scale) {
+            if (!rows.isEmpty()) {
+                throw new IllegalStateException("rows already added");
+            }
+            names.add(requireNonNull(name, "name is null"));
+            types.add(requireNonNull(type, "type is null"));
+            scales.add(scale);
+            return this;
+        }
+
+        /**
+         * Adds a row of values, in the order of columns, as they are returned by JDBC.
+         *
+         * @param values the values of the row.
+         * @return this source.
+         */
+        Source row(@NotNull final Object... values) {
+            if (requireNonNull(values, "values is null").length != names.size()) {
+                throw new IllegalArgumentException("values.length(" + values.length + ") != " + names.size());
+            }
+            rows.add(values);
+            return this;
+        }
+
+        private final String table;
+
+        private final List<String> names = new ArrayList<>();
+
+        private final List<Type> types = new ArrayList<>();
+
+        private final List<Integer> scales = new ArrayList<>();
+
+        private final List<Object[]> rows = new ArrayList<>();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A column of a table in a snapshot.
+     */
+    static final class Column {
+
+        private Column(final ByteBuffer buffer, final String name, final Type type, final int scale, final int rows,
+                       final int offset) {
+            super();
+            this.buffer = buffer;
+            this.name = name;
+            this.type = type;
+            this.scale = scale;
+            this.rows = rows;
+            this.offset = offset;
+            values = offset + bitmapBytes(rows);
+            if (type == Type.STRING) {
+                final int dictionary = values + rows * Integer.BYTES;
+                strings = new String[buffer.getInt(dictionary)];
+                stringOffsets = dictionary + Integer.BYTES;
+                stringBytes = stringOffsets + (strings.length + 1) * Integer.BYTES;
+            } else {
+                strings = null;
+                stringOffsets = -1;
+                stringBytes = type == Type.BYTES ? values + (rows + 1) * Integer.BYTES : -1;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "name=" + name
+                   + ",type=" + type
+                   + ",scale=" + scale
+                   + "}";
+        }
+
+        /**
+         * Returns the name of this column.
+         *
+         * @return the name of this column.
+         */
+        String name() {
+            return name;
+        }
+
+        /**
+         * Returns the type of this column.
+         *
+         * @return the type of this column.
+         */
+        Type type() {
+            return type;
+        }
+
+        /**
+         * Checks whether the value of specified row is {@code null}.
+         *
+         * @param row the index of the row.
+         * @return {@code true} if the value is {@code null}; {@code false} otherwise.
+         */
+        boolean isNull(final int row) {
+            if (row < 0 || row >= rows) {
+                throw new IndexOutOfBoundsException("row(" + row + ") out of [0, " + rows + ")");
+            }
+            return (buffer.get(offset + (row >> 3)) & (1 << (row & 7))) != 0;
+        }
+
+        /**
+         * Returns the value, of an {@link Type#INT} column, of specified row.
+         *
+         * @param row the index of the row.
+         * @return the value; {@code 0} if {@code null}.
+         */
+        int getInt(final int row) {
+            requireType(Type.INT);
+            return isNull(row) ? 0 : buffer.getInt(values + row * Integer.BYTES);
+        }
+
+        /**
+         * Returns the value, of a {@link Type#DECIMAL} or a {@link Type#DATETIME} column, of specified row.
+         *
+         * @param row the index of the row.
+         * @return the unscaled value or the epoch milliseconds; {@code 0} if {@code null}.
+         */
+        long getLong(final int row) {
+            if (type != Type.DECIMAL && type != Type.DATETIME) {
+                throw new IllegalStateException("not a long column: " + this);
+            }
+            return isNull(row) ? 0L : buffer.getLong(values + row * Long.BYTES);
+        }
+
+        /**
+         * Returns the value, of a {@link Type#STRING} column, of specified row.
+         *
+         * @param row the index of the row.
+         * @return the value; {@code null} if {@code null}.
+         */
+        String getString(final int row) {
+            requireType(Type.STRING);
+            if (isNull(row)) {
+                return null;
+            }
+            final int code = buffer.getInt(values + row * Integer.BYTES);
+            String string = strings[code];
+            if (string == null) {
+                strings[code] = string = new String(bytes(stringOffsets, stringBytes, code), StandardCharsets.UTF_8);
+            }
+            return string;
+        }
+
+        /**
+         * Returns the value, of a {@link Type#BYTES} column, of specified row.
+         *
+         * @param row the index of the row.
+         * @return a new array of the value; {@code null} if {@code null}.
+         */
+        byte[] getBytes(final int row) {
+            requireType(Type.BYTES);
+            return isNull(row) ? null : bytes(values, stringBytes, row);
+        }
+
+        /**
+         * Returns the value of specified row.
+         *
+         * @param row the index of the row.
+         * @return the value; an {@link Integer}, a {@link BigDecimal}, a {@link LocalDateTime}, a {@link String}, or a
+         * {@code byte[]}, depending on the type of this column; {@code null} if {@code null}.
+         */
+        Object get(final int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            switch (type) {
+                case INT:
+                    return getInt(row);
+                case DECIMAL:
+                    return BigDecimal.valueOf(getLong(row), scale);
+                case DATETIME:
+                    final long millis = getLong(row);
+                    return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                                                       (int) Math.floorMod(millis, 1000L) * 1000000, ZoneOffset.UTC);
+                case STRING:
+                    return getString(row);
+                default:
+                    return getBytes(row);
+            }
+        }
+
+        private void requireType(final Type type) {
+            if (this.type != type) {
+                throw new IllegalStateException("not a " + type + " column: " + this);
+            }
+        }
+
+        private byte[] bytes(final int offsets, final int bytes, final int index) {
+            final int start = buffer.getInt(offsets + index * Integer.BYTES);
+            final byte[] array = new byte[buffer.getInt(offsets + (index + 1) * Integer.BYTES) - start];
+            final ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(bytes + start);
+            duplicate.get(array);
+            return array;
+        }
+
+        private final ByteBuffer buffer;
+
+        private final String name;
+
+        private final Type type;
+
+        private final int scale;
+
+        private final int rows;
+
+        private final int offset;
+
+        private final int values;
+
+        private final String[] strings;
+
+        private final int stringOffsets;
+
+        private final int stringBytes;
+    }
+
+    /**
+     * A table in a snapshot.
+     */
+    static final class Table {
+
+        private Table(final String name, final int size, final List<Column> columns) {
+            super();
+            this.name = name;
+            this.size = size;
+            final Map<String, Column> map = new LinkedHashMap<>();
+            columns.forEach(c -> map.put(c.name(), c));
+            this.columns = Collections.unmodifiableMap(map);
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "name=" + name
+                   + ",size=" + size
+                   + ",columns=" + columns.keySet()
+                   + "}";
+        }
+
+        /**
+         * Returns the name of this table.
+         *
+         * @return the name of this table.
+         */
+        String name() {
+            return name;
+        }
+
+        /**
+         * Returns the number of rows of this table.
+         *
+         * @return the number of rows.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the column of specified name.
+         *
+         * @param name the name of the column.
+         * @return the column of {@code name}.
+         * @throws IllegalArgumentException if no column of {@code name}.
+         */
+        Column column(@NotNull final String name) {
+            final Column column = columns.get(requireNonNull(name, "name is null"));
+            if (column == null) {
+                throw new IllegalArgumentException("no column named " + name + " in " + this);
+            }
+            return column;
+        }
+
+        /**
+         * Returns an unmodifiable map of names and columns of this table.
+         *
+         * @return an unmodifiable map of columns.
+         */
+        Map<String, Column> columns() {
+            return columns;
+        }
+
+        /**
+         * Returns a list, of rows of this table, which materializes each entity whenever it is accessed. Basic
+         * attributes, including converted ones, are set from their columns; each many-to-one association is set to a
+         * new instance with only its id.
+         *
+         * @param entityClass the entity class mapped to this table.
+         * @param <T>         entity type parameter
+         * @return a list of entities.
+         */
+        <T> List<T> entities(@NotNull final Class<T> entityClass) {
+            final Materializer<T> materializer = new Materializer<>(entityClass, this);
+            return new AbstractList<T>() {
+                @Override
+                public T get(final int index) {
+                    return materializer.materialize(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        private final String name;
+
+        private final int size;
+
+        private final Map<String, Column> columns;
+    }
+
+    /**
+     * Materializes entities of a class from a table.
+     *
+     * @param <T> entity type parameter
+     */
+    private static final class Materializer<T> {
+
+        private static Class<?> boxed(final Class<?> type) {
+            if (type == int.class) {
+                return Integer.class;
+            }
+            if (type == boolean.class) {
+                return Boolean.class;
+            }
+            return type;
+        }
+
+        private static <U> U instantiate(final Class<U> type) {
+            try {
+                final Constructor<U> constructor = type.getDeclaredConstructor();
+                if (!constructor.isAccessible()) {
+                    constructor.setAccessible(true);
+                }
+                return constructor.newInstance();
+            } catch (final ReflectiveOperationException roe) {
+                throw new RuntimeException("failed to instantiate " + type, roe);
+            }
+        }
+
+        private Materializer(final Class<T> entityClass, final Table table) {
+            super();
+            this.entityClass = requireNonNull(entityClass, "entityClass is null");
+            final AttributeOverride override = entityClass.getAnnotation(AttributeOverride.class);
+            idColumn = override != null && BaseEntity.ATTRIBUTE_NAME_ID.equals(override.name())
+                       ? table.columns().get(override.column().name()) : null;
+            for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                        continue;
+                    }
+                    final javax.persistence.Column column = field.getAnnotation(javax.persistence.Column.class);
+                    final JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+                    final String columnName = column != null ? column.name()
+                                                             : joinColumn != null ? joinColumn.name() : null;
+                    if (columnName == null || !table.columns().containsKey(columnName)) {
+                        continue;
+                    }
+                    if (!field.isAccessible()) {
+                        field.setAccessible(true);
+                    }
+                    final Convert convert = field.getAnnotation(Convert.class);
+                    fields.add(field);
+                    columns.add(table.column(columnName));
+                    if (convert == null) {
+                        converters.add(null);
+                    } else {
+                        @SuppressWarnings({"unchecked"})
+                        final Class<? extends AttributeConverter<?, ?>> converterClass
+                                = (Class<? extends AttributeConverter<?, ?>>) convert.converter();
+                        converters.add(instantiate(converterClass));
+                    }
+                    references.add(joinColumn != null && BaseEntity.class.isAssignableFrom(field.getType()));
+                }
+            }
+        }
+
+        private T materialize(final int row) {
+            final T entity = instantiate(entityClass);
+            if (idColumn != null && !idColumn.isNull(row) && entity instanceof BaseEntity) {
+                ((BaseEntity) entity).setId(idColumn.getInt(row));
+            }
+            try {
+                for (int i = 0; i < fields.size(); i++) {
+                    final Object value = columns.get(i).get(row);
+                    if (value == null) {
+                        continue;
+                    }
+                    final Field field = fields.get(i);
+                    field.set(entity, convert(field, converters.get(i), references.get(i), value));
+                }
+            } catch (final IllegalAccessException iae) {
+                throw new RuntimeException(iae);
+            }
+            return entity;
+        }
+
+        @SuppressWarnings({"unchecked"})
+        private Object convert(final Field field, final AttributeConverter<?, ?> converter, final boolean reference,
+                               final Object value) {
+            if (converter != null) {
+                return ((AttributeConverter<Object, Object>) converter).convertToEntityAttribute(value);
+            }
+            if (reference) {
+                final BaseEntity stub = (BaseEntity) instantiate(field.getType());
+                stub.setId((Integer) value);
+                return stub;
+            }
+            final Class<?> type = boxed(field.getType());
+            if (type == Boolean.class && value instanceof Integer) {
+                return (Integer) value != 0;
+            }
+            if (type == Date.class && value instanceof LocalDateTime) {
+                return java.sql.Timestamp.valueOf((LocalDateTime) value);
+            }
+            if (!type.isInstance(value)) {
+                throw new IllegalStateException("can't set " + value.getClass() + " to " + field);
+            }
+            return value;
+        }
+
+        private final Class<T> entityClass;
+
+        private final Column idColumn;
+
+        private final List<Field> fields = new ArrayList<>();
+
+        private final List<Column> columns = new ArrayList<>();
+
+        private final List<AttributeConverter<?, ?>> converters = new ArrayList<>();
+
+        private final List<Boolean> references = new ArrayList<>();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static int bitmapBytes(final int rows) {
+        return (rows + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    private static int toInt(final Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().getYear();
+        }
+        return ((Number) value).intValue();
+    }
+
+    private static long toMillis(final Object value) {
+        final LocalDateTime dateTime;
+        if (value instanceof LocalDateTime) {
+            dateTime = (LocalDateTime) value;
+        } else if (value instanceof java.sql.Timestamp) {
+            dateTime = ((java.sql.Timestamp) value).toLocalDateTime();
+        } else if (value instanceof java.sql.Date) {
+            dateTime = ((java.sql.Date) value).toLocalDate().atStartOfDay();
+        } else {
+            dateTime = new java.sql.Timestamp(((Date) value).getTime()).toLocalDateTime();
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1000L + dateTime.getNano() / 1000000;
+    }
+
+    private static void writeColumn(final DataOutputStream output, final List<Object[]> rows, final int index,
+                                    final Type type, final int scale)
+            throws IOException {
+        final byte[] bitmap = new byte[bitmapBytes(rows.size())];
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.get(row)[index] == null) {
+                bitmap[row >> 3] |= 1 << (row & 7);
+            }
+        }
+        output.write(bitmap);
+        switch (type) {
+            case INT:
+                for (final Object[] row : rows) {
+                    output.writeInt(row[index] == null ? 0 : toInt(row[index]));
+                }
+                break;
+            case DECIMAL:
+                for (final Object[] row : rows) {
+                    output.writeLong(row[index] == null ? 0L
+                                                        : new BigDecimal(row[index].toString()).setScale(scale)
+                                             .unscaledValue().longValueExact());
+                }
+                break;
+            case DATETIME:
+                for (final Object[] row : rows) {
+                    output.writeLong(row[index] == null ? 0L : toMillis(row[index]));
+                }
+                break;
+            case STRING:
+                final Map<String, Integer> codes = new HashMap<>();
+                final List<byte[]> dictionary = new ArrayList<>();
+                for (final Object[] row : rows) {
+                    if (row[index] == null) {
+                        output.writeInt(0);
+                        continue;
+                    }
+                    final String value = row[index] instanceof char[]
+                                         ? new String((char[]) row[index]) : String.valueOf(row[index]);
+                    Integer code = codes.get(value);
+                    if (code == null) {
+                        codes.put(value, code = dictionary.size());
+                        dictionary.add(value.getBytes(StandardCharsets.UTF_8));
+                    }
+                    output.writeInt(code);
+                }
+                output.writeInt(dictionary.size());
+                writeBytes(output, dictionary);
+                break;
+            default:
+                final List<byte[]> values = new ArrayList<>(rows.size());
+                for (final Object[] row : rows) {
+                    values.add(row[index] == null ? new byte[0] : (byte[]) row[index]);
+                }
+                writeBytes(output, values);
+                break;
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream output, final List<byte[]> values) throws IOException {
+        int offset = 0;
+        output.writeInt(offset);
+        for (final byte[] value : values) {
+            output.writeInt(offset += value.length);
+        }
+        for (final byte[] value : values) {
+            output.write(value);
+        }
+    }
+
+    /**
+     * Writes specified sources, as a snapshot, to specified file.
+     *
+     * @param file    the file to write.
+     * @param sources the sources of tables.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void write(@NotNull final Path file, @NotNull final List<Source> sources) throws IOException {
+        requireNonNull(file, "file is null");
+        requireNonNull(sources, "sources is null");
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(newOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            final List<int[]> offsets = new ArrayList<>(sources.size());
+            for (final Source source : sources) {
+                final int[] columnOffsets = new int[source.names.size()];
+                for (int i = 0; i < columnOffsets.length; i++) {
+                    columnOffsets[i] = output.size();
+                    writeColumn(output, source.rows, i, source.types.get(i), source.scales.get(i));
+                }
+                offsets.add(columnOffsets);
+            }
+            final int directory = output.size();
+            output.writeInt(sources.size());
+            for (int i = 0; i < sources.size(); i++) {
+                final Source source = sources.get(i);
+                output.writeUTF(source.table);
+                output.writeInt(source.rows.size());
+                output.writeInt(source.names.size());
+                for (int j = 0; j < source.names.size(); j++) {
+                    output.writeUTF(source.names.get(j));
+                    output.writeByte(source.types.get(j).ordinal());
+                    output.writeByte(source.scales.get(j));
+                    output.writeInt(offsets.get(i)[j]);
+                }
+            }
+            output.writeInt(directory);
+        }
+        move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Exports all entity tables, of the database of specified entity manager, to specified file.
+     *
+     * @param entityManager the entity manager.
+     * @param file          the file to write.
+     * @return the number of rows exported.
+     * @throws IOException if an I/O error occurs.
+     */
+    static long export(@NotNull final EntityManager entityManager, @NotNull final Path file) throws IOException {
+        requireNonNull(entityManager, "entityManager is null");
+        final Set<String> tables = new TreeSet<>();
+        entityManager.getMetamodel().getEntities().forEach(e -> {
+            final javax.persistence.Table table = e.getJavaType().getAnnotation(javax.persistence.Table.class);
+            tables.add(table != null && !table.name().isEmpty() ? table.name() : e.getName());
+        });
+        final List<Source> sources = new ArrayList<>(tables.size());
+        long count = 0L;
+        for (final String table : tables) {
+            final Source source = new Source(table);
+            @SuppressWarnings({"unchecked"})
+            final List<Object[]> columns = entityManager.createNativeQuery(
+                    "SELECT COLUMN_NAME, DATA_TYPE, COALESCE(NUMERIC_SCALE, 0) FROM information_schema.COLUMNS"
+                    + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION")
+                    .setParameter(1, table)
+                    .getResultList();
+            final StringBuilder select = new StringBuilder("SELECT ");
+            for (final Object[] column : columns) {
+                source.column((String) column[0], Type.of((String) column[1]), ((Number) column[2]).intValue());
+                select.append(source.names.size() > 1 ? ", " : "").append('`').append(column[0]).append('`');
+            }
+            select.append(" FROM `").append(table).append("` ORDER BY 1");
+            for (final Object row : entityManager.createNativeQuery(select.toString()).getResultList()) {
+                source.row(row instanceof Object[] ? (Object[]) row : new Object[] {row});
+            }
+            log.debug("exporting {} row(s) of {}", source.rows.size(), table);
+            count += source.rows.size();
+            sources.add(source);
+        }
+        write(file, sources);
+        return count;
+    }
+
+    /**
+     * Opens a snapshot by mapping specified file.
+     *
+     * @param file the snapshot file.
+     * @return a snapshot.
+     * @throws IOException if an I/O error occurs.
+     */
+    static DatasetSnapshot open(@NotNull final Path file) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(requireNonNull(file, "file is null"), READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+        if (buffer.capacity() < Integer.BYTES * 2 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a snapshot: " + file);
+        }
+        final ByteBuffer directory = buffer.duplicate();
+        directory.position(buffer.getInt(buffer.capacity() - Integer.BYTES));
+        final int count = directory.getInt();
+        final Map<String, Table> tables = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String name = readUTF(directory);
+            final int rows = directory.getInt();
+            final int columnCount = directory.getInt();
+            final List<Column> columns = new ArrayList<>(columnCount);
+            for (int j = 0; j < columnCount; j++) {
+                final String column = readUTF(directory);
+                final Type type = Type.values()[directory.get()];
+                final int scale = directory.get();
+                columns.add(new Column(buffer, column, type, scale, rows, directory.getInt()));
+            }
+            tables.put(name, new Table(name, rows, unmodifiableList(columns)));
+        }
+        return new DatasetSnapshot(tables);
+    }
+
+    private static String readUTF(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8); // modified UTF-8 equals UTF-8 for table/column names
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private DatasetSnapshot(final Map<String, Table> tables) {
+        super();
+        this.tables = Collections.unmodifiableMap(tables);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an unmodifiable map of names and tables of this snapshot.
+     *
+     * @return an unmodifiable map of tables.
+     */
+    Map<String, Table> tables() {
+        return tables;
+    }
+
+    /**
+     * Returns the table of specified name.
+     *
+     * @param name the name of the table.
+     * @return the table of {@code name}.
+     * @throws IllegalArgumentException if no table of {@code name}.
+     */
+    Table table(@NotNull final String name) {
+        final Table table = tables.get(requireNonNull(name, "name is null"));
+        if (table == null) {
+            throw new IllegalArgumentException("no table named " + name);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the table mapped to specified entity class.
+     *
+     * @param entityClass the entity class.
+     * @return the table mapped to {@code entityClass}.
+     */
+    Table table(@NotNull final Class<?> entityClass) {
+        final javax.persistence.Table table = requireNonNull(entityClass, "entityClass is null")
+                .getAnnotation(javax.persistence.Table.class);
+        return table(table != null && !table.name().isEmpty() ? table.name() : entityClass.getSimpleName());
+    }
+
+    /**
+     * Returns a list, of all rows of the table mapped to specified entity class, which materializes each entity
+     * whenever it is accessed.
+     *
+     * @param entityClass the entity class.
+     * @param <T>         entity type parameter
+     * @return a list of entities.
+     * @see Table#entities(Class)
+     */
+    <T> List<T> entities(@NotNull final Class<T> entityClass) {
+        return table(entityClass).entities(entityClass);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Map<String, Table> tables;
+}
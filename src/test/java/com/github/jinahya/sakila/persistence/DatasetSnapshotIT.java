@@ -0,0 +1,84 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link DatasetSnapshot} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class DatasetSnapshotIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the exported snapshot has all rows of each entity table and materializes entities as they are.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertExportAndOpen(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("sakila.snapshot");
+        final long rows = DatasetSnapshot.export(entityManager, file);
+        final long started = System.nanoTime();
+        final DatasetSnapshot snapshot = DatasetSnapshot.open(file);
+        log.info("opened {} row(s) in {} ms", rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        for (final Class<?> entityClass : new Class<?>[] {Film.class, Customer.class, Rental.class, Payment.class,
+                                                          FilmActor.class}) {
+            final long count = entityManager
+                    .createQuery("SELECT COUNT(e) FROM " + entityClass.getSimpleName() + " AS e", Long.class)
+                    .getSingleResult();
+            assertThat((long) snapshot.table(entityClass).size()).as(entityClass.getSimpleName()).isEqualTo(count);
+        }
+        final List<Film> films = snapshot.entities(Film.class);
+        final Film film = films.get(films.size() / 2);
+        final Film found = entityManager.find(Film.class, film.getId());
+        assertThat(film.getTitle()).isEqualTo(found.getTitle());
+        assertThat(film.getRating()).isEqualTo(found.getRating());
+        assertThat(film.getRentalRate()).isEqualByComparingTo(found.getRentalRate());
+        assertThat(film.getLanguage().getId()).isEqualTo(found.getLanguage().getId());
+        final List<Rental> rentals = snapshot.entities(Rental.class);
+        final Rental rental = rentals.get(rentals.size() - 1);
+        assertThat(rental.getRentalDate()).isEqualTo(entityManager.find(Rental.class, rental.getId()).getRentalDate());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,142 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.jinahya.sakila.persistence.DatasetSnapshot.Type.BYTES;
+import static com.github.jinahya.sakila.persistence.DatasetSnapshot.Type.DATETIME;
+import static com.github.jinahya.sakila.persistence.DatasetSnapshot.Type.DECIMAL;
+import static com.github.jinahya.sakila.persistence.DatasetSnapshot.Type.INT;
+import static com.github.jinahya.sakila.persistence.DatasetSnapshot.Type.STRING;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link DatasetSnapshot}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class DatasetSnapshotTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final LocalDateTime LAST_UPDATE = LocalDateTime.of(2006, 2, 15, 5, 2, 19);
+
+    private static List<DatasetSnapshot.Source> sources() {
+        final Timestamp lastUpdate = Timestamp.valueOf(LAST_UPDATE);
+        return Arrays.asList(
+                new DatasetSnapshot.Source(Language.TABLE_NAME)
+                        .column("language_id", INT, 0)
+                        .column("name", STRING, 0)
+                        .column("last_update", DATETIME, 0)
+                        .row(1, "English", lastUpdate)
+                        .row(2, "Italian", lastUpdate),
+                new DatasetSnapshot.Source(Film.TABLE_NAME)
+                        .column("film_id", INT, 0)
+                        .column("title", STRING, 0)
+                        .column("language_id", INT, 0)
+                        .column("original_language_id", INT, 0)
+                        .column("rental_rate", DECIMAL, 2)
+                        .column("rating", STRING, 0)
+                        .column("special_features", STRING, 0)
+                        .column("last_update", DATETIME, 0)
+                        .row(1, "ACADEMY DINOSAUR", 1, null, new BigDecimal("0.99"), "PG", "Deleted Scenes", lastUpdate)
+                        .row(2, "ACE GOLDFINGER", 1, 2, new BigDecimal("4.99"), "G", null, lastUpdate)
+                        .row(3, "ADAPTATION HOLES", 1, null, new BigDecimal("2.99"), null, "Deleted Scenes",
+                             lastUpdate),
+                new DatasetSnapshot.Source(Staff.TABLE_NAME)
+                        .column("staff_id", INT, 0)
+                        .column("first_name", STRING, 0)
+                        .column("picture", BYTES, 0)
+                        .column("active", INT, 0)
+                        .row(1, "Mike", new byte[] {1, 2, 3}, true)
+                        .row(2, "Jon", null, false));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts columns are read back as written.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertColumns(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("sakila.snapshot");
+        DatasetSnapshot.write(file, sources());
+        final DatasetSnapshot snapshot = DatasetSnapshot.open(file);
+        assertThat(snapshot.tables()).containsOnlyKeys(Language.TABLE_NAME, Film.TABLE_NAME, Staff.TABLE_NAME);
+        final DatasetSnapshot.Table film = snapshot.table(Film.class);
+        assertThat(film.size()).isEqualTo(3);
+        assertThat(film.column("title").getString(1)).isEqualTo("ACE GOLDFINGER");
+        assertThat(film.column("original_language_id").isNull(0)).isTrue();
+        assertThat(film.column("original_language_id").getInt(1)).isEqualTo(2);
+        assertThat(film.column("rental_rate").get(2)).isEqualTo(new BigDecimal("2.99"));
+        assertThat(film.column("special_features").getString(0))
+                .isSameAs(film.column("special_features").getString(2));
+        assertThat(film.column("last_update").get(0)).isEqualTo(LAST_UPDATE);
+        final DatasetSnapshot.Table staff = snapshot.table(Staff.TABLE_NAME);
+        assertThat(staff.column("picture").getBytes(0)).containsExactly(1, 2, 3);
+        assertThat(staff.column("picture").getBytes(1)).isNull();
+        assertThat(staff.column("active").getInt(0)).isEqualTo(1);
+    }
+
+    /**
+     * Asserts entities are materialized with their basic attributes and references.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertEntities(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("sakila.snapshot");
+        DatasetSnapshot.write(file, sources());
+        final DatasetSnapshot snapshot = DatasetSnapshot.open(file);
+        final List<Film> films = snapshot.entities(Film.class);
+        assertThat(films).hasSize(3);
+        final Film film = films.get(1);
+        assertThat(film.getId()).isEqualTo(2);
+        assertThat(film.getTitle()).isEqualTo("ACE GOLDFINGER");
+        assertThat(film.getLanguage().getId()).isEqualTo(1);
+        assertThat(film.getOriginalLanguage().getId()).isEqualTo(2);
+        assertThat(film.getRentalRate()).isEqualByComparingTo("4.99");
+        assertThat(film.getRating()).isSameAs(Film.Rating.GENERAL_AUDIENCES);
+        assertThat(film.getLastUpdate()).isEqualTo(Timestamp.valueOf(LAST_UPDATE));
+        assertThat(films.get(2).getRating()).isNull();
+        final List<Staff> staffs = snapshot.entities(Staff.class);
+        assertThat(staffs.get(0).isActive()).isTrue();
+        assertThat(staffs.get(0).getPicture()).containsExactly(1, 2, 3);
+        assertThat(staffs.get(1).isActive()).isFalse();
+        assertThat(staffs.get(1).getFirstName()).isEqualTo("Jon");
+        assertThat(snapshot.entities(Language.class).get(1).getName()).isEqualTo("Italian");
+    }
+}
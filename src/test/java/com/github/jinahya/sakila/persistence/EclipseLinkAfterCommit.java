@@ -0,0 +1,63 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+/**
+ * A session event listener of EclipseLink which reports boundaries of transactions to {@link AfterCommit}. This class
+ * is compiled only with the {@code eclipselink} profile.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class EclipseLinkAfterCommit extends SessionEventAdapter {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     */
+    public EclipseLinkAfterCommit() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public void postBeginTransaction(final SessionEvent event) {
+        AfterCommit.begun();
+    }
+
+    @Override
+    public void postCommitUnitOfWork(final SessionEvent event) {
+        AfterCommit.committed();
+    }
+
+    @Override
+    public void postRollbackTransaction(final SessionEvent event) {
+        AfterCommit.rolledBack();
+    }
+
+    @Override
+    public void postReleaseUnitOfWork(final SessionEvent event) {
+        AfterCommit.rolledBack(); // released without a commit; nothing left after a commit
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.descriptors.ChangedFieldsLockingPolicy;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.sessions.Session;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A session customizer of EclipseLink which maps optimistic locking of entities of {@link OptimisticLocking hot mutable
+ * attributes}, so that ordinary setter-plus-flush updates compare the old values of changed columns, and fail with an
+ * {@link javax.persistence.OptimisticLockException} when another transaction has changed any of them. This class is
+ * compiled only with the {@code eclipselink} profile.
+ * <p>
+ * The {@code last_update} column is not mapped as the version since it has only second precision; two writes within a
+ * second would leave the same version and the later one would overwrite the earlier one.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class EclipseLinkOptimisticLocking implements SessionCustomizer {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Entity classes whose updates compare the old values of changed columns.
+     */
+    static final Set<Class<?>> LOCKED_CLASSES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Customer.class, Film.class, Inventory.class, Rental.class)));
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     */
+    public EclipseLinkOptimisticLocking() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public void customize(final Session session) {
+        for (final Class<?> lockedClass : LOCKED_CLASSES) {
+            final ClassDescriptor descriptor = session.getDescriptor(lockedClass);
+            if (descriptor == null) {
+                throw new IllegalStateException("no descriptor for " + lockedClass);
+            }
+            descriptor.setOptimisticLockingPolicy(new ChangedFieldsLockingPolicy());
+        }
+    }
+}
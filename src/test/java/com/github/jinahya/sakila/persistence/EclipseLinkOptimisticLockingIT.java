@@ -0,0 +1,171 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link EclipseLinkOptimisticLocking} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class EclipseLinkOptimisticLockingIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final int WRITERS = 2;
+
+    private static void await(final CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ie);
+        } catch (final BrokenBarrierException bbe) {
+            throw new IllegalStateException(bbe);
+        }
+    }
+
+    /**
+     * Lets {@value #WRITERS} writers read the same entity and then, concurrently, update it with specified setter and
+     * a flush, each in its own transaction, and returns the failures.
+     */
+    private static <T extends BaseEntity> List<Throwable> race(final Class<T> entityClass, final int id,
+                                                               final Consumer<? super T> setter)
+            throws InterruptedException {
+        final CyclicBarrier barrier = new CyclicBarrier(WRITERS);
+        final ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        final List<Throwable> failures = new ArrayList<>();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                futures.add(executor.submit(() -> PersistenceProducer.applyEntityManager(em -> {
+                    final EntityTransaction transaction = em.getTransaction();
+                    transaction.begin();
+                    try {
+                        final T entity = em.find(entityClass, id);
+                        await(barrier);
+                        setter.accept(entity);
+                        em.flush();
+                        transaction.commit();
+                    } finally {
+                        if (transaction.isActive()) {
+                            transaction.rollback();
+                        }
+                    }
+                    return null;
+                })));
+            }
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException ee) {
+                    log.debug("failed to write", ee.getCause());
+                    failures.add(ee.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return failures;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts, of two concurrent writers of the rental rate of the same film, the later one fails with an optimistic
+     * lock failure rather than overwriting the earlier one. The rental rate is restored afterwards.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    void assertConcurrentRentalRateWritersConflict() throws InterruptedException {
+        final Film random = randomEntity(entityManager, Film.class);
+        final BigDecimal initial = random.getRentalRate();
+        final BigDecimal increment = new BigDecimal("0.01");
+        final List<Throwable> failures = race(Film.class, random.getId(),
+                                              f -> f.setRentalRate(f.getRentalRate().add(increment)));
+        try {
+            assertThat(failures).hasSize(1);
+            assertThat(OptimisticLocking.isOptimisticLockFailure(failures.get(0))).isTrue();
+            final BigDecimal rentalRate = PersistenceProducer.applyEntityManager(
+                    em -> em.find(Film.class, random.getId()).getRentalRate());
+            assertThat(rentalRate).isEqualByComparingTo(initial.add(increment));
+        } finally {
+            OptimisticLocking.applyEntityManager(em -> {
+                final Film film = em.find(Film.class, random.getId());
+                OptimisticLocking.update(em, film, Film_.rentalRate, Film::getRentalRate, initial);
+                return null;
+            }, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Asserts, of two concurrent writers toggling the activeness of the same customer, the later one fails with an
+     * optimistic lock failure rather than toggling it back. The activeness is restored afterwards.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    void assertConcurrentActiveWritersConflict() throws InterruptedException {
+        final Customer random = randomEntity(entityManager, Customer.class);
+        final boolean initial = random.isActive();
+        final List<Throwable> failures = race(Customer.class, random.getId(), c -> c.setActive(!c.isActive()));
+        try {
+            assertThat(failures).hasSize(1);
+            assertThat(OptimisticLocking.isOptimisticLockFailure(failures.get(0))).isTrue();
+            final boolean active = PersistenceProducer.applyEntityManager(
+                    em -> em.find(Customer.class, random.getId()).isActive());
+            assertThat(active).isNotEqualTo(initial);
+        } finally {
+            OptimisticLocking.applyEntityManager(em -> {
+                final Customer customer = em.find(Customer.class, random.getId());
+                OptimisticLocking.update(em, customer, Customer_.active, Customer::isActive, initial);
+                return null;
+            }, Integer.MAX_VALUE);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,64 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.persistence.descriptors.ChangedFieldsLockingPolicy;
+import org.eclipse.persistence.jpa.JpaEntityManagerFactory;
+import org.eclipse.persistence.sessions.Session;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import static com.github.jinahya.sakila.persistence.PersistenceProducer.PERSISTENCE_UNIT_NAME;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link EclipseLinkOptimisticLocking}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class EclipseLinkOptimisticLockingTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the persistence unit, deployed without a database, locks only the locked classes on changed columns.
+     */
+    @Test
+    void assertLockingPolicies() {
+        final EntityManagerFactory factory = Persistence.createEntityManagerFactory(
+                PERSISTENCE_UNIT_NAME, singletonMap("eclipselink.validation-only", "true"));
+        try {
+            final Session session = factory.unwrap(JpaEntityManagerFactory.class).getServerSession();
+            for (final Class<?> lockedClass : EclipseLinkOptimisticLocking.LOCKED_CLASSES) {
+                assertThat(session.getDescriptor(lockedClass).getOptimisticLockingPolicy())
+                        .isInstanceOf(ChangedFieldsLockingPolicy.class);
+            }
+            assertThat(session.getDescriptor(Actor.class).getOptimisticLockingPolicy()).isNull();
+        } finally {
+            factory.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.jinahya.sakila.persistence.PersistenceProducer.PERSISTENCE_UNIT_NAME;
+
+/**
+ * A benchmark for measuring the flush cost of managed {@link Film}s, {@link Address}es, {@link Rental}s and {@link
+ * Payment}s.
+ * <p>
+ * Run {@link #main(String...)} twice, against a running database, for comparing the cost with and without the
+ * build-time enhancement; without the enhancement, tests run plain copies of the entity classes from the same
+ * directory.
+ * <blockquote><pre>{@code
+ * $ mvn -Peclipselink -Denhance.phase=none -Declipselink.weaving=false clean test-compile # before
+ * $ mvn -Peclipselink clean test-compile                                                  # after
+ * }</pre></blockquote>
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+@Slf4j
+public class EntityFlushBenchmark {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args command line arguments.
+     * @throws RunnerException if failed to run.
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EntityFlushBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Selects, at most, {@code maxResults} entities of specified class.
+     *
+     * @param entityManager an entity manager.
+     * @param entityClass   the entity class to select.
+     * @param maxResults    the maximum number of entities to select.
+     * @param <T>           entity type parameter
+     * @return a list of managed entities.
+     */
+    private static <T extends BaseEntity> List<T> select(final EntityManager entityManager, final Class<T> entityClass,
+                                                         final int maxResults) {
+        return BaseEntity.list(entityManager, entityClass, (b, r) -> null, q -> q.setMaxResults(maxResults));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Trial)
+    public void openEntityManagerFactory() {
+        entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeEntityManagerFactory() {
+        entityManagerFactory.close();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Invocation)
+    public void loadEntities() {
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        films = select(entityManager, Film.class, size);
+        addresses = select(entityManager, Address.class, size);
+        rentals = select(entityManager, Rental.class, size);
+        payments = select(entityManager, Payment.class, size);
+    }
+
+    @TearDown(Level.Invocation)
+    public void discardEntities() {
+        try {
+            entityManager.getTransaction().rollback();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Flushes with no modification at all; the cost of finding out that nothing has changed.
+     */
+    @Benchmark
+    public void flushUnmodified() {
+        entityManager.flush();
+    }
+
+    /**
+     * Flushes with a single modification on each kind of entities.
+     */
+    @Benchmark
+    public void flushSingleModified() {
+        final Film film = films.get(0);
+        film.setRentalDuration(film.getRentalDuration() + 1);
+        final Address address = addresses.get(0);
+        address.setPhone(new StringBuilder(address.getPhone()).reverse().toString());
+        final Rental rental = rentals.get(0);
+        rental.setReturnDate(rental.getRentalDate().plusDays(1L));
+        final Payment payment = payments.get(0);
+        payment.setAmount(payment.getAmount().add(BigDecimal.ONE));
+        entityManager.flush();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of entities, of each kind, to load before flushing.
+     */
+    @Param({"100", "1000"})
+    public int size;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private List<Film> films;
+
+    private List<Address> addresses;
+
+    private List<Rental> rentals;
+
+    private List<Payment> payments;
+}
@@ -0,0 +1,291 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Table;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A registry of metadata of all entity classes of an entity manager factory. The registry is built once per entity
+ * manager factory and each lookup is a single hash lookup. Registries are weakly keyed by their factories, and hold
+ * nothing which refers back to the factories, so each goes away along with its factory.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class EntityMetadata {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Metadata of a single entity class.
+     *
+     * @param <X> entity type parameter
+     */
+    static final class Entry<X> {
+
+        // -------------------------------------------------------------------------------------------------------------
+
+        /**
+         * Creates a new instance for specified entity type.
+         *
+         * @param entityType the entity type.
+         */
+        private Entry(final EntityType<X> entityType) {
+            super();
+            this.entityType = entityType;
+            idAttribute = entityType.hasSingleIdAttribute()
+                          ? entityType.getId(entityType.getIdType().getJavaType()) : null;
+            final Class<X> entityClass = entityType.getJavaType();
+            final Table table = entityClass.getAnnotation(Table.class);
+            tableName = table != null && !table.name().isEmpty() ? table.name() : entityType.getName();
+            final Map<String, Field> namedFields = new LinkedHashMap<>();
+            for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    final NamedAttribute namedAttribute = field.getAnnotation(NamedAttribute.class);
+                    if (namedAttribute == null) {
+                        continue;
+                    }
+                    if (!field.isAccessible()) {
+                        field.setAccessible(true);
+                    }
+                    namedFields.putIfAbsent(namedAttribute.value(), field);
+                }
+            }
+            this.namedFields = unmodifiableMap(namedFields);
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+
+        /**
+         * Returns a string representation of the object.
+         *
+         * @return a string representation of the object.
+         */
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "entityName=" + entityType.getName()
+                   + ",tableName=" + tableName
+                   + ",namedFields=" + namedFields.keySet()
+                   + "}";
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+
+        /**
+         * Returns the entity type.
+         *
+         * @return the entity type.
+         */
+        @NotNull EntityType<X> getEntityType() {
+            return entityType;
+        }
+
+        /**
+         * Returns the entity name.
+         *
+         * @return the entity name.
+         * @see EntityType#getName()
+         */
+        @NotNull String getEntityName() {
+            return entityType.getName();
+        }
+
+        /**
+         * Returns the single id attribute of the entity.
+         *
+         * @return the single id attribute; {@code null} if the entity has an id class.
+         * @see EntityType#hasSingleIdAttribute()
+         */
+        @Nullable SingularAttribute<? super X, ?> getIdAttribute() {
+            return idAttribute;
+        }
+
+        /**
+         * Returns the single id attribute of the entity of specified type.
+         *
+         * @param idType the type of the id attribute.
+         * @param <Y>    id type parameter
+         * @return the single id attribute.
+         * @throws IllegalArgumentException if the entity has an id class or its id is not of {@code idType}.
+         */
+        @NotNull <Y> SingularAttribute<? super X, Y> getIdAttribute(@NotNull final Class<Y> idType) {
+            requireNonNull(idType, "idType is null");
+            if (idAttribute == null) {
+                throw new IllegalArgumentException("no single id attribute: " + entityType.getName());
+            }
+            if (idAttribute.getJavaType() != idType) {
+                throw new IllegalArgumentException(
+                        "id attribute(" + idAttribute.getJavaType() + ") of " + entityType.getName() + " is not of "
+                        + idType);
+            }
+            @SuppressWarnings({"unchecked"})
+            final SingularAttribute<? super X, Y> typed = (SingularAttribute<? super X, Y>) idAttribute;
+            return typed;
+        }
+
+        /**
+         * Returns the name of the table to which the entity is mapped.
+         *
+         * @return the table name.
+         */
+        @NotNull String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns an unmodifiable map of {@link NamedAttribute#value() attribute names} and accessible fields annotated
+         * with {@link NamedAttribute}, including those declared in super classes.
+         *
+         * @return a map of attribute names and fields.
+         */
+        @NotNull Map<String, Field> getNamedFields() {
+            return namedFields;
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+        private final EntityType<X> entityType;
+
+        private final SingularAttribute<? super X, ?> idAttribute;
+
+        private final String tableName;
+
+        private final Map<String, Field> namedFields;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Registries of entity manager factories, weakly keyed.
+     */
+    private static final Map<EntityManagerFactory, EntityMetadata> INSTANCES = synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Returns the registry for specified entity manager factory. The registry is built on the first call.
+     *
+     * @param entityManagerFactory the entity manager factory.
+     * @return the registry for {@code entityManagerFactory}.
+     * @throws IllegalStateException if {@code entityManagerFactory} is closed and has no registry.
+     */
+    static @NotNull EntityMetadata of(@NotNull final EntityManagerFactory entityManagerFactory) {
+        final EntityMetadata instance
+                = INSTANCES.get(requireNonNull(entityManagerFactory, "entityManagerFactory is null"));
+        if (instance != null) {
+            return instance;
+        }
+        if (!entityManagerFactory.isOpen()) {
+            throw new IllegalStateException("entityManagerFactory is closed");
+        }
+        return INSTANCES.computeIfAbsent(entityManagerFactory, EntityMetadata::new);
+    }
+
+    /**
+     * Returns the registry for the entity manager factory of specified entity manager.
+     *
+     * @param entityManager the entity manager.
+     * @return the registry for the entity manager factory of {@code entityManager}.
+     */
+    static @NotNull EntityMetadata of(@NotNull final EntityManager entityManager) {
+        return of(requireNonNull(entityManager, "entityManager is null").getEntityManagerFactory());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance for specified entity manager factory.
+     *
+     * @param entityManagerFactory the entity manager factory.
+     */
+    private EntityMetadata(final EntityManagerFactory entityManagerFactory) {
+        super();
+        final Map<Class<?>, Entry<?>> entries = new HashMap<>();
+        for (final EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+            entries.put(entityType.getJavaType(), new Entry<>(entityType));
+        }
+        this.entries = unmodifiableMap(entries);
+        log.debug("entity metadata built: {}", this.entries.values());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the metadata of specified entity class.
+     *
+     * @param entityClass the entity class.
+     * @param <X>         entity type parameter
+     * @return the metadata of {@code entityClass}.
+     * @throws IllegalArgumentException if {@code entityClass} is not an entity class.
+     */
+    @SuppressWarnings({"unchecked"})
+    @NotNull <X> Entry<X> entry(@NotNull final Class<X> entityClass) {
+        final Entry<X> entry = (Entry<X>) entries.get(requireNonNull(entityClass, "entityClass is null"));
+        if (entry == null) {
+            throw new IllegalArgumentException("not an entity class: " + entityClass);
+        }
+        return entry;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @NotNull <X> EntityType<X> entityType(@NotNull final Class<X> entityClass) {
+        return entry(entityClass).getEntityType();
+    }
+
+    @NotNull String entityName(@NotNull final Class<?> entityClass) {
+        return entry(entityClass).getEntityName();
+    }
+
+    @Nullable <X> SingularAttribute<? super X, ?> idAttribute(@NotNull final Class<X> entityClass) {
+        return entry(entityClass).getIdAttribute();
+    }
+
+    @NotNull <X, Y> SingularAttribute<? super X, Y> idAttribute(@NotNull final Class<X> entityClass,
+                                                                @NotNull final Class<Y> idType) {
+        return entry(entityClass).getIdAttribute(idType);
+    }
+
+    @NotNull String tableName(@NotNull final Class<?> entityClass) {
+        return entry(entityClass).getTableName();
+    }
+
+    @NotNull Map<String, Field> namedFields(@NotNull final Class<?> entityClass) {
+        return entry(entityClass).getNamedFields();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Map<Class<?>, Entry<?>> entries;
+}
@@ -0,0 +1,86 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link EntityMetadata}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class EntityMetadataIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the registry is built once per entity manager factory.
+     */
+    @Test
+    void assertSameInstanceForSameEntityManagerFactory() {
+        assertThat(EntityMetadata.of(entityManager))
+                .isSameAs(EntityMetadata.of(entityManager.getEntityManagerFactory()));
+    }
+
+    /**
+     * Asserts metadata for each entity type of the metamodel.
+     */
+    @Test
+    void assertEntries() {
+        final EntityMetadata metadata = EntityMetadata.of(entityManager);
+        entityManager.getMetamodel().getEntities().forEach(t -> {
+            final EntityMetadata.Entry<?> entry = metadata.entry(t.getJavaType());
+            assertThat(entry.getEntityType()).isSameAs(t);
+            assertThat(entry.getEntityName()).isEqualTo(t.getName());
+            assertThat(entry.getTableName()).isNotBlank();
+            entry.getNamedFields().forEach((k, v) -> assertThat(v.getName()).isEqualTo(k));
+        });
+        assertThat(metadata.tableName(Film.class)).isEqualTo(Film.TABLE_NAME);
+        assertThat(metadata.idAttribute(Film.class)).isNotNull()
+                .satisfies(a -> assertThat(a.getName()).isEqualTo(BaseEntity.ATTRIBUTE_NAME_ID));
+        assertThat(metadata.idAttribute(FilmActor.class)).isNull();
+        assertThat(metadata.namedFields(Actor.class)).containsKeys(BaseEntity.ATTRIBUTE_NAME_ID);
+    }
+
+    /**
+     * Asserts {@link EntityMetadata#entry(Class)} throws an {@link IllegalArgumentException} for a non-entity class.
+     */
+    @Test
+    void assertEntryThrowsIllegalArgumentExceptionForNonEntityClass() {
+        assertThatThrownBy(() -> EntityMetadata.of(entityManager).entry(FullName.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,145 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for unit-testing {@link EntityMetadata} against a fake metamodel.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class EntityMetadataTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static EntityType<?> entityType(final Class<?> javaType, final Class<?> idType) {
+        final SingularAttribute<?, ?> id = fake(SingularAttribute.class, (p, n, a) -> {
+            switch (n) {
+                case "getName":
+                    return BaseEntity.ATTRIBUTE_NAME_ID;
+                case "getJavaType":
+                    return idType;
+                default:
+                    return null;
+            }
+        });
+        final Type<?> type = fake(Type.class, (p, n, a) -> "getJavaType".equals(n) ? idType : null);
+        return fake(EntityType.class, (p, n, a) -> {
+            switch (n) {
+                case "getName":
+                    return javaType.getSimpleName();
+                case "getJavaType":
+                    return javaType;
+                case "hasSingleIdAttribute":
+                    return idType != null;
+                case "getIdType":
+                    return type;
+                case "getId":
+                    return id;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static EntityManagerFactory entityManagerFactory(final AtomicBoolean open) {
+        final Metamodel metamodel = fake(Metamodel.class, (p, n, a) -> "getEntities".equals(n)
+                ? new HashSet<>(Arrays.asList(entityType(Film.class, Integer.class),
+                                              entityType(FilmActor.class, null)))
+                : null);
+        return fake(EntityManagerFactory.class, (p, n, a) -> {
+            switch (n) {
+                case "isOpen":
+                    return open.get();
+                case "getMetamodel":
+                    return metamodel;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts entries of a fake metamodel and the typed id attribute lookup.
+     */
+    @Test
+    void assertEntries() {
+        final EntityManagerFactory entityManagerFactory = entityManagerFactory(new AtomicBoolean(true));
+        final EntityMetadata metadata = EntityMetadata.of(entityManagerFactory);
+        assertThat(EntityMetadata.of(entityManagerFactory)).isSameAs(metadata);
+        assertThat(metadata.entityName(Film.class)).isEqualTo("Film");
+        assertThat(metadata.tableName(Film.class)).isEqualTo(Film.TABLE_NAME);
+        assertThat(metadata.namedFields(Film.class)).containsKeys(BaseEntity.ATTRIBUTE_NAME_ID);
+        assertThat(metadata.idAttribute(Film.class, Integer.class).getName())
+                .isEqualTo(BaseEntity.ATTRIBUTE_NAME_ID);
+        assertThatThrownBy(() -> metadata.idAttribute(Film.class, Long.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(metadata.idAttribute(FilmActor.class)).isNull();
+        assertThatThrownBy(() -> metadata.idAttribute(FilmActor.class, Integer.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> metadata.entry(FullName.class)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts a registry goes along with its factory, and no registry is built for a closed factory.
+     *
+     * @throws InterruptedException if interrupted while waiting for the factory to be collected.
+     */
+    @Test
+    void assertReleasedWithFactory() throws InterruptedException {
+        EntityManagerFactory entityManagerFactory = entityManagerFactory(new AtomicBoolean(true));
+        final WeakReference<EntityManagerFactory> factory = new WeakReference<>(entityManagerFactory);
+        final WeakReference<EntityMetadata> metadata = new WeakReference<>(EntityMetadata.of(entityManagerFactory));
+        entityManagerFactory = null;
+        for (int i = 0; i < 100 && factory.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        assertThat(factory.get()).isNull();
+        EntityMetadata.of(entityManagerFactory(new AtomicBoolean(true))); // expunges the stale entry
+        for (int i = 0; i < 100 && metadata.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        assertThat(metadata.get()).isNull();
+        final EntityManagerFactory closed = entityManagerFactory(new AtomicBoolean(false));
+        assertThatThrownBy(() -> EntityMetadata.of(closed)).isInstanceOf(IllegalStateException.class);
+    }
+}
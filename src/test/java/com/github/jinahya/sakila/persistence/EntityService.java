@@ -29,10 +29,8 @@ import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.ManagedType;
 import javax.persistence.metamodel.Metamodel;
 import javax.persistence.metamodel.SingularAttribute;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 
-import static com.github.jinahya.sakila.persistence.PersistenceProducer.applyEntityManager;
+import static com.github.jinahya.sakila.persistence.PersistenceProducer.entityManagerFactory;
 import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseable;
 import static java.util.Objects.requireNonNull;
 
@@ -58,7 +56,7 @@ abstract class EntityService<T> {
     // -----------------------------------------------------------------------------------------------------------------
     static <X> EntityType<X> entityType(@NotNull final EntityManager entityManager,
                                         @NotNull final Class<X> entityClass) {
-        return metamodel(entityManager).entity(entityClass);
+        return EntityMetadata.of(entityManager).entityType(entityClass);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -78,38 +76,27 @@ abstract class EntityService<T> {
      * @see EntityType#getName()
      */
     static String entityName(@NotNull final EntityManager entityManager, @NotNull final Class<?> entityClass) {
-        return entityType(entityManager, entityClass).getName();
+        return EntityMetadata.of(entityManager).entityName(entityClass);
     }
 
+    /**
+     * Returns the entity name of the specified entity class.
+     *
+     * @param entityClass the entity class whose name is returned.
+     * @return the entity name of {@code entityClass}.
+     * @see EntityType#getName()
+     */
     static String entityName(@NotNull final Class<?> entityClass) {
-        return applyEntityManager(v -> entityName(v, entityClass));
+        return EntityMetadata.of(entityManagerFactory()).entityName(entityClass);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     static <T extends EntityService<?>> EntityManager entityManager(final T serviceInstance) {
-        try {
-            final Method entityManagerMethod = EntityService.class.getDeclaredMethod("entityManager");
-            if (!entityManagerMethod.isAccessible()) {
-                entityManagerMethod.setAccessible(true);
-            }
-            return (EntityManager) entityManagerMethod.invoke(serviceInstance);
-        } catch (final ReflectiveOperationException roe) {
-            throw new RuntimeException(roe);
-        }
+        return requireNonNull(serviceInstance, "serviceInstance is null").entityManager();
     }
 
     static <T extends EntityService<?>> Class<?> entityClass(final T serviceInstance) {
-        try {
-            final Field entityClassField = EntityService.class.getDeclaredField("entityClass");
-            if (!entityClassField.isAccessible()) {
-                entityClassField.setAccessible(true);
-            }
-            @SuppressWarnings({"unchecked"})
-            final Class<T> entityClass_ = (Class<T>) entityClassField.get(serviceInstance);
-            return entityClass_;
-        } catch (final ReflectiveOperationException roe) {
-            throw new RuntimeException(roe);
-        }
+        return requireNonNull(serviceInstance, "serviceInstance is null").entityClass;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -144,7 +131,7 @@ abstract class EntityService<T> {
      * @return the name of the {@code #entityClass}.
      */
     final @NotNull String entityName() {
-        return entityName(entityManager(), entityClass);
+        return entityMetadata().getEntityName();
     }
 
     final @NotNull <A> SingularAttribute<? super T, A> singularAttribute(@NotNull final String attributeName,
@@ -152,6 +139,18 @@ abstract class EntityService<T> {
         return singularAttribute(entityManager(), entityClass, attributeName, attributeType);
     }
 
+    /**
+     * Returns the metadata of the {@link #entityClass}.
+     *
+     * @return the metadata of the {@link #entityClass}.
+     */
+    final @NotNull EntityMetadata.Entry<T> entityMetadata() {
+        if (entityMetadata == null) {
+            entityMetadata = EntityMetadata.of(entityManager()).entry(entityClass);
+        }
+        return entityMetadata;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -177,4 +176,6 @@ abstract class EntityService<T> {
     private EntityManager entityManager;
 
     private transient EntityManager entityManagerUncloseable;
+
+    private transient EntityMetadata.Entry<T> entityMetadata;
 }
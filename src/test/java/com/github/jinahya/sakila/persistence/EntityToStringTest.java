@@ -0,0 +1,77 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing string representations built with {@link EntityToString}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class EntityToStringTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts associations are represented only with their entity names and ids.
+     */
+    @Test
+    void assertAssociationsRepresentedWithIds() {
+        final Customer customer = new Customer();
+        customer.setId(1);
+        customer.setFirstName("MARY");
+        final Staff staff = new Staff();
+        staff.setId(2);
+        staff.setPicture(new byte[1024]);
+        final Rental rental = new Rental();
+        rental.setId(3);
+        rental.setCustomer(customer);
+        rental.setStaff(staff);
+        final Payment payment = new Payment();
+        payment.setCustomer(customer);
+        payment.setStaff(staff);
+        payment.setRental(rental);
+        final String string = payment.toString();
+        log.debug("string: {}", string);
+        assertThat(string)
+                .contains("customer=Customer#1", "staff=Staff#2", "rental=Rental#3")
+                .doesNotContain("MARY", "picture");
+        assertThat(staff.toString()).contains("picture=byte[1024]");
+    }
+
+    /**
+     * Asserts a string representation doesn't fix the hash code of a transient entity.
+     */
+    @Test
+    void assertToStringDoesNotHash() {
+        final Country country1 = new Country();
+        log.debug("string: {}", country1);
+        country1.setId(1);
+        final Country country2 = new Country();
+        country2.setId(1);
+        assertThat(country1).isEqualTo(country2).hasSameHashCodeAs(country2);
+    }
+}
@@ -0,0 +1,560 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-memory bipartite graph of actors and films built from the {@value FilmActor#TABLE_NAME} table.
+ * <p>
+ * Both directions are stored as compressed sparse rows indexed by ids; the neighbours of a vertex are a sorted range
+ * of a single {@code int[]}. Edges added or removed afterwards, via {@link #add(int, int)} and {@link #remove(int,
+ * int)}, are kept in a small overlay and merged into new rows by {@link #compact()} when the overlay grows.
+ * <p>
+ * A graph may {@link #listen() listen} to {@link FilmActor} entities being persisted or removed, through {@link
+ * Listener} which is registered in {@code META-INF/orm.xml}; changes are applied once their transactions commit.
+ *
+ * @see AfterCommit
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class FilmActorGraph {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An entity listener notifies listening graphs of persisted or removed {@link FilmActor} entities after their
+     * transactions commit.
+     */
+    public static class Listener {
+
+        /**
+         * Creates a new instance.
+         */
+        public Listener() {
+            super();
+        }
+
+        @PostPersist
+        void postPersist(final FilmActor filmActor) {
+            final int actorId = filmActor.getActor().getId();
+            final int filmId = filmActor.getFilm().getId();
+            LISTENING.afterCommit(g -> g.add(actorId, filmId));
+        }
+
+        @PostRemove
+        void postRemove(final FilmActor filmActor) {
+            final int actorId = filmActor.getActor().getId();
+            final int filmId = filmActor.getFilm().getId();
+            LISTENING.afterCommit(g -> g.remove(actorId, filmId));
+        }
+    }
+
+    private static final Listening<FilmActorGraph> LISTENING = new Listening<>();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Compressed sparse rows of a single direction.
+     */
+    private static final class Rows {
+
+        private static Rows of(final int[] sources, final int[] targets, final int length) {
+            int max = -1;
+            for (int i = 0; i < length; i++) {
+                max = Math.max(max, sources[i]);
+            }
+            final int[] offsets = new int[max + 2];
+            for (int i = 0; i < length; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            final int[] neighbours = new int[length];
+            final int[] cursors = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < length; i++) {
+                neighbours[cursors[sources[i]]++] = targets[i];
+            }
+            for (int v = 0; v < offsets.length - 1; v++) {
+                Arrays.sort(neighbours, offsets[v], offsets[v + 1]);
+            }
+            return new Rows(offsets, neighbours);
+        }
+
+        private Rows(final int[] offsets, final int[] neighbours) {
+            super();
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+        }
+
+        int vertices() {
+            return offsets.length - 1;
+        }
+
+        private boolean has(final int v) {
+            return v >= 0 && v < vertices();
+        }
+
+        int from(final int v) {
+            return has(v) ? offsets[v] : 0;
+        }
+
+        int to(final int v) {
+            return has(v) ? offsets[v + 1] : 0;
+        }
+
+        boolean contains(final int v, final int w) {
+            return has(v) && Arrays.binarySearch(neighbours, offsets[v], offsets[v + 1], w) >= 0;
+        }
+
+        private final int[] offsets;
+
+        private final int[] neighbours;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The default number of overlaid edges which triggers {@link #compact()}. The value is {@value}.
+     */
+    static final int COMPACTION_THRESHOLD = 1024;
+
+    /**
+     * Loads a graph of all rows of {@value FilmActor#TABLE_NAME} table.
+     *
+     * @param entityManager an entity manager.
+     * @return a new graph.
+     */
+    static @NotNull FilmActorGraph load(@NotNull final EntityManager entityManager) {
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        final Root<FilmActor> root = criteria.from(FilmActor.class);
+        criteria.multiselect(root.get(FilmActor_.actor).get(BaseEntity_.id),
+                             root.get(FilmActor_.film).get(BaseEntity_.id));
+        final List<Tuple> tuples = entityManager.createQuery(criteria).getResultList();
+        final int[] actorIds = new int[tuples.size()];
+        final int[] filmIds = new int[tuples.size()];
+        for (int i = 0; i < actorIds.length; i++) {
+            actorIds[i] = (Integer) tuples.get(i).get(0);
+            filmIds[i] = (Integer) tuples.get(i).get(1);
+        }
+        log.debug("loaded {} edge(s)", actorIds.length);
+        return of(actorIds, filmIds);
+    }
+
+    /**
+     * Creates a new graph of specified edges.
+     *
+     * @param actorIds actor ids of edges.
+     * @param filmIds  film ids of edges; must be as long as {@code actorIds}.
+     * @return a new graph.
+     */
+    static @NotNull FilmActorGraph of(@NotNull final int[] actorIds, @NotNull final int[] filmIds) {
+        if (requireNonNull(actorIds, "actorIds is null").length != requireNonNull(filmIds, "filmIds is null").length) {
+            throw new IllegalArgumentException(
+                    "actorIds.length(" + actorIds.length + ") != filmIds.length(" + filmIds.length + ")");
+        }
+        return new FilmActorGraph(Rows.of(actorIds, filmIds, actorIds.length),
+                                  Rows.of(filmIds, actorIds, filmIds.length));
+    }
+
+    private static long edge(final int actorId, final int filmId) {
+        return ((long) actorId << 32) | (filmId & 0xFFFFFFFFL);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private FilmActorGraph(final Rows actorFilms, final Rows filmActors) {
+        super();
+        this.actorFilms = actorFilms;
+        this.filmActors = filmActors;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts listening to {@link FilmActor} entities being persisted or removed.
+     *
+     * @return this graph.
+     */
+    FilmActorGraph listen() {
+        LISTENING.add(this);
+        return this;
+    }
+
+    /**
+     * Stops listening to {@link FilmActor} entities being persisted or removed.
+     */
+    void unlisten() {
+        LISTENING.remove(this);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Adds an edge between specified actor and film.
+     *
+     * @param actorId the id of the actor.
+     * @param filmId  the id of the film.
+     * @return {@code true} if the edge has been added; {@code false} if already exists.
+     */
+    boolean add(@Positive final int actorId, @Positive final int filmId) {
+        lock.writeLock().lock();
+        try {
+            final long edge = edge(actorId, filmId);
+            if (removed.remove(edge)) {
+                return true;
+            }
+            if (actorFilms.contains(actorId, filmId) || !added.add(edge)) {
+                return false;
+            }
+            addedFilms.computeIfAbsent(actorId, k -> new HashSet<>()).add(filmId);
+            addedActors.computeIfAbsent(filmId, k -> new HashSet<>()).add(actorId);
+            compactIfNecessary();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the edge between specified actor and film.
+     *
+     * @param actorId the id of the actor.
+     * @param filmId  the id of the film.
+     * @return {@code true} if the edge has been removed; {@code false} if not exists.
+     */
+    boolean remove(@Positive final int actorId, @Positive final int filmId) {
+        lock.writeLock().lock();
+        try {
+            final long edge = edge(actorId, filmId);
+            if (added.remove(edge)) {
+                addedFilms.get(actorId).remove(filmId);
+                addedActors.get(filmId).remove(actorId);
+                return true;
+            }
+            if (!actorFilms.contains(actorId, filmId) || !removed.add(edge)) {
+                return false;
+            }
+            compactIfNecessary();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the overlay if it has grown over the threshold. The caller must hold the write lock.
+     */
+    private void compactIfNecessary() {
+        if (added.size() + removed.size() >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Merges all overlaid edges into new rows.
+     */
+    void compact() {
+        lock.writeLock().lock();
+        try {
+            final int[] actorIds = new int[edges()];
+            final int[] filmIds = new int[actorIds.length];
+            int length = 0;
+            for (int a = 0; a < actorFilms.vertices(); a++) {
+                for (int i = actorFilms.from(a); i < actorFilms.to(a); i++) {
+                    final int f = actorFilms.neighbours[i];
+                    if (!removed.contains(edge(a, f))) {
+                        actorIds[length] = a;
+                        filmIds[length++] = f;
+                    }
+                }
+            }
+            for (final long edge : added) {
+                actorIds[length] = (int) (edge >>> 32);
+                filmIds[length++] = (int) edge;
+            }
+            actorFilms = Rows.of(actorIds, filmIds, length);
+            filmActors = Rows.of(filmIds, actorIds, length);
+            log.debug("compacted {} added and {} removed edge(s)", added.size(), removed.size());
+            added.clear();
+            removed.clear();
+            addedFilms.clear();
+            addedActors.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of edges.
+     *
+     * @return the number of edges.
+     */
+    int edges() {
+        lock.readLock().lock();
+        try {
+            return actorFilms.neighbours.length + added.size() - removed.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of films of specified actor in ascending order.
+     *
+     * @param actorId the id of the actor.
+     * @return an array of film ids.
+     */
+    @NotNull int[] films(final int actorId) {
+        lock.readLock().lock();
+        try {
+            return neighbours(actorFilms, addedFilms, actorId, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of actors of specified film in ascending order.
+     *
+     * @param filmId the id of the film.
+     * @return an array of actor ids.
+     */
+    @NotNull int[] actors(final int filmId) {
+        lock.readLock().lock();
+        try {
+            return neighbours(filmActors, addedActors, filmId, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] neighbours(final Rows rows, final Map<Integer, Set<Integer>> overlay, final int v,
+                             final boolean actor) {
+        final Set<Integer> extra = overlay.get(v);
+        final int[] neighbours = new int[rows.to(v) - rows.from(v) + (extra == null ? 0 : extra.size())];
+        int length = 0;
+        for (int i = rows.from(v); i < rows.to(v); i++) {
+            final int w = rows.neighbours[i];
+            if (removed.isEmpty() || !removed.contains(actor ? edge(v, w) : edge(w, v))) {
+                neighbours[length++] = w;
+            }
+        }
+        if (extra != null) {
+            for (final int w : extra) {
+                neighbours[length++] = w;
+            }
+            Arrays.sort(neighbours, 0, length);
+        }
+        return length == neighbours.length ? neighbours : Arrays.copyOf(neighbours, length);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Finds one of the shortest chains of co-starring actors between specified actors.
+     *
+     * @param sourceActorId the id of the actor to start.
+     * @param targetActorId the id of the actor to reach.
+     * @return an array of actor ids starts with {@code sourceActorId} and ends with {@code targetActorId}; empty if
+     * unreachable.
+     */
+    @NotNull int[] shortestPath(final int sourceActorId, final int targetActorId) {
+        if (sourceActorId == targetActorId) {
+            return new int[] {sourceActorId};
+        }
+        lock.readLock().lock();
+        try {
+            final Map<Integer, Integer> parents = new HashMap<>();
+            parents.put(sourceActorId, sourceActorId);
+            final Set<Integer> visitedFilms = new HashSet<>();
+            final Queue<Integer> queue = new ArrayDeque<>();
+            queue.add(sourceActorId);
+            while (!queue.isEmpty()) {
+                final int actor = queue.remove();
+                for (final int film : neighbours(actorFilms, addedFilms, actor, true)) {
+                    if (!visitedFilms.add(film)) {
+                        continue;
+                    }
+                    for (final int costar : neighbours(filmActors, addedActors, film, false)) {
+                        if (parents.putIfAbsent(costar, actor) != null) {
+                            continue;
+                        }
+                        if (costar == targetActorId) {
+                            final ArrayDeque<Integer> path = new ArrayDeque<>();
+                            for (int v = costar; v != sourceActorId; v = parents.get(v)) {
+                                path.addFirst(v);
+                            }
+                            path.addFirst(sourceActorId);
+                            return path.stream().mapToInt(Integer::intValue).toArray();
+                        }
+                        queue.add(costar);
+                    }
+                }
+            }
+            return new int[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns, at most, {@code k} co-stars of specified actor ordered by the number of shared films in descending
+     * order and then by their ids in ascending order.
+     *
+     * @param actorId the id of the actor.
+     * @param k       the maximum number of co-stars.
+     * @return a map of co-star ids and their numbers of shared films.
+     */
+    @NotNull Map<Integer, Integer> topCostars(final int actorId, @PositiveOrZero final int k) {
+        final Map<Integer, Integer> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (final int film : neighbours(actorFilms, addedFilms, actorId, true)) {
+                for (final int costar : neighbours(filmActors, addedActors, film, false)) {
+                    if (costar != actorId) {
+                        counts.merge(costar, 1, Integer::sum);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        final Comparator<Map.Entry<Integer, Integer>> comparator
+                = Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        final PriorityQueue<Map.Entry<Integer, Integer>> heap = new PriorityQueue<>(comparator.reversed());
+        for (final Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            heap.add(entry);
+            if (heap.size() > k) {
+                heap.remove();
+            }
+        }
+        final List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(heap);
+        entries.sort(comparator);
+        final Map<Integer, Integer> top = new LinkedHashMap<>();
+        for (final Map.Entry<Integer, Integer> entry : entries) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return unmodifiableMap(top);
+    }
+
+    /**
+     * Returns the ids of actors reachable from specified actor within specified number of co-starring hops.
+     *
+     * @param actorId the id of the actor.
+     * @param hops    the maximum number of hops.
+     * @return a map of reachable actor ids, excluding {@code actorId}, and their distances, in ascending order of
+     * distances.
+     */
+    @NotNull Map<Integer, Integer> neighbourhood(final int actorId, @PositiveOrZero final int hops) {
+        lock.readLock().lock();
+        try {
+            final Map<Integer, Integer> distances = new LinkedHashMap<>();
+            distances.put(actorId, 0);
+            final Set<Integer> visitedFilms = new HashSet<>();
+            int[] frontier = {actorId};
+            for (int hop = 1; hop <= hops && frontier.length > 0; hop++) {
+                final Set<Integer> next = new HashSet<>();
+                for (final int actor : frontier) {
+                    for (final int film : neighbours(actorFilms, addedFilms, actor, true)) {
+                        if (!visitedFilms.add(film)) {
+                            continue;
+                        }
+                        for (final int costar : neighbours(filmActors, addedActors, film, false)) {
+                            if (distances.putIfAbsent(costar, hop) == null) {
+                                next.add(costar);
+                            }
+                        }
+                    }
+                }
+                frontier = next.stream().mapToInt(Integer::intValue).toArray();
+            }
+            distances.remove(actorId);
+            return unmodifiableMap(distances);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the number of overlaid edges which triggers {@link #compact()}.
+     *
+     * @param compactionThreshold new value for the threshold.
+     */
+    void setCompactionThreshold(@Positive final int compactionThreshold) {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("compactionThreshold(" + compactionThreshold + ") <= 0");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Rows actorFilms;
+
+    private Rows filmActors;
+
+    private final Set<Long> added = new HashSet<>();
+
+    private final Set<Long> removed = new HashSet<>();
+
+    private final Map<Integer, Set<Integer>> addedFilms = new HashMap<>();
+
+    private final Map<Integer, Set<Integer>> addedActors = new HashMap<>();
+
+    private volatile int compactionThreshold = COMPACTION_THRESHOLD;
+}
@@ -0,0 +1,69 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link FilmActorGraph} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class FilmActorGraphIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a loaded graph agrees with the {@value FilmActor#TABLE_NAME} table.
+     */
+    @Test
+    void assertLoaded() {
+        final FilmActorGraph graph = FilmActorGraph.load(entityManager);
+        final Number count = (Number) entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM " + FilmActor.TABLE_NAME)
+                .getSingleResult();
+        assertThat(graph.edges()).isEqualTo(count.intValue());
+        final int[] films = graph.films(1);
+        assertThat(films).isNotEmpty();
+        for (final int film : films) {
+            assertThat(graph.actors(film)).contains(1);
+        }
+        final int[] path = graph.shortestPath(1, 200);
+        log.debug("shortest path from 1 to 200: {}", path);
+        assertThat(path).startsWith(1).endsWith(200);
+        log.debug("top co-stars of 1: {}", graph.topCostars(1, 5));
+        log.debug("2-hop neighbourhood of 1: {}", graph.neighbourhood(1, 2).size());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,176 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * A class for testing {@link FilmActorGraph}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class FilmActorGraphTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a graph of following edges.
+     * <pre>
+     * film 10: actor 1, actor 2
+     * film 20: actor 2, actor 3
+     * film 30: actor 3, actor 4, actor 2
+     * film 40: actor 5
+     * </pre>
+     *
+     * @return a graph.
+     */
+    private static FilmActorGraph graph() {
+        return FilmActorGraph.of(new int[] {1, 2, 2, 3, 3, 4, 2, 5},
+                                 new int[] {10, 10, 20, 20, 30, 30, 30, 40});
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts neighbours of both directions.
+     */
+    @Test
+    void assertNeighbours() {
+        final FilmActorGraph graph = graph();
+        assertThat(graph.edges()).isEqualTo(8);
+        assertThat(graph.films(2)).containsExactly(10, 20, 30);
+        assertThat(graph.actors(30)).containsExactly(2, 3, 4);
+        assertThat(graph.films(6)).isEmpty();
+        assertThat(graph.actors(50)).isEmpty();
+        assertThat(graph.films(-1)).isEmpty();
+        assertThat(graph.actors(-1)).isEmpty();
+        assertThat(graph.remove(-1, 10)).isFalse();
+    }
+
+    /**
+     * Asserts {@link FilmActorGraph#shortestPath(int, int)} method.
+     */
+    @Test
+    void assertShortestPath() {
+        final FilmActorGraph graph = graph();
+        assertThat(graph.shortestPath(1, 1)).containsExactly(1);
+        assertThat(graph.shortestPath(1, 2)).containsExactly(1, 2);
+        assertThat(graph.shortestPath(1, 4)).containsExactly(1, 2, 4);
+        assertThat(graph.shortestPath(1, 5)).isEmpty();
+    }
+
+    /**
+     * Asserts {@link FilmActorGraph#topCostars(int, int)} method.
+     */
+    @Test
+    void assertTopCostars() {
+        final FilmActorGraph graph = graph();
+        assertThat(graph.topCostars(2, 2)).containsExactly(entry(3, 2), entry(1, 1));
+        assertThat(graph.topCostars(2, 0)).isEmpty();
+        assertThat(graph.topCostars(5, 3)).isEmpty();
+    }
+
+    /**
+     * Asserts {@link FilmActorGraph#neighbourhood(int, int)} method.
+     */
+    @Test
+    void assertNeighbourhood() {
+        final FilmActorGraph graph = graph();
+        assertThat(graph.neighbourhood(1, 0)).isEmpty();
+        assertThat(graph.neighbourhood(1, 1)).containsOnly(entry(2, 1));
+        assertThat(graph.neighbourhood(1, 2)).containsOnly(entry(2, 1), entry(3, 2), entry(4, 2));
+    }
+
+    /**
+     * Asserts edges added or removed incrementally, with and without compaction.
+     */
+    @Test
+    void assertIncremental() {
+        for (final boolean compact : new boolean[] {false, true}) {
+            final FilmActorGraph graph = graph();
+            assertThat(graph.add(5, 10)).isTrue();
+            assertThat(graph.add(5, 10)).isFalse();
+            assertThat(graph.remove(2, 20)).isTrue();
+            assertThat(graph.remove(2, 20)).isFalse();
+            assertThat(graph.add(7, 70)).isTrue();
+            assertThat(graph.remove(7, 70)).isTrue();
+            if (compact) {
+                graph.compact();
+            }
+            assertThat(graph.edges()).isEqualTo(8);
+            assertThat(graph.films(5)).containsExactly(10, 40);
+            assertThat(graph.films(2)).containsExactly(10, 30);
+            assertThat(graph.actors(10)).containsExactly(1, 2, 5);
+            assertThat(graph.actors(70)).isEmpty();
+            assertThat(graph.shortestPath(5, 4)).containsExactly(5, 2, 4);
+            assertThat(graph.topCostars(2, 4)).containsExactly(entry(1, 1), entry(3, 1), entry(4, 1), entry(5, 1));
+        }
+    }
+
+    /**
+     * Asserts the overlay is compacted when it reaches the threshold.
+     */
+    @Test
+    void assertCompactedWhenThresholdReached() {
+        final FilmActorGraph graph = graph();
+        graph.setCompactionThreshold(2);
+        graph.add(1, 20);
+        graph.add(1, 30);
+        graph.remove(1, 10);
+        assertThat(graph.films(1)).containsExactly(20, 30);
+        assertThat(graph.actors(10)).containsExactly(2);
+        assertThat(graph.edges()).isEqualTo(9);
+    }
+
+    /**
+     * Asserts the listener applies changes only when their transaction commits.
+     */
+    @Test
+    void assertListenerAppliesAfterCommit() {
+        final FilmActorGraph graph = graph().listen();
+        try {
+            final Actor actor = new Actor();
+            actor.setId(5);
+            final Film film = new Film();
+            film.setId(10);
+            final FilmActor filmActor = new FilmActor();
+            filmActor.setActor(actor);
+            filmActor.setFilm(film);
+            final FilmActorGraph.Listener listener = new FilmActorGraph.Listener();
+            AfterCommit.begun();
+            listener.postPersist(filmActor);
+            assertThat(graph.films(5)).containsExactly(40);
+            AfterCommit.rolledBack();
+            assertThat(graph.films(5)).containsExactly(40);
+            AfterCommit.begun();
+            listener.postPersist(filmActor);
+            AfterCommit.committed();
+            assertThat(graph.films(5)).containsExactly(10, 40);
+        } finally {
+            graph.unlisten();
+        }
+    }
+}
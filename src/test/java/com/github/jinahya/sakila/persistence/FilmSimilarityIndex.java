@@ -0,0 +1,564 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A precomputed index of similar films.
+ * <p>
+ * Each film is a sparse vector of features; the categories of the film, the actors of the film, and the customers who
+ * rented the film along with their rental counts. Features of each kind are normalized separately and weighted by
+ * {@link Kind#weight} so that a kind with many features, such as customers, doesn't drown out the others. Films are
+ * compared with the cosine similarity of their vectors, computed through an inverted index of features.
+ * <p>
+ * Modified films are only marked as dirty. {@link #recompute()}, which may be {@link #schedule(ScheduledExecutorService,
+ * EntityManagerFactory, long, TimeUnit) scheduled} in background along with {@link #refresh(EntityManager)}, recomputes
+ * neighbours of dirty films and films sharing any feature with them. {@link #similar(int)} only looks up the
+ * precomputed neighbours.
+ * <p>
+ * {@link #refresh(EntityManager)} feeds all changes of the database in; categories and actors of films are reread as a
+ * whole, since the tables are small, and applied as differences, while rentals are read incrementally by their ids and
+ * {@link BaseEntity#ATTRIBUTE_NAME_LAST_UPDATE last updates}, with deleted rentals detected by counting.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class FilmSimilarityIndex {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Kinds of features.
+     */
+    enum Kind {
+
+        /**
+         * Categories of films.
+         */
+        CATEGORY(1.0d),
+
+        /**
+         * Actors of films.
+         */
+        ACTOR(1.0d),
+
+        /**
+         * Customers who rented films.
+         */
+        CUSTOMER(2.0d);
+
+        Kind(final double weight) {
+            this.weight = weight;
+        }
+
+        long feature(final int id) {
+            return ((long) ordinal() << 32) | (id & 0xFFFFFFFFL);
+        }
+
+        /**
+         * The weight of this kind of features.
+         */
+        final double weight;
+    }
+
+    private static Kind kind(final long feature) {
+        return Kind.values()[(int) (feature >>> 32)];
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The default number of neighbours kept for each film. The value is {@value}.
+     */
+    static final int DEFAULT_NEIGHBOURS = 20;
+
+    private static final int[] NO_NEIGHBOURS = new int[0];
+
+    /**
+     * Loads an index of all films with categories, actors, and rentals.
+     *
+     * @param entityManager an entity manager.
+     * @param neighbours    the number of neighbours kept for each film.
+     * @return a new index.
+     */
+    static @NotNull FilmSimilarityIndex load(@NotNull final EntityManager entityManager,
+                                             @Positive final int neighbours) {
+        final FilmSimilarityIndex index = new FilmSimilarityIndex(neighbours);
+        index.refresh(entityManager);
+        index.recompute();
+        return index;
+    }
+
+    private static long pair(final int filmId, final int id) {
+        return ((long) filmId << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new empty instance.
+     *
+     * @param neighbours the number of neighbours kept for each film.
+     */
+    FilmSimilarityIndex(@Positive final int neighbours) {
+        super();
+        if (neighbours <= 0) {
+            throw new IllegalArgumentException("neighbours(" + neighbours + ") <= 0");
+        }
+        this.neighbours = neighbours;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Adds a feature to specified film and marks the film as dirty.
+     *
+     * @param filmId the id of the film.
+     * @param kind   the kind of the feature.
+     * @param id     the id of the feature, e.g. the id of a category.
+     */
+    void add(final int filmId, @NotNull final Kind kind, final int id) {
+        requireNonNull(kind, "kind is null");
+        synchronized (this) {
+            counts.computeIfAbsent(filmId, k -> new HashMap<>()).merge(kind.feature(id), 1, Integer::sum);
+            dirty.add(filmId);
+        }
+    }
+
+    /**
+     * Removes a feature from specified film and marks the film as dirty.
+     *
+     * @param filmId the id of the film.
+     * @param kind   the kind of the feature.
+     * @param id     the id of the feature.
+     */
+    void remove(final int filmId, @NotNull final Kind kind, final int id) {
+        requireNonNull(kind, "kind is null");
+        synchronized (this) {
+            final Map<Long, Integer> features = counts.get(filmId);
+            if (features != null) {
+                features.computeIfPresent(kind.feature(id), (k, v) -> v > 1 ? v - 1 : null);
+                if (features.isEmpty()) {
+                    counts.remove(filmId);
+                }
+            }
+            dirty.add(filmId);
+        }
+    }
+
+    /**
+     * Replaces all features of specified kind, of all films, with specified pairs of film ids and feature ids, marking
+     * only those films whose features differ as dirty.
+     *
+     * @param kind  the kind of features; either {@link Kind#CATEGORY} or {@link Kind#ACTOR}.
+     * @param pairs a set of film ids and feature ids, each packed as {@code filmId << 32 | id}.
+     * @return the number of features added or removed.
+     */
+    synchronized int replace(@NotNull final Kind kind, @NotNull final Set<Long> pairs) {
+        if (requireNonNull(kind, "kind is null") == Kind.CUSTOMER) {
+            throw new IllegalArgumentException("customers are fed by rentals");
+        }
+        requireNonNull(pairs, "pairs is null");
+        final Set<Long> existing = new HashSet<>();
+        counts.forEach((filmId, features) -> features.keySet().stream().filter(f -> kind(f) == kind)
+                .forEach(f -> existing.add(pair(filmId, (int) f.longValue()))));
+        int changed = 0;
+        for (final long pair : existing) {
+            if (!pairs.contains(pair)) {
+                remove((int) (pair >>> 32), kind, (int) pair);
+                changed++;
+            }
+        }
+        for (final long pair : pairs) {
+            if (!existing.contains(pair)) {
+                add((int) (pair >>> 32), kind, (int) pair);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Applies a new or an updated rental; the customer of the rental becomes a feature of the rented film.
+     *
+     * @param rentalId   the id of the rental.
+     * @param filmId     the id of the rented film.
+     * @param customerId the id of the customer.
+     * @return {@code true} if the index has changed; {@code false} if the rental was already applied as is.
+     */
+    synchronized boolean rented(final int rentalId, final int filmId, final int customerId) {
+        final long pair = pair(filmId, customerId);
+        final Long previous = rentals.put(rentalId, pair);
+        if (previous != null && previous == pair) {
+            return false;
+        }
+        if (previous != null) {
+            remove((int) (previous >>> 32), Kind.CUSTOMER, (int) previous.longValue());
+        }
+        add(filmId, Kind.CUSTOMER, customerId);
+        return true;
+    }
+
+    /**
+     * Applies a deleted rental.
+     *
+     * @param rentalId the id of the rental.
+     * @return {@code true} if the index has changed; {@code false} if the rental was unknown.
+     */
+    synchronized boolean unrented(final int rentalId) {
+        final Long previous = rentals.remove(rentalId);
+        if (previous == null) {
+            return false;
+        }
+        remove((int) (previous >>> 32), Kind.CUSTOMER, (int) previous.longValue());
+        return true;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Feeds all changes of categories, actors, and rentals of films in. Call {@link #recompute()} afterwards.
+     *
+     * @param entityManager an entity manager.
+     * @return the number of changes applied.
+     * @see #refreshFeatures(EntityManager)
+     * @see #refreshRentals(EntityManager)
+     */
+    int refresh(@NotNull final EntityManager entityManager) {
+        return refreshFeatures(entityManager) + refreshRentals(entityManager);
+    }
+
+    /**
+     * Rereads categories and actors of all films and applies differences.
+     *
+     * @param entityManager an entity manager.
+     * @return the number of features added or removed.
+     */
+    int refreshFeatures(@NotNull final EntityManager entityManager) {
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final Set<Long> categories = new HashSet<>();
+        {
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<FilmCategory> root = criteria.from(FilmCategory.class);
+            criteria.multiselect(root.get(FilmCategory_.film).get(BaseEntity_.id),
+                                 root.get(FilmCategory_.category).get(BaseEntity_.id));
+            for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+                categories.add(pair((Integer) tuple.get(0), (Integer) tuple.get(1)));
+            }
+        }
+        final Set<Long> actors = new HashSet<>();
+        {
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<FilmActor> root = criteria.from(FilmActor.class);
+            criteria.multiselect(root.get(FilmActor_.film).get(BaseEntity_.id),
+                                 root.get(FilmActor_.actor).get(BaseEntity_.id));
+            for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+                actors.add(pair((Integer) tuple.get(0), (Integer) tuple.get(1)));
+            }
+        }
+        final int changed = replace(Kind.CATEGORY, categories) + replace(Kind.ACTOR, actors);
+        log.debug("applied {} change(s) of categories and actors", changed);
+        return changed;
+    }
+
+    /**
+     * Reads rentals newer than, or updated since, the last read ones and applies them; then detects deleted rentals.
+     *
+     * @param entityManager an entity manager.
+     * @return the number of rentals applied.
+     */
+    int refreshRentals(@NotNull final EntityManager entityManager) {
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final int lastRentalId = this.lastRentalId;
+        final Date lastRentalUpdate = this.lastRentalUpdate;
+        int applied = 0;
+        {
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<Rental> root = criteria.from(Rental.class);
+            criteria.multiselect(root.get(BaseEntity_.id),
+                                 root.get(Rental_.inventory).get(Inventory_.film).get(BaseEntity_.id),
+                                 root.get(Rental_.customer).get(BaseEntity_.id),
+                                 root.get(BaseEntity_.lastUpdate));
+            criteria.where(lastRentalUpdate == null
+                           ? builder.greaterThan(root.get(BaseEntity_.id), lastRentalId)
+                           : builder.or(builder.greaterThan(root.get(BaseEntity_.id), lastRentalId),
+                                        // same-second updates are reread and skipped as already applied
+                                        builder.greaterThanOrEqualTo(root.get(BaseEntity_.lastUpdate),
+                                                                     lastRentalUpdate)));
+            criteria.orderBy(builder.asc(root.get(BaseEntity_.id)));
+            for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+                final int rentalId = (Integer) tuple.get(0);
+                if (rented(rentalId, (Integer) tuple.get(1), (Integer) tuple.get(2))) {
+                    applied++;
+                }
+                this.lastRentalId = Math.max(this.lastRentalId, rentalId);
+                final Date lastUpdate = (Date) tuple.get(3);
+                if (lastUpdate != null
+                    && (this.lastRentalUpdate == null || lastUpdate.after(this.lastRentalUpdate))) {
+                    this.lastRentalUpdate = lastUpdate;
+                }
+            }
+        }
+        final int known;
+        synchronized (this) {
+            known = rentals.size();
+        }
+        final CriteriaQuery<Long> counting = builder.createQuery(Long.class);
+        final Root<Rental> counted = counting.from(Rental.class);
+        counting.select(builder.count(counted));
+        counting.where(builder.lessThanOrEqualTo(counted.get(BaseEntity_.id), this.lastRentalId));
+        if (entityManager.createQuery(counting).getSingleResult() < known) {
+            final CriteriaQuery<Integer> criteria = builder.createQuery(Integer.class);
+            final Root<Rental> root = criteria.from(Rental.class);
+            criteria.select(root.get(BaseEntity_.id));
+            criteria.where(builder.lessThanOrEqualTo(root.get(BaseEntity_.id), this.lastRentalId));
+            final Set<Integer> existing = new HashSet<>(entityManager.createQuery(criteria).getResultList());
+            final List<Integer> deleted;
+            synchronized (this) {
+                deleted = rentals.keySet().stream().filter(i -> !existing.contains(i)).collect(Collectors.toList());
+            }
+            for (final int rentalId : deleted) {
+                if (unrented(rentalId)) {
+                    applied++;
+                }
+            }
+        }
+        log.debug("applied {} rental(s) up to {}, updated since {}", applied, this.lastRentalId,
+                  this.lastRentalUpdate);
+        return applied;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Recomputes vectors of dirty films and neighbours of films affected by them.
+     *
+     * @return the number of films whose neighbours have been recomputed.
+     */
+    synchronized int recompute() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        final Set<Integer> affected = new HashSet<>(dirty);
+        for (final int filmId : dirty) {
+            final Map<Long, Double> old = vectors.remove(filmId);
+            if (old != null) {
+                for (final Long feature : old.keySet()) {
+                    final Map<Integer, Double> posting = postings.get(feature);
+                    posting.remove(filmId);
+                    affected.addAll(posting.keySet());
+                    if (posting.isEmpty()) {
+                        postings.remove(feature);
+                    }
+                }
+            }
+            final Map<Long, Double> vector = vector(counts.get(filmId));
+            if (vector.isEmpty()) {
+                similar.remove(filmId);
+                continue;
+            }
+            vectors.put(filmId, vector);
+            for (final Map.Entry<Long, Double> entry : vector.entrySet()) {
+                final Map<Integer, Double> posting = postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>());
+                affected.addAll(posting.keySet());
+                posting.put(filmId, entry.getValue());
+            }
+        }
+        dirty.clear();
+        int recomputed = 0;
+        for (final int filmId : affected) {
+            if (vectors.containsKey(filmId)) {
+                similar.put(filmId, neighbours(filmId));
+                recomputed++;
+            }
+        }
+        log.debug("recomputed neighbours of {} film(s)", recomputed);
+        return recomputed;
+    }
+
+    private static Map<Long, Double> vector(final Map<Long, Integer> counts) {
+        if (counts == null || counts.isEmpty()) {
+            return new HashMap<>();
+        }
+        final double[] norms = new double[Kind.values().length];
+        counts.forEach((k, v) -> norms[kind(k).ordinal()] += (double) v * v);
+        double norm = 0.0d;
+        for (final Kind kind : Kind.values()) {
+            if (norms[kind.ordinal()] > 0.0d) {
+                norm += kind.weight * kind.weight;
+            }
+        }
+        norm = Math.sqrt(norm);
+        final Map<Long, Double> vector = new HashMap<>(counts.size() * 2);
+        for (final Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            final Kind kind = kind(entry.getKey());
+            vector.put(entry.getKey(), kind.weight * entry.getValue() / Math.sqrt(norms[kind.ordinal()]) / norm);
+        }
+        return vector;
+    }
+
+    private int[] neighbours(final int filmId) {
+        final Map<Integer, Double> scores = new HashMap<>();
+        for (final Map.Entry<Long, Double> entry : vectors.get(filmId).entrySet()) {
+            final double weight = entry.getValue();
+            postings.get(entry.getKey()).forEach((k, v) -> {
+                if (k != filmId) {
+                    scores.merge(k, weight * v, Double::sum);
+                }
+            });
+        }
+        final int[] ids = new int[scores.size()];
+        final double[] values = new double[ids.length];
+        int size = 0;
+        for (final Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            // insertion into a bounded array sorted by score descending and id ascending
+            final int id = entry.getKey();
+            final double score = entry.getValue();
+            int i = Math.min(size, neighbours);
+            while (i > 0 && (values[i - 1] < score || (values[i - 1] == score && ids[i - 1] > id))) {
+                if (i < neighbours) {
+                    ids[i] = ids[i - 1];
+                    values[i] = values[i - 1];
+                }
+                i--;
+            }
+            if (i < neighbours) {
+                ids[i] = id;
+                values[i] = score;
+                size = Math.min(size + 1, neighbours);
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the ids of films most similar to specified film, in descending order of similarity.
+     *
+     * @param filmId the id of the film.
+     * @return an array of, at most, {@link #neighbours} film ids; empty if unknown or not computed yet.
+     */
+    @NotNull int[] similar(final int filmId) {
+        return similar.getOrDefault(filmId, NO_NEIGHBOURS).clone();
+    }
+
+    /**
+     * Returns the cosine similarity between specified films as of the last {@link #recompute()}.
+     *
+     * @param filmId1 the id of the first film.
+     * @param filmId2 the id of the second film.
+     * @return the cosine similarity between {@code filmId1} and {@code filmId2}.
+     */
+    synchronized double similarity(final int filmId1, final int filmId2) {
+        final Map<Long, Double> vector1 = vectors.get(filmId1);
+        final Map<Long, Double> vector2 = vectors.get(filmId2);
+        if (vector1 == null || vector2 == null) {
+            return 0.0d;
+        }
+        double similarity = 0.0d;
+        for (final Map.Entry<Long, Double> entry : vector1.entrySet()) {
+            similarity += entry.getValue() * vector2.getOrDefault(entry.getKey(), 0.0d);
+        }
+        return similarity;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Schedules {@link #refresh(EntityManager) feeding changes in} and recomputing affected films at a fixed rate.
+     *
+     * @param executor             the executor to schedule on.
+     * @param entityManagerFactory an entity manager factory for reading rentals.
+     * @param period               the period between runs.
+     * @param unit                 the time unit of {@code period}.
+     * @return a future of the scheduled task.
+     */
+    ScheduledFuture<?> schedule(@NotNull final ScheduledExecutorService executor,
+                                @NotNull final EntityManagerFactory entityManagerFactory,
+                                @Positive final long period, @NotNull final TimeUnit unit) {
+        requireNonNull(entityManagerFactory, "entityManagerFactory is null");
+        return executor.scheduleAtFixedRate(() -> {
+            try {
+                final EntityManager entityManager = entityManagerFactory.createEntityManager();
+                try {
+                    refresh(entityManager);
+                } finally {
+                    entityManager.close();
+                }
+                recompute();
+            } catch (final RuntimeException re) {
+                log.error("failed to refresh", re);
+            }
+        }, period, period, unit);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of neighbours kept for each film.
+     */
+    final int neighbours;
+
+    private final Map<Integer, Map<Long, Integer>> counts = new HashMap<>();
+
+    private final Set<Integer> dirty = new HashSet<>();
+
+    private final Map<Integer, Map<Long, Double>> vectors = new HashMap<>();
+
+    private final Map<Long, Map<Integer, Double>> postings = new HashMap<>();
+
+    private final Map<Integer, int[]> similar = new ConcurrentHashMap<>();
+
+    /**
+     * Applied rentals and their film ids and customer ids, each packed as {@code filmId << 32 | customerId}.
+     */
+    private final Map<Integer, Long> rentals = new HashMap<>();
+
+    private volatile int lastRentalId;
+
+    private volatile Date lastRentalUpdate;
+}
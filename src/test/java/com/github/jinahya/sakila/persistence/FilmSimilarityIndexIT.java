@@ -0,0 +1,64 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link FilmSimilarityIndex} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class FilmSimilarityIndexIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a loaded index keeps {@value FilmSimilarityIndex#DEFAULT_NEIGHBOURS} neighbours for films.
+     */
+    @Test
+    void assertLoaded() {
+        final FilmSimilarityIndex index
+                = FilmSimilarityIndex.load(entityManager, FilmSimilarityIndex.DEFAULT_NEIGHBOURS);
+        final int[] similar = index.similar(1);
+        log.debug("similar to 1: {}", similar);
+        assertThat(similar).hasSize(FilmSimilarityIndex.DEFAULT_NEIGHBOURS).doesNotContain(1);
+        for (int i = 1; i < similar.length; i++) {
+            assertThat(index.similarity(1, similar[i - 1])).isGreaterThanOrEqualTo(index.similarity(1, similar[i]));
+        }
+        assertThat(index.refresh(entityManager)).isZero();
+        assertThat(index.recompute()).isZero();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
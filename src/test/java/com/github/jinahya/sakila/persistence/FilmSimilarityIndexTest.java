@@ -0,0 +1,154 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.github.jinahya.sakila.persistence.FilmSimilarityIndex.Kind.ACTOR;
+import static com.github.jinahya.sakila.persistence.FilmSimilarityIndex.Kind.CATEGORY;
+import static com.github.jinahya.sakila.persistence.FilmSimilarityIndex.Kind.CUSTOMER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * A class for testing {@link FilmSimilarityIndex}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class FilmSimilarityIndexTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an index of following films.
+     * <pre>
+     * film 1: category 1, actor 1, actor 2, customer 1
+     * film 2: category 1, actor 1, actor 2, customer 1
+     * film 3: category 1, actor 3
+     * film 4: category 2, actor 4
+     * </pre>
+     *
+     * @return an index.
+     */
+    private static FilmSimilarityIndex index() {
+        final FilmSimilarityIndex index = new FilmSimilarityIndex(2);
+        for (final int film : new int[] {1, 2}) {
+            index.add(film, CATEGORY, 1);
+            index.add(film, ACTOR, 1);
+            index.add(film, ACTOR, 2);
+            index.add(film, CUSTOMER, 1);
+        }
+        index.add(3, CATEGORY, 1);
+        index.add(3, ACTOR, 3);
+        index.add(4, CATEGORY, 2);
+        index.add(4, ACTOR, 4);
+        return index;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts similarities and neighbours.
+     */
+    @Test
+    void assertSimilar() {
+        final FilmSimilarityIndex index = index();
+        assertThat(index.similar(1)).isEmpty();
+        assertThat(index.recompute()).isEqualTo(4);
+        assertThat(index.recompute()).isZero();
+        assertThat(index.similarity(1, 2)).isCloseTo(1.0d, within(1.0e-9d));
+        assertThat(index.similarity(1, 1)).isCloseTo(1.0d, within(1.0e-9d));
+        assertThat(index.similarity(1, 4)).isZero();
+        assertThat(index.similar(1)).containsExactly(2, 3);
+        assertThat(index.similar(3)).containsExactly(1, 2);
+        assertThat(index.similar(4)).isEmpty();
+        assertThat(index.similar(5)).isEmpty();
+    }
+
+    /**
+     * Asserts only affected films are recomputed.
+     */
+    @Test
+    void assertRecomputedIncrementally() {
+        final FilmSimilarityIndex index = index();
+        index.recompute();
+        index.add(4, CUSTOMER, 1);
+        assertThat(index.recompute()).isEqualTo(3); // 4, and 1, 2 sharing customer 1
+        assertThat(index.similar(4)).containsExactly(1, 2);
+        assertThat(index.similar(1)).containsExactly(2, 4);
+        index.remove(4, CUSTOMER, 1);
+        index.recompute();
+        assertThat(index.similar(4)).isEmpty();
+        assertThat(index.similar(1)).containsExactly(2, 3);
+        index.remove(3, CATEGORY, 1);
+        index.remove(3, ACTOR, 3);
+        index.recompute();
+        assertThat(index.similar(3)).isEmpty();
+        assertThat(index.similar(2)).containsExactly(1);
+    }
+
+    /**
+     * Asserts replaced categories and actors mark only changed films as dirty.
+     */
+    @Test
+    void assertReplace() {
+        final FilmSimilarityIndex index = index();
+        index.recompute();
+        final Set<Long> categories = new HashSet<>();
+        for (final int film : new int[] {1, 2, 3}) {
+            categories.add((long) film << 32 | 1);
+        }
+        categories.add(4L << 32 | 1); // film 4; category 2 -> 1
+        assertThat(index.replace(CATEGORY, categories)).isEqualTo(2);
+        assertThat(index.recompute()).isEqualTo(4);
+        assertThat(index.similar(4)).containsExactly(3, 1);
+        assertThat(index.replace(CATEGORY, categories)).isZero();
+        assertThat(index.recompute()).isZero();
+        assertThatThrownBy(() -> index.replace(CUSTOMER, categories)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts updated and deleted rentals move and remove their customers.
+     */
+    @Test
+    void assertRentals() {
+        final FilmSimilarityIndex index = index();
+        index.recompute();
+        assertThat(index.rented(100, 3, 1)).isTrue();
+        assertThat(index.rented(100, 3, 1)).isFalse();
+        index.recompute();
+        assertThat(index.similarity(3, 1)).isGreaterThan(index.similarity(3, 4));
+        assertThat(index.rented(100, 4, 1)).isTrue(); // updated; from film 3 to film 4
+        index.recompute();
+        assertThat(index.similar(4)).containsExactly(1, 2);
+        assertThat(index.unrented(100)).isTrue();
+        assertThat(index.unrented(100)).isFalse();
+        index.recompute();
+        assertThat(index.similar(4)).isEmpty();
+        assertThat(index.similar(3)).containsExactly(1, 2);
+    }
+}
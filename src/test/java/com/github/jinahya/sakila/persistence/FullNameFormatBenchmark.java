@@ -0,0 +1,146 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark for measuring the cost of formatting full names of a list of {@link Customer customers}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+@Slf4j
+public class FullNameFormatBenchmark {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args command line arguments.
+     * @throws RunnerException if failed to run.
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FullNameFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static String name(final Random random) {
+        final char[] name = new char[3 + random.nextInt(10)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Trial)
+    public void populateCustomers() {
+        final Random random = new Random(0L);
+        customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final Customer customer = new Customer();
+            customer.setFirstName(name(random));
+            customer.setLastName(name(random));
+            customers.add(customer);
+        }
+        builder = new StringBuilder(size * 32);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Formats each full name with string concatenation, as {@link FullNameFormatter} used to do.
+     *
+     * @param blackhole a black hole.
+     */
+    @Benchmark
+    public void concatenate(final Blackhole blackhole) {
+        for (final Customer customer : customers) {
+            blackhole.consume(customer.getLastName() + ", " + customer.getFirstName());
+        }
+    }
+
+    /**
+     * Appends all full names, one per line, into a single reused builder.
+     *
+     * @return the length of the list.
+     */
+    @Benchmark
+    public int appendTo() {
+        builder.setLength(0);
+        for (final Customer customer : customers) {
+            FullNameFormatter.LAST_NAME_FIRST.appendTo(builder, customer, ", ").append('\n');
+        }
+        return builder.length();
+    }
+
+    /**
+     * Gets each full name cached by each customer.
+     *
+     * @param blackhole a black hole.
+     */
+    @Benchmark
+    public void cached(final Blackhole blackhole) {
+        for (final Customer customer : customers) {
+            blackhole.consume(customer.getFullName(FullNameFormatter.LAST_NAME_FIRST, ", "));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of customers; as many as in the {@code customer} table.
+     */
+    @Param({"599"})
+    public int size;
+
+    private List<Customer> customers;
+
+    private StringBuilder builder;
+}
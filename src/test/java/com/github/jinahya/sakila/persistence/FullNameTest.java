@@ -20,9 +20,54 @@ package com.github.jinahya.sakila.persistence;
  * #L%
  */
 
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 /**
  * A class for testing {@link FullName}.
  */
 class FullNameTest {
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts both formatters append as they format.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertAppendTo() throws IOException {
+        final FullName fullName = FullName.of("PENELOPE", "GUINESS");
+        final StringBuilder builder = new StringBuilder("<");
+        assertThat(FullNameFormatter.LAST_NAME_FIRST.appendTo(builder, fullName, ", ")).isSameAs(builder);
+        assertThat(builder).hasToString("<GUINESS, PENELOPE");
+        assertThat(FullNameFormatter.FIRST_NAME_FIRST.appendTo(new StringWriter(), fullName, " ").toString())
+                .isEqualTo(FullNameFormatter.FIRST_NAME_FIRST.format(fullName, " "))
+                .isEqualTo("PENELOPE GUINESS");
+    }
+
+    /**
+     * Asserts the formatted full name is cached until either name, the formatter or the delimiter changes.
+     */
+    @Test
+    void assertGetFullNameCached() {
+        final FullName fullName = FullName.of("PENELOPE", "GUINESS");
+        final String formatted = fullName.getFullName(FullNameFormatter.FIRST_NAME_FIRST, " ");
+        assertThat(fullName.getFullName(FullNameFormatter.FIRST_NAME_FIRST, " ")).isSameAs(formatted);
+        assertThat(fullName.getFullName(FullNameFormatter.LAST_NAME_FIRST, " ")).isEqualTo("GUINESS PENELOPE");
+        assertThat(fullName.getFullName(FullNameFormatter.LAST_NAME_FIRST, ", ")).isEqualTo("GUINESS, PENELOPE");
+        fullName.setLastName("CRUZ");
+        assertThat(fullName.getFullName(FullNameFormatter.LAST_NAME_FIRST, ", ")).isEqualTo("CRUZ, PENELOPE");
+        final Customer customer = new Customer();
+        customer.setFirstName("MARY");
+        customer.setLastName("SMITH");
+        assertThat(customer.getFullName(FullNameFormatter.FIRST_NAME_FIRST, " "))
+                .isSameAs(customer.getFullName(FullNameFormatter.FIRST_NAME_FIRST, " "));
+        customer.setFirstName("MARIE");
+        assertThat(customer.getFullName(FullNameFormatter.FIRST_NAME_FIRST, " ")).isEqualTo("MARIE SMITH");
+    }
 }
@@ -0,0 +1,599 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import javax.persistence.RollbackException;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-memory reservation layer of in-stock {@link Inventory inventories}.
+ * <p>
+ * Each (store, film) pair has a lock-free free-list of ids of in-stock inventories and a striped counter of them.
+ * {@link #claim(int, int) Claiming} a copy pops an id with a compare-and-set, rather than selecting the inventory
+ * {@code FOR UPDATE}, so clerks renting the same film at the same store never block each other. {@link
+ * #reserve(int, int, int, int, LocalDateTime) Reserved} copies are queued and {@link #flush(EntityManager, int)
+ * flushed}, in batches, as {@link Rental rentals}. As clerks are told a reserved copy is theirs, a copy which fails to
+ * be rented is queued again, up to {@value #MAX_ATTEMPTS} attempts, and then kept, still claimed, as a {@link
+ * #failures() failure}.
+ * <p>
+ * A reservation may {@link #listen() listen} to rentals, through {@link Listener} registered in {@code
+ * META-INF/orm.xml}; copies rented outside the reservation are taken out of stock once their rentals commit, and
+ * copies claimed, or loaded as rented, are released once their returns commit.
+ *
+ * @see AfterCommit
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class InventoryReservation {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A value indicates no copy is available. The value is {@value}.
+     */
+    static final int NONE = -1;
+
+    /**
+     * The maximum number of attempts to rent a reserved copy. The value is {@value}.
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A node of a free-list; never reused, hence no ABA.
+     */
+    private static final class Node {
+
+        private Node(final int inventoryId, final Node next) {
+            super();
+            this.inventoryId = inventoryId;
+            this.next = next;
+        }
+
+        private final int inventoryId;
+
+        private final Node next;
+    }
+
+    /**
+     * Copies of a film at a store.
+     */
+    private static final class Pool {
+
+        private int pop() {
+            for (Node h; (h = head.get()) != null; ) {
+                if (head.compareAndSet(h, h.next)) {
+                    available.decrement();
+                    return h.inventoryId;
+                }
+            }
+            return NONE;
+        }
+
+        /**
+         * Removes a node of specified inventory id by replacing nodes preceding it; pools hold only a few copies.
+         */
+        private boolean remove(final int inventoryId) {
+            for (Node h; ; ) {
+                final List<Node> preceding = new ArrayList<>();
+                Node n = h = head.get();
+                for (; n != null && n.inventoryId != inventoryId; n = n.next) {
+                    preceding.add(n);
+                }
+                if (n == null) {
+                    return false;
+                }
+                Node removed = n.next;
+                for (int i = preceding.size() - 1; i >= 0; i--) {
+                    removed = new Node(preceding.get(i).inventoryId, removed);
+                }
+                if (head.compareAndSet(h, removed)) {
+                    available.decrement();
+                    return true;
+                }
+            }
+        }
+
+        private void push(final int inventoryId) {
+            for (Node h; ; ) {
+                if (head.compareAndSet(h = head.get(), new Node(inventoryId, h))) {
+                    available.increment();
+                    return;
+                }
+            }
+        }
+
+        private final AtomicReference<Node> head = new AtomicReference<>();
+
+        private final LongAdder available = new LongAdder();
+    }
+
+    /**
+     * A reserved copy to be rented.
+     */
+    static final class Claim {
+
+        private Claim(final int storeId, final int filmId, final int inventoryId, final int customerId,
+                      final int staffId, final LocalDateTime rentalDate) {
+            super();
+            this.storeId = storeId;
+            this.filmId = filmId;
+            this.inventoryId = inventoryId;
+            this.customerId = customerId;
+            this.staffId = staffId;
+            this.rentalDate = rentalDate;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "storeId=" + storeId
+                   + ",filmId=" + filmId
+                   + ",inventoryId=" + inventoryId
+                   + ",customerId=" + customerId
+                   + ",staffId=" + staffId
+                   + ",rentalDate=" + rentalDate
+                   + "}";
+        }
+
+        /**
+         * Returns a new rental of this claim whose associations are references of specified entity manager.
+         *
+         * @param entityManager the entity manager.
+         * @return a new rental.
+         */
+        Rental toRental(final EntityManager entityManager) {
+            final Rental rental = new Rental();
+            rental.setInventory(entityManager.getReference(Inventory.class, inventoryId));
+            rental.setCustomer(entityManager.getReference(Customer.class, customerId));
+            rental.setStaff(entityManager.getReference(Staff.class, staffId));
+            rental.setRentalDate(rentalDate);
+            return rental;
+        }
+
+        final int storeId;
+
+        final int filmId;
+
+        final int inventoryId;
+
+        final int customerId;
+
+        final int staffId;
+
+        final LocalDateTime rentalDate;
+
+        private int attempts;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An entity listener takes copies of rentals out of stock, or releases copies of returned rentals, after their
+     * transactions commit.
+     */
+    public static class Listener implements RentalReturnListener {
+
+        /**
+         * Creates a new instance.
+         */
+        public Listener() {
+            super();
+        }
+
+        @Override
+        public void returned(@NotNull final Rental rental) {
+            final int inventoryId = rental.getInventory().getId();
+            LISTENING.afterCommit(r -> r.returned(inventoryId));
+        }
+
+        @PostPersist
+        @PostUpdate
+        void postPersistOrUpdate(final Rental rental) {
+            if (rental.getReturnDate() != null) {
+                returned(rental);
+                return;
+            }
+            final int inventoryId = rental.getInventory().getId();
+            LISTENING.afterCommit(r -> r.rented(inventoryId));
+        }
+    }
+
+    private static final Listening<InventoryReservation> LISTENING = new Listening<>();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static long key(final int storeId, final int filmId) {
+        return ((long) storeId << Integer.SIZE) | (filmId & 0xFFFFFFFFL);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads a reservation of all in-stock inventories; those without any rental not yet returned.
+     *
+     * @param entityManager an entity manager.
+     * @return a new reservation.
+     */
+    static @NotNull InventoryReservation load(@NotNull final EntityManager entityManager) {
+        final InventoryReservation reservation = new InventoryReservation();
+        try (Stream<Tuple> stream = inventories(entityManager, false)) {
+            stream.forEach(t -> reservation.release((Integer) t.get(0), (Integer) t.get(1), (Integer) t.get(2)));
+        }
+        try (Stream<Tuple> stream = inventories(entityManager, true)) {
+            stream.forEach(t -> {
+                final long key = key((Integer) t.get(0), (Integer) t.get(1));
+                reservation.keys.put((Integer) t.get(2), key);
+                reservation.out.put((Integer) t.get(2), key);
+            });
+        }
+        log.debug("loaded {} pool(s) and {} rented copies", reservation.pools.size(), reservation.out.size());
+        return reservation;
+    }
+
+    /**
+     * Streams store ids, film ids and ids of inventories with, or without, any rental not yet returned.
+     */
+    private static Stream<Tuple> inventories(final EntityManager entityManager, final boolean rented) {
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        final Root<Inventory> inventory = criteria.from(Inventory.class);
+        final Subquery<Integer> open = criteria.subquery(Integer.class);
+        final Root<Rental> rental = open.from(Rental.class);
+        open.select(rental.get(BaseEntity_.id));
+        open.where(builder.equal(rental.get(Rental_.inventory), inventory),
+                   builder.isNull(rental.get(Rental_.returnDate)));
+        criteria.multiselect(inventory.get(Inventory_.store).get(BaseEntity_.id),
+                             inventory.get(Inventory_.film).get(BaseEntity_.id),
+                             inventory.get(BaseEntity_.id));
+        criteria.where(rented ? builder.exists(open) : builder.not(builder.exists(open)));
+        return entityManager.createQuery(criteria).getResultStream();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new empty instance.
+     */
+    InventoryReservation() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts listening to rentals being made or returned.
+     *
+     * @return this reservation.
+     */
+    InventoryReservation listen() {
+        LISTENING.add(this);
+        return this;
+    }
+
+    /**
+     * Stops listening to rentals being made or returned.
+     */
+    void unlisten() {
+        LISTENING.remove(this);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Claims an in-stock copy of specified film at specified store.
+     *
+     * @param storeId the id of the store.
+     * @param filmId  the id of the film.
+     * @return the id of the claimed inventory; {@link #NONE} if no copy is available.
+     */
+    int claim(final int storeId, final int filmId) {
+        final long key = key(storeId, filmId);
+        final Pool pool = pools.get(key);
+        final int inventoryId = pool == null ? NONE : pool.pop();
+        if (inventoryId != NONE) {
+            out.put(inventoryId, key);
+        }
+        return inventoryId;
+    }
+
+    /**
+     * Releases, or adds, an inventory of specified id as an in-stock copy of specified film at specified store.
+     *
+     * @param storeId     the id of the store.
+     * @param filmId      the id of the film.
+     * @param inventoryId the id of the inventory.
+     */
+    void release(final int storeId, final int filmId, final int inventoryId) {
+        final long key = key(storeId, filmId);
+        keys.put(inventoryId, key);
+        out.remove(inventoryId);
+        pools.computeIfAbsent(key, k -> new Pool()).push(inventoryId);
+    }
+
+    /**
+     * Takes the copy of specified inventory out of stock as it's rented outside this reservation; does nothing unless
+     * the copy is in stock. The copy is released when its rental is {@link #returned(int) returned}.
+     *
+     * @param inventoryId the id of the inventory.
+     * @return {@code true} if the copy is taken out of stock; {@code false} otherwise.
+     */
+    boolean rented(final int inventoryId) {
+        final Long key = keys.get(inventoryId);
+        final Pool pool = key == null ? null : pools.get(key);
+        if (pool == null || !pool.remove(inventoryId)) {
+            return false;
+        }
+        out.put(inventoryId, key);
+        return true;
+    }
+
+    /**
+     * Releases the copy of specified inventory as its rental is returned; does nothing unless the copy has been
+     * claimed, or loaded as rented, and not yet released.
+     *
+     * @param inventoryId the id of the inventory.
+     * @return {@code true} if the copy is released; {@code false} otherwise.
+     */
+    boolean returned(final int inventoryId) {
+        final Long key = out.remove(inventoryId);
+        if (key == null) {
+            return false;
+        }
+        pools.computeIfAbsent(key, k -> new Pool()).push(inventoryId);
+        return true;
+    }
+
+    /**
+     * Returns the number of in-stock copies of specified film at specified store.
+     *
+     * @param storeId the id of the store.
+     * @param filmId  the id of the film.
+     * @return the number of in-stock copies.
+     */
+    long available(final int storeId, final int filmId) {
+        final Pool pool = pools.get(key(storeId, filmId));
+        return pool == null ? 0L : pool.available.sum();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Claims an in-stock copy of specified film at specified store and queues it to be rented.
+     *
+     * @param storeId    the id of the store.
+     * @param filmId     the id of the film.
+     * @param customerId the id of the customer renting.
+     * @param staffId    the id of the staff processing.
+     * @param rentalDate the rental date.
+     * @return the id of the reserved inventory; {@link #NONE} if no copy is available.
+     */
+    int reserve(final int storeId, final int filmId, final int customerId, final int staffId,
+                @NotNull final LocalDateTime rentalDate) {
+        requireNonNull(rentalDate, "rentalDate is null");
+        final int inventoryId = claim(storeId, filmId);
+        if (inventoryId != NONE) {
+            pending.add(new Claim(storeId, filmId, inventoryId, customerId, staffId, rentalDate));
+        }
+        return inventoryId;
+    }
+
+    /**
+     * Returns the number of reserved copies not yet flushed.
+     *
+     * @return the number of reserved copies not yet flushed.
+     */
+    int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of reserved copies failed to be rented {@value #MAX_ATTEMPTS} times.
+     *
+     * @return the number of failed copies.
+     */
+    int failed() {
+        return failed.size();
+    }
+
+    /**
+     * Removes and returns reserved copies failed to be rented {@value #MAX_ATTEMPTS} times. The copies stay claimed;
+     * the caller is expected to notify the clerks and {@link #release(int, int, int) release} them.
+     *
+     * @return a list of failed copies.
+     */
+    List<Claim> failures() {
+        final List<Claim> claims = new ArrayList<>();
+        for (Claim claim; (claim = failed.poll()) != null; ) {
+            claims.add(claim);
+        }
+        return claims;
+    }
+
+    /**
+     * Persists, at most, specified number of reserved copies as rentals, in the transaction of specified entity
+     * manager. When persisting fails, the copies are queued again, or kept as failures, and the failure is rethrown.
+     * When the transaction rolls back, as {@link AfterCommit#compensate(Runnable)} notices, the copies are, likewise,
+     * queued again or kept as failures.
+     *
+     * @param entityManager the entity manager.
+     * @param maxResults    the maximum number of reserved copies to persist.
+     * @return a list of persisted rentals.
+     */
+    List<Rental> flush(@NotNull final EntityManager entityManager, final int maxResults) {
+        requireNonNull(entityManager, "entityManager is null");
+        final List<Claim> claims = drain(maxResults);
+        final List<Rental> rentals;
+        try {
+            rentals = persist(entityManager, claims);
+        } catch (final RuntimeException re) {
+            claims.forEach(c -> retry(c, re));
+            throw re;
+        }
+        if (!claims.isEmpty()) {
+            AfterCommit.compensate(() -> {
+                final RollbackException cause = new RollbackException("rolled back");
+                claims.forEach(c -> retry(c, cause));
+            });
+        }
+        return rentals;
+    }
+
+    /**
+     * Schedules this reservation to flush reserved copies, in transactions of, at most, specified number of rentals,
+     * with specified delay. When a transaction fails, its copies are rented one by one and those failed again are
+     * queued for the next flush, or kept as failures.
+     *
+     * @param executor             an executor.
+     * @param entityManagerFactory an entity manager factory.
+     * @param maxResults           the maximum number of rentals in a transaction.
+     * @param delay                the delay between flushes.
+     * @param unit                 the time unit of the {@code delay}.
+     * @return a future of the schedule.
+     */
+    ScheduledFuture<?> start(@NotNull final ScheduledExecutorService executor,
+                             @NotNull final EntityManagerFactory entityManagerFactory, final int maxResults,
+                             final long delay, @NotNull final TimeUnit unit) {
+        requireNonNull(entityManagerFactory, "entityManagerFactory is null");
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("maxResults(" + maxResults + ") <= 0");
+        }
+        return executor.scheduleWithFixedDelay(() -> {
+            for (List<Claim> claims; !(claims = drain(maxResults)).isEmpty(); ) {
+                try {
+                    rent(entityManagerFactory, claims);
+                } catch (final RuntimeException re) {
+                    if (claims.size() == 1) {
+                        retry(claims.get(0), re);
+                        return;
+                    }
+                    log.warn("failed to rent {} copies; renting one by one", claims.size(), re);
+                    for (final Claim claim : claims) {
+                        try {
+                            rent(entityManagerFactory, singletonList(claim));
+                        } catch (final RuntimeException re2) {
+                            retry(claim, re2);
+                        }
+                    }
+                    return;
+                }
+            }
+        }, delay, delay, unit);
+    }
+
+    private void rent(final EntityManagerFactory entityManagerFactory, final List<Claim> claims) {
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            final EntityTransaction transaction = entityManager.getTransaction();
+            transaction.begin();
+            try {
+                persist(entityManager, claims);
+                transaction.commit();
+                log.debug("rented {} copies", claims.size());
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void retry(final Claim claim, final RuntimeException cause) {
+        if (++claim.attempts < MAX_ATTEMPTS) {
+            log.debug("queueing again {}", claim, cause);
+            pending.add(claim);
+            return;
+        }
+        log.error("failed to rent {}", claim, cause);
+        failed.add(claim);
+    }
+
+    private List<Claim> drain(final int maxResults) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("maxResults(" + maxResults + ") <= 0");
+        }
+        final List<Claim> claims = new ArrayList<>();
+        for (Claim claim; claims.size() < maxResults && (claim = pending.poll()) != null; ) {
+            claims.add(claim);
+        }
+        return claims;
+    }
+
+    private List<Rental> persist(final EntityManager entityManager, final List<Claim> claims) {
+        final List<Rental> rentals = new ArrayList<>(claims.size());
+        for (final Claim claim : claims) {
+            final Rental rental = claim.toRental(entityManager);
+            entityManager.persist(rental);
+            rentals.add(rental);
+        }
+        entityManager.flush();
+        return rentals;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Map<Long, Pool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of pools of all known copies keyed by their inventory ids.
+     */
+    private final Map<Integer, Long> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of pools of claimed, or rented, copies keyed by their inventory ids.
+     */
+    private final Map<Integer, Long> out = new ConcurrentHashMap<>();
+
+    private final Queue<Claim> pending = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Claim> failed = new ConcurrentLinkedQueue<>();
+}
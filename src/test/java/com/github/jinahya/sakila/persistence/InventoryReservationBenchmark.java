@@ -0,0 +1,198 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.jinahya.sakila.persistence.InventoryReservation.NONE;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.reference;
+
+/**
+ * A benchmark for measuring the contention of 64 clerks claiming, and releasing, copies of films at stores, with
+ * {@link InventoryReservation} and with a single lock, the way {@code SELECT ... FOR UPDATE} serializes them; and of
+ * clerks reserving copies through the pending queue which is flushed, without a database, and returned.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+@Slf4j
+public class InventoryReservationBenchmark {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args command line arguments.
+     * @throws RunnerException if failed to run.
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InventoryReservationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final int STORES = 2;
+
+    private static final int COPIES = 4;
+
+    private static long key(final int storeId, final int filmId) {
+        return ((long) storeId << Integer.SIZE) | filmId;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Trial)
+    public void populateCopies() {
+        reservation = new InventoryReservation();
+        locked = new HashMap<>();
+        int inventoryId = 0;
+        for (int storeId = 1; storeId <= STORES; storeId++) {
+            for (int filmId = 1; filmId <= films; filmId++) {
+                final Deque<Integer> copies = new ArrayDeque<>();
+                for (int i = 0; i < COPIES; i++) {
+                    reservation.release(storeId, filmId, ++inventoryId);
+                    copies.push(inventoryId);
+                }
+                locked.put(key(storeId, filmId), copies);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Claims, and releases, a copy of a random film at a random store with compare-and-sets.
+     *
+     * @return the id of the claimed inventory; {@link InventoryReservation#NONE} if none available.
+     */
+    @Benchmark
+    public int lockFree() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int storeId = random.nextInt(STORES) + 1;
+        final int filmId = random.nextInt(films) + 1;
+        final int inventoryId = reservation.claim(storeId, filmId);
+        if (inventoryId != NONE) {
+            reservation.release(storeId, filmId, inventoryId);
+        }
+        return inventoryId;
+    }
+
+    /**
+     * Claims, and releases, a copy of a random film at a random store under a single lock.
+     *
+     * @return the id of the claimed inventory; {@link InventoryReservation#NONE} if none available.
+     */
+    @Benchmark
+    public int locked() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Deque<Integer> copies = locked.get(key(random.nextInt(STORES) + 1, random.nextInt(films) + 1));
+        final Integer inventoryId;
+        synchronized (locked) {
+            inventoryId = copies.poll();
+        }
+        if (inventoryId == null) {
+            return NONE;
+        }
+        synchronized (locked) {
+            copies.push(inventoryId);
+        }
+        return inventoryId;
+    }
+
+    /**
+     * Reserves a copy of a random film at a random store, flushes a reserved copy from the pending queue, with an
+     * entity manager persisting nothing, and returns its copy.
+     *
+     * @return the id of the reserved inventory; {@link InventoryReservation#NONE} if none available.
+     */
+    @Benchmark
+    public int reserveAndFlush() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int inventoryId = reservation.reserve(random.nextInt(STORES) + 1, random.nextInt(films) + 1, 1, 1,
+                                                    RENTAL_DATE);
+        for (final Rental rental : reservation.flush(NOOP, 1)) {
+            reservation.returned(rental.getInventory().getId());
+        }
+        return inventoryId;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final LocalDateTime RENTAL_DATE = LocalDateTime.of(2006, 2, 14, 15, 16, 3);
+
+    /**
+     * An entity manager whose references are new entities and which persists nothing.
+     */
+    private static final EntityManager NOOP = fake(EntityManager.class, (p, n, a) -> {
+        switch (n) {
+            case "getReference":
+                return reference(((Class<?>) a[0]).asSubclass(BaseEntity.class), (Integer) a[1]);
+            case "persist":
+            case "flush":
+                return NULL;
+            default:
+                return null;
+        }
+    });
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of films at each store; {@code 1} for every clerk renting the same promoted film.
+     */
+    @Param({"1", "1000"})
+    public int films;
+
+    private InventoryReservation reservation;
+
+    private Map<Long, Deque<Integer>> locked;
+}
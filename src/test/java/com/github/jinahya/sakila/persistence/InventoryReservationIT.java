@@ -0,0 +1,85 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static com.github.jinahya.sakila.persistence.InventoryReservation.NONE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link InventoryReservation} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class InventoryReservationIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts reserved copies are flushed as rentals; the transaction is rolled back.
+     */
+    @Test
+    void assertReserveAndFlush() {
+        final InventoryReservation reservation = InventoryReservation.load(entityManager);
+        final Customer customer = randomEntity(entityManager, Customer.class);
+        final Staff staff = randomEntity(entityManager, Staff.class);
+        final int storeId = staff.getStore().getId();
+        final List<Inventory> inventories = entityManager
+                .createQuery("SELECT i FROM Inventory AS i WHERE i.store.id = :storeId", Inventory.class)
+                .setParameter("storeId", storeId)
+                .getResultList();
+        final int filmId = inventories.stream()
+                .map(i -> i.getFilm().getId())
+                .filter(i -> reservation.available(storeId, i) > 0L)
+                .findAny()
+                .orElseThrow(() -> new AssertionError("no film in stock at store " + storeId));
+        final long available = reservation.available(storeId, filmId);
+        final int inventoryId = reservation.reserve(storeId, filmId, customer.getId(), staff.getId(),
+                                                    LocalDateTime.now().withNano(0));
+        assertThat(inventoryId).isNotEqualTo(NONE);
+        assertThat(reservation.available(storeId, filmId)).isEqualTo(available - 1L);
+        entityManager.getTransaction().begin();
+        try {
+            final List<Rental> rentals = reservation.flush(entityManager, 10);
+            assertThat(rentals).hasSize(1);
+            assertThat(rentals.get(0).getId()).isNotNull();
+            assertThat(rentals.get(0).getInventory().getId()).isEqualTo(inventoryId);
+        } finally {
+            entityManager.getTransaction().rollback();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,320 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import static com.github.jinahya.sakila.persistence.InventoryReservation.NONE;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.reference;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.transaction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link InventoryReservation}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class InventoryReservationTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake entity manager factory whose entity managers persist rentals, failing those of inventories
+     * specified predicate tests.
+     */
+    private static EntityManagerFactory database(final IntPredicate failing) {
+        return fake(EntityManagerFactory.class, (p, n, a) -> "createEntityManager".equals(n)
+                                                           ? entityManager(failing) : null);
+    }
+
+    private static EntityManager entityManager(final IntPredicate failing) {
+        final EntityTransaction transaction = transaction();
+        return fake(EntityManager.class, (p, n, a) -> {
+            switch (n) {
+                case "getTransaction":
+                    return transaction;
+                case "getReference":
+                    return reference(((Class<?>) a[0]).asSubclass(BaseEntity.class), (Integer) a[1]);
+                case "persist":
+                    if (failing.test(((Rental) a[0]).getInventory().getId())) {
+                        throw new PersistenceException("failing");
+                    }
+                    return NULL;
+                case "flush":
+                case "close":
+                    return NULL;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts copies are claimed and released per store and film.
+     */
+    @Test
+    void assertClaimAndRelease() {
+        final InventoryReservation reservation = new InventoryReservation();
+        reservation.release(1, 10, 100);
+        reservation.release(1, 10, 101);
+        reservation.release(2, 10, 200);
+        assertThat(reservation.available(1, 10)).isEqualTo(2L);
+        assertThat(reservation.claim(1, 11)).isEqualTo(NONE);
+        final int first = reservation.claim(1, 10);
+        final int second = reservation.claim(1, 10);
+        assertThat(new int[] {first, second}).containsExactlyInAnyOrder(100, 101);
+        assertThat(reservation.claim(1, 10)).isEqualTo(NONE);
+        assertThat(reservation.available(1, 10)).isZero();
+        assertThat(reservation.claim(2, 10)).isEqualTo(200);
+        reservation.release(1, 10, first);
+        assertThat(reservation.claim(1, 10)).isEqualTo(first);
+    }
+
+    /**
+     * Asserts reserved copies are queued until flushed.
+     */
+    @Test
+    void assertReserve() {
+        final InventoryReservation reservation = new InventoryReservation();
+        reservation.release(1, 10, 100);
+        final LocalDateTime now = LocalDateTime.now();
+        assertThat(reservation.reserve(1, 10, 5, 1, now)).isEqualTo(100);
+        assertThat(reservation.reserve(1, 10, 6, 1, now)).isEqualTo(NONE);
+        assertThat(reservation.pending()).isEqualTo(1);
+    }
+
+    /**
+     * Asserts each copy is claimed by exactly one of many concurrent clerks.
+     *
+     * @throws Exception if failed to wait.
+     */
+    @Test
+    void assertConcurrentClaims() throws Exception {
+        final int copies = 1000;
+        final InventoryReservation reservation = new InventoryReservation();
+        for (int i = 0; i < copies; i++) {
+            reservation.release(1, 10, i + 1);
+        }
+        final int clerks = 16;
+        final Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(clerks);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < clerks; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    int count = 0;
+                    for (int inventoryId; (inventoryId = reservation.claim(1, 10)) != NONE; count++) {
+                        assertThat(claimed.add(inventoryId)).isTrue();
+                    }
+                    return count;
+                }));
+            }
+            latch.countDown();
+            int total = 0;
+            for (final Future<Integer> future : futures) {
+                total += future.get();
+            }
+            assertThat(total).isEqualTo(copies);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(claimed).hasSize(copies);
+        assertThat(reservation.available(1, 10)).isZero();
+    }
+
+    /**
+     * Asserts reserved copies failed to be flushed are queued again and, at last, kept as failures, still claimed.
+     */
+    @Test
+    void assertFlushRetries() {
+        final InventoryReservation reservation = new InventoryReservation();
+        reservation.release(1, 10, 100);
+        assertThat(reservation.reserve(1, 10, 5, 1, LocalDateTime.now())).isEqualTo(100);
+        final EntityManager entityManager = entityManager(i -> true);
+        for (int i = 1; i <= InventoryReservation.MAX_ATTEMPTS; i++) {
+            assertThatThrownBy(() -> reservation.flush(entityManager, 10)).isInstanceOf(PersistenceException.class);
+            assertThat(reservation.pending()).isEqualTo(i < InventoryReservation.MAX_ATTEMPTS ? 1 : 0);
+        }
+        assertThat(reservation.failed()).isEqualTo(1);
+        final List<InventoryReservation.Claim> failures = reservation.failures();
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0).inventoryId).isEqualTo(100);
+        assertThat(reservation.failed()).isZero();
+        assertThat(reservation.available(1, 10)).isZero();
+    }
+
+    /**
+     * Asserts flushed copies are queued again when the transaction rolls back and, at last, kept as failures.
+     */
+    @Test
+    void assertFlushCompensatesRollback() {
+        final InventoryReservation reservation = new InventoryReservation();
+        reservation.release(1, 10, 100);
+        reservation.reserve(1, 10, 5, 1, LocalDateTime.now());
+        final EntityManager entityManager = entityManager(i -> false);
+        AfterCommit.begun();
+        assertThat(reservation.flush(entityManager, 10)).hasSize(1);
+        assertThat(reservation.pending()).isZero();
+        AfterCommit.rolledBack();
+        assertThat(reservation.pending()).isEqualTo(1);
+        AfterCommit.begun();
+        assertThat(reservation.flush(entityManager, 10)).hasSize(1);
+        AfterCommit.committed();
+        assertThat(reservation.pending()).isZero();
+        assertThat(reservation.available(1, 10)).isZero();
+        reservation.release(1, 10, 101);
+        reservation.reserve(1, 10, 6, 1, LocalDateTime.now());
+        for (int i = 1; i <= InventoryReservation.MAX_ATTEMPTS; i++) {
+            AfterCommit.begun();
+            assertThat(reservation.flush(entityManager, 10)).hasSize(1);
+            AfterCommit.rolledBack();
+            assertThat(reservation.pending()).isEqualTo(i < InventoryReservation.MAX_ATTEMPTS ? 1 : 0);
+        }
+        final List<InventoryReservation.Claim> failures = reservation.failures();
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0).inventoryId).isEqualTo(101);
+    }
+
+    /**
+     * Asserts a scheduled flush rents copies of a failed batch one by one and keeps only the failing one.
+     *
+     * @throws Exception if interrupted.
+     */
+    @Test
+    void assertStartRentsOneByOne() throws Exception {
+        final InventoryReservation reservation = new InventoryReservation();
+        for (int i = 0; i < 3; i++) {
+            reservation.release(1, 10, 100 + i);
+            reservation.reserve(1, 10, 5, 1, LocalDateTime.now());
+        }
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            reservation.start(executor, database(i -> i == 101), 10, 1L, TimeUnit.MILLISECONDS);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (reservation.failed() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1L);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(reservation.pending()).isZero();
+        final List<InventoryReservation.Claim> failures = reservation.failures();
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0).inventoryId).isEqualTo(101);
+    }
+
+    /**
+     * Asserts copies of returned rentals are released, once, after their transactions commit.
+     */
+    @Test
+    void assertListenerReleasesReturned() {
+        final InventoryReservation reservation = new InventoryReservation().listen();
+        try {
+            reservation.release(1, 10, 100);
+            assertThat(reservation.claim(1, 10)).isEqualTo(100);
+            final Inventory inventory = new Inventory();
+            inventory.setId(100);
+            final Rental rental = new Rental();
+            rental.setInventory(inventory);
+            final InventoryReservation.Listener listener = new InventoryReservation.Listener();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.committed();
+            assertThat(reservation.available(1, 10)).isZero();
+            rental.setReturnDate(LocalDateTime.now());
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.rolledBack();
+            assertThat(reservation.available(1, 10)).isZero();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.committed();
+            assertThat(reservation.available(1, 10)).isEqualTo(1L);
+            listener.postPersistOrUpdate(rental);
+            assertThat(reservation.available(1, 10)).isEqualTo(1L);
+        } finally {
+            reservation.unlisten();
+        }
+    }
+
+    /**
+     * Asserts copies rented outside the reservation are taken out of stock after their transactions commit, and
+     * released when returned.
+     */
+    @Test
+    void assertListenerTakesRentedOutOfStock() {
+        final InventoryReservation reservation = new InventoryReservation().listen();
+        try {
+            for (int i = 0; i < 3; i++) {
+                reservation.release(1, 10, 100 + i);
+            }
+            final Inventory inventory = new Inventory();
+            inventory.setId(101);
+            final Rental rental = new Rental();
+            rental.setInventory(inventory);
+            final InventoryReservation.Listener listener = new InventoryReservation.Listener();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.rolledBack();
+            assertThat(reservation.available(1, 10)).isEqualTo(3L);
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.committed();
+            assertThat(reservation.available(1, 10)).isEqualTo(2L);
+            assertThat(new int[] {reservation.claim(1, 10), reservation.claim(1, 10)})
+                    .containsExactlyInAnyOrder(100, 102);
+            assertThat(reservation.claim(1, 10)).isEqualTo(NONE);
+            assertThat(reservation.rented(101)).isFalse();
+            assertThat(reservation.rented(999)).isFalse();
+            rental.setReturnDate(LocalDateTime.now());
+            listener.postPersistOrUpdate(rental);
+            assertThat(reservation.claim(1, 10)).isEqualTo(101);
+        } finally {
+            reservation.unlisten();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Utilities for sizes and memberships of collection-valued attributes without initializing them; the extra-lazy
+ * semantics on top of the standard API.
+ * <p>
+ * An already loaded collection, or a collection of a transient owner, is answered in memory. Otherwise a {@code
+ * COUNT(*)}, or a single row probe for membership, is issued against the association.
+ * <blockquote><pre>{@code
+ * final long customers = LazyCollections.size(entityManager, store, Store_.customers);
+ * final Map<Integer, Long> customersByStore = LazyCollections.sizes(entityManager, Store_.customers);
+ * }</pre></blockquote>
+ * Note that the bean validation, in {@code CALLBACK} mode, doesn't initialize unloaded collections either; the
+ * traversable resolver provided by the persistence provider skips them.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class LazyCollections {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Accessible fields of collection-valued attributes keyed by their java members.
+     */
+    private static final Map<Member, Field> FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the accessible field of specified member; made accessible only once per member.
+     */
+    static Field field(final Member member) {
+        return FIELDS.computeIfAbsent(member, m -> {
+            final Field field = (Field) m;
+            field.setAccessible(true);
+            return field;
+        });
+    }
+
+    /**
+     * Returns the collection of specified attribute of specified owner if it is safe to read in memory.
+     *
+     * @return the collection; {@code null} if it should be queried.
+     */
+    private static <X> Collection<?> loaded(final EntityManager entityManager, final X owner,
+                                            final PluralAttribute<? super X, ?, ?> attribute) {
+        final PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        if (util.getIdentifier(owner) != null && !util.isLoaded(owner, attribute.getName())) {
+            return null;
+        }
+        final Member member = attribute.getJavaMember();
+        if (!(member instanceof Field)) {
+            return null;
+        }
+        try {
+            final Object value = field(member).get(owner);
+            if (value instanceof Map) {
+                return ((Map<?, ?>) value).values();
+            }
+            return value == null ? emptySet() : (Collection<?>) value;
+        } catch (final IllegalAccessException iae) {
+            throw new RuntimeException(iae);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements of specified collection-valued attribute of specified owner.
+     * <blockquote><pre>{@code
+     * SELECT COUNT(*) FROM <owner> o JOIN <element> e ON ... WHERE o.<owner>_id = ?
+     * }</pre></blockquote>
+     *
+     * @param entityManager an entity manager.
+     * @param owner         the owner of the collection.
+     * @param attribute     the collection-valued attribute.
+     * @param <X>           owner type parameter
+     * @return the number of elements.
+     */
+    static <X> @PositiveOrZero long size(@NotNull final EntityManager entityManager, @NotNull final X owner,
+                                         @NotNull final PluralAttribute<X, ?, ?> attribute) {
+        requireNonNull(entityManager, "entityManager is null");
+        requireNonNull(owner, "owner is null");
+        requireNonNull(attribute, "attribute is null");
+        final Collection<?> loaded = loaded(entityManager, owner, attribute);
+        if (loaded != null) {
+            return loaded.size();
+        }
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        final Root<X> root = criteria.from(attribute.getDeclaringType().getJavaType());
+        final Join<X, ?> join = root.join(attribute.getName());
+        criteria.select(builder.count(join));
+        criteria.where(builder.equal(root, owner));
+        return entityManager.createQuery(criteria).getSingleResult();
+    }
+
+    /**
+     * Checks whether specified collection-valued attribute of specified owner contains specified element.
+     * <blockquote><pre>{@code
+     * SELECT 1 FROM <owner> o JOIN <element> e ON ... WHERE o.<owner>_id = ? AND e.<element>_id = ? LIMIT 1
+     * }</pre></blockquote>
+     *
+     * @param entityManager an entity manager.
+     * @param owner         the owner of the collection.
+     * @param attribute     the collection-valued attribute.
+     * @param element       the element to check.
+     * @param <X>           owner type parameter
+     * @param <E>           element type parameter
+     * @return {@code true} if the collection contains {@code element}; {@code false} otherwise.
+     */
+    static <X, E> boolean contains(@NotNull final EntityManager entityManager, @NotNull final X owner,
+                                   @NotNull final PluralAttribute<X, ?, E> attribute, @NotNull final E element) {
+        requireNonNull(entityManager, "entityManager is null");
+        requireNonNull(owner, "owner is null");
+        requireNonNull(attribute, "attribute is null");
+        requireNonNull(element, "element is null");
+        final Collection<?> loaded = loaded(entityManager, owner, attribute);
+        if (loaded != null) {
+            return loaded.contains(element);
+        }
+        if (entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(element) == null) {
+            return false; // a transient element can't be in the database
+        }
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Integer> criteria = builder.createQuery(Integer.class);
+        final Root<X> root = criteria.from(attribute.getDeclaringType().getJavaType());
+        final Join<X, ?> join = root.join(attribute.getName());
+        criteria.select(builder.literal(1));
+        criteria.where(builder.equal(root, owner), builder.equal(join, element));
+        return !entityManager.createQuery(criteria).setMaxResults(1).getResultList().isEmpty();
+    }
+
+    /**
+     * Returns the numbers of elements of specified collection-valued attribute of all owners in a single query.
+     * <blockquote><pre>{@code
+     * SELECT o.<owner>_id, COUNT(e.<element>_id) FROM <owner> o LEFT JOIN <element> e ON ... GROUP BY o.<owner>_id
+     * }</pre></blockquote>
+     *
+     * @param entityManager an entity manager.
+     * @param attribute     the collection-valued attribute.
+     * @param <X>           owner type parameter
+     * @return a map of owner ids and their numbers of elements.
+     */
+    static <X extends BaseEntity> @NotNull Map<Integer, Long> sizes(@NotNull final EntityManager entityManager,
+                                                                     @NotNull final PluralAttribute<X, ?, ?> attribute) {
+        requireNonNull(entityManager, "entityManager is null");
+        requireNonNull(attribute, "attribute is null");
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        final Root<X> root = criteria.from(attribute.getDeclaringType().getJavaType());
+        final Join<X, ?> join = root.join(attribute.getName(), JoinType.LEFT);
+        criteria.multiselect(root.get(BaseEntity_.id), builder.count(join));
+        criteria.groupBy(root.get(BaseEntity_.id));
+        final Map<Integer, Long> sizes = new HashMap<>();
+        for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+            sizes.put((Integer) tuple.get(0), (Long) tuple.get(1));
+        }
+        return unmodifiableMap(sizes);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private LazyCollections() {
+        super();
+    }
+}
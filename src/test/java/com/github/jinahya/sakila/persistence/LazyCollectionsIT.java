@@ -0,0 +1,92 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.Map;
+
+import static com.github.jinahya.sakila.persistence.CountryServiceIT.cityCount;
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link LazyCollections}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class LazyCollectionsIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts {@link LazyCollections#size(EntityManager, Object, javax.persistence.metamodel.PluralAttribute)} doesn't
+     * initialize the collection.
+     */
+    @Test
+    void assertSizeDoesNotInitialize() {
+        final PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        final Country country = randomEntity(entityManager, Country.class);
+        final long size = LazyCollections.size(entityManager, country, Country_.cities);
+        assertThat(size).isEqualTo(cityCount(country));
+        assertThat(util.isLoaded(country, Country_.CITIES)).isFalse();
+        assertThat(LazyCollections.size(entityManager, country, Country_.cities)).isEqualTo(size);
+        assertThat(util.isLoaded(country, Country_.CITIES)).isFalse();
+    }
+
+    /**
+     * Asserts {@link LazyCollections#contains(EntityManager, Object, javax.persistence.metamodel.PluralAttribute,
+     * Object)} method.
+     */
+    @Test
+    void assertContains() {
+        final City city = randomEntity(entityManager, City.class);
+        final Country country = city.getCountry();
+        assertThat(LazyCollections.contains(entityManager, country, Country_.cities, city)).isTrue();
+        assertThat(LazyCollections.contains(entityManager, country, Country_.cities, new City())).isFalse();
+        final Film film = randomEntity(entityManager, Film.class);
+        assertThat(LazyCollections.contains(entityManager, film.getLanguage(), Language_.films, film)).isTrue();
+    }
+
+    /**
+     * Asserts {@link LazyCollections#sizes(EntityManager, javax.persistence.metamodel.PluralAttribute)} method.
+     */
+    @Test
+    void assertSizes() {
+        final Map<Integer, Long> sizes = LazyCollections.sizes(entityManager, Store_.customers);
+        final Store store = randomEntity(entityManager, Store.class);
+        assertThat(sizes).containsEntry(store.getId(), LazyCollections.size(entityManager, store, Store_.customers));
+        log.debug("staffs by store: {}", LazyCollections.sizes(entityManager, Store_.staffs));
+        log.debug("films by category: {}", LazyCollections.sizes(entityManager, Category_.films));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
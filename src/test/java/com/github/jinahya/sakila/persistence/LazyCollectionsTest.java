@@ -0,0 +1,218 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SetAttribute;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.TraversableResolver;
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.lang.annotation.ElementType;
+import java.lang.reflect.Field;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for unit-testing {@link LazyCollections} against a fake persistence unit.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class LazyCollectionsTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A set which fails on any access to its elements, as an uninitialized collection of a detached owner would.
+     */
+    private static final class UninitializedSet<E> extends AbstractSet<E> {
+
+        @Override
+        public Iterator<E> iterator() {
+            throw new IllegalStateException("initialized");
+        }
+
+        @Override
+        public int size() {
+            throw new IllegalStateException("initialized");
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake entity manager whose persistence unit identifies languages with ids and answers the {@link
+     * Language_#FILMS films} attribute as loaded or not.
+     */
+    private static EntityManager entityManager(final boolean loaded) {
+        final PersistenceUnitUtil util = fake(PersistenceUnitUtil.class, (p, n, a) -> {
+            switch (n) {
+                case "getIdentifier": {
+                    final Integer id = ((BaseEntity) a[0]).getId();
+                    return id == null ? NULL : id;
+                }
+                case "isLoaded":
+                    return a.length == 1 || loaded;
+                default:
+                    return null;
+            }
+        });
+        final EntityManagerFactory entityManagerFactory
+                = fake(EntityManagerFactory.class, (p, n, a) -> "getPersistenceUnitUtil".equals(n) ? util : null);
+        return fake(EntityManager.class, (p, n, a) -> "getEntityManagerFactory".equals(n) ? entityManagerFactory : null);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static SetAttribute<Language, Film> films() throws ReflectiveOperationException {
+        final Field field = Language.class.getDeclaredField(Language_.FILMS);
+        final ManagedType<Language> declaringType
+                = fake(ManagedType.class, (p, n, a) -> "getJavaType".equals(n) ? Language.class : null);
+        return fake(SetAttribute.class, (p, n, a) -> {
+            switch (n) {
+                case "getName":
+                    return Language_.FILMS;
+                case "getJavaMember":
+                    return field;
+                case "getDeclaringType":
+                    return declaringType;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static Language language(final Integer id, final Set<Film> films) throws ReflectiveOperationException {
+        final Language language = new Language();
+        final Field idField = BaseEntity.class.getDeclaredField(BaseEntity.ATTRIBUTE_NAME_ID);
+        idField.setAccessible(true);
+        idField.set(language, id);
+        LazyCollections.field(Language.class.getDeclaredField(Language_.FILMS)).set(language, films);
+        return language;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts collections of transient owners, or loaded collections, are answered in memory.
+     */
+    @Test
+    void assertAnsweredInMemory() throws ReflectiveOperationException {
+        final SetAttribute<Language, Film> films = films();
+        final Film film = new Film();
+        final Set<Film> elements = new HashSet<>(Collections.singleton(film));
+        final Language transientLanguage = language(null, elements);
+        assertThat(LazyCollections.size(entityManager(false), transientLanguage, films)).isEqualTo(1L);
+        assertThat(LazyCollections.contains(entityManager(false), transientLanguage, films, film)).isTrue();
+        final Language loadedLanguage = language(1, elements);
+        assertThat(LazyCollections.size(entityManager(true), loadedLanguage, films)).isEqualTo(1L);
+        assertThat(LazyCollections.contains(entityManager(true), loadedLanguage, films, new Film())).isFalse();
+        assertThat(LazyCollections.size(entityManager(false), language(null, null), films)).isZero();
+    }
+
+    /**
+     * Asserts an unloaded collection of a persistent owner is queried, not initialized.
+     */
+    @Test
+    void assertUnloadedIsQueried() throws ReflectiveOperationException {
+        final Language language = language(1, new UninitializedSet<>());
+        assertThatThrownBy(() -> LazyCollections.size(entityManager(false), language, films()))
+                .isInstanceOf(UnsupportedOperationException.class)
+                .hasMessage("getCriteriaBuilder");
+    }
+
+    /**
+     * Asserts the accessible field of a member is made once and shared.
+     */
+    @Test
+    void assertFieldCached() throws ReflectiveOperationException {
+        final Field field = LazyCollections.field(Language.class.getDeclaredField(Language_.FILMS));
+        assertThat(field.isAccessible()).isTrue();
+        assertThat(LazyCollections.field(Language.class.getDeclaredField(Language_.FILMS))).isSameAs(field);
+    }
+
+    /**
+     * Asserts the {@code @Size(max = SIZE_MAX_FILMS)} and element constraints of an unloaded collection are skipped,
+     * without initializing it, by a traversable resolver which consults the loaded state as a persistence provider's
+     * does; while the constraints of a loaded collection are validated.
+     */
+    @Test
+    void assertValidationSkipsUnloaded() throws ReflectiveOperationException {
+        final Predicate<Set<ConstraintViolation<Language>>> filmsViolated = violations -> violations.stream()
+                .anyMatch(v -> v.getPropertyPath().toString().startsWith(Language_.FILMS));
+        {
+            final Set<ConstraintViolation<Language>> violations = validate(
+                    language(1, new UninitializedSet<>()), false);
+            assertThat(filmsViolated.test(violations)).isFalse();
+        }
+        {
+            final Set<Film> films = new HashSet<>();
+            films.add(null);
+            final Set<ConstraintViolation<Language>> violations = validate(language(1, films), true);
+            assertThat(filmsViolated.test(violations)).isTrue();
+        }
+    }
+
+    private static Set<ConstraintViolation<Language>> validate(final Language language, final boolean loaded) {
+        final TraversableResolver resolver = new TraversableResolver() {
+            @Override
+            public boolean isReachable(final Object traversableObject, final Path.Node traversableProperty,
+                                       final Class<?> rootBeanType, final Path pathToTraversableObject,
+                                       final ElementType elementType) {
+                return loaded || !Language_.FILMS.equals(traversableProperty.getName());
+            }
+
+            @Override
+            public boolean isCascadable(final Object traversableObject, final Path.Node traversableProperty,
+                                        final Class<?> rootBeanType, final Path pathToTraversableObject,
+                                        final ElementType elementType) {
+                return true;
+            }
+        };
+        final ValidatorFactory factory = Validation.byDefaultProvider()
+                .configure()
+                .messageInterpolator(new ParameterMessageInterpolator())
+                .traversableResolver(resolver)
+                .buildValidatorFactory();
+        try {
+            return factory.getValidator().validate(language);
+        } finally {
+            factory.close();
+        }
+    }
+}
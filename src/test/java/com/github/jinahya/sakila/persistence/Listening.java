@@ -0,0 +1,88 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.synchronizedMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A registry of instances listening to changes delivered by entity listeners. Instances are weakly referenced, and
+ * notified once the transactions of the changes commit.
+ *
+ * @param <T> listening type parameter
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+final class Listening<T> {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     */
+    Listening() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Adds specified instance to this registry.
+     *
+     * @param listening the instance to add.
+     */
+    void add(@NotNull final T listening) {
+        instances.add(requireNonNull(listening, "listening is null"));
+    }
+
+    /**
+     * Removes specified instance from this registry.
+     *
+     * @param listening the instance to remove.
+     */
+    void remove(final T listening) {
+        instances.remove(listening);
+    }
+
+    /**
+     * Notifies each instance in this registry with specified action when the transaction in progress on the current
+     * thread commits, or right away if none.
+     *
+     * @param action the action to notify each instance with.
+     * @see AfterCommit#run(Runnable)
+     */
+    void afterCommit(@NotNull final Consumer<? super T> action) {
+        requireNonNull(action, "action is null");
+        AfterCommit.run(() -> {
+            synchronized (instances) {
+                instances.forEach(action);
+            }
+        });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Set<T> instances = newSetFromMap(synchronizedMap(new WeakHashMap<>()));
+}
@@ -0,0 +1,551 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-memory index for searching {@link FullNamed} entities by names with prefixes or with typos.
+ * <p>
+ * The {@link Field#FIRST_NAME first names}, the {@link Field#LAST_NAME last names}, and the {@link Field#FULL_NAME
+ * full names}, formatted with a {@link FullNameFormatter}, of entities of a single class are kept in a trie per field,
+ * folded as the database collation does (see {@link CollationKey}) so that {@code penelope} finds {@code PENELOPE}.
+ * Prefix completions walk the subtree of the prefix, and fuzzy searches walk the trie with a row of the Levenshtein
+ * matrix per node, pruning subtrees which can't be within the maximum distance.
+ * <p>
+ * An index may {@link #listen() listen} to entities being persisted, updated, or removed, through {@link Listener}
+ * registered in {@code META-INF/orm.xml}; changes are applied once their transactions commit.
+ *
+ * @param <T> entity type parameter
+ * @see AfterCommit
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class NameSearchIndex<T extends BaseEntity & FullNamed> {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Fields of names.
+     */
+    enum Field {
+        FIRST_NAME,
+        LAST_NAME,
+        FULL_NAME
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A match of an entity; ordered by the quality; exact ones first, prefixed ones next, and then by the distance.
+     */
+    static final class Match {
+
+        private static final Comparator<Match> COMPARING_QUALITY = Comparator
+                .comparingInt((Match m) -> m.distance)
+                .thenComparing(m -> m.prefixed)
+                .thenComparingInt(m -> m.term.length())
+                .thenComparing(m -> m.term)
+                .thenComparingInt(m -> m.id);
+
+        private Match(final int id, final String term, final int distance, final boolean prefixed) {
+            super();
+            this.id = id;
+            this.term = term;
+            this.distance = distance;
+            this.prefixed = prefixed;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "id=" + id
+                   + ",term=" + term
+                   + ",distance=" + distance
+                   + ",prefixed=" + prefixed
+                   + "}";
+        }
+
+        /**
+         * The id of the matched entity.
+         */
+        final int id;
+
+        /**
+         * The folded term matched.
+         */
+        final String term;
+
+        /**
+         * The edit distance from the query; {@code 0} for exact or prefixed matches.
+         */
+        final int distance;
+
+        /**
+         * A flag for a match only by the prefix.
+         */
+        final boolean prefixed;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A node of a trie.
+     */
+    private static final class Node {
+
+        private Node child(final char c) {
+            final int index = Arrays.binarySearch(labels, 0, size, c);
+            return index < 0 ? null : children[index];
+        }
+
+        private Node childOrNew(final char c) {
+            int index = Arrays.binarySearch(labels, 0, size, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -(index + 1);
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(2, size << 1));
+                children = Arrays.copyOf(children, labels.length);
+            }
+            System.arraycopy(labels, index, labels, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            labels[index] = c;
+            children[index] = new Node();
+            size++;
+            return children[index];
+        }
+
+        private void add(final int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(1, count << 1));
+            }
+            ids[count++] = id;
+        }
+
+        private void remove(final int id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--count];
+                    return;
+                }
+            }
+        }
+
+        private void removeChild(final char c) {
+            final int index = Arrays.binarySearch(labels, 0, size, c);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(labels, index + 1, labels, index, size - index - 1);
+            System.arraycopy(children, index + 1, children, index, size - index - 1);
+            children[--size] = null;
+        }
+
+        private boolean isEmpty() {
+            return count == 0 && size == 0;
+        }
+
+        private int nodes() {
+            int nodes = 1;
+            for (int i = 0; i < size; i++) {
+                nodes += children[i].nodes();
+            }
+            return nodes;
+        }
+
+        private char[] labels = new char[0];
+
+        private Node[] children = new Node[0];
+
+        private int size;
+
+        private int[] ids = new int[0];
+
+        private int count;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Folds specified value as the database collation does.
+     *
+     * @param value the value to fold.
+     * @return a folded value.
+     */
+    static String fold(final String value) {
+        final char[] folded = value.toCharArray();
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = CollationKey.weight(folded[i]);
+        }
+        int length = folded.length;
+        while (length > 0 && folded[length - 1] == ' ') {
+            length--;
+        }
+        return new String(folded, 0, length);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An entity listener updates listening indices of the entity class after transactions commit.
+     */
+    public static class Listener {
+
+        /**
+         * Creates a new instance.
+         */
+        public Listener() {
+            super();
+        }
+
+        @PostPersist
+        @PostUpdate
+        void postPersistOrUpdate(final Object entity) {
+            if (!(entity instanceof BaseEntity) || !(entity instanceof FullNamed)) {
+                return;
+            }
+            final Class<?> type = entity.getClass();
+            final int id = ((BaseEntity) entity).getId();
+            final FullName named = FullName.of(((FullNamed) entity).getFirstName(),
+                                               ((FullNamed) entity).getLastName());
+            LISTENING.afterCommit(i -> i.put(type, id, named));
+        }
+
+        @PostRemove
+        void postRemove(final Object entity) {
+            if (!(entity instanceof BaseEntity)) {
+                return;
+            }
+            final Class<?> type = entity.getClass();
+            final int id = ((BaseEntity) entity).getId();
+            LISTENING.afterCommit(i -> i.remove(type, id));
+        }
+    }
+
+    private static final Listening<NameSearchIndex<?>> LISTENING = new Listening<>();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads an index of all entities of specified class.
+     *
+     * @param entityManager an entity manager.
+     * @param entityClass   the entity class; {@link Actor}, {@link Customer}, or {@link Staff}.
+     * @param formatter     the formatter for full names.
+     * @param <T>           entity type parameter
+     * @return a new index.
+     */
+    static <T extends BaseEntity & FullNamed> NameSearchIndex<T> load(
+            @NotNull final EntityManager entityManager, @NotNull final Class<T> entityClass,
+            @NotNull final FullNameFormatter formatter) {
+        final NameSearchIndex<T> index = new NameSearchIndex<>(entityClass, formatter);
+        final CriteriaQuery<Tuple> criteria = entityManager.getCriteriaBuilder().createTupleQuery();
+        final Root<T> root = criteria.from(entityClass);
+        criteria.multiselect(root.get(BaseEntity.ATTRIBUTE_NAME_ID), root.get(FullNamed.ATTRIBUTE_NAME_FIRST_NAME),
+                             root.get(FullNamed.ATTRIBUTE_NAME_LAST_NAME));
+        for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+            index.put((Integer) tuple.get(0), FullName.of((String) tuple.get(1), (String) tuple.get(2)));
+        }
+        log.debug("loaded {} {}(s)", index.names.size(), entityClass.getSimpleName());
+        return index;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new empty instance.
+     *
+     * @param entityClass the entity class.
+     * @param formatter   the formatter for full names.
+     */
+    NameSearchIndex(@NotNull final Class<T> entityClass, @NotNull final FullNameFormatter formatter) {
+        super();
+        this.entityClass = requireNonNull(entityClass, "entityClass is null");
+        this.formatter = requireNonNull(formatter, "formatter is null");
+        for (final Field field : Field.values()) {
+            roots.put(field, new Node());
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts listening to entities being persisted, updated, or removed.
+     *
+     * @return this index.
+     */
+    NameSearchIndex<T> listen() {
+        LISTENING.add(this);
+        return this;
+    }
+
+    /**
+     * Stops listening to entities being persisted, updated, or removed.
+     */
+    void unlisten() {
+        LISTENING.remove(this);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Indexes, or re-indexes, names of specified id.
+     *
+     * @param id    the id of the entity.
+     * @param named the names of the entity.
+     */
+    synchronized void put(final int id, @NotNull final FullNamed named) {
+        final String[] terms = new String[Field.values().length];
+        terms[Field.FIRST_NAME.ordinal()] = fold(named.getFirstName());
+        terms[Field.LAST_NAME.ordinal()] = fold(named.getLastName());
+        terms[Field.FULL_NAME.ordinal()] = fold(named.getFullName(formatter, " "));
+        final String[] previous = names.put(id, terms);
+        if (previous != null) {
+            if (Arrays.equals(previous, terms)) {
+                return;
+            }
+            unindex(id, previous);
+        }
+        for (final Field field : Field.values()) {
+            Node node = roots.get(field);
+            for (final char c : terms[field.ordinal()].toCharArray()) {
+                node = node.childOrNew(c);
+            }
+            node.add(id);
+        }
+    }
+
+    /**
+     * Removes names of specified id.
+     *
+     * @param id the id of the entity.
+     * @return {@code true} if indexed; {@code false} otherwise.
+     */
+    synchronized boolean remove(final int id) {
+        final String[] previous = names.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        unindex(id, previous);
+        return true;
+    }
+
+    private void put(final Class<?> type, final int id, final FullNamed named) {
+        if (entityClass.isAssignableFrom(type)) {
+            put(id, named);
+        }
+    }
+
+    private void remove(final Class<?> type, final int id) {
+        if (entityClass.isAssignableFrom(type)) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Removes specified id from nodes of specified terms and prunes nodes left without ids and children.
+     */
+    private void unindex(final int id, final String[] terms) {
+        for (final Field field : Field.values()) {
+            final String term = terms[field.ordinal()];
+            final Node[] path = new Node[term.length() + 1];
+            path[0] = roots.get(field);
+            for (int i = 0; i < term.length(); i++) {
+                path[i + 1] = path[i].child(term.charAt(i));
+            }
+            path[term.length()].remove(id);
+            for (int i = term.length(); i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(term.charAt(i - 1));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes of the trie of specified field, including the root.
+     *
+     * @param field the field.
+     * @return the number of nodes.
+     */
+    synchronized int nodes(@NotNull final Field field) {
+        return roots.get(requireNonNull(field, "field is null")).nodes();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Completes specified prefix of specified field.
+     *
+     * @param field  the field.
+     * @param prefix the prefix.
+     * @param limit  the maximum number of ids.
+     * @return a list of ids ranked by the quality; exact matches first, and then shorter ones.
+     */
+    synchronized @NotNull List<Integer> complete(@NotNull final Field field, @NotNull final String prefix,
+                                                 @Positive final int limit) {
+        final List<Match> matches = new ArrayList<>();
+        complete(field, fold(prefix), matches);
+        return ids(matches, limit);
+    }
+
+    /**
+     * Searches specified field for names within specified edit distance from specified query.
+     *
+     * @param field       the field.
+     * @param query       the query.
+     * @param maxDistance the maximum edit distance.
+     * @param limit       the maximum number of ids.
+     * @return a list of ids ranked by the quality; closer ones first.
+     */
+    synchronized @NotNull List<Integer> search(@NotNull final Field field, @NotNull final String query,
+                                               @PositiveOrZero final int maxDistance, @Positive final int limit) {
+        final List<Match> matches = new ArrayList<>();
+        search(field, fold(query), maxDistance, matches);
+        return ids(matches, limit);
+    }
+
+    /**
+     * Searches full names, formatted with the formatter of this index, for specified query; exact matches, prefixed
+     * matches, and then fuzzy matches within specified edit distance.
+     *
+     * @param query       the query, e.g. {@code penelope gu} for {@link FullNameFormatter#FIRST_NAME_FIRST}.
+     * @param maxDistance the maximum edit distance.
+     * @param limit       the maximum number of ids.
+     * @return a list of ids ranked by the quality.
+     */
+    synchronized @NotNull List<Integer> find(@NotNull final String query, @PositiveOrZero final int maxDistance,
+                                             @Positive final int limit) {
+        final String folded = fold(query);
+        final List<Match> matches = new ArrayList<>();
+        complete(Field.FULL_NAME, folded, matches);
+        search(Field.FULL_NAME, folded, maxDistance, matches);
+        return ids(matches, limit);
+    }
+
+    private void complete(final Field field, final String prefix, final List<Match> matches) {
+        Node node = roots.get(requireNonNull(field, "field is null"));
+        for (int i = 0; node != null && i < prefix.length(); i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node != null) {
+            collect(node, new StringBuilder(prefix), prefix.length(), matches);
+        }
+    }
+
+    private void collect(final Node node, final StringBuilder term, final int prefixLength,
+                         final List<Match> matches) {
+        for (int i = 0; i < node.count; i++) {
+            matches.add(new Match(node.ids[i], term.toString(), 0, term.length() > prefixLength));
+        }
+        for (int i = 0; i < node.size; i++) {
+            term.append(node.labels[i]);
+            collect(node.children[i], term, prefixLength, matches);
+            term.setLength(term.length() - 1);
+        }
+    }
+
+    private void search(final Field field, final String query, final int maxDistance, final List<Match> matches) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance(" + maxDistance + ") < 0");
+        }
+        final Node root = roots.get(requireNonNull(field, "field is null"));
+        final int[] row = new int[query.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        search(root, new StringBuilder(), query, row, maxDistance, matches);
+    }
+
+    private void search(final Node node, final StringBuilder term, final String query, final int[] previous,
+                        final int maxDistance, final List<Match> matches) {
+        final int distance = previous[query.length()];
+        if (distance <= maxDistance) {
+            for (int i = 0; i < node.count; i++) {
+                matches.add(new Match(node.ids[i], term.toString(), distance, false));
+            }
+        }
+        for (int c = 0; c < node.size; c++) {
+            final char label = node.labels[c];
+            final int[] row = new int[previous.length];
+            row[0] = previous[0] + 1;
+            int min = row[0];
+            for (int i = 1; i < row.length; i++) {
+                final int substitution = previous[i - 1] + (query.charAt(i - 1) == label ? 0 : 1);
+                row[i] = Math.min(Math.min(row[i - 1] + 1, previous[i] + 1), substitution);
+                min = Math.min(min, row[i]);
+            }
+            if (min <= maxDistance) {
+                term.append(label);
+                search(node.children[c], term, query, row, maxDistance, matches);
+                term.setLength(term.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * Ranks specified matches and returns distinct ids of the best ones.
+     */
+    private static List<Integer> ids(final List<Match> matches, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit(" + limit + ") <= 0");
+        }
+        matches.sort(Match.COMPARING_QUALITY);
+        final Map<Integer, Match> best = new LinkedHashMap<>();
+        for (final Match match : matches) {
+            if (best.size() == limit) {
+                break;
+            }
+            best.putIfAbsent(match.id, match);
+        }
+        return new ArrayList<>(best.keySet());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Class<T> entityClass;
+
+    private final FullNameFormatter formatter;
+
+    private final Map<Field, Node> roots = new EnumMap<>(Field.class);
+
+    private final Map<Integer, String[]> names = new HashMap<>();
+}
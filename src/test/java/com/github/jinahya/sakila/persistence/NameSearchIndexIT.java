@@ -0,0 +1,64 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link NameSearchIndex} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class NameSearchIndexIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a random actor is found by its misspelled full name, and a random customer by a prefix of its last name.
+     */
+    @Test
+    void assertFind() {
+        final Actor actor = EntityServiceIT.randomEntity(entityManager, Actor.class);
+        final NameSearchIndex<Actor> actors
+                = NameSearchIndex.load(entityManager, Actor.class, FullNameFormatter.LAST_NAME_FIRST);
+        final String query = actor.getFullName(FullNameFormatter.LAST_NAME_FIRST, " ").toLowerCase().substring(1);
+        assertThat(actors.find(query, 1, 100)).contains(actor.getId());
+        final Customer customer = EntityServiceIT.randomEntity(entityManager, Customer.class);
+        final NameSearchIndex<Customer> customers
+                = NameSearchIndex.load(entityManager, Customer.class, FullNameFormatter.FIRST_NAME_FIRST);
+        assertThat(customers.complete(NameSearchIndex.Field.LAST_NAME, customer.getLastName().substring(0, 2), 1000))
+                .contains(customer.getId());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
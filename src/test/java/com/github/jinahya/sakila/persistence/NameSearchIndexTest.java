@@ -0,0 +1,157 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static com.github.jinahya.sakila.persistence.NameSearchIndex.Field.FIRST_NAME;
+import static com.github.jinahya.sakila.persistence.NameSearchIndex.Field.FULL_NAME;
+import static com.github.jinahya.sakila.persistence.NameSearchIndex.Field.LAST_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link NameSearchIndex}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class NameSearchIndexTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static NameSearchIndex<Actor> index() {
+        final NameSearchIndex<Actor> index = new NameSearchIndex<>(Actor.class, FullNameFormatter.FIRST_NAME_FIRST);
+        index.put(1, FullName.of("PENELOPE", "GUINESS"));
+        index.put(2, FullName.of("NICK", "WAHLBERG"));
+        index.put(3, FullName.of("ED", "CHASE"));
+        index.put(4, FullName.of("JENNIFER", "DAVIS"));
+        index.put(5, FullName.of("JOHNNY", "LOLLOBRIGIDA"));
+        index.put(6, FullName.of("BETTE", "NICHOLSON"));
+        index.put(7, FullName.of("GRACE", "MOSTEL"));
+        index.put(8, FullName.of("MATTHEW", "JOHANSSON"));
+        index.put(9, FullName.of("JOE", "SWANK"));
+        index.put(10, FullName.of("CHRISTIAN", "GABLE"));
+        return index;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts prefix completions, ignoring case, rank exact matches first and then shorter ones.
+     */
+    @Test
+    void assertComplete() {
+        final NameSearchIndex<Actor> index = index();
+        assertThat(index.complete(FIRST_NAME, "jo", 10)).containsExactly(9, 5);
+        assertThat(index.complete(FIRST_NAME, "JOE", 10)).containsExactly(9);
+        assertThat(index.complete(LAST_NAME, "", 3)).hasSize(3);
+        assertThat(index.complete(LAST_NAME, "x", 10)).isEmpty();
+    }
+
+    /**
+     * Asserts fuzzy searches rank closer ones first.
+     */
+    @Test
+    void assertSearch() {
+        final NameSearchIndex<Actor> index = index();
+        assertThat(index.search(LAST_NAME, "guiness", 0, 10)).containsExactly(1);
+        assertThat(index.search(LAST_NAME, "guinnes", 2, 10)).containsExactly(1);
+        assertThat(index.search(LAST_NAME, "jonhansen", 2, 10)).isEmpty();
+        assertThat(index.search(LAST_NAME, "jonhansen", 3, 10)).containsExactly(8);
+        assertThat(index.search(FIRST_NAME, "jon", 1, 10)).containsExactly(9);
+    }
+
+    /**
+     * Asserts combined full name queries find exact, prefixed, and misspelled names.
+     */
+    @Test
+    void assertFind() {
+        final NameSearchIndex<Actor> index = index();
+        assertThat(index.find("Penelope Guiness", 2, 10)).containsExactly(1);
+        assertThat(index.find("penelope g", 2, 10)).containsExactly(1);
+        assertThat(index.find("jonny lolobrigida", 2, 10)).containsExactly(5);
+    }
+
+    /**
+     * Asserts re-indexing and removing.
+     */
+    @Test
+    void assertPutRemove() {
+        final NameSearchIndex<Actor> index = index();
+        index.put(1, FullName.of("PENELOPE", "CRUZ"));
+        assertThat(index.search(LAST_NAME, "guiness", 1, 10)).isEmpty();
+        assertThat(index.complete(LAST_NAME, "cru", 10)).containsExactly(1);
+        assertThat(index.remove(1)).isTrue();
+        assertThat(index.remove(1)).isFalse();
+        assertThat(index.complete(FIRST_NAME, "pen", 10)).isEmpty();
+    }
+
+    /**
+     * Asserts removing prunes nodes left without ids and children, and only them.
+     */
+    @Test
+    void assertRemovePrunes() {
+        final NameSearchIndex<Actor> index = new NameSearchIndex<>(Actor.class, FullNameFormatter.FIRST_NAME_FIRST);
+        index.put(1, FullName.of("JOE", "SWANK"));
+        final int nodes = index.nodes(FIRST_NAME);
+        index.put(2, FullName.of("JOHNNY", "SWANKY"));
+        index.put(3, FullName.of("ED", "CHASE"));
+        assertThat(index.remove(2)).isTrue();
+        assertThat(index.remove(3)).isTrue();
+        assertThat(index.nodes(FIRST_NAME)).isEqualTo(nodes);
+        assertThat(index.complete(LAST_NAME, "swank", 10)).containsExactly(1);
+        assertThat(index.remove(1)).isTrue();
+        assertThat(index.nodes(FIRST_NAME)).isEqualTo(1);
+        assertThat(index.nodes(LAST_NAME)).isEqualTo(1);
+        assertThat(index.nodes(FULL_NAME)).isEqualTo(1);
+    }
+
+    /**
+     * Asserts the listener applies changes only after their transactions commit.
+     */
+    @Test
+    void assertListenerAppliesAfterCommit() {
+        final NameSearchIndex<Actor> index = index().listen();
+        try {
+            final Actor actor = new Actor();
+            actor.setId(11);
+            actor.setFirstName("ZERO");
+            actor.setLastName("CAGE");
+            final NameSearchIndex.Listener listener = new NameSearchIndex.Listener();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(actor);
+            AfterCommit.rolledBack();
+            assertThat(index.complete(FIRST_NAME, "zero", 10)).isEmpty();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(actor);
+            listener.postPersistOrUpdate(new Category()); // not full-named; ignored
+            assertThat(index.complete(FIRST_NAME, "zero", 10)).isEmpty();
+            AfterCommit.committed();
+            assertThat(index.complete(FIRST_NAME, "zero", 10)).containsExactly(11);
+            AfterCommit.begun();
+            listener.postRemove(actor);
+            AfterCommit.committed();
+            assertThat(index.complete(FIRST_NAME, "zero", 10)).isEmpty();
+        } finally {
+            index.unlisten();
+        }
+    }
+}
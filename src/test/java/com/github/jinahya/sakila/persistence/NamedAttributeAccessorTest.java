@@ -0,0 +1,107 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link NamedAttributeAccessor}s generated by the {@code NamedAttributeProcessor}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class NamedAttributeAccessorTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the names of all singular attributes annotated with {@link NamedAttribute} of specified class.
+     *
+     * @param clazz the class.
+     * @return a set of attribute names.
+     */
+    private static Set<String> singularNamedAttributes(final Class<?> clazz) {
+        final Set<String> names = new HashSet<>();
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                final NamedAttribute namedAttribute = field.getAnnotation(NamedAttribute.class);
+                if (namedAttribute == null || Collection.class.isAssignableFrom(field.getType())
+                    || Map.class.isAssignableFrom(field.getType())) {
+                    continue;
+                }
+                names.add(namedAttribute.value());
+            }
+        }
+        return names;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts generated accessors cover all singular named attributes.
+     */
+    @Test
+    void assertAccessorsCoverSingularNamedAttributes() {
+        assertThat(FilmAttributes.ACCESSORS.keySet()).isEqualTo(singularNamedAttributes(Film.class));
+        assertThat(ActorAttributes.ACCESSORS.keySet()).isEqualTo(singularNamedAttributes(Actor.class));
+        assertThat(CustomerAttributes.ACCESSORS.keySet()).isEqualTo(singularNamedAttributes(Customer.class));
+    }
+
+    /**
+     * Asserts generated accessors get and set values.
+     */
+    @Test
+    void assertGetAndSet() {
+        final Film film = new Film();
+        FilmAttributes.TITLE.set(film, "title");
+        assertThat(film.getTitle()).isEqualTo("title");
+        assertThat(FilmAttributes.TITLE.get(film)).isEqualTo("title");
+        FilmAttributes.RENTAL_DURATION.set(film, 3);
+        assertThat(FilmAttributes.RENTAL_DURATION.get(film)).isEqualTo(3);
+        assertThat(FilmAttributes.RENTAL_DURATION.getType()).isSameAs(Integer.class);
+        final Customer customer = new Customer();
+        CustomerAttributes.ACTIVE.set(customer, true);
+        assertThat(customer.isActive()).isTrue();
+    }
+
+    /**
+     * Asserts comparators of generated accessors.
+     */
+    @Test
+    void assertComparing() {
+        final Film film1 = new Film();
+        film1.setTitle("a");
+        final Film film2 = new Film();
+        film2.setTitle("b");
+        assertThat(asList(film2, film1)).isSortedAccordingTo(FilmAttributes.TITLE.comparing(false));
+        assertThat(asList(film1, film2)).isSortedAccordingTo(FilmAttributes.TITLE.comparing(true));
+    }
+}
@@ -0,0 +1,813 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.validation.constraints.NotNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An append-only journal of {@link Rental rentals} and {@link Payment payments} made while a store is offline.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files, each of a header followed by a fixed number of fixed-size
+ * records; an {@link #appendRental(Rental) append} is a few puts to the mapped buffer, without any system call, and
+ * the sequence of a record tells its segment and its offset. Each record is a type, a fixed field layout of the entity,
+ * and a CRC-32 of them; a zero type, or a mismatching CRC, marks the end of the journal. Records are durable once the
+ * journal is {@link #force() forced}.
+ * <p>
+ * When the store comes back online, the journal is {@link #replay(EntityManager, int, long) replayed} sequentially into
+ * an entity manager, with a transaction per batch of persists. A payment may refer to a rental, either by its id in the
+ * database or by its sequence in the journal; ids of replayed rentals are kept beside the segments so that replaying
+ * may resume from any checkpoint. The range of each batch is kept, too, before and after its commit; replaying resumes
+ * after the last committed batch, and a batch committed right before a crash is told by looking up its rentals, by
+ * their rental dates, inventories and customers, or its payments.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class OfflineJournal implements Closeable {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The magic number of segment files. The value is {@value}.
+     */
+    static final int MAGIC = 0x534B4A31; // SKJ1
+
+    /**
+     * The number of bytes of the header of each segment; the magic number and the number of records. The value is
+     * {@value}.
+     */
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    /**
+     * The type of records of rentals. The value is {@value}.
+     * <pre>{@code
+     * long rental_date, int inventory_id, int customer_id, long return_date, int staff_id, int (reserved)
+     * }</pre>
+     */
+    static final int TYPE_RENTAL = 1;
+
+    /**
+     * The type of records of payments. The value is {@value}.
+     * <pre>{@code
+     * int customer_id, int staff_id, long rental, int amount (in cents), long payment_date
+     * }</pre>
+     * The {@code rental} is {@code 0} for none, the positive id of a rental in the database, or the negated sequence,
+     * minus one, of a rental in the journal.
+     */
+    static final int TYPE_PAYMENT = 2;
+
+    /**
+     * The number of bytes of each record. The value is {@value}.
+     */
+    static final int RECORD_BYTES = Integer.BYTES + 32 + Integer.BYTES;
+
+    /**
+     * The default number of records of each segment. The value is {@value}.
+     */
+    static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+    /**
+     * The name of the file of ids of replayed rentals. The value is {@value}.
+     */
+    static final String REPLAYED = "replayed.map";
+
+    /**
+     * The number of bytes of each entry of the {@link #REPLAYED} file; the sequence of a rental in the journal and its
+     * id in the database or, for a batch, the negated first sequence, minus one, of the batch and its number of records
+     * when it's about to commit, or the negated number of records when it's committed. The value is {@value}.
+     */
+    static final int REPLAYED_BYTES = Long.BYTES + Integer.BYTES;
+
+    private static final long NULL_DATE_TIME = Long.MIN_VALUE;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A view of a record in the journal; valid only in the callback it's passed to.
+     */
+    static final class Record {
+
+        private Record() {
+            super();
+        }
+
+        private int crc() {
+            final ByteBuffer slice = buffer.duplicate();
+            slice.limit(offset + RECORD_BYTES - Integer.BYTES).position(offset);
+            final CRC32 crc = new CRC32();
+            crc.update(slice);
+            return (int) crc.getValue();
+        }
+
+        private boolean isValid() {
+            final int type = type();
+            return (type == TYPE_RENTAL || type == TYPE_PAYMENT)
+                   && buffer.getInt(offset + RECORD_BYTES - Integer.BYTES) == crc();
+        }
+
+        private LocalDateTime dateTime(final int index) {
+            final long epochSecond = buffer.getLong(offset + index);
+            return epochSecond == NULL_DATE_TIME ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        }
+
+        /**
+         * Returns the sequence of this record.
+         *
+         * @return the sequence of this record.
+         */
+        long sequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the type of this record.
+         *
+         * @return the type of this record; either {@link #TYPE_RENTAL} or {@link #TYPE_PAYMENT}.
+         */
+        int type() {
+            return buffer.getInt(offset);
+        }
+
+        /**
+         * Returns a new rental of this record whose associations are references of specified entity manager.
+         *
+         * @param entityManager the entity manager.
+         * @return a new rental.
+         */
+        Rental toRental(@NotNull final EntityManager entityManager) {
+            if (type() != TYPE_RENTAL) {
+                throw new IllegalStateException("not a rental record: " + type());
+            }
+            final Rental rental = new Rental();
+            rental.setRentalDate(dateTime(4));
+            rental.setInventory(entityManager.getReference(Inventory.class, buffer.getInt(offset + 12)));
+            rental.setCustomer(entityManager.getReference(Customer.class, buffer.getInt(offset + 16)));
+            rental.setReturnDate(dateTime(20));
+            rental.setStaff(entityManager.getReference(Staff.class, buffer.getInt(offset + 28)));
+            return rental;
+        }
+
+        /**
+         * Returns the reference of the rental of the payment of this record.
+         *
+         * @return {@code 0} for none, a positive rental id, or the negated sequence, minus one, of a rental in the
+         * journal.
+         */
+        long rental() {
+            if (type() != TYPE_PAYMENT) {
+                throw new IllegalStateException("not a payment record: " + type());
+            }
+            return buffer.getLong(offset + 12);
+        }
+
+        /**
+         * Returns a new payment of this record whose associations are references of specified entity manager.
+         *
+         * @param entityManager the entity manager.
+         * @param rental        the rental of the payment; may be {@code null}.
+         * @return a new payment.
+         */
+        Payment toPayment(@NotNull final EntityManager entityManager, final Rental rental) {
+            final long reference = rental();
+            final Payment payment = new Payment();
+            payment.setCustomer(entityManager.getReference(Customer.class, buffer.getInt(offset + 4)));
+            payment.setStaff(entityManager.getReference(Staff.class, buffer.getInt(offset + 8)));
+            payment.setRental(rental != null || reference <= 0L
+                              ? rental : entityManager.getReference(Rental.class, (int) reference));
+            payment.setAmount(BigDecimal.valueOf(buffer.getInt(offset + 20), 2));
+            payment.setPaymentDate(dateTime(24));
+            return payment;
+        }
+
+        private ByteBuffer buffer;
+
+        private int offset;
+
+        private long sequence;
+    }
+
+    /**
+     * An exception thrown when replaying fails; tells the sequence up to which records are committed.
+     */
+    static final class ReplayException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private ReplayException(final long committed, final Throwable cause) {
+            super("failed to replay after " + committed, cause);
+            this.committed = committed;
+        }
+
+        /**
+         * Returns the sequence of the record next to the last one committed; a checkpoint to resume from.
+         *
+         * @return the sequence to resume from.
+         */
+        long committed() {
+            return committed;
+        }
+
+        private final long committed;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static long epochSecond(final LocalDateTime dateTime) {
+        return dateTime == null ? NULL_DATE_TIME : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static int id(final BaseEntity entity, final String name) {
+        if (entity == null || entity.getId() == null) {
+            throw new IllegalArgumentException(name + " has no id");
+        }
+        return entity.getId();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Opens a journal of segments in specified directory, with {@value #DEFAULT_RECORDS_PER_SEGMENT} records per
+     * segment.
+     *
+     * @param directory the directory of segment files.
+     * @throws IOException if an I/O error occurs.
+     */
+    OfflineJournal(@NotNull final Path directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * Opens a journal of segments in specified directory, positioned after the last valid record.
+     *
+     * @param directory          the directory of segment files.
+     * @param recordsPerSegment  the number of records of each new segment.
+     * @throws IOException if an I/O error occurs.
+     */
+    OfflineJournal(@NotNull final Path directory, final int recordsPerSegment) throws IOException {
+        super();
+        this.directory = createDirectories(requireNonNull(directory, "directory is null"));
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("recordsPerSegment(" + recordsPerSegment + ") <= 0");
+        }
+        try (DirectoryStream<Path> stream = newDirectoryStream(directory, "journal-*.seg")) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        if (segments.isEmpty()) {
+            this.recordsPerSegment = recordsPerSegment;
+            roll();
+            return;
+        }
+        final Path last = segments.get(segments.size() - 1);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(last, READ)) {
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // read fully
+            }
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            throw new IOException("not a journal segment: " + last);
+        }
+        this.recordsPerSegment = header.getInt(Integer.BYTES);
+        mapped = map(last, false);
+        final Record record = new Record();
+        record.buffer = mapped;
+        int index = 0;
+        for (; index < this.recordsPerSegment; index++) {
+            record.offset = HEADER_BYTES + index * RECORD_BYTES;
+            if (!record.isValid()) {
+                break;
+            }
+        }
+        position = HEADER_BYTES + index * RECORD_BYTES;
+        sequence = (long) (segments.size() - 1) * this.recordsPerSegment + index;
+        log.debug("opened at {}", sequence);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Forces, and closes, this journal.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends specified rental.
+     *
+     * @param rental the rental to append.
+     * @return the sequence of the record.
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized long appendRental(@NotNull final Rental rental) throws IOException {
+        requireNonNull(rental, "rental is null");
+        final long epochSecond = epochSecond(requireNonNull(rental.getRentalDate(), "rental.rentalDate is null"));
+        final int inventoryId = id(rental.getInventory(), "rental.inventory");
+        final int customerId = id(rental.getCustomer(), "rental.customer");
+        final int staffId = id(rental.getStaff(), "rental.staff");
+        final int offset = next();
+        mapped.putInt(offset, TYPE_RENTAL)
+                .putLong(offset + 4, epochSecond)
+                .putInt(offset + 12, inventoryId)
+                .putInt(offset + 16, customerId)
+                .putLong(offset + 20, epochSecond(rental.getReturnDate()))
+                .putInt(offset + 28, staffId)
+                .putInt(offset + 32, 0);
+        return seal(offset);
+    }
+
+    /**
+     * Appends specified payment whose rental, if any, is in the database.
+     *
+     * @param payment the payment to append.
+     * @return the sequence of the record.
+     * @throws IOException if an I/O error occurs.
+     */
+    long appendPayment(@NotNull final Payment payment) throws IOException {
+        final Rental rental = requireNonNull(payment, "payment is null").getRental();
+        return appendPaymentRecord(payment, rental == null ? 0L : id(rental, "payment.rental"));
+    }
+
+    /**
+     * Appends specified payment of a rental, in this journal, of specified sequence.
+     *
+     * @param payment        the payment to append.
+     * @param rentalSequence the sequence of the rental in this journal.
+     * @return the sequence of the record.
+     * @throws IOException if an I/O error occurs.
+     */
+    long appendPayment(@NotNull final Payment payment, final long rentalSequence) throws IOException {
+        if (rentalSequence < 0L) {
+            throw new IllegalArgumentException("rentalSequence(" + rentalSequence + ") < 0");
+        }
+        return appendPaymentRecord(payment, -rentalSequence - 1L);
+    }
+
+    private synchronized long appendPaymentRecord(final Payment payment, final long rental) throws IOException {
+        requireNonNull(payment, "payment is null");
+        final int customerId = id(payment.getCustomer(), "payment.customer");
+        final int staffId = id(payment.getStaff(), "payment.staff");
+        final int cents = requireNonNull(payment.getAmount(), "payment.amount is null").movePointRight(2)
+                .intValueExact();
+        final long epochSecond = epochSecond(requireNonNull(payment.getPaymentDate(),
+                                                            "payment.paymentDate is null"));
+        final int offset = next();
+        mapped.putInt(offset, TYPE_PAYMENT)
+                .putInt(offset + 4, customerId)
+                .putInt(offset + 8, staffId)
+                .putLong(offset + 12, rental)
+                .putInt(offset + 20, cents)
+                .putLong(offset + 24, epochSecond)
+                .putInt(offset + 32, 0);
+        return seal(offset);
+    }
+
+    /**
+     * Forces appended records to the storage.
+     */
+    synchronized void force() {
+        mapped.force();
+    }
+
+    /**
+     * Returns the sequence of the next record.
+     *
+     * @return the sequence of the next record.
+     */
+    synchronized long sequence() {
+        return sequence;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads records from specified sequence.
+     *
+     * @param from     the sequence of the first record to read.
+     * @param consumer a consumer accepts each record.
+     * @return the sequence of the record next to the last one read.
+     * @throws IOException if an I/O error occurs.
+     */
+    long read(final long from, @NotNull final Consumer<? super Record> consumer) throws IOException {
+        return read(from, Long.MAX_VALUE, consumer);
+    }
+
+    private long read(final long from, final long to, final Consumer<? super Record> consumer) throws IOException {
+        if (from < 0L) {
+            throw new IllegalArgumentException("from(" + from + ") < 0");
+        }
+        requireNonNull(consumer, "consumer is null");
+        final List<Path> segments;
+        final long end;
+        synchronized (this) {
+            segments = new ArrayList<>(this.segments);
+            end = Math.min(to, sequence);
+        }
+        final Record record = new Record();
+        for (record.sequence = from; record.sequence < end; record.sequence++) {
+            final int index = (int) (record.sequence / recordsPerSegment);
+            final int offset = HEADER_BYTES + (int) (record.sequence % recordsPerSegment) * RECORD_BYTES;
+            if (record.buffer == null || offset == HEADER_BYTES || record.sequence == from) {
+                record.buffer = map(segments.get(index), true);
+            }
+            record.offset = offset;
+            if (!record.isValid()) {
+                log.warn("invalid record at {}", record.sequence);
+                break;
+            }
+            consumer.accept(record);
+        }
+        return record.sequence;
+    }
+
+    /**
+     * Replays records from specified sequence into specified entity manager, in a transaction per specified number of
+     * records. Ids of rentals are appended, and forced, to the {@link #REPLAYED} file as their transactions commit, so
+     * that payments replayed from a later checkpoint still find rentals of earlier sequences. The range of each batch
+     * is appended, and forced, before and after its commit; records up to the end of the last committed batch are
+     * skipped, whatever sequence is specified. When the last batch is not known to be committed, as the process was
+     * killed between the commit and the append, its rentals, or, for a batch without any rental, its payments are
+     * looked up first.
+     *
+     * @param entityManager the entity manager.
+     * @param batchSize     the number of records per transaction.
+     * @param from          the sequence of the first record to replay.
+     * @return the sequence of the record next to the last one replayed; a checkpoint to resume from.
+     * @throws IOException     if an I/O error occurs.
+     * @throws ReplayException if failed to replay; tells the checkpoint to resume from.
+     */
+    long replay(@NotNull final EntityManager entityManager, final int batchSize, final long from) throws IOException {
+        requireNonNull(entityManager, "entityManager is null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize(" + batchSize + ") <= 0");
+        }
+        final Map<Long, Integer> rentalIds = new HashMap<>();
+        final Batches batches = replayed(rentalIds);
+        final Map<Long, Rental> batch = new HashMap<>();
+        final EntityTransaction transaction = entityManager.getTransaction();
+        final long[] committed = {from};
+        try (FileChannel replayed = FileChannel.open(directory.resolve(REPLAYED), CREATE, WRITE, APPEND)) {
+            if (batches.pendingFrom >= 0L
+                && recover(entityManager, batches.pendingFrom, batches.pendingTo, rentalIds, replayed)) {
+                batches.committed = Math.max(batches.committed, batches.pendingTo);
+            }
+            if (batches.committed > from) {
+                log.info("skipping committed records in [{}, {})", from, batches.committed);
+                committed[0] = batches.committed;
+            }
+            final long next = read(committed[0], record -> {
+                if (!transaction.isActive()) {
+                    transaction.begin();
+                }
+                if (record.type() == TYPE_RENTAL) {
+                    final Rental rental = record.toRental(entityManager);
+                    entityManager.persist(rental);
+                    batch.put(record.sequence(), rental);
+                } else {
+                    final long reference = record.rental();
+                    Rental rental = null;
+                    if (reference < 0L) {
+                        final long sequence = -(reference + 1L);
+                        rental = batch.get(sequence);
+                        if (rental == null) {
+                            final Integer id = rentalIds.get(sequence);
+                            if (id == null) {
+                                throw new IllegalStateException("unknown rental sequence: " + sequence);
+                            }
+                            rental = entityManager.getReference(Rental.class, id);
+                        }
+                    }
+                    entityManager.persist(record.toPayment(entityManager, rental));
+                }
+                if (record.sequence() + 1L - committed[0] >= batchSize) {
+                    commit(entityManager, batch, rentalIds, replayed, committed[0], record.sequence() + 1L);
+                    committed[0] = record.sequence() + 1L;
+                }
+            });
+            if (transaction.isActive()) {
+                commit(entityManager, batch, rentalIds, replayed, committed[0], next);
+                committed[0] = next;
+            }
+            log.debug("replayed {} record(s)", next - from);
+            return next;
+        } catch (final IOException | RuntimeException e) {
+            throw new ReplayException(committed[0], e instanceof UncheckedIOException ? e.getCause() : e);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+                log.warn("rolled back after {}", committed[0]);
+            }
+        }
+    }
+
+    private static ByteBuffer putCommitted(final ByteBuffer entries, final long from, final long to) {
+        return entries.putLong(-from - 1L).putInt((int) (from - to));
+    }
+
+    private static void commit(final EntityManager entityManager, final Map<Long, Rental> batch,
+                               final Map<Long, Integer> rentalIds, final FileChannel replayed, final long from,
+                               final long to) {
+        append(replayed, ByteBuffer.allocate(REPLAYED_BYTES).putLong(-from - 1L).putInt((int) (to - from)));
+        entityManager.getTransaction().commit();
+        final ByteBuffer entries = ByteBuffer.allocate((batch.size() + 1) * REPLAYED_BYTES);
+        batch.forEach((k, v) -> {
+            rentalIds.put(k, v.getId());
+            entries.putLong(k).putInt(v.getId());
+        });
+        batch.clear();
+        entityManager.clear();
+        append(replayed, putCommitted(entries, from, to));
+    }
+
+    private static void append(final FileChannel replayed, final ByteBuffer entries) {
+        entries.flip();
+        try {
+            while (entries.hasRemaining()) {
+                replayed.write(entries);
+            }
+            replayed.force(false);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Tells whether specified range of a batch is committed, and appends it as committed if so. Ids of rentals of the
+     * batch, missing in specified map, are looked up, by their rental dates, inventories and customers, and appended;
+     * a batch without any rental is looked up by its payments' customers, staffs, amounts and payment dates.
+     *
+     * @return {@code true} if the batch is committed; {@code false} otherwise.
+     */
+    private boolean recover(final EntityManager entityManager, final long from, final long to,
+                            final Map<Long, Integer> rentalIds, final FileChannel replayed) throws IOException {
+        final Map<Long, Rental> missing = new HashMap<>();
+        final List<Payment> payments = new ArrayList<>();
+        final int[] rentals = {0};
+        read(from, to, record -> {
+            if (record.type() == TYPE_RENTAL) {
+                rentals[0]++;
+                if (!rentalIds.containsKey(record.sequence())) {
+                    missing.put(record.sequence(), record.toRental(entityManager));
+                }
+            } else if (rentals[0] == 0) {
+                payments.add(record.toPayment(entityManager, null));
+            }
+        });
+        if (rentals[0] == 0) {
+            return recover(entityManager, from, to, payments, replayed);
+        }
+        final ByteBuffer entries = ByteBuffer.allocate((missing.size() + 1) * REPLAYED_BYTES);
+        missing.forEach((k, v) -> {
+            final List<Integer> ids = entityManager.createQuery(
+                    "SELECT r.id FROM Rental r WHERE r.rentalDate = :rentalDate"
+                    + " AND r.inventory.id = :inventoryId AND r.customer.id = :customerId", Integer.class)
+                    .setParameter("rentalDate", v.getRentalDate())
+                    .setParameter("inventoryId", v.getInventory().getId())
+                    .setParameter("customerId", v.getCustomer().getId())
+                    .getResultList();
+            if (!ids.isEmpty()) {
+                rentalIds.put(k, ids.get(0));
+                entries.putLong(k).putInt(ids.get(0));
+            }
+        });
+        entityManager.clear();
+        final int found = entries.position() / REPLAYED_BYTES;
+        if (found > 0 && found < missing.size()) {
+            throw new IllegalStateException(
+                    "only " + found + " of " + missing.size() + " rental(s) found in [" + from + ", " + to + ")");
+        }
+        if (found == 0 && !missing.isEmpty()) {
+            log.debug("records in [{}, {}) are not committed", from, to);
+            return false;
+        }
+        append(replayed, putCommitted(entries, from, to));
+        log.info("recovered ids of {} rental(s) in [{}, {})", found, from, to);
+        return true;
+    }
+
+    /**
+     * Tells whether specified range of a batch of specified payments, without any rental, is committed, and appends
+     * it as committed if so. A payment is found by its customer, staff, amount and payment date.
+     */
+    private boolean recover(final EntityManager entityManager, final long from, final long to,
+                            final List<Payment> payments, final FileChannel replayed) {
+        int found = 0;
+        for (final Payment payment : payments) {
+            final List<Integer> ids = entityManager.createQuery(
+                    "SELECT p.id FROM Payment p WHERE p.customer.id = :customerId AND p.staff.id = :staffId"
+                    + " AND p.amount = :amount AND p.paymentDate = :paymentDate", Integer.class)
+                    .setParameter("customerId", payment.getCustomer().getId())
+                    .setParameter("staffId", payment.getStaff().getId())
+                    .setParameter("amount", payment.getAmount())
+                    .setParameter("paymentDate", payment.getPaymentDate())
+                    .setMaxResults(1)
+                    .getResultList();
+            if (!ids.isEmpty()) {
+                found++;
+            }
+        }
+        entityManager.clear();
+        if (found > 0 && found < payments.size()) {
+            throw new IllegalStateException(
+                    "only " + found + " of " + payments.size() + " payment(s) found in [" + from + ", " + to + ")");
+        }
+        if (found == 0) {
+            log.debug("records in [{}, {}) are not committed", from, to);
+            return false;
+        }
+        append(replayed, putCommitted(ByteBuffer.allocate(REPLAYED_BYTES), from, to));
+        log.info("found {} payment(s) committed in [{}, {})", found, from, to);
+        return true;
+    }
+
+    /**
+     * Reads ids of rentals replayed so far, keyed by their sequences, ignoring any torn entry at the tail.
+     *
+     * @return a map of sequences and ids of replayed rentals.
+     * @throws IOException if an I/O error occurs.
+     */
+    Map<Long, Integer> replayed() throws IOException {
+        final Map<Long, Integer> rentalIds = new HashMap<>();
+        replayed(rentalIds);
+        return rentalIds;
+    }
+
+    /**
+     * Ranges of batches read from the {@link #REPLAYED} file.
+     */
+    private static final class Batches {
+
+        // the first sequence of the last batch not known to be committed; -1 for none
+        private long pendingFrom = -1L;
+
+        // the sequence next to the last one of the last batch not known to be committed
+        private long pendingTo;
+
+        // the sequence next to the last one of the last committed batch
+        private long committed;
+    }
+
+    /**
+     * Reads ids of rentals replayed so far into specified map, and returns ranges of batches.
+     *
+     * @return ranges of batches.
+     */
+    private Batches replayed(final Map<Long, Integer> rentalIds) throws IOException {
+        final Batches batches = new Batches();
+        final Path file = directory.resolve(REPLAYED);
+        if (!exists(file)) {
+            return batches;
+        }
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final ByteBuffer entry = ByteBuffer.allocate(REPLAYED_BYTES);
+            while (true) {
+                entry.clear();
+                while (entry.hasRemaining() && channel.read(entry) != -1) {
+                    // read fully
+                }
+                if (entry.hasRemaining()) {
+                    break;
+                }
+                final long sequence = entry.getLong(0);
+                if (sequence < 0L) {
+                    final long from = -(sequence + 1L);
+                    final int count = entry.getInt(Long.BYTES);
+                    if (count > 0) {
+                        batches.pendingFrom = from;
+                        batches.pendingTo = from + count;
+                    } else {
+                        batches.pendingFrom = -1L;
+                        batches.committed = Math.max(batches.committed, from - count);
+                    }
+                    continue;
+                }
+                rentalIds.put(sequence, entry.getInt(Long.BYTES));
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Deletes all segments, and ids of replayed rentals, and starts over from the sequence {@code 0}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized void clear() throws IOException {
+        for (final Path segment : segments) {
+            delete(segment);
+        }
+        deleteIfExists(directory.resolve(REPLAYED));
+        segments.clear();
+        sequence = 0L;
+        roll();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private MappedByteBuffer map(final Path segment, final boolean readOnly) throws IOException {
+        try (FileChannel channel = readOnly ? FileChannel.open(segment, READ)
+                                            : FileChannel.open(segment, CREATE, READ, WRITE)) {
+            final long size = readOnly ? channel.size() : HEADER_BYTES + (long) recordsPerSegment * RECORD_BYTES;
+            return channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0L, size);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (mapped != null) {
+            mapped.force();
+        }
+        final Path segment = directory.resolve(String.format("journal-%010d.seg", segments.size()));
+        mapped = map(segment, false);
+        mapped.putInt(0, MAGIC).putInt(Integer.BYTES, recordsPerSegment);
+        segments.add(segment);
+        position = HEADER_BYTES;
+    }
+
+    private int next() throws IOException {
+        if (position == HEADER_BYTES + recordsPerSegment * RECORD_BYTES) {
+            roll();
+        }
+        return position;
+    }
+
+    private long seal(final int offset) {
+        final ByteBuffer slice = mapped.duplicate();
+        slice.limit(offset + RECORD_BYTES - Integer.BYTES).position(offset);
+        crc.reset();
+        crc.update(slice);
+        mapped.putInt(offset + RECORD_BYTES - Integer.BYTES, (int) crc.getValue());
+        position = offset + RECORD_BYTES;
+        return sequence++;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    private final List<Path> segments = new ArrayList<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer mapped;
+
+    private int position;
+
+    private long sequence;
+}
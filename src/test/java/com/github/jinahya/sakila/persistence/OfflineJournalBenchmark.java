@@ -0,0 +1,119 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark for measuring the latency of appending {@link Rental rentals} to an {@link OfflineJournal}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+@Slf4j
+public class OfflineJournalBenchmark {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args command line arguments.
+     * @throws RunnerException if failed to run.
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OfflineJournalBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static <T extends BaseEntity> T entity(final T entity, final int id) {
+        entity.setId(id);
+        return entity;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Trial)
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory(OfflineJournalBenchmark.class.getSimpleName());
+        journal = new OfflineJournal(directory);
+        rental = new Rental();
+        rental.setRentalDate(LocalDateTime.now());
+        rental.setInventory(entity(new Inventory(), 1));
+        rental.setCustomer(entity(new Customer(), 1));
+        rental.setStaff(entity(new Staff(), 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void clearJournal() throws IOException {
+        try {
+            journal.clear();
+            journal.close();
+        } finally {
+            log.debug("journal directory: {}", directory);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends a rental, without forcing.
+     *
+     * @return the sequence of the record.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Benchmark
+    public long appendRental() throws IOException {
+        return journal.appendRental(rental);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private Path directory;
+
+    private OfflineJournal journal;
+
+    private Rental rental;
+}
@@ -0,0 +1,101 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link OfflineJournal} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class OfflineJournalIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a journaled rental and its payment are replayed; both are removed afterwards.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertReplay(@TempDir final Path directory) throws IOException {
+        final Inventory inventory = randomEntity(entityManager, Inventory.class);
+        final Customer customer = randomEntity(entityManager, Customer.class);
+        final Staff staff = randomEntity(entityManager, Staff.class);
+        final LocalDateTime rentalDate = LocalDateTime.of(2099, 1, 1, 0, 0, 0);
+        try (OfflineJournal journal = new OfflineJournal(directory, 16)) {
+            final Rental rental = new Rental();
+            rental.setRentalDate(rentalDate);
+            rental.setInventory(inventory);
+            rental.setCustomer(customer);
+            rental.setStaff(staff);
+            final long sequence = journal.appendRental(rental);
+            final Payment payment = new Payment();
+            payment.setCustomer(customer);
+            payment.setStaff(staff);
+            payment.setAmount(new BigDecimal("4.99"));
+            payment.setPaymentDate(rentalDate);
+            journal.appendPayment(payment, sequence);
+            assertThat(journal.replay(entityManager, 1, 0L)).isEqualTo(2L);
+        }
+        final List<Payment> payments = entityManager
+                .createQuery("SELECT p FROM Payment AS p WHERE p.rental.rentalDate = :rentalDate"
+                             + " AND p.rental.inventory = :inventory", Payment.class)
+                .setParameter("rentalDate", rentalDate)
+                .setParameter("inventory", inventory)
+                .getResultList();
+        try {
+            assertThat(payments).hasSize(1);
+            assertThat(payments.get(0).getAmount()).isEqualByComparingTo("4.99");
+        } finally {
+            entityManager.getTransaction().begin();
+            for (final Payment payment : payments) {
+                final Rental rental = payment.getRental();
+                entityManager.remove(payment);
+                entityManager.remove(rental);
+            }
+            entityManager.getTransaction().commit();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
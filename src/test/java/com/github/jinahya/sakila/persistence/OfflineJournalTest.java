@@ -0,0 +1,344 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.reference;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.transaction;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link OfflineJournal}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class OfflineJournalTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A fake entity manager whose references are new instances with ids.
+     */
+    private static final EntityManager ENTITY_MANAGER = fake(EntityManager.class, (p, n, a) -> "getReference".equals(n)
+            ? reference(((Class<?>) a[0]).asSubclass(BaseEntity.class), (Integer) a[1]) : null);
+
+    /**
+     * Returns a fake entity manager assigning ids, from {@code 1000}, to persisted rentals and logging persisted
+     * payments, with ids of their rentals, to specified list; the persist of a payment fails when the list has
+     * specified number of payments. Rentals are looked up, by their inventory ids, in specified map; payments are
+     * looked up, by their amounts, in specified list.
+     */
+    private static EntityManager entityManager(final List<String> payments, final int failing,
+                                               final Map<Integer, Integer> rentals) {
+        final EntityTransaction transaction = transaction();
+        final AtomicInteger ids = new AtomicInteger(1000);
+        final Map<String, Object> parameters = new HashMap<>();
+        final TypedQuery<?> query = fake(TypedQuery.class, (p, n, a) -> {
+            switch (n) {
+                case "setParameter":
+                    parameters.put((String) a[0], a[1]);
+                    return p;
+                case "setMaxResults":
+                    return p;
+                case "getResultList":
+                    if (parameters.containsKey("amount")) {
+                        final String amount = parameters.get("amount") + ":";
+                        return payments.stream().anyMatch(v -> v.startsWith(amount))
+                               ? Collections.singletonList(1) : Collections.emptyList();
+                    }
+                    final Integer id = rentals.get((Integer) parameters.get("inventoryId"));
+                    return id == null ? Collections.emptyList() : Collections.singletonList(id);
+                default:
+                    return null;
+            }
+        });
+        return fake(EntityManager.class, (p, n, a) -> {
+            switch (n) {
+                case "getTransaction":
+                    return transaction;
+                case "getReference":
+                    return ENTITY_MANAGER.getReference((Class<?>) a[0], a[1]);
+                case "createQuery":
+                    parameters.clear();
+                    return query;
+                case "persist":
+                    if (a[0] instanceof Rental) {
+                        ((Rental) a[0]).setId(ids.getAndIncrement());
+                        return NULL;
+                    }
+                    if (payments.size() == failing) {
+                        throw new PersistenceException("failing");
+                    }
+                    payments.add(((Payment) a[0]).getAmount() + ":" + ((Payment) a[0]).getRental().getId());
+                    return NULL;
+                case "clear":
+                    return NULL;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static <T extends BaseEntity> T entity(final Class<T> entityClass, final int id) {
+        return entityClass.cast(ENTITY_MANAGER.getReference(entityClass, id));
+    }
+
+    private static Rental rental(final int inventoryId, final LocalDateTime rentalDate) {
+        final Rental rental = new Rental();
+        rental.setRentalDate(rentalDate);
+        rental.setInventory(entity(Inventory.class, inventoryId));
+        rental.setCustomer(entity(Customer.class, 5));
+        rental.setStaff(entity(Staff.class, 1));
+        return rental;
+    }
+
+    private static Payment payment(final String amount, final LocalDateTime paymentDate) {
+        final Payment payment = new Payment();
+        payment.setCustomer(entity(Customer.class, 5));
+        payment.setStaff(entity(Staff.class, 2));
+        payment.setAmount(new BigDecimal(amount));
+        payment.setPaymentDate(paymentDate);
+        return payment;
+    }
+
+    private static List<String> read(final OfflineJournal journal) throws IOException {
+        final List<String> records = new ArrayList<>();
+        journal.read(0L, r -> {
+            if (r.type() == OfflineJournal.TYPE_RENTAL) {
+                final Rental rental = r.toRental(ENTITY_MANAGER);
+                records.add(r.sequence() + ":rental:" + rental.getInventory().getId() + ":" + rental.getRentalDate()
+                            + ":" + rental.getReturnDate());
+            } else {
+                final Payment payment = r.toPayment(ENTITY_MANAGER, null);
+                records.add(r.sequence() + ":payment:" + r.rental() + ":" + payment.getAmount() + ":"
+                            + payment.getPaymentDate());
+            }
+        });
+        return records;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts records are appended across segments and read back after reopening.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertAppendAndRead(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        try (OfflineJournal journal = new OfflineJournal(directory, 3)) {
+            final long rental = journal.appendRental(rental(10, now));
+            assertThat(rental).isZero();
+            assertThat(journal.appendPayment(payment("2.99", now), rental)).isEqualTo(1L);
+            final Rental returned = rental(11, now);
+            returned.setReturnDate(now.plusDays(3L));
+            assertThat(journal.appendRental(returned)).isEqualTo(2L);
+            final Payment payment = payment("0.99", now);
+            payment.setRental(entity(Rental.class, 16049));
+            assertThat(journal.appendPayment(payment)).isEqualTo(3L);
+        }
+        try (OfflineJournal journal = new OfflineJournal(directory, 100)) {
+            assertThat(journal.sequence()).isEqualTo(4L);
+            assertThat(journal.appendPayment(payment("1.00", now))).isEqualTo(4L);
+            assertThat(read(journal)).containsExactly(
+                    "0:rental:10:" + now + ":null",
+                    "1:payment:-1:2.99:" + now,
+                    "2:rental:11:" + now + ":" + now.plusDays(3L),
+                    "3:payment:16049:0.99:" + now,
+                    "4:payment:0:1.00:" + now);
+        }
+    }
+
+    /**
+     * Asserts the journal ends at a corrupted record.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertCorrupted(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            for (int i = 0; i < 3; i++) {
+                journal.appendRental(rental(i + 1, now));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("journal-0000000000.seg"), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1}),
+                          OfflineJournal.HEADER_BYTES + OfflineJournal.RECORD_BYTES + 13L);
+        }
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThat(journal.sequence()).isEqualTo(1L);
+            assertThat(journal.appendRental(rental(4, now))).isEqualTo(1L);
+            assertThat(read(journal)).hasSize(2);
+        }
+    }
+
+    /**
+     * Asserts a failed replay tells its checkpoint and payments replayed from the checkpoint, by another journal, find
+     * rentals committed before it.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertResumeFromCheckpoint(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        final List<String> payments = new ArrayList<>();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            final long first = journal.appendRental(rental(10, now));
+            final long second = journal.appendRental(rental(11, now));
+            journal.appendPayment(payment("1.00", now), first);
+            journal.appendPayment(payment("2.00", now), second);
+            assertThatThrownBy(() -> journal.replay(entityManager(payments, 1, Collections.emptyMap()), 2, 0L))
+                    .isInstanceOf(OfflineJournal.ReplayException.class)
+                    .hasCauseInstanceOf(PersistenceException.class)
+                    .satisfies(e -> assertThat(((OfflineJournal.ReplayException) e).committed()).isEqualTo(2L));
+            assertThat(journal.replayed()).containsEntry(0L, 1000).containsEntry(1L, 1001).hasSize(2);
+        }
+        payments.clear();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThat(journal.replay(entityManager(payments, -1, Collections.emptyMap()), 2, 2L)).isEqualTo(4L);
+            assertThat(payments).containsExactly("1.00:1000", "2.00:1001");
+            journal.clear();
+            assertThat(journal.replayed()).isEmpty();
+        }
+    }
+
+    /**
+     * Asserts ids of rentals of a batch committed right before a kill, and before its ids are written, are looked up
+     * when replaying resumes and the batch is not replayed again; and the batch is replayed again when its rentals are
+     * not found.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertRecoverIdsAfterKillBetweenCommitAndIdWrite(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        final List<String> payments = new ArrayList<>();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            final long first = journal.appendRental(rental(10, now));
+            final long second = journal.appendRental(rental(11, now));
+            journal.appendPayment(payment("1.00", now), first);
+            journal.appendPayment(payment("2.00", now), second);
+        }
+        final Path replayed = directory.resolve(OfflineJournal.REPLAYED);
+        final Map<Integer, Integer> committed = new HashMap<>();
+        committed.put(10, 2000);
+        committed.put(11, 2001);
+        // killed after the commit of [0, 2) and before its ids are written
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThatThrownBy(() -> journal.replay(entityManager(payments, 0, committed), 2, 0L))
+                    .isInstanceOf(OfflineJournal.ReplayException.class);
+        }
+        try (FileChannel channel = FileChannel.open(replayed, WRITE)) {
+            channel.truncate(OfflineJournal.REPLAYED_BYTES);
+        }
+        payments.clear();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThat(journal.replayed()).isEmpty();
+            assertThat(journal.replay(entityManager(payments, -1, committed), 2, 0L)).isEqualTo(4L);
+            assertThat(payments).containsExactly("1.00:2000", "2.00:2001");
+            assertThat(journal.replayed()).containsEntry(0L, 2000).containsEntry(1L, 2001).hasSize(2);
+        }
+        // killed after the begin of [0, 2) and before its commit
+        try (FileChannel channel = FileChannel.open(replayed, WRITE)) {
+            channel.truncate(OfflineJournal.REPLAYED_BYTES);
+        }
+        payments.clear();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThat(journal.replay(entityManager(payments, -1, Collections.emptyMap()), 2, 0L)).isEqualTo(4L);
+            assertThat(payments).containsExactly("1.00:1000", "2.00:1001");
+            assertThat(journal.replayed()).containsEntry(0L, 1000).containsEntry(1L, 1001).hasSize(2);
+        }
+    }
+
+    /**
+     * Asserts replaying resumed from its original sequence, after several batches committed, skips the committed
+     * batches; including a batch of payments only, committed right before a kill, which is found by its payments.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertResumeFromOriginalSequenceAfterCommittedBatches(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        final List<String> payments = new ArrayList<>();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            final long first = journal.appendRental(rental(10, now));
+            final long second = journal.appendRental(rental(11, now));
+            journal.appendPayment(payment("1.00", now), first);
+            journal.appendPayment(payment("2.00", now), second);
+            journal.appendPayment(payment("3.00", now), first);
+            journal.appendPayment(payment("4.00", now), second);
+            assertThat(journal.replay(entityManager(payments, -1, Collections.emptyMap()), 2, 0L)).isEqualTo(6L);
+            assertThat(payments).containsExactly("1.00:1000", "2.00:1001", "3.00:1000", "4.00:1001");
+        }
+        final Path replayed = directory.resolve(OfflineJournal.REPLAYED);
+        // killed after the commit of [4, 6) and before it's written as committed
+        try (FileChannel channel = FileChannel.open(replayed, WRITE)) {
+            channel.truncate(channel.size() - OfflineJournal.REPLAYED_BYTES);
+        }
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThat(journal.replay(entityManager(payments, -1, Collections.emptyMap()), 2, 0L)).isEqualTo(6L);
+            assertThat(payments).hasSize(4);
+        }
+        // killed after the begin of [4, 6) and before its commit
+        try (FileChannel channel = FileChannel.open(replayed, WRITE)) {
+            channel.truncate(channel.size() - OfflineJournal.REPLAYED_BYTES);
+        }
+        payments.subList(2, 4).clear();
+        try (OfflineJournal journal = new OfflineJournal(directory, 10)) {
+            assertThat(journal.replay(entityManager(payments, -1, Collections.emptyMap()), 2, 0L)).isEqualTo(6L);
+            assertThat(payments).containsExactly("1.00:1000", "2.00:1001", "3.00:1000", "4.00:1001");
+            assertThat(journal.replay(entityManager(payments, -1, Collections.emptyMap()), 2, 0L)).isEqualTo(6L);
+            assertThat(payments).hasSize(4);
+        }
+    }
+}
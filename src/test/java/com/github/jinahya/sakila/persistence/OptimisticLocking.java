@@ -0,0 +1,218 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Optimistic concurrency for hot mutable attributes, such as {@link Rental_#returnDate Rental.returnDate}, {@link
+ * Customer_#active Customer.active}, {@link Inventory_#store Inventory.store} and {@link Film_#rentalRate
+ * Film.rentalRate}, which clerks update concurrently.
+ * <p>
+ * The Sakila schema has no version column, and {@link BaseEntity#getLastUpdate() last_update} is maintained by the
+ * database, with second precision, rather than by the persistence provider; hence no {@link javax.persistence.Version
+ * Version} attribute. An {@link #update(EntityManager, BaseEntity, SingularAttribute, Function, Object) update}
+ * instead compares-and-sets the attribute on both the {@code last_update}, as the version, and the value read, and
+ * fails with an {@link OptimisticLockException} when another transaction has changed the row in the meantime.
+ * <p>
+ * Ordinary setter-plus-flush updates of these entities are guarded, with the {@code eclipselink} profile, by {@link
+ * EclipseLinkOptimisticLocking} which compares the old values of changed columns instead.
+ * <p>
+ * An update is a bulk update which fires no entity callbacks. Returns, updates of {@link Rental_#returnDate
+ * Rental.returnDate} to a value, are therefore {@link RentalReturnBuffer#notifyReturned(Rental) notified} to the
+ * entity listeners of rentals, which apply them once the transaction commits. Other changes of rentals, such as
+ * clearing a return date, are seen by the entity listeners only through setter-plus-flush updates.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class OptimisticLocking {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The maximum backoff, in milliseconds, between attempts. The value is {@value}.
+     */
+    static final long MAX_BACKOFF_MILLIS = 32L;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static void andEqual(final CriteriaBuilder builder, final CriteriaUpdate<?> criteria, final Path<?> path,
+                                 final Object value) {
+        criteria.where(criteria.getRestriction(), value == null ? builder.isNull(path) : builder.equal(path, value));
+    }
+
+    /**
+     * Updates specified attribute of specified entity, in the current transaction of specified entity manager, only if
+     * neither the attribute nor the {@link BaseEntity#getLastUpdate() lastUpdate} has changed since the entity was
+     * read. The entity, if managed, is refreshed after the update. A return of a {@link Rental} is notified to the
+     * entity listeners of rentals.
+     *
+     * @param entityManager the entity manager.
+     * @param entity        the entity to update.
+     * @param attribute     the attribute to update.
+     * @param getter        a function for getting the current value of the {@code attribute} from the {@code entity}.
+     * @param value         new value for the {@code attribute}.
+     * @param <T>           entity type parameter
+     * @param <Y>           attribute type parameter
+     * @throws OptimisticLockException if the row has been changed, or removed, by another transaction.
+     */
+    static <T extends BaseEntity, Y> void update(@NotNull final EntityManager entityManager, @NotNull final T entity,
+                                                 @NotNull final SingularAttribute<? super T, Y> attribute,
+                                                 @NotNull final Function<? super T, ? extends Y> getter,
+                                                 final Y value) {
+        requireNonNull(entityManager, "entityManager is null");
+        requireNonNull(entity, "entity is null");
+        requireNonNull(attribute, "attribute is null");
+        requireNonNull(getter, "getter is null");
+        @SuppressWarnings({"unchecked"})
+        final Class<T> entityClass = (Class<T>) BaseEntity.ENTITY_CLASS.get(entity.getClass());
+        final Date lastUpdate = entity.getLastUpdate();
+        final Y expected = getter.apply(entity);
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaUpdate<T> criteria = builder.createCriteriaUpdate(entityClass);
+        final Root<T> root = criteria.from(entityClass);
+        criteria.set(root.get(attribute), value);
+        criteria.where(builder.equal(root.get(BaseEntity_.id), entity.getId()));
+        andEqual(builder, criteria, root.get(BaseEntity_.lastUpdate), lastUpdate);
+        andEqual(builder, criteria, root.get(attribute), expected);
+        final int updated = entityManager.createQuery(criteria).executeUpdate();
+        if (updated == 0) {
+            throw new OptimisticLockException(
+                    entityClass.getSimpleName() + "#" + entity.getId() + " has been changed since " + lastUpdate,
+                    null, entity);
+        }
+        if (entityManager.contains(entity)) {
+            entityManager.refresh(entity);
+        }
+        if (entity instanceof Rental && value != null
+            && Rental.ATTRIBUTE_NAME_RETURN_DATE.equals(attribute.getName())) {
+            final Rental rental = (Rental) entity;
+            final Rental returned = new Rental();
+            returned.setId(rental.getId());
+            returned.setInventory(rental.getInventory());
+            returned.setCustomer(rental.getCustomer());
+            returned.setReturnDate((LocalDateTime) value);
+            RentalReturnBuffer.notifyReturned(returned);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks whether specified exception is caused by an {@link OptimisticLockException}.
+     *
+     * @param thrown the exception to check.
+     * @return {@code true} if the {@code thrown} is, or is caused by, an {@link OptimisticLockException}.
+     */
+    static boolean isOptimisticLockFailure(final Throwable thrown) {
+        for (Throwable t = thrown; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a result from specified supplier, re-getting, with randomized backoffs, while it fails due to an {@link
+     * OptimisticLockException}. The supplier should be an idempotent unit of work which reads what it updates.
+     *
+     * @param supplier    the supplier.
+     * @param maxAttempts the maximum number of attempts.
+     * @param <R>         result type parameter
+     * @return the result of the {@code supplier}.
+     */
+    static <R> R retry(@NotNull final Supplier<? extends R> supplier, final int maxAttempts) {
+        requireNonNull(supplier, "supplier is null");
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts(" + maxAttempts + ") <= 0");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return supplier.get();
+            } catch (final RuntimeException re) {
+                if (attempt >= maxAttempts || !isOptimisticLockFailure(re)) {
+                    throw re;
+                }
+                log.debug("retrying after attempt {} failed: {}", attempt, re.getMessage());
+                final long backoff = Math.min(MAX_BACKOFF_MILLIS, 1L << Math.min(attempt, Long.SIZE - 2));
+                try {
+                    TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff + 1L));
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw re;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies specified function with an entity manager, in a transaction, re-applying with new entity managers while
+     * it fails due to an {@link OptimisticLockException}.
+     *
+     * @param function    the function to be applied; should be idempotent.
+     * @param maxAttempts the maximum number of attempts.
+     * @param <R>         result type parameter
+     * @return the result of the {@code function}.
+     * @see PersistenceProducer#applyEntityManager(Function)
+     */
+    static <R> R applyEntityManager(@NotNull final Function<? super EntityManager, ? extends R> function,
+                                    final int maxAttempts) {
+        requireNonNull(function, "function is null");
+        return retry(() -> PersistenceProducer.applyEntityManager(entityManager -> {
+            final EntityTransaction transaction = entityManager.getTransaction();
+            transaction.begin();
+            try {
+                final R result = function.apply(entityManager);
+                transaction.commit();
+                return result;
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        }), maxAttempts);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private OptimisticLocking() {
+        super();
+    }
+}
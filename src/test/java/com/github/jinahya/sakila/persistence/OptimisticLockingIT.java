@@ -0,0 +1,126 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for stress-testing {@link OptimisticLocking} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class OptimisticLockingIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final int CLERKS = 8;
+
+    private static final int INCREMENTS = 10;
+
+    private static final BigDecimal INCREMENT = new BigDecimal("0.01");
+
+    private static void setRentalRate(final int filmId, final BigDecimal rentalRate) {
+        OptimisticLocking.applyEntityManager(em -> {
+            final Film film = em.find(Film.class, filmId);
+            OptimisticLocking.update(em, film, Film_.rentalRate, Film::getRentalRate, rentalRate);
+            return null;
+        }, Integer.MAX_VALUE);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts concurrent clerks incrementing the rental rate of the same film lose no update, and logs the throughput
+     * and the conflict rate. The rental rate is restored afterwards.
+     *
+     * @throws Exception if failed to wait.
+     */
+    @Test
+    void assertNoLostUpdates() throws Exception {
+        final Film random = randomEntity(entityManager, Film.class);
+        final int filmId = random.getId();
+        final BigDecimal initial = random.getRentalRate();
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(CLERKS);
+        final long elapsed;
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CLERKS; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    for (int j = 0; j < INCREMENTS; j++) {
+                        OptimisticLocking.applyEntityManager(em -> {
+                            attempts.incrementAndGet();
+                            final Film film = em.find(Film.class, filmId);
+                            OptimisticLocking.update(em, film, Film_.rentalRate, Film::getRentalRate,
+                                                     film.getRentalRate().add(INCREMENT));
+                            return null;
+                        }, Integer.MAX_VALUE);
+                    }
+                    return null;
+                }));
+            }
+            final long started = System.nanoTime();
+            latch.countDown();
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            elapsed = System.nanoTime() - started;
+        } finally {
+            executor.shutdown();
+        }
+        final int updates = CLERKS * INCREMENTS;
+        log.info("{} update(s) in {} ms; {} update(s)/s; conflict rate: {}", updates,
+                 TimeUnit.NANOSECONDS.toMillis(elapsed), updates * TimeUnit.SECONDS.toNanos(1L) / elapsed,
+                 (attempts.get() - updates) / (double) attempts.get());
+        try {
+            final BigDecimal rentalRate = PersistenceProducer.applyEntityManager(
+                    em -> em.find(Film.class, filmId).getRentalRate());
+            assertThat(rentalRate).isEqualByComparingTo(initial.add(INCREMENT.multiply(BigDecimal.valueOf(updates))));
+        } finally {
+            setRentalRate(filmId, initial);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
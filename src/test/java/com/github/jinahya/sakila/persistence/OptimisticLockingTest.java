@@ -0,0 +1,182 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.persistence.RollbackException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.reference;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link OptimisticLocking}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class OptimisticLockingTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake entity manager whose criteria updates update specified number of rows.
+     */
+    private static EntityManager entityManager(final AtomicInteger updated) {
+        final Predicate predicate = fake(Predicate.class, (p, n, a) -> null);
+        final Path<?> path = fake(Path.class, (p, n, a) -> null);
+        final Root<?> root = fake(Root.class, (p, n, a) -> "get".equals(n) ? path : null);
+        final CriteriaUpdate<?> criteria = fake(CriteriaUpdate.class, (p, n, a) -> {
+            switch (n) {
+                case "from":
+                    return root;
+                case "set":
+                case "where":
+                    return p;
+                case "getRestriction":
+                    return NULL;
+                default:
+                    return null;
+            }
+        });
+        final CriteriaBuilder builder = fake(CriteriaBuilder.class, (p, n, a) -> {
+            switch (n) {
+                case "createCriteriaUpdate":
+                    return criteria;
+                case "equal":
+                case "isNull":
+                    return predicate;
+                default:
+                    return null;
+            }
+        });
+        final Query query = fake(Query.class, (p, n, a) -> "executeUpdate".equals(n) ? updated.get() : null);
+        return fake(EntityManager.class, (p, n, a) -> {
+            switch (n) {
+                case "getCriteriaBuilder":
+                    return builder;
+                case "createQuery":
+                    return query;
+                case "contains":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static Rental rental(final int id) throws ReflectiveOperationException {
+        final Rental rental = reference(Rental.class, id);
+        rental.setInventory(reference(Inventory.class, 100 + id));
+        rental.setCustomer(reference(Customer.class, 5));
+        return rental;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a return updated in bulk is notified to the entity listeners of rentals, while a failed one is not.
+     *
+     * @throws ReflectiveOperationException if failed to create references.
+     */
+    @Test
+    void assertUpdateNotifiesReturned() throws ReflectiveOperationException {
+        @SuppressWarnings({"unchecked"})
+        final SingularAttribute<Rental, LocalDateTime> returnDate = fake(
+                SingularAttribute.class, (p, n, a) -> "getName".equals(n) ? Rental.ATTRIBUTE_NAME_RETURN_DATE : null);
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        final AtomicInteger updated = new AtomicInteger();
+        final EntityManager entityManager = entityManager(updated);
+        final OverdueTracker tracker = new OverdueTracker(now, (r, d) -> log.debug("overdue: {}", r)).listen();
+        try {
+            tracker.schedule(1, now.plusDays(3L));
+            tracker.schedule(2, now.plusDays(3L));
+            updated.set(1);
+            OptimisticLocking.update(entityManager, rental(1), returnDate, Rental::getReturnDate, now);
+            updated.set(0); // changed by another transaction
+            assertThatThrownBy(() -> OptimisticLocking.update(
+                    entityManager, rental(2), returnDate, Rental::getReturnDate, now))
+                    .isInstanceOf(OptimisticLockException.class);
+            assertThat(tracker.isScheduled(1)).isFalse();
+            assertThat(tracker.isScheduled(2)).isTrue();
+        } finally {
+            tracker.unlisten();
+        }
+    }
+
+    /**
+     * Asserts failures caused by optimistic locks are recognized.
+     */
+    @Test
+    void assertIsOptimisticLockFailure() {
+        assertThat(OptimisticLocking.isOptimisticLockFailure(new OptimisticLockException())).isTrue();
+        assertThat(OptimisticLocking.isOptimisticLockFailure(new RollbackException(new OptimisticLockException())))
+                .isTrue();
+        assertThat(OptimisticLocking.isOptimisticLockFailure(new PersistenceException())).isFalse();
+        assertThat(OptimisticLocking.isOptimisticLockFailure(null)).isFalse();
+    }
+
+    /**
+     * Asserts a unit of work is retried only while it fails due to optimistic locks.
+     */
+    @Test
+    void assertRetry() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = OptimisticLocking.retry(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new RollbackException(new OptimisticLockException());
+            }
+            return "done";
+        }, 3);
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+        attempts.set(0);
+        assertThatThrownBy(() -> OptimisticLocking.retry(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockException();
+        }, 2)).isInstanceOf(OptimisticLockException.class);
+        assertThat(attempts).hasValue(2);
+        attempts.set(0);
+        assertThatThrownBy(() -> OptimisticLocking.retry(() -> {
+            attempts.incrementAndGet();
+            throw new PersistenceException();
+        }, 5)).isInstanceOf(PersistenceException.class);
+        assertThat(attempts).hasValue(1);
+        assertThatThrownBy(() -> OptimisticLocking.retry(() -> null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
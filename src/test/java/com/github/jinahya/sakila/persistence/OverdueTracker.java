@@ -0,0 +1,405 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks open {@link Rental}s and notifies when they become overdue.
+ * <p>
+ * A rental is overdue when its {@link Rental#getRentalDate() rentalDate} plus the {@link
+ * Film#getRentalDurationInJavaTime() rentalDuration} of its film is passed while its {@link Rental#getReturnDate()
+ * returnDate} is still {@code null}. Each open rental is scheduled into a hierarchical timing wheel, of {@value
+ * #LEVELS} levels of {@value #SLOTS} slots of one-minute ticks, at its due time; scheduling and cancelling are constant
+ * time, and {@link #advance(LocalDateTime) advancing} touches only the slots passed by, rather than scanning all
+ * rentals. Callbacks are notified, at most a tick late, never early.
+ * <p>
+ * A tracker may {@link #listen() listen} to rentals being persisted or returned, through {@link Listener} registered
+ * in {@code META-INF/orm.xml}; rentals are scheduled, or cancelled, once their transactions commit.
+ *
+ * @see AfterCommit
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class OverdueTracker {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of bits of the slot index of each level.
+     */
+    private static final int SLOT_BITS = 6;
+
+    /**
+     * The number of slots of each level. The value is {@value}.
+     */
+    static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * The number of levels. The value is {@value}.
+     */
+    static final int LEVELS = 4;
+
+    /**
+     * The maximum number of ticks a timer can be ahead; timers beyond are cascaded down until they fit.
+     */
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1L;
+
+    /**
+     * The duration of a single tick.
+     */
+    static final Duration TICK = Duration.ofMinutes(1L);
+
+    /**
+     * Returns the tick of specified time.
+     *
+     * @param time the time.
+     * @return the tick of the time.
+     */
+    static long tick(final LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), TICK.getSeconds());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A timer of a rental; a node of a doubly linked list of a slot.
+     */
+    private static final class Timer {
+
+        private Timer() {
+            super();
+            rentalId = 0;
+            due = null;
+            expires = 0L;
+            prev = next = this;
+        }
+
+        private Timer(final int rentalId, final LocalDateTime due) {
+            super();
+            this.rentalId = rentalId;
+            this.due = due;
+            expires = tick(due) + 1L; // the first tick strictly after the due
+        }
+
+        private void linkBefore(final Timer head) {
+            prev = head.prev;
+            next = head;
+            prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
+
+        private final int rentalId;
+
+        private final LocalDateTime due;
+
+        private final long expires;
+
+        private Timer prev;
+
+        private Timer next;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An entity listener schedules persisted rentals and cancels returned rentals after their transactions commit.
+     */
+    public static class Listener implements RentalReturnListener {
+
+        /**
+         * Creates a new instance.
+         */
+        public Listener() {
+            super();
+        }
+
+        @Override
+        public void returned(@NotNull final Rental rental) {
+            final int rentalId = rental.getId();
+            LISTENING.afterCommit(t -> t.cancel(rentalId));
+        }
+
+        @PostPersist
+        @PostUpdate
+        void postPersistOrUpdate(final Rental rental) {
+            if (rental.getReturnDate() != null) {
+                returned(rental);
+                return;
+            }
+            final int rentalId = rental.getId();
+            final LocalDateTime due
+                    = rental.getRentalDate().plus(rental.getInventory().getFilm().getRentalDurationInJavaTime());
+            LISTENING.afterCommit(t -> t.schedule(rentalId, due));
+        }
+    }
+
+    private static final Listening<OverdueTracker> LISTENING = new Listening<>();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads a tracker of all open rentals.
+     *
+     * @param entityManager an entity manager.
+     * @param now           the current time.
+     * @param callback      a callback to be notified with the id and the due of each overdue rental.
+     * @return a new tracker.
+     */
+    static @NotNull OverdueTracker load(@NotNull final EntityManager entityManager, @NotNull final LocalDateTime now,
+                                        @NotNull final BiConsumer<Integer, LocalDateTime> callback) {
+        final OverdueTracker tracker = new OverdueTracker(now, callback);
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        final Root<Rental> rental = criteria.from(Rental.class);
+        final Join<Inventory, Film> film = rental.join(Rental_.inventory).join(Inventory_.film);
+        criteria.multiselect(rental.get(BaseEntity_.id), rental.get(Rental_.rentalDate),
+                             film.get(Film_.rentalDuration));
+        criteria.where(builder.isNull(rental.get(Rental_.returnDate)));
+        try (Stream<Tuple> stream = entityManager.createQuery(criteria).getResultStream()) {
+            stream.forEach(t -> tracker.schedule((Integer) t.get(0),
+                                                 ((LocalDateTime) t.get(1)).plusDays((Integer) t.get(2))));
+        }
+        log.debug("loaded {} open rental(s)", tracker.size());
+        return tracker;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     *
+     * @param now      the current time.
+     * @param callback a callback to be notified with the id and the due of each overdue rental.
+     */
+    OverdueTracker(@NotNull final LocalDateTime now, @NotNull final BiConsumer<Integer, LocalDateTime> callback) {
+        super();
+        current = tick(requireNonNull(now, "now is null"));
+        this.callback = requireNonNull(callback, "callback is null");
+        slots = new Timer[LEVELS][SLOTS];
+        for (final Timer[] level : slots) {
+            for (int i = 0; i < level.length; i++) {
+                level[i] = new Timer();
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts listening to rentals being persisted or returned.
+     *
+     * @return this tracker.
+     */
+    OverdueTracker listen() {
+        LISTENING.add(this);
+        return this;
+    }
+
+    /**
+     * Stops listening to rentals being persisted or returned.
+     */
+    void unlisten() {
+        LISTENING.remove(this);
+    }
+
+    /**
+     * Schedules this tracker to advance with specified clock on every tick.
+     *
+     * @param executor an executor.
+     * @param clock    the clock to advance with.
+     * @return a future of the schedule.
+     */
+    ScheduledFuture<?> start(@NotNull final ScheduledExecutorService executor, @NotNull final Clock clock) {
+        requireNonNull(clock, "clock is null");
+        final long period = TICK.toMillis();
+        return executor.scheduleAtFixedRate(() -> advance(LocalDateTime.now(clock)), period, period,
+                                            TimeUnit.MILLISECONDS);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Schedules a rental of specified id to be overdue after specified due, replacing any existing schedule.
+     *
+     * @param rentalId the id of the rental.
+     * @param due      the due of the rental.
+     */
+    synchronized void schedule(final int rentalId, @NotNull final LocalDateTime due) {
+        final Timer timer = new Timer(rentalId, requireNonNull(due, "due is null"));
+        final Timer previous = timers.put(rentalId, timer);
+        if (previous != null) {
+            previous.unlink();
+        }
+        add(timer);
+    }
+
+    /**
+     * Cancels the schedule of a rental of specified id.
+     *
+     * @param rentalId the id of the rental.
+     * @return {@code true} if the rental was scheduled; {@code false} otherwise.
+     */
+    synchronized boolean cancel(final int rentalId) {
+        final Timer timer = timers.remove(rentalId);
+        if (timer == null) {
+            return false;
+        }
+        timer.unlink();
+        return true;
+    }
+
+    /**
+     * Checks whether a rental of specified id is scheduled.
+     *
+     * @param rentalId the id of the rental.
+     * @return {@code true} if scheduled; {@code false} otherwise.
+     */
+    synchronized boolean isScheduled(final int rentalId) {
+        return timers.containsKey(rentalId);
+    }
+
+    /**
+     * Returns the number of scheduled rentals.
+     *
+     * @return the number of scheduled rentals.
+     */
+    synchronized int size() {
+        return timers.size();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Advances this tracker to specified time and notifies the callback with every rental become overdue.
+     *
+     * @param now the current time.
+     * @return the number of rentals become overdue.
+     */
+    int advance(@NotNull final LocalDateTime now) {
+        final List<Timer> expired = new ArrayList<>();
+        synchronized (this) {
+            final long target = tick(requireNonNull(now, "now is null"));
+            while (current <= target) {
+                final int index = (int) (current & SLOT_MASK);
+                if (index == 0) { // the lowest level just wrapped
+                    for (int level = 1; level < LEVELS && cascade(level) == 0; level++) {
+                        // the level also wrapped; cascades the next level, too
+                    }
+                }
+                final Timer head = slots[0][index];
+                while (head.next != head) {
+                    final Timer timer = head.next;
+                    timer.unlink();
+                    timers.remove(timer.rentalId);
+                    expired.add(timer);
+                }
+                current++;
+            }
+        }
+        expired.forEach(t -> callback.accept(t.rentalId, t.due));
+        return expired.size();
+    }
+
+    /**
+     * Cascades timers of the current slot of specified level down to lower levels.
+     *
+     * @param level the level.
+     * @return the index of the current slot of the level.
+     */
+    private int cascade(final int level) {
+        final int index = (int) ((current >> (SLOT_BITS * level)) & SLOT_MASK);
+        final Timer head = slots[level][index];
+        final Timer first = head.next;
+        if (first != head) { // detaches the whole list and re-adds each
+            final Timer last = head.prev;
+            head.next = head.prev = head;
+            last.next = null;
+            for (Timer timer = first; timer != null; ) {
+                final Timer next = timer.next;
+                add(timer);
+                timer = next;
+            }
+        }
+        return index;
+    }
+
+    private void add(final Timer timer) {
+        final long delta = timer.expires - current;
+        if (delta < 0L) {
+            timer.linkBefore(slots[0][(int) (current & SLOT_MASK)]);
+            return;
+        }
+        final long expires = delta > MAX_DELTA ? current + MAX_DELTA : timer.expires;
+        final long span = Math.min(delta, MAX_DELTA);
+        int level = 0;
+        while (level < LEVELS - 1 && span >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        timer.linkBefore(slots[level][(int) ((expires >> (SLOT_BITS * level)) & SLOT_MASK)]);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final BiConsumer<Integer, LocalDateTime> callback;
+
+    private final Timer[][] slots;
+
+    private final Map<Integer, Timer> timers = new HashMap<>();
+
+    /**
+     * The next tick to process.
+     */
+    private long current;
+}
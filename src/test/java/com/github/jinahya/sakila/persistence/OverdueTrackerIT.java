@@ -0,0 +1,72 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link OverdueTracker} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class OverdueTrackerIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts overdue rentals agree with the polling query.
+     */
+    @Test
+    void assertOverdue() {
+        final LocalDateTime now = LocalDateTime.of(2006, 2, 20, 0, 0);
+        final Set<Integer> overdue = new HashSet<>();
+        final OverdueTracker tracker = OverdueTracker.load(entityManager, now, (i, d) -> overdue.add(i));
+        tracker.advance(now);
+        @SuppressWarnings({"unchecked"})
+        final List<Number> expected = entityManager.createNativeQuery(
+                "SELECT r.rental_id FROM rental AS r"
+                + " INNER JOIN inventory AS i ON r.inventory_id = i.inventory_id"
+                + " INNER JOIN film AS f ON i.film_id = f.film_id"
+                + " WHERE r.return_date IS NULL AND r.rental_date + INTERVAL f.rental_duration DAY < ?")
+                .setParameter(1, now)
+                .getResultList();
+        assertThat(overdue).isEqualTo(expected.stream().map(Number::intValue).collect(toSet()));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
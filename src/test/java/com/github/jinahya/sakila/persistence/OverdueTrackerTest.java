@@ -0,0 +1,142 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link OverdueTracker}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class OverdueTrackerTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final LocalDateTime NOW = LocalDateTime.of(2005, 5, 24, 22, 53, 30);
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts rentals are notified after their dues, and cancelled ones never.
+     */
+    @Test
+    void assertAdvance() {
+        final List<Integer> overdue = new ArrayList<>();
+        final OverdueTracker tracker = new OverdueTracker(NOW, (i, d) -> overdue.add(i));
+        tracker.schedule(1, NOW.plusDays(3L));
+        tracker.schedule(2, NOW.plusDays(7L));
+        tracker.schedule(3, NOW.plusDays(5L));
+        tracker.schedule(4, NOW.minusDays(1L)); // already overdue
+        tracker.schedule(5, NOW.plusYears(40L)); // beyond the wheel
+        assertThat(tracker.cancel(3)).isTrue();
+        assertThat(tracker.cancel(3)).isFalse();
+        assertThat(tracker.size()).isEqualTo(4);
+        assertThat(tracker.advance(NOW)).isEqualTo(1);
+        assertThat(overdue).containsExactly(4);
+        assertThat(tracker.advance(NOW.plusDays(3L))).isZero(); // not yet passed
+        assertThat(tracker.advance(NOW.plusDays(3L).plus(OverdueTracker.TICK))).isEqualTo(1);
+        assertThat(tracker.advance(NOW.plusDays(30L))).isEqualTo(1);
+        assertThat(overdue).containsExactly(4, 1, 2);
+        assertThat(tracker.isScheduled(5)).isTrue();
+        assertThat(tracker.advance(NOW.plusYears(40L).plusDays(1L))).isEqualTo(1);
+        assertThat(tracker.size()).isZero();
+    }
+
+    /**
+     * Asserts rentals become overdue, never early and at most a tick late, with random dues and random advances.
+     */
+    @Test
+    void assertAdvanceRandomly() {
+        final Random random = new Random(0L);
+        final Map<Integer, LocalDateTime> dues = new HashMap<>();
+        final LocalDateTime[] now = new LocalDateTime[] {NOW, NOW}; // [current, previous]
+        final OverdueTracker tracker = new OverdueTracker(NOW, (i, d) -> {
+            assertThat(d).isEqualTo(dues.remove(i)).isBefore(now[0]);
+            assertThat(OverdueTracker.tick(now[1])).isLessThanOrEqualTo(OverdueTracker.tick(d)); // not late
+        });
+        for (int i = 0; i < 10000; i++) {
+            final LocalDateTime due = NOW.plusSeconds(random.nextInt(60 * 60 * 24 * 90));
+            dues.put(i, due);
+            tracker.schedule(i, due);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            assertThat(tracker.cancel(i)).isTrue();
+            dues.remove(i);
+        }
+        while (!dues.isEmpty()) {
+            now[1] = now[0];
+            now[0] = now[0].plusSeconds(1 + random.nextInt(90));
+            tracker.advance(now[0]);
+        }
+        assertThat(tracker.size()).isZero();
+    }
+
+    /**
+     * Asserts the listener schedules and cancels rentals only after their transactions commit.
+     */
+    @Test
+    void assertListenerTracksAfterCommit() {
+        final OverdueTracker tracker = new OverdueTracker(NOW, (i, d) -> {
+        }).listen();
+        try {
+            final Film film = new Film();
+            film.setRentalDuration(3);
+            final Inventory inventory = new Inventory();
+            inventory.setFilm(film);
+            final Rental rental = new Rental();
+            rental.setId(1);
+            rental.setRentalDate(NOW);
+            rental.setInventory(inventory);
+            final OverdueTracker.Listener listener = new OverdueTracker.Listener();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            assertThat(tracker.isScheduled(1)).isFalse();
+            AfterCommit.rolledBack();
+            assertThat(tracker.isScheduled(1)).isFalse();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.committed();
+            assertThat(tracker.isScheduled(1)).isTrue();
+            rental.setReturnDate(NOW.plusDays(1L));
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.rolledBack();
+            assertThat(tracker.isScheduled(1)).isTrue();
+            AfterCommit.begun();
+            listener.postPersistOrUpdate(rental);
+            AfterCommit.committed();
+            assertThat(tracker.isScheduled(1)).isFalse();
+        } finally {
+            tracker.unlisten();
+        }
+    }
+}
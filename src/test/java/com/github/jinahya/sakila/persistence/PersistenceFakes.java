@@ -0,0 +1,157 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.EntityTransaction;
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Fakes of persistence interfaces for unit tests which run without any database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+final class PersistenceFakes {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An answer standing for {@code null}; a {@code null} answer means the method is not supported.
+     */
+    static final Object NULL = new Object();
+
+    /**
+     * Answers methods, other than identity methods, invoked on a fake.
+     */
+    @FunctionalInterface
+    interface Answer {
+
+        /**
+         * Answers specified method invoked on specified fake.
+         *
+         * @param fake the fake.
+         * @param name the name of the method.
+         * @param args the arguments of the method; {@code null} for none.
+         * @return the result of the method; {@link #NULL} for {@code null}; {@code null} if not supported.
+         * @throws Exception if failed to answer.
+         */
+        Object answer(Object fake, String name, Object[] args) throws Exception;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake of specified type whose identity methods are the object's and whose other methods are answered by
+     * specified answer. A method answered with {@code null}, unless it returns {@code void}, throws an {@link
+     * UnsupportedOperationException}.
+     *
+     * @param type   the type of the fake.
+     * @param answer the answer of methods.
+     * @param <T>    type parameter
+     * @return a new fake.
+     */
+    static <T> T fake(@NotNull final Class<T> type, @NotNull final Answer answer) {
+        requireNonNull(type, "type is null");
+        requireNonNull(answer, "answer is null");
+        return type.cast(Proxy.newProxyInstance(
+                PersistenceFakes.class.getClassLoader(), new Class<?>[] {type},
+                (p, m, a) -> {
+                    switch (m.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(p);
+                        case "equals":
+                            return p == a[0];
+                        case "toString":
+                            return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(p));
+                        default:
+                            final Object answered = answer.answer(p, m.getName(), a);
+                            if (answered == null && m.getReturnType() != void.class) {
+                                throw new UnsupportedOperationException(m.getName());
+                            }
+                            return answered == NULL ? null : answered;
+                    }
+                }));
+    }
+
+    /**
+     * Returns a fake transaction which tracks whether it's active and passes the name of each of its ends, either
+     * {@code commit} or {@code rollback}, to specified consumer.
+     *
+     * @param ends the consumer of names of ends.
+     * @return a new fake transaction.
+     */
+    static EntityTransaction transaction(@NotNull final Consumer<? super String> ends) {
+        requireNonNull(ends, "ends is null");
+        final AtomicBoolean active = new AtomicBoolean();
+        return fake(EntityTransaction.class, (p, n, a) -> {
+            switch (n) {
+                case "begin":
+                    active.set(true);
+                    return NULL;
+                case "commit":
+                case "rollback":
+                    active.set(false);
+                    ends.accept(n);
+                    return NULL;
+                case "isActive":
+                    return active.get();
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Returns a fake transaction which tracks whether it's active.
+     *
+     * @return a new fake transaction.
+     */
+    static EntityTransaction transaction() {
+        return transaction(n -> {
+        });
+    }
+
+    /**
+     * Returns a new instance of specified entity class with specified id; as a reference of an entity manager.
+     *
+     * @param entityClass the entity class.
+     * @param id          the id.
+     * @param <T>         entity type parameter
+     * @return a new instance of {@code entityClass}.
+     * @throws ReflectiveOperationException if failed to instantiate.
+     */
+    static <T extends BaseEntity> T reference(@NotNull final Class<T> entityClass, final Integer id)
+            throws ReflectiveOperationException {
+        final T reference = entityClass.getConstructor().newInstance();
+        reference.setId(id);
+        return reference;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private PersistenceFakes() {
+        super();
+    }
+}
@@ -32,6 +32,7 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseable;
+import static java.util.Collections.singletonMap;
 import static java.util.Objects.requireNonNull;
 
 @Slf4j
@@ -42,7 +43,7 @@ class PersistenceProducer {
     /**
      * The name of the persistence unit. The value is {@value}.
      */
-    private static final String PERSISTENCE_UNIT_NAME = "sakilaPU";
+    static final String PERSISTENCE_UNIT_NAME = "sakilaPU";
 
     /**
      * The entity manager factory.
@@ -50,6 +51,65 @@ class PersistenceProducer {
     private static final EntityManagerFactory ENTITY_MANAGER_FACTORY
             = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
 
+    /**
+     * The name of the system property for the JDBC URL of a read replica. The value is {@value}.
+     */
+    static final String SYSTEM_PROPERTY_REPLICA_URL = "sakila.replica.url";
+
+    /**
+     * A lazy holder of the entity manager factory of the read replica.
+     */
+    private static final class Replica {
+
+        private static final EntityManagerFactory ENTITY_MANAGER_FACTORY;
+
+        static {
+            final String url = System.getProperty(SYSTEM_PROPERTY_REPLICA_URL);
+            if (url == null) {
+                ENTITY_MANAGER_FACTORY = PersistenceProducer.ENTITY_MANAGER_FACTORY;
+            } else {
+                log.info("replica: {}", url);
+                ENTITY_MANAGER_FACTORY = Persistence.createEntityManagerFactory(
+                        PERSISTENCE_UNIT_NAME, singletonMap("javax.persistence.jdbc.url", url));
+            }
+        }
+
+        private Replica() {
+            super();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the entity manager factory.
+     *
+     * @return the entity manager factory.
+     */
+    static EntityManagerFactory entityManagerFactory() {
+        return ENTITY_MANAGER_FACTORY;
+    }
+
+    /**
+     * Returns the entity manager factory of the read replica configured with {@value #SYSTEM_PROPERTY_REPLICA_URL}
+     * system property; the {@link #entityManagerFactory() primary} one if not configured.
+     *
+     * @return the entity manager factory of the read replica.
+     */
+    static EntityManagerFactory replicaEntityManagerFactory() {
+        return Replica.ENTITY_MANAGER_FACTORY;
+    }
+
+    /**
+     * Returns a new router reads from the {@link #replicaEntityManagerFactory() replica} and writes to the {@link
+     * #entityManagerFactory() primary}.
+     *
+     * @return a new read/write router.
+     */
+    static ReadWriteRouter readWriteRouter() {
+        return new ReadWriteRouter(ENTITY_MANAGER_FACTORY, Replica.ENTITY_MANAGER_FACTORY);
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -84,6 +144,15 @@ class PersistenceProducer {
     }
 
     // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Produces an entity manager of the {@link #entityManagerFactory() primary}. Produced entity managers are not
+     * routed to the replica, since an entity manager is a single persistence context, of a single connection, which
+     * flushes whatever it has read; inject a {@link #produceSession() session} for units of work which may read from
+     * the replica.
+     *
+     * @return an entity manager of the primary.
+     */
     @Produces
     public EntityManager produceEntityManager() {
         return ENTITY_MANAGER_FACTORY.createEntityManager();
@@ -92,4 +161,15 @@ class PersistenceProducer {
     public void disposeEntityManager(@Disposes final EntityManager entityManager) {
         entityManager.close();
     }
+
+    /**
+     * Produces a new session of a {@link #readWriteRouter() read/write router} which reads from the replica, once it
+     * has reached the last write of the session, and writes to the primary.
+     *
+     * @return a new read/write session.
+     */
+    @Produces
+    public ReadWriteRouter.Session produceSession() {
+        return readWriteRouter().session();
+    }
 }
@@ -45,12 +45,28 @@ final class PersistenceUtil {
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
-     * Returns a proxy of specified entity manager whose {@link EntityManager#close()} method is prohibited.
+     * Returns a delegate of specified entity manager whose {@link EntityManager#close()} method is prohibited.
      *
      * @param entityManager the entity manager.
-     * @return an uncloseable proxy of {@code entityManager}.
+     * @return an uncloseable delegate of {@code entityManager}.
+     * @see UncloseableEntityManager
      */
     static EntityManager uncloseable(final EntityManager entityManager) {
+        if (requireNonNull(entityManager, "entityManager is null") instanceof UncloseableEntityManager) {
+            return entityManager;
+        }
+        return new UncloseableEntityManager(entityManager);
+    }
+
+    /**
+     * Returns a proxy of specified entity manager whose {@link EntityManager#close()} method is prohibited. Every method
+     * invoked on the result goes through the reflection; prefer {@link #uncloseable(EntityManager)}.
+     *
+     * @param entityManager the entity manager.
+     * @return an uncloseable proxy of {@code entityManager}.
+     * @see UncloseableEntityManagerBenchmark
+     */
+    static EntityManager uncloseableProxy(final EntityManager entityManager) {
         return (EntityManager) Proxy.newProxyInstance(
                 requireNonNull(entityManager, "entityManager is null").getClass().getClassLoader(),
                 new Class<?>[] {EntityManager.class},
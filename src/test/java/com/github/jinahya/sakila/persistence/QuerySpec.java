@@ -0,0 +1,547 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.AttributeOverride;
+import javax.persistence.AttributeOverrides;
+import javax.persistence.Column;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import javax.persistence.TypedQuery;
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable specification of a query of a {@link BaseEntity} class consists of a list of filters and a list of sort
+ * keys. Attributes are identified by their {@link NamedAttribute} names.
+ * <p>
+ * Each specification is checked, while being built, against the indexes declared in the {@link Table#indexes()} of
+ * the entity class and a warning is logged when the sort keys would force MySQL to do a filesort. A JPQL query string
+ * is built once per the shape (attributes, operators, and directions) of specifications and cached; each call creates
+ * a new typed query of the string, which the provider parses from its own cache, and binds values as parameters.
+ *
+ * @param <T> entity type parameter
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see BaseEntityService#list(QuerySpec, Integer, Integer)
+ */
+@Slf4j
+final class QuerySpec<T extends BaseEntity> {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Operators of filters.
+     */
+    enum Operator {
+
+        EQUAL("%1$s = %2$s"),
+
+        NOT_EQUAL("%1$s <> %2$s"),
+
+        LESS_THAN("%1$s < %2$s"),
+
+        LESS_THAN_OR_EQUAL_TO("%1$s <= %2$s"),
+
+        GREATER_THAN("%1$s > %2$s"),
+
+        GREATER_THAN_OR_EQUAL_TO("%1$s >= %2$s"),
+
+        LIKE("%1$s LIKE %2$s"),
+
+        IS_NULL("%1$s IS NULL", false),
+
+        IS_NOT_NULL("%1$s IS NOT NULL", false);
+
+        // -------------------------------------------------------------------------------------------------------------
+        Operator(final String format, final boolean valued) {
+            this.format = format;
+            this.valued = valued;
+        }
+
+        Operator(final String format) {
+            this(format, true);
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+
+        /**
+         * Returns a JPQL conditional expression of this operator.
+         *
+         * @param path      the path expression of the attribute.
+         * @param parameter the input parameter; ignored if this operator takes no value.
+         * @return a JPQL conditional expression.
+         */
+        String expression(final String path, final String parameter) {
+            return String.format(format, path, parameter);
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+        private final String format;
+
+        /**
+         * Indicates whether this operator takes a value.
+         */
+        final boolean valued;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A filter of an attribute.
+     */
+    static final class Filter {
+
+        private Filter(final String attributeName, final Operator operator, final Object value) {
+            super();
+            this.attributeName = attributeName;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "attributeName=" + attributeName
+                   + ",operator=" + operator
+                   + ",value=" + value
+                   + "}";
+        }
+
+        final String attributeName;
+
+        final Operator operator;
+
+        final Object value;
+    }
+
+    /**
+     * A sort key of an attribute.
+     */
+    static final class SortKey {
+
+        private SortKey(final String attributeName, final boolean ascending) {
+            super();
+            this.attributeName = attributeName;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "attributeName=" + attributeName
+                   + ",ascending=" + ascending
+                   + "}";
+        }
+
+        final String attributeName;
+
+        final boolean ascending;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A builder for {@link QuerySpec}.
+     *
+     * @param <T> entity type parameter
+     */
+    static final class Builder<T extends BaseEntity> {
+
+        private Builder(final Class<T> entityClass) {
+            super();
+            this.entityClass = requireNonNull(entityClass, "entityClass is null");
+        }
+
+        /**
+         * Adds a filter.
+         *
+         * @param attributeName the name of the attribute.
+         * @param operator      the operator.
+         * @param value         the value to compare; must be {@code null} for operators take no value.
+         * @return this builder.
+         */
+        Builder<T> filter(@NotNull final String attributeName, @NotNull final Operator operator,
+                          @Nullable final Object value) {
+            requireNonNull(attributeName, "attributeName is null");
+            requireNonNull(operator, "operator is null");
+            if (operator.valued && value == null) {
+                throw new NullPointerException("value is null for " + operator);
+            }
+            if (!operator.valued && value != null) {
+                throw new IllegalArgumentException("value is not null for " + operator);
+            }
+            filters.add(new Filter(attributeName, operator, value));
+            return this;
+        }
+
+        /**
+         * Adds a filter for an operator which takes no value.
+         *
+         * @param attributeName the name of the attribute.
+         * @param operator      the operator.
+         * @return this builder.
+         */
+        Builder<T> filter(@NotNull final String attributeName, @NotNull final Operator operator) {
+            return filter(attributeName, operator, null);
+        }
+
+        /**
+         * Appends a sort key.
+         *
+         * @param attributeName the name of the attribute.
+         * @param ascending     {@code true} for ascending order; {@code false} for descending order.
+         * @return this builder.
+         */
+        Builder<T> sort(@NotNull final String attributeName, final boolean ascending) {
+            sortKeys.add(new SortKey(requireNonNull(attributeName, "attributeName is null"), ascending));
+            return this;
+        }
+
+        /**
+         * Builds a query specification.
+         *
+         * @return a new query specification.
+         * @throws IllegalArgumentException if any of attributes is unknown.
+         */
+        QuerySpec<T> build() {
+            return new QuerySpec<>(entityClass, new ArrayList<>(filters), new ArrayList<>(sortKeys));
+        }
+
+        private final Class<T> entityClass;
+
+        private final List<Filter> filters = new ArrayList<>();
+
+        private final List<SortKey> sortKeys = new ArrayList<>();
+    }
+
+    /**
+     * Returns a new builder for specified entity class.
+     *
+     * @param entityClass the entity class.
+     * @param <T>         entity type parameter
+     * @return a new builder.
+     */
+    static <T extends BaseEntity> Builder<T> builder(@NotNull final Class<T> entityClass) {
+        return new Builder<>(entityClass);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Column and index information of an entity class read from its mapping annotations.
+     */
+    static final class Indexes {
+
+        /**
+         * The pseudo name of the primary key index. The value is {@value}.
+         */
+        static final String PRIMARY = "PRIMARY";
+
+        private static final Map<Class<?>, Indexes> INSTANCES = synchronizedMap(new WeakHashMap<>());
+
+        static Indexes of(final Class<?> entityClass) {
+            synchronized (INSTANCES) {
+                return INSTANCES.computeIfAbsent(entityClass, Indexes::new);
+            }
+        }
+
+        private Indexes(final Class<?> entityClass) {
+            super();
+            final Map<String, String> idColumns = new HashMap<>();
+            final Map<String, String> columns = new HashMap<>();
+            final List<String> ids = new ArrayList<>();
+            for (Class<?> c = entityClass; c != null; c = c.getSuperclass()) {
+                final List<AttributeOverride> overrides = new ArrayList<>();
+                final AttributeOverrides attributeOverrides = c.getAnnotation(AttributeOverrides.class);
+                if (attributeOverrides != null) {
+                    overrides.addAll(Arrays.asList(attributeOverrides.value()));
+                }
+                overrides.addAll(Arrays.asList(c.getAnnotationsByType(AttributeOverride.class)));
+                for (final AttributeOverride override : overrides) {
+                    idColumns.putIfAbsent(override.name(), override.column().name());
+                }
+                for (final Field field : c.getDeclaredFields()) {
+                    final NamedAttribute namedAttribute = field.getAnnotation(NamedAttribute.class);
+                    if (namedAttribute == null || Collection.class.isAssignableFrom(field.getType())
+                        || Map.class.isAssignableFrom(field.getType())) {
+                        continue;
+                    }
+                    final Column column = field.getAnnotation(Column.class);
+                    final JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+                    final String columnName = column != null && !column.name().isEmpty() ? column.name()
+                                              : joinColumn != null && !joinColumn.name().isEmpty() ? joinColumn.name()
+                                                : field.getName();
+                    columns.putIfAbsent(namedAttribute.value(), columnName);
+                    if (field.isAnnotationPresent(Id.class)) {
+                        ids.add(namedAttribute.value()); // in the order of the key, e.g. (actor_id, film_id)
+                    }
+                }
+            }
+            columns.putAll(idColumns); // overrides win
+            columns.keySet().retainAll(namedAttributes(entityClass));
+            this.columns = unmodifiableMap(columns);
+            primaryKey = unmodifiableList(ids.stream().map(columns::get).collect(Collectors.toList()));
+            final Map<String, List<String>> indexes = new LinkedHashMap<>();
+            indexes.put(PRIMARY, primaryKey);
+            final Table table = entityClass.getAnnotation(Table.class);
+            if (table != null) {
+                for (final Index index : table.indexes()) {
+                    final List<String> indexColumns = new ArrayList<>();
+                    for (final String column : index.columnList().split(",")) {
+                        indexColumns.add(column.trim().split("\\s+")[0]);
+                    }
+                    // secondary indexes of InnoDB end with those primary key columns not already in them
+                    primaryKey.stream().filter(c -> !indexColumns.contains(c)).forEach(indexColumns::add);
+                    indexes.put(index.name(), unmodifiableList(indexColumns));
+                }
+            }
+            this.indexes = unmodifiableMap(indexes);
+        }
+
+        private static Set<String> namedAttributes(final Class<?> entityClass) {
+            final Set<String> names = new HashSet<>();
+            for (Class<?> c = entityClass; c != null; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    final NamedAttribute namedAttribute = field.getAnnotation(NamedAttribute.class);
+                    if (namedAttribute != null) {
+                        names.add(namedAttribute.value());
+                    }
+                }
+            }
+            return names;
+        }
+
+        /**
+         * A map of singular named attributes and their column names.
+         */
+        final Map<String, String> columns;
+
+        /**
+         * The list of primary key columns.
+         */
+        final List<String> primaryKey;
+
+        /**
+         * A map of index names and their columns.
+         */
+        final Map<String, List<String>> indexes;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * JPQL query strings of shapes of specifications.
+     */
+    private static final Map<List<Object>, String> QUERIES = new ConcurrentHashMap<>();
+
+    /**
+     * The prefix of names of input parameters. The value is {@value}.
+     */
+    private static final String PARAMETER_PREFIX = "p";
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private QuerySpec(final Class<T> entityClass, final List<Filter> filters, final List<SortKey> sortKeys) {
+        super();
+        this.entityClass = entityClass;
+        this.filters = unmodifiableList(filters);
+        this.sortKeys = unmodifiableList(sortKeys);
+        final Indexes indexes = Indexes.of(entityClass);
+        for (final Filter filter : filters) {
+            if (!indexes.columns.containsKey(filter.attributeName)) {
+                throw new IllegalArgumentException("unknown attribute: " + filter.attributeName);
+            }
+        }
+        for (final SortKey sortKey : sortKeys) {
+            if (!indexes.columns.containsKey(sortKey.attributeName)) {
+                throw new IllegalArgumentException("unknown attribute: " + sortKey.attributeName);
+            }
+        }
+        sortIndex = sortIndex(indexes);
+        if (!sortKeys.isEmpty() && sortIndex == null) {
+            log.warn("sorting {} by {} would force a filesort", entityClass.getSimpleName(), sortKeys);
+        }
+        final List<Object> shape = new ArrayList<>();
+        shape.add(entityClass);
+        filters.forEach(f -> shape.addAll(Arrays.asList(f.attributeName, f.operator)));
+        shape.add(null);
+        sortKeys.forEach(s -> shape.addAll(Arrays.asList(s.attributeName, s.ascending)));
+        this.shape = unmodifiableList(shape);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Finds the name of an index which can provide rows in the order of the sort keys.
+     *
+     * @param indexes the indexes of the entity class.
+     * @return the name of the index; {@code null} if the sort would force a filesort.
+     */
+    private String sortIndex(final Indexes indexes) {
+        if (sortKeys.isEmpty()) {
+            return null;
+        }
+        final Set<String> constants = new HashSet<>();
+        for (final Filter filter : filters) {
+            if (filter.operator == Operator.EQUAL) {
+                constants.add(indexes.columns.get(filter.attributeName));
+            }
+        }
+        final List<String> sortColumns = new ArrayList<>();
+        Boolean ascending = null;
+        for (final SortKey sortKey : sortKeys) {
+            final String column = indexes.columns.get(sortKey.attributeName);
+            if (indexes.indexes.values().stream().noneMatch(c -> c.contains(column))) {
+                log.warn("sort key {} of {} is not backed by any index", sortKey.attributeName,
+                         entityClass.getSimpleName());
+            }
+            if (constants.contains(column) || sortColumns.contains(column)) {
+                continue;
+            }
+            if (ascending != null && ascending != sortKey.ascending) {
+                return null; // mixed directions
+            }
+            ascending = sortKey.ascending;
+            sortColumns.add(column);
+        }
+        for (final Map.Entry<String, List<String>> entry : indexes.indexes.entrySet()) {
+            final List<String> indexColumns = new ArrayList<>(entry.getValue());
+            while (!indexColumns.isEmpty() && constants.contains(indexColumns.get(0))
+                   && !sortColumns.contains(indexColumns.get(0))) {
+                indexColumns.remove(0);
+            }
+            if (indexColumns.size() >= sortColumns.size()
+                && indexColumns.subList(0, sortColumns.size()).equals(sortColumns)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + "{"
+               + "entityClass=" + entityClass
+               + ",filters=" + filters
+               + ",sortKeys=" + sortKeys
+               + ",sortIndex=" + sortIndex
+               + "}";
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new typed query of this specification, with all values bound, using a cached query string.
+     *
+     * @param entityManager an entity manager.
+     * @return a new typed query.
+     */
+    @NotNull TypedQuery<T> typedQuery(@NotNull final EntityManager entityManager) {
+        requireNonNull(entityManager, "entityManager is null");
+        final String query = QUERIES.computeIfAbsent(shape, k -> query(EntityMetadata.of(entityManager)));
+        final TypedQuery<T> typedQuery = entityManager.createQuery(query, entityClass);
+        for (int i = 0; i < filters.size(); i++) {
+            final Filter filter = filters.get(i);
+            if (filter.operator.valued) {
+                typedQuery.setParameter(PARAMETER_PREFIX + i, filter.value);
+            }
+        }
+        return typedQuery;
+    }
+
+    private String query(final EntityMetadata entityMetadata) {
+        final StringBuilder builder = new StringBuilder("SELECT e FROM ")
+                .append(entityMetadata.entityName(entityClass)).append(" e");
+        for (int i = 0; i < filters.size(); i++) {
+            final Filter filter = filters.get(i);
+            builder.append(i == 0 ? " WHERE " : " AND ")
+                    .append(filter.operator.expression("e." + filter.attributeName, ":" + PARAMETER_PREFIX + i));
+        }
+        for (int i = 0; i < sortKeys.size(); i++) {
+            final SortKey sortKey = sortKeys.get(i);
+            builder.append(i == 0 ? " ORDER BY " : ", ")
+                    .append("e.").append(sortKey.attributeName).append(sortKey.ascending ? " ASC" : " DESC");
+        }
+        final String query = builder.toString();
+        log.debug("query of {}: {}", shape, query);
+        return query;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the sort keys of this specification are satisfied by an index without a filesort.
+     *
+     * @return {@code true} if the sort keys are satisfied by an index; {@code false} otherwise.
+     */
+    boolean isSortIndexed() {
+        return sortIndex != null;
+    }
+
+    /**
+     * Returns the name of the index which satisfies the sort keys of this specification.
+     *
+     * @return the name of the index; {@code null} if none.
+     */
+    @Nullable String getSortIndex() {
+        return sortIndex;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    final Class<T> entityClass;
+
+    final List<Filter> filters;
+
+    final List<SortKey> sortKeys;
+
+    private final String sortIndex;
+
+    private final List<Object> shape;
+}
@@ -0,0 +1,89 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.List;
+
+import static com.github.jinahya.sakila.persistence.QuerySpec.Operator.GREATER_THAN;
+import static com.github.jinahya.sakila.persistence.QuerySpec.Operator.LIKE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link QuerySpec} against a database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class QuerySpecIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts each call of {@link QuerySpec#typedQuery(EntityManager)} returns a new query of bound values.
+     */
+    @Test
+    void assertTypedQuery() {
+        final QuerySpec<Actor> spec = QuerySpec.builder(Actor.class)
+                .filter(FullNamed.ATTRIBUTE_NAME_LAST_NAME, LIKE, "A%")
+                .sort(FullNamed.ATTRIBUTE_NAME_LAST_NAME, true)
+                .sort(BaseEntity.ATTRIBUTE_NAME_ID, true)
+                .build();
+        final TypedQuery<Actor> first = spec.typedQuery(entityManager);
+        final TypedQuery<Actor> second = spec.typedQuery(entityManager);
+        assertThat(second).isNotSameAs(first);
+        final List<Actor> actors = first.setMaxResults(16).getResultList();
+        assertThat(actors).isNotEmpty().allSatisfy(a -> assertThat(a.getLastName()).startsWith("A"));
+        assertThat(actors).extracting(Actor::getLastName).isSortedAccordingTo(String.CASE_INSENSITIVE_ORDER);
+        assertThat(second.setMaxResults(16).getResultList()).isEqualTo(actors);
+    }
+
+    /**
+     * Asserts {@link BaseEntityService#list(QuerySpec, Integer, Integer)} pages results of a specification.
+     */
+    @Test
+    void assertList() {
+        final QuerySpec<Actor> spec = QuerySpec.builder(Actor.class)
+                .filter(BaseEntity.ATTRIBUTE_NAME_ID, GREATER_THAN, 10)
+                .sort(BaseEntity.ATTRIBUTE_NAME_ID, false)
+                .build();
+        final List<Actor> all = actorService.list(spec, null, null);
+        assertThat(all).isNotEmpty().allSatisfy(a -> assertThat(a.getId()).isGreaterThan(10));
+        assertThat(all).extracting(BaseEntity::getId).isSortedAccordingTo((i, j) -> Integer.compare(j, i));
+        final List<Actor> page = actorService.list(spec, 1, 2);
+        assertThat(page).hasSize(2).containsExactlyElementsOf(all.subList(1, 3));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private ActorService actorService;
+}
@@ -0,0 +1,130 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static com.github.jinahya.sakila.persistence.QuerySpec.Operator.EQUAL;
+import static com.github.jinahya.sakila.persistence.QuerySpec.Operator.IS_NULL;
+import static com.github.jinahya.sakila.persistence.QuerySpec.Operator.LIKE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link QuerySpec}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class QuerySpecTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts {@link QuerySpec.Builder#build()} throws an {@link IllegalArgumentException} for unknown attributes.
+     */
+    @Test
+    void assertBuildThrowsIllegalArgumentExceptionForUnknownAttributes() {
+        assertThatThrownBy(() -> QuerySpec.builder(Actor.class).filter("unknown", EQUAL, "").build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QuerySpec.builder(Actor.class).sort("unknown", true).build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QuerySpec.builder(Language.class).sort("films", true).build()) // plural
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts {@link QuerySpec.Builder#filter(String, QuerySpec.Operator, Object)} checks values against operators.
+     */
+    @Test
+    void assertFilterChecksValues() {
+        assertThatThrownBy(() -> QuerySpec.builder(Actor.class).filter(FullNamed.ATTRIBUTE_NAME_LAST_NAME, LIKE))
+                .isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> QuerySpec.builder(Actor.class).filter(FullNamed.ATTRIBUTE_NAME_LAST_NAME, IS_NULL, ""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts sorting {@link Actor}s by {@link FullNamed#ATTRIBUTE_NAME_LAST_NAME lastName} uses the {@value
+     * Actor#INDEX_NAME_IDX_ACTOR_LAST_NAME} index while sorting by {@link FullNamed#ATTRIBUTE_NAME_FIRST_NAME
+     * firstName} doesn't.
+     */
+    @Test
+    void assertActorSortIndexed() {
+        final QuerySpec<Actor> byLastName = QuerySpec.builder(Actor.class)
+                .sort(FullNamed.ATTRIBUTE_NAME_LAST_NAME, true)
+                .sort(BaseEntity.ATTRIBUTE_NAME_ID, true)
+                .build();
+        assertThat(byLastName.getSortIndex()).isEqualTo(Actor.INDEX_NAME_IDX_ACTOR_LAST_NAME);
+        final QuerySpec<Actor> byFirstName = QuerySpec.builder(Actor.class)
+                .sort(FullNamed.ATTRIBUTE_NAME_FIRST_NAME, true)
+                .build();
+        assertThat(byFirstName.isSortIndexed()).isFalse();
+        final QuerySpec<Actor> byId = QuerySpec.builder(Actor.class).sort(BaseEntity.ATTRIBUTE_NAME_ID, false).build();
+        assertThat(byId.getSortIndex()).isEqualTo(QuerySpec.Indexes.PRIMARY);
+    }
+
+    /**
+     * Asserts mixed sort directions force a filesort.
+     */
+    @Test
+    void assertMixedDirectionsNotIndexed() {
+        final QuerySpec<Actor> spec = QuerySpec.builder(Actor.class)
+                .sort(FullNamed.ATTRIBUTE_NAME_LAST_NAME, true)
+                .sort(BaseEntity.ATTRIBUTE_NAME_ID, false)
+                .build();
+        assertThat(spec.isSortIndexed()).isFalse();
+    }
+
+    /**
+     * Asserts equality filters on leading columns of a composite index let the next column be sorted without a
+     * filesort.
+     */
+    @Test
+    void assertInventorySortIndexedWithEqualityFilter() {
+        final Store store = new Store();
+        final QuerySpec<Inventory> spec = QuerySpec.builder(Inventory.class)
+                .filter(Inventory.ATTRIBUTE_NAME_STORE, EQUAL, store)
+                .sort(Inventory.ATTRIBUTE_NAME_FILM, true)
+                .build();
+        assertThat(spec.isSortIndexed()).isTrue();
+        final QuerySpec<Inventory> unfiltered = QuerySpec.builder(Inventory.class)
+                .sort(Inventory.ATTRIBUTE_NAME_STORE, true)
+                .sort(Inventory.ATTRIBUTE_NAME_FILM, true)
+                .build();
+        assertThat(unfiltered.getSortIndex()).isEqualTo(Inventory.INDEX_NAME_IDX_STORE_ID_FILM_ID);
+    }
+
+    /**
+     * Asserts the primary key of an entity with an id class consists of all its id columns in order.
+     */
+    @Test
+    void assertCompositePrimaryKey() {
+        assertThat(QuerySpec.Indexes.of(FilmActor.class).primaryKey)
+                .containsExactly(FilmActor.COLUMN_NAME_ACTOR_ID, FilmActor.COLUMN_NAME_FILM_ID);
+        assertThat(QuerySpec.Indexes.of(FilmActor.class).indexes.get(FilmActor.INDEX_NAME_IDX_FK_FILM_ID))
+                .containsExactly(FilmActor.COLUMN_NAME_FILM_ID, FilmActor.COLUMN_NAME_ACTOR_ID);
+        assertThat(QuerySpec.Indexes.of(Actor.class).primaryKey).containsExactly(Actor.COLUMN_NAME_ACTOR_ID);
+    }
+}
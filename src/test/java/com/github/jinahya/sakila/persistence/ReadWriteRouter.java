@@ -0,0 +1,375 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.validation.constraints.NotNull;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseable;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Routes read-only units of work to a replica and writes to the primary, keeping read-your-writes consistency for
+ * each {@link Session session}.
+ * <p>
+ * When a write of a session results in an entity, the session selects the {@link BaseEntity#getLastUpdate()
+ * lastUpdate} and other basic values of the entity from the primary and keeps them as the {@link Watermark watermark}
+ * of the session. Reads of the session go to the primary until the replica has the entity with a later {@code
+ * lastUpdate}, or with the same {@code lastUpdate} and the same values, as {@code last_update} has only second
+ * precision; as the replica applies writes in order, earlier writes are there, too. A write results in no entity, e.g.
+ * a removal, pins the session to the primary for a while instead.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class ReadWriteRouter {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The default duration of pinning a session to the primary after a write without a watermark.
+     */
+    static final Duration DEFAULT_PIN = Duration.ofSeconds(5L);
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The last write of a session.
+     */
+    static final class Watermark {
+
+        /**
+         * Creates a new watermark of specified entity by selecting its current values with specified entity manager.
+         *
+         * @param entityManager an entity manager of the primary.
+         * @param entity        the entity written.
+         * @return a new watermark of {@code entity}.
+         */
+        static Watermark of(final EntityManager entityManager, final BaseEntity entity) {
+            final Class<? extends BaseEntity> entityClass
+                    = BaseEntity.ENTITY_CLASS.get(entity.getClass()).asSubclass(BaseEntity.class);
+            final List<?> values = values(entityManager, entityClass, entity.getId());
+            if (values == null) {
+                throw new IllegalStateException("no row for " + entity);
+            }
+            return new Watermark(entityClass, entity.getId(), values);
+        }
+
+        /**
+         * Selects the {@code lastUpdate}, followed by values of other basic attributes in the order of their names, of
+         * specified entity.
+         *
+         * @return a list of values; {@code null} if no row.
+         */
+        private static List<?> values(final EntityManager entityManager,
+                                      final Class<? extends BaseEntity> entityClass, final Integer id) {
+            final SortedSet<String> names = new TreeSet<>();
+            for (final SingularAttribute<?, ?> attribute
+                    : entityManager.getMetamodel().entity(entityClass).getSingularAttributes()) {
+                if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC
+                    && !attribute.isId()) {
+                    names.add(attribute.getName());
+                }
+            }
+            names.remove(BaseEntity.ATTRIBUTE_NAME_LAST_UPDATE);
+            final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<? extends BaseEntity> root = criteria.from(entityClass);
+            final List<Selection<?>> selections = new ArrayList<>(names.size() + 1);
+            selections.add(root.get(BaseEntity_.lastUpdate));
+            names.forEach(n -> selections.add(root.get(n)));
+            criteria.multiselect(selections);
+            criteria.where(builder.equal(root.get(BaseEntity_.id), id));
+            final List<Tuple> list = entityManager.createQuery(criteria).getResultList();
+            return list.isEmpty() ? null : Arrays.asList(list.get(0).toArray());
+        }
+
+        /**
+         * Checks whether values selected from the replica have reached specified values written to the primary. As
+         * {@code last_update} has only second precision, values of the same {@code lastUpdate} reach only when they
+         * are all equal; otherwise an earlier write of the same second may be taken as the last one. Arrays, such as
+         * {@code byte[]} of {@code Address.location} or {@code Staff.picture}, are compared by their contents.
+         *
+         * @param written    values written to the primary.
+         * @param replicated values selected from the replica; {@code null} if no row.
+         * @return {@code true} if {@code replicated} has reached {@code written}; {@code false} otherwise.
+         */
+        static boolean reached(@NotNull final List<?> written, final List<?> replicated) {
+            if (replicated == null || replicated.get(0) == null) {
+                return false;
+            }
+            final Date lastUpdate = (Date) written.get(0);
+            final Date replicatedLastUpdate = (Date) replicated.get(0);
+            if (replicatedLastUpdate.getTime() != lastUpdate.getTime()) {
+                return replicatedLastUpdate.after(lastUpdate);
+            }
+            for (int i = 1; i < written.size(); i++) {
+                if (!Objects.deepEquals(written.get(i), replicated.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Creates a new instance.
+         *
+         * @param entityClass the class of the entity written.
+         * @param id          the id of the entity written.
+         * @param values      the {@code lastUpdate}, followed by values of other basic attributes, of the entity.
+         */
+        Watermark(final Class<? extends BaseEntity> entityClass, final Integer id, final List<?> values) {
+            super();
+            this.entityClass = requireNonNull(entityClass, "entityClass is null");
+            this.id = requireNonNull(id, "id is null");
+            if (requireNonNull(values, "values is null").isEmpty() || !(values.get(0) instanceof Date)) {
+                throw new IllegalArgumentException("no lastUpdate in " + values);
+            }
+            this.values = unmodifiableList(new ArrayList<>(values));
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "entityClass=" + entityClass.getSimpleName()
+                   + ",id=" + id
+                   + ",values=" + values
+                   + "}";
+        }
+
+        /**
+         * Checks whether specified entity manager, of the replica, has reached this watermark.
+         *
+         * @param entityManager an entity manager of the replica.
+         * @return {@code true} if the replica has reached this watermark; {@code false} otherwise.
+         * @see #reached(List, List)
+         */
+        boolean isReachedBy(final EntityManager entityManager) {
+            return reached(values, values(entityManager, entityClass, id));
+        }
+
+        private final Class<? extends BaseEntity> entityClass;
+
+        private final Integer id;
+
+        private final List<?> values;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A session of units of work of a single client.
+     */
+    final class Session {
+
+        private Session() {
+            super();
+        }
+
+        /**
+         * Applies an entity manager, of the replica if it has reached the watermark of this session or of the primary
+         * otherwise, to specified function and returns the result.
+         *
+         * @param function the function to be applied with an entity manager.
+         * @param <R>      result type parameter
+         * @return the result of the {@code function}.
+         */
+        <R> R read(@NotNull final Function<? super EntityManager, ? extends R> function) {
+            requireNonNull(function, "function is null");
+            final Watermark watermark;
+            synchronized (this) {
+                if (pinned != null && clock.instant().isBefore(pinned)) {
+                    return apply(primary, function);
+                }
+                pinned = null;
+                watermark = this.watermark;
+            }
+            final EntityManager entityManager = replica.createEntityManager();
+            try {
+                if (watermark != null) {
+                    if (!caughtUp.test(uncloseable(entityManager), watermark)) {
+                        log.debug("replica hasn't reached {}", watermark);
+                        return apply(primary, function);
+                    }
+                    synchronized (this) {
+                        if (this.watermark == watermark) {
+                            this.watermark = null;
+                        }
+                    }
+                }
+                return function.apply(uncloseable(entityManager));
+            } finally {
+                entityManager.close();
+            }
+        }
+
+        /**
+         * Applies an entity manager of the primary to specified function, in a transaction, and returns the result.
+         * The result, if it's an entity, becomes the watermark of this session; otherwise this session is pinned to
+         * the primary for a while.
+         *
+         * @param function the function to be applied with an entity manager.
+         * @param <R>      result type parameter
+         * @return the result of the {@code function}.
+         */
+        <R> R write(@NotNull final Function<? super EntityManager, ? extends R> function) {
+            requireNonNull(function, "function is null");
+            final EntityManager entityManager = primary.createEntityManager();
+            try {
+                final EntityTransaction transaction = entityManager.getTransaction();
+                transaction.begin();
+                final R result;
+                try {
+                    result = function.apply(uncloseable(entityManager));
+                    transaction.commit();
+                } finally {
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                }
+                if (result instanceof BaseEntity && entityManager.contains(result)) {
+                    // last_update is assigned by the database
+                    final Watermark watermark = mark.apply(uncloseable(entityManager), (BaseEntity) result);
+                    synchronized (this) {
+                        this.watermark = watermark;
+                        pinned = null;
+                    }
+                } else {
+                    synchronized (this) {
+                        pinned = clock.instant().plus(pin);
+                    }
+                }
+                return result;
+            } finally {
+                entityManager.close();
+            }
+        }
+
+        /**
+         * Returns the current watermark of this session.
+         *
+         * @return the current watermark; {@code null} if none.
+         */
+        synchronized Watermark getWatermark() {
+            return watermark;
+        }
+
+        private Watermark watermark;
+
+        private Instant pinned;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static <R> R apply(final EntityManagerFactory factory,
+                               final Function<? super EntityManager, ? extends R> function) {
+        final EntityManager entityManager = factory.createEntityManager();
+        try {
+            return function.apply(uncloseable(entityManager));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     *
+     * @param primary the entity manager factory of the primary.
+     * @param replica the entity manager factory of the replica.
+     */
+    ReadWriteRouter(@NotNull final EntityManagerFactory primary, @NotNull final EntityManagerFactory replica) {
+        this(primary, replica, Clock.systemUTC(), DEFAULT_PIN, Watermark::of, (em, w) -> w.isReachedBy(em));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param primary  the entity manager factory of the primary.
+     * @param replica  the entity manager factory of the replica.
+     * @param clock    the clock for pinning.
+     * @param pin      the duration of pinning a session to the primary after a write without a watermark.
+     * @param mark     a function creates a watermark of an entity written with an entity manager of the primary.
+     * @param caughtUp a predicate tests whether an entity manager of the replica has reached a watermark.
+     */
+    ReadWriteRouter(@NotNull final EntityManagerFactory primary, @NotNull final EntityManagerFactory replica,
+                    @NotNull final Clock clock, @NotNull final Duration pin,
+                    @NotNull final BiFunction<? super EntityManager, ? super BaseEntity, ? extends Watermark> mark,
+                    @NotNull final BiPredicate<? super EntityManager, ? super Watermark> caughtUp) {
+        super();
+        this.primary = requireNonNull(primary, "primary is null");
+        this.replica = requireNonNull(replica, "replica is null");
+        this.clock = requireNonNull(clock, "clock is null");
+        this.pin = requireNonNull(pin, "pin is null");
+        this.mark = requireNonNull(mark, "mark is null");
+        this.caughtUp = requireNonNull(caughtUp, "caughtUp is null");
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Opens a new session.
+     *
+     * @return a new session.
+     */
+    Session session() {
+        return new Session();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final EntityManagerFactory primary;
+
+    private final EntityManagerFactory replica;
+
+    private final Clock clock;
+
+    private final Duration pin;
+
+    private final BiFunction<? super EntityManager, ? super BaseEntity, ? extends Watermark> mark;
+
+    private final BiPredicate<? super EntityManager, ? super Watermark> caughtUp;
+}
@@ -0,0 +1,162 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.util.List;
+
+import static com.github.jinahya.sakila.persistence.PersistenceProducer.PERSISTENCE_UNIT_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ReadWriteRouter} against a primary and a replica, each in its own container. The replica
+ * doesn't replicate by itself; tests copy rows, with their {@code last_update}s, from the primary to the replica, so
+ * that watermarks are compared with the precision of real timestamps.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see SakilaContainers
+ */
+@Slf4j
+class ReadWriteRouterContainersIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    @BeforeAll
+    static void startDatabases() {
+        containers = SakilaContainers.start(2);
+        primary = Persistence.createEntityManagerFactory(
+                PERSISTENCE_UNIT_NAME, SakilaContainers.properties(containers.get(0)));
+        replica = Persistence.createEntityManagerFactory(
+                PERSISTENCE_UNIT_NAME, SakilaContainers.properties(containers.get(1)));
+    }
+
+    @AfterAll
+    static void stopDatabases() {
+        try {
+            for (final EntityManagerFactory factory : new EntityManagerFactory[] {primary, replica}) {
+                if (factory != null) {
+                    factory.close();
+                }
+            }
+        } finally {
+            if (containers != null) {
+                SakilaContainers.stop(containers);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static String name(final EntityManager entityManager, final int categoryId) {
+        return entityManager.createQuery("SELECT c.name FROM Category c WHERE c.id = :id", String.class)
+                .setParameter("id", categoryId)
+                .getSingleResult();
+    }
+
+    private static Category rename(final EntityManager entityManager, final int categoryId, final String name) {
+        final Category category = entityManager.find(Category.class, categoryId);
+        category.setName(name);
+        return category;
+    }
+
+    /**
+     * Copies the {@code last_update} of specified category from the primary to the replica, along with specified
+     * name.
+     */
+    private static void replicate(final int categoryId, final String name) {
+        final Object lastUpdate;
+        final EntityManager source = primary.createEntityManager();
+        try {
+            lastUpdate = source.createNativeQuery("SELECT last_update FROM category WHERE category_id = ?")
+                    .setParameter(1, categoryId)
+                    .getSingleResult();
+        } finally {
+            source.close();
+        }
+        final EntityManager target = replica.createEntityManager();
+        try {
+            final EntityTransaction transaction = target.getTransaction();
+            transaction.begin();
+            try {
+                target.createNativeQuery("UPDATE category SET name = ?, last_update = ? WHERE category_id = ?")
+                        .setParameter(1, name)
+                        .setParameter(2, lastUpdate)
+                        .setParameter(3, categoryId)
+                        .executeUpdate();
+                transaction.commit();
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        } finally {
+            target.close();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a session reads from the primary until the replica has the row of its last write.
+     */
+    @Test
+    void assertReadsPrimaryUntilReplicated() {
+        final int categoryId = 1;
+        final ReadWriteRouter.Session session = new ReadWriteRouter(primary, replica).session();
+        session.write(em -> rename(em, categoryId, "Written"));
+        assertThat(session.getWatermark()).isNotNull();
+        assertThat(session.<String>read(em -> name(em, categoryId))).isEqualTo("Written");
+        assertThat(session.getWatermark()).isNotNull();
+        replicate(categoryId, "Written");
+        assertThat(session.<String>read(em -> name(em, categoryId))).isEqualTo("Written");
+        assertThat(session.getWatermark()).isNull();
+    }
+
+    /**
+     * Asserts a replica row of the same {@code last_update}, to the second, but of other values doesn't reach the
+     * watermark.
+     */
+    @Test
+    void assertSameSecondOfOtherValuesNotReached() {
+        final int categoryId = 2;
+        final ReadWriteRouter.Session session = new ReadWriteRouter(primary, replica).session();
+        session.write(em -> rename(em, categoryId, "Written"));
+        replicate(categoryId, "Stale");
+        assertThat(session.<String>read(em -> name(em, categoryId))).isEqualTo("Written");
+        assertThat(session.getWatermark()).isNotNull();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static List<GenericContainer<?>> containers;
+
+    private static EntityManagerFactory primary;
+
+    private static EntityManagerFactory replica;
+}
@@ -0,0 +1,68 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ReadWriteRouter} against the database; the replica is the primary itself unless {@value
+ * PersistenceProducer#SYSTEM_PROPERTY_REPLICA_URL} system property is set.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class ReadWriteRouterIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a session reads its own write.
+     */
+    @Test
+    void assertReadYourWrites() {
+        final Film random = randomEntity(entityManager, Film.class);
+        final Film written = session.write(em -> em.find(Film.class, random.getId()));
+        assertThat(session.getWatermark()).isNotNull();
+        final Film read = session.read(em -> em.find(Film.class, random.getId()));
+        assertThat(read).isEqualTo(written);
+        assertThat(read.getLastUpdate()).isAfterOrEqualTo(written.getLastUpdate());
+        if (PersistenceProducer.replicaEntityManagerFactory() == PersistenceProducer.entityManagerFactory()) {
+            assertThat(session.getWatermark()).isNull();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private ReadWriteRouter.Session session;
+}
@@ -0,0 +1,186 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.transaction;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ReadWriteRouter}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class ReadWriteRouterTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake entity manager factory whose entity managers know only their name, as a property, and manage any
+     * entity.
+     */
+    private static EntityManagerFactory database(final String name) {
+        return fake(EntityManagerFactory.class, (p, n, a) -> {
+            if (!"createEntityManager".equals(n)) {
+                return null;
+            }
+            final EntityTransaction transaction = transaction();
+            return fake(EntityManager.class, (p2, n2, a2) -> {
+                switch (n2) {
+                    case "getProperties":
+                        return singletonMap("name", name);
+                    case "getTransaction":
+                        return transaction;
+                    case "contains":
+                        return true;
+                    case "close":
+                        return NULL;
+                    default:
+                        return null;
+                }
+            });
+        });
+    }
+
+    private static Object name(final EntityManager entityManager) {
+        return entityManager.getProperties().get("name");
+    }
+
+    private static ReadWriteRouter.Watermark mark(final EntityManager entityManager, final BaseEntity entity) {
+        return new ReadWriteRouter.Watermark(Film.class, entity.getId(), singletonList(entity.getLastUpdate()));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a replica reaches a watermark with a later {@code lastUpdate}, or with the same {@code lastUpdate} only
+     * when other values are equal.
+     */
+    @Test
+    void assertReached() {
+        final Date second = new Date(1000L);
+        final List<?> written = Arrays.asList(second, "B");
+        assertThat(ReadWriteRouter.Watermark.reached(written, null)).isFalse();
+        assertThat(ReadWriteRouter.Watermark.reached(written, Arrays.asList(new Date(0L), "B"))).isFalse();
+        assertThat(ReadWriteRouter.Watermark.reached(written, Arrays.asList(new Date(1000L), "A"))).isFalse();
+        assertThat(ReadWriteRouter.Watermark.reached(written, Arrays.asList(new Date(1000L), "B"))).isTrue();
+        assertThat(ReadWriteRouter.Watermark.reached(written, Arrays.asList(new Date(2000L), "C"))).isTrue();
+    }
+
+    /**
+     * Asserts a replica reaches a watermark of the same {@code lastUpdate} when its {@code byte[]} values, selected
+     * anew, have the same contents.
+     */
+    @Test
+    void assertReachedWithBytes() {
+        final List<?> written = Arrays.asList(new Date(1000L), new byte[] {1, 2});
+        assertThat(ReadWriteRouter.Watermark.reached(written, Arrays.asList(new Date(1000L), new byte[] {1, 2})))
+                .isTrue();
+        assertThat(ReadWriteRouter.Watermark.reached(written, Arrays.asList(new Date(1000L), new byte[] {1, 3})))
+                .isFalse();
+    }
+
+    /**
+     * Asserts a session reads from the primary until the replica catches up with its last write.
+     */
+    @Test
+    void assertReadYourWrites() {
+        final AtomicBoolean lagging = new AtomicBoolean(true);
+        final ReadWriteRouter router = new ReadWriteRouter(
+                database("primary"), database("replica"), Clock.systemUTC(), Duration.ofSeconds(1L),
+                ReadWriteRouterTest::mark, (em, w) -> !lagging.get());
+        final ReadWriteRouter.Session session = router.session();
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("replica");
+        final Object written = session.write(em -> {
+            assertThat(name(em)).isEqualTo("primary");
+            final Film film = new Film();
+            film.setId(1);
+            film.setLastUpdate(new Date());
+            return film;
+        });
+        assertThat(written).isInstanceOf(Film.class);
+        assertThat(session.getWatermark()).isNotNull();
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("primary");
+        assertThat(router.session().read(ReadWriteRouterTest::name)).isEqualTo("replica");
+        lagging.set(false);
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("replica");
+        assertThat(session.getWatermark()).isNull();
+        lagging.set(true);
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("replica");
+    }
+
+    /**
+     * Asserts a session pins to the primary, for a while, after a write results no entity.
+     */
+    @Test
+    void assertPinned() {
+        final AtomicReference<Instant> now = new AtomicReference<>(Instant.EPOCH);
+        final Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(final ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+        final ReadWriteRouter router = new ReadWriteRouter(
+                database("primary"), database("replica"), clock, Duration.ofSeconds(5L), ReadWriteRouterTest::mark,
+                (em, w) -> false);
+        final ReadWriteRouter.Session session = router.session();
+        final Object written = session.write(em -> null);
+        assertThat(written).isNull();
+        assertThat(session.getWatermark()).isNull();
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("primary");
+        now.set(Instant.EPOCH.plusSeconds(4L));
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("primary");
+        now.set(Instant.EPOCH.plusSeconds(5L));
+        assertThat(session.read(ReadWriteRouterTest::name)).isEqualTo("replica");
+    }
+}
@@ -0,0 +1,646 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A cache of rental histories of customers for the account page.
+ * <p>
+ * Each {@link History history} keeps rentals of a single customer in columns of primitive arrays, in descending order
+ * of rental dates, along with amounts paid for each rental; pagination, sums and filters run in memory. Histories are
+ * loaded lazily on first access and evicted in least-recently-used order when their total estimated size exceeds a
+ * limit. A cache may {@link #listen() listen} to {@link Rental}s and {@link Payment}s being persisted, through {@link
+ * Listener} registered in {@code META-INF/orm.xml}, and appends them to cached histories once their transactions
+ * commit. A history loaded while a change of its customer commits is returned but not cached.
+ *
+ * @see AfterCommit
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class RentalHistoryCache {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The value of {@link History#returnDates} for rentals not returned yet. The value is {@value}.
+     */
+    static final long NOT_RETURNED = Long.MIN_VALUE;
+
+    static long epochSecond(final LocalDateTime dateTime) {
+        return dateTime == null ? NOT_RETURNED : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime dateTime(final long epochSecond) {
+        return epochSecond == NOT_RETURNED ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    static long cents(final BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A single row of a history.
+     */
+    static final class Row {
+
+        private Row(final History history, final int index) {
+            super();
+            rentalId = history.rentalIds[index];
+            rentalDate = dateTime(history.rentalDates[index]);
+            returnDate = dateTime(history.returnDates[index]);
+            inventoryId = history.inventoryIds[index];
+            filmId = history.filmIds[index];
+            title = history.titles[index];
+            amount = BigDecimal.valueOf(history.amounts[index], 2);
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "{"
+                   + "rentalId=" + rentalId
+                   + ",rentalDate=" + rentalDate
+                   + ",returnDate=" + returnDate
+                   + ",inventoryId=" + inventoryId
+                   + ",filmId=" + filmId
+                   + ",title=" + title
+                   + ",amount=" + amount
+                   + "}";
+        }
+
+        final int rentalId;
+
+        final LocalDateTime rentalDate;
+
+        final LocalDateTime returnDate;
+
+        final int inventoryId;
+
+        final int filmId;
+
+        final String title;
+
+        final BigDecimal amount;
+    }
+
+    /**
+     * A predicate on a row of a history by its index.
+     */
+    @FunctionalInterface
+    interface RowPredicate {
+
+        boolean test(History history, int index);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The rental history of a single customer stored in columns.
+     */
+    static final class History {
+
+        /**
+         * The estimated number of bytes of each row. The value is {@value}.
+         */
+        static final int ROW_BYTES = Integer.BYTES * 3 + Long.BYTES * 3 + 8; // + a reference to the title
+
+        /**
+         * The estimated number of bytes of each history without rows. The value is {@value}.
+         */
+        static final int HISTORY_BYTES = 128;
+
+        /**
+         * Loads the history of specified customer. Rentals are read newest first so that each is appended at the end.
+         *
+         * @param entityManager an entity manager.
+         * @param customerId    the id of the customer.
+         * @return the history of the customer.
+         */
+        static History load(final EntityManager entityManager, final int customerId) {
+            final History history = new History(customerId);
+            final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            {
+                final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+                final Root<Rental> rental = criteria.from(Rental.class);
+                final Join<Rental, Inventory> inventory = rental.join(Rental_.inventory);
+                final Join<Inventory, Film> film = inventory.join(Inventory_.film);
+                criteria.multiselect(rental.get(BaseEntity_.id), rental.get(Rental_.rentalDate),
+                                     rental.get(Rental_.returnDate), inventory.get(BaseEntity_.id),
+                                     film.get(BaseEntity_.id), film.get(Film_.title));
+                criteria.where(builder.equal(rental.get(Rental_.customer).get(BaseEntity_.id), customerId));
+                criteria.orderBy(builder.desc(rental.get(Rental_.rentalDate))); // newest first, as appended
+                for (final Tuple t : entityManager.createQuery(criteria).getResultList()) {
+                    history.append((Integer) t.get(0), (LocalDateTime) t.get(1), (LocalDateTime) t.get(2),
+                                   (Integer) t.get(3), (Integer) t.get(4), (String) t.get(5));
+                }
+            }
+            {
+                final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+                final Root<Payment> payment = criteria.from(Payment.class);
+                criteria.multiselect(payment.get(Payment_.rental).get(BaseEntity_.id), payment.get(Payment_.amount));
+                criteria.where(builder.equal(payment.get(Payment_.customer).get(BaseEntity_.id), customerId),
+                               builder.isNotNull(payment.get(Payment_.rental)));
+                for (final Tuple t : entityManager.createQuery(criteria).getResultList()) {
+                    history.pay((Integer) t.get(0), cents((BigDecimal) t.get(1)));
+                }
+            }
+            return history;
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+        History(final int customerId) {
+            super();
+            this.customerId = customerId;
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+
+        /**
+         * Inserts a rental keeping the descending order of rental dates.
+         */
+        synchronized void append(final int rentalId, final LocalDateTime rentalDate, final LocalDateTime returnDate,
+                                 final int inventoryId, final int filmId, final String title) {
+            if (size == rentalIds.length) {
+                final int capacity = Math.max(8, size + (size >> 1));
+                rentalIds = Arrays.copyOf(rentalIds, capacity);
+                rentalDates = Arrays.copyOf(rentalDates, capacity);
+                returnDates = Arrays.copyOf(returnDates, capacity);
+                inventoryIds = Arrays.copyOf(inventoryIds, capacity);
+                filmIds = Arrays.copyOf(filmIds, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+            }
+            final long epochSecond = epochSecond(rentalDate);
+            int index = size;
+            while (index > 0 && rentalDates[index - 1] < epochSecond) {
+                index--;
+            }
+            final int moved = size - index;
+            System.arraycopy(rentalIds, index, rentalIds, index + 1, moved);
+            System.arraycopy(rentalDates, index, rentalDates, index + 1, moved);
+            System.arraycopy(returnDates, index, returnDates, index + 1, moved);
+            System.arraycopy(inventoryIds, index, inventoryIds, index + 1, moved);
+            System.arraycopy(filmIds, index, filmIds, index + 1, moved);
+            System.arraycopy(titles, index, titles, index + 1, moved);
+            System.arraycopy(amounts, index, amounts, index + 1, moved);
+            rentalIds[index] = rentalId;
+            rentalDates[index] = epochSecond;
+            returnDates[index] = epochSecond(returnDate);
+            inventoryIds[index] = inventoryId;
+            filmIds[index] = filmId;
+            titles[index] = title;
+            amounts[index] = 0L;
+            size++;
+        }
+
+        private int indexOf(final int rentalId) {
+            for (int i = 0; i < size; i++) {
+                if (rentalIds[i] == rentalId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds a paid amount to specified rental.
+         *
+         * @return {@code true} if the rental is found; {@code false} otherwise.
+         */
+        synchronized boolean pay(final int rentalId, final long cents) {
+            final int index = indexOf(rentalId);
+            if (index < 0) {
+                return false;
+            }
+            amounts[index] += cents;
+            return true;
+        }
+
+        /**
+         * Updates the return date of specified rental.
+         *
+         * @return {@code true} if the rental is found; {@code false} otherwise.
+         */
+        synchronized boolean returned(final int rentalId, final LocalDateTime returnDate) {
+            final int index = indexOf(rentalId);
+            if (index < 0) {
+                return false;
+            }
+            returnDates[index] = epochSecond(returnDate);
+            return true;
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+
+        /**
+         * Returns the number of rentals.
+         *
+         * @return the number of rentals.
+         */
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Returns a page of rentals in descending order of rental dates.
+         *
+         * @param firstResult the index of the first row.
+         * @param maxResults  the maximum number of rows.
+         * @return a list of rows.
+         */
+        synchronized @NotNull List<Row> page(@PositiveOrZero final int firstResult, @Positive final int maxResults) {
+            final List<Row> page = new ArrayList<>();
+            for (int i = firstResult; i < size && page.size() < maxResults; i++) {
+                page.add(new Row(this, i));
+            }
+            return unmodifiableList(page);
+        }
+
+        /**
+         * Returns rows matching specified predicate in descending order of rental dates.
+         *
+         * @param predicate the predicate.
+         * @return a list of matching rows.
+         */
+        synchronized @NotNull List<Row> filter(@NotNull final RowPredicate predicate) {
+            final List<Row> rows = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (predicate.test(this, i)) {
+                    rows.add(new Row(this, i));
+                }
+            }
+            return unmodifiableList(rows);
+        }
+
+        /**
+         * Returns the total amount paid for all rentals.
+         *
+         * @return the total amount.
+         */
+        synchronized @NotNull BigDecimal sumAmounts() {
+            long sum = 0L;
+            for (int i = 0; i < size; i++) {
+                sum += amounts[i];
+            }
+            return BigDecimal.valueOf(sum, 2);
+        }
+
+        /**
+         * Returns the number of rentals not returned yet.
+         *
+         * @return the number of rentals not returned yet.
+         */
+        synchronized int countNotReturned() {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (returnDates[i] == NOT_RETURNED) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized long bytes() {
+            return HISTORY_BYTES + (long) rentalIds.length * ROW_BYTES;
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+        final int customerId;
+
+        private int size;
+
+        int[] rentalIds = new int[0];
+
+        long[] rentalDates = new long[0];
+
+        long[] returnDates = new long[0];
+
+        int[] inventoryIds = new int[0];
+
+        int[] filmIds = new int[0];
+
+        String[] titles = new String[0];
+
+        long[] amounts = new long[0];
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An entity listener appends persisted rentals and payments to histories of listening caches after their
+     * transactions commit.
+     */
+    public static class Listener implements RentalReturnListener {
+
+        /**
+         * Creates a new instance.
+         */
+        public Listener() {
+            super();
+        }
+
+        @Override
+        public void returned(@NotNull final Rental rental) {
+            final int customerId = rental.getCustomer().getId();
+            final int rentalId = rental.getId();
+            final LocalDateTime returnDate = rental.getReturnDate();
+            LISTENING.afterCommit(c -> c.returned(customerId, rentalId, returnDate));
+        }
+
+        @PostPersist
+        void postPersist(final Object entity) {
+            if (entity instanceof Rental) {
+                final Rental rental = (Rental) entity;
+                final int customerId = rental.getCustomer().getId();
+                final int rentalId = rental.getId();
+                final LocalDateTime rentalDate = rental.getRentalDate();
+                final LocalDateTime returnDate = rental.getReturnDate();
+                final Inventory inventory = rental.getInventory();
+                final Film film = inventory.getFilm(); // fetched eagerly along with the inventory
+                final int inventoryId = inventory.getId();
+                final int filmId = film.getId();
+                final String title = film.getTitle();
+                LISTENING.afterCommit(c -> c.rented(customerId, rentalId, rentalDate, returnDate, inventoryId,
+                                                    filmId, title));
+            } else if (entity instanceof Payment) {
+                final Payment payment = (Payment) entity;
+                if (payment.getRental() == null) {
+                    return;
+                }
+                final int customerId = payment.getCustomer().getId();
+                final int rentalId = payment.getRental().getId();
+                final long cents = cents(payment.getAmount());
+                LISTENING.afterCommit(c -> c.paid(customerId, rentalId, cents));
+            }
+        }
+
+        @PostUpdate
+        void postUpdate(final Object entity) {
+            if (entity instanceof Rental) {
+                returned((Rental) entity);
+            }
+        }
+    }
+
+    private static final Listening<RentalHistoryCache> LISTENING = new Listening<>();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The number of loaders of a history in progress and the number of changes committed meanwhile.
+     */
+    private static final class Loading {
+
+        private int loaders;
+
+        private long changes;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new cache loads histories using specified entity manager factory.
+     *
+     * @param entityManagerFactory the entity manager factory.
+     * @param maximumBytes         the maximum estimated number of bytes of all cached histories.
+     * @return a new cache.
+     */
+    static @NotNull RentalHistoryCache of(@NotNull final EntityManagerFactory entityManagerFactory,
+                                          @Positive final long maximumBytes) {
+        requireNonNull(entityManagerFactory, "entityManagerFactory is null");
+        return new RentalHistoryCache(maximumBytes, customerId -> {
+            final EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                return History.load(entityManager, customerId);
+            } finally {
+                entityManager.close();
+            }
+        });
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maximumBytes the maximum estimated number of bytes of all cached histories.
+     * @param loader       a function loads the history of a customer.
+     */
+    RentalHistoryCache(@Positive final long maximumBytes, @NotNull final IntFunction<History> loader) {
+        super();
+        if (maximumBytes <= 0L) {
+            throw new IllegalArgumentException("maximumBytes(" + maximumBytes + ") <= 0");
+        }
+        this.maximumBytes = maximumBytes;
+        this.loader = requireNonNull(loader, "loader is null");
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts listening to rentals and payments being persisted.
+     *
+     * @return this cache.
+     */
+    RentalHistoryCache listen() {
+        LISTENING.add(this);
+        return this;
+    }
+
+    /**
+     * Stops listening to rentals and payments being persisted.
+     */
+    void unlisten() {
+        LISTENING.remove(this);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the history of specified customer, loading it if not cached.
+     *
+     * @param customerId the id of the customer.
+     * @return the history of the customer.
+     */
+    @NotNull History history(final int customerId) {
+        final Loading loading;
+        final long changes;
+        synchronized (histories) {
+            final History cached = histories.get(customerId);
+            if (cached != null) {
+                return cached;
+            }
+            loading = loadings.computeIfAbsent(customerId, k -> new Loading());
+            loading.loaders++;
+            changes = loading.changes;
+        }
+        try {
+            final History loaded = requireNonNull(loader.apply(customerId), "loaded history is null");
+            synchronized (histories) {
+                final History raced = histories.get(customerId);
+                if (raced != null) {
+                    return raced;
+                }
+                if (loading.changes != changes) {
+                    // a change committed while loading may or may not be in the loaded; don't cache it
+                    log.debug("history of customer {} changed while loading", customerId);
+                    return loaded;
+                }
+                histories.put(customerId, loaded);
+                bytes += loaded.bytes();
+                evict();
+                return loaded;
+            }
+        } finally {
+            synchronized (histories) {
+                if (--loading.loaders == 0) {
+                    loadings.remove(customerId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the history of specified customer only if cached.
+     *
+     * @param customerId the id of the customer.
+     * @return an optional of the cached history; empty if not cached.
+     */
+    @NotNull Optional<History> cached(final int customerId) {
+        synchronized (histories) {
+            return Optional.ofNullable(histories.get(customerId));
+        }
+    }
+
+    private void evict() {
+        for (final Iterator<History> i = histories.values().iterator(); bytes > maximumBytes && i.hasNext(); ) {
+            final History eldest = i.next();
+            if (histories.size() == 1) {
+                break; // keeps the most recent one
+            }
+            i.remove();
+            bytes -= eldest.bytes();
+            log.debug("evicted history of customer {}", eldest.customerId);
+        }
+    }
+
+    /**
+     * Applies a committed change to the cached history of specified customer; or, if the history is being loaded,
+     * marks the loading as changed.
+     */
+    private void changed(final int customerId, final Consumer<History> change) {
+        synchronized (histories) {
+            final History cached = histories.get(customerId);
+            if (cached == null) {
+                final Loading loading = loadings.get(customerId);
+                if (loading != null) {
+                    loading.changes++;
+                }
+                return;
+            }
+            final long before = cached.bytes();
+            change.accept(cached);
+            bytes += cached.bytes() - before;
+            evict();
+        }
+    }
+
+    void rented(final int customerId, final int rentalId, final LocalDateTime rentalDate,
+                final LocalDateTime returnDate, final int inventoryId, final int filmId, final String title) {
+        changed(customerId, h -> h.append(rentalId, rentalDate, returnDate, inventoryId, filmId, title));
+    }
+
+    void paid(final int customerId, final int rentalId, final long cents) {
+        changed(customerId, h -> h.pay(rentalId, cents));
+    }
+
+    void returned(final int customerId, final int rentalId, final LocalDateTime returnDate) {
+        changed(customerId, h -> h.returned(rentalId, returnDate));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the estimated number of bytes of all cached histories.
+     *
+     * @return the estimated number of bytes.
+     */
+    long bytes() {
+        synchronized (histories) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns the number of cached histories.
+     *
+     * @return the number of cached histories.
+     */
+    int size() {
+        synchronized (histories) {
+            return histories.size();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final long maximumBytes;
+
+    private final IntFunction<History> loader;
+
+    private final Map<Integer, History> histories = new LinkedHashMap<>(16, .75f, true);
+
+    /**
+     * Histories being loaded, guarded by {@link #histories}.
+     */
+    private final Map<Integer, Loading> loadings = new HashMap<>();
+
+    private long bytes;
+}
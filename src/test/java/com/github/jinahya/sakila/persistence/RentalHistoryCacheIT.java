@@ -0,0 +1,70 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+
+import static com.github.jinahya.sakila.persistence.EntityServiceIT.randomEntity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link RentalHistoryCache} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class RentalHistoryCacheIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a loaded history agrees with the database.
+     */
+    @Test
+    void assertLoaded() {
+        final Customer customer = randomEntity(entityManager, Customer.class);
+        final RentalHistoryCache.History history = RentalHistoryCache.History.load(entityManager, customer.getId());
+        final Number rentals = (Number) entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM rental WHERE customer_id = ?")
+                .setParameter(1, customer.getId())
+                .getSingleResult();
+        assertThat(history.size()).isEqualTo(rentals.intValue());
+        final BigDecimal amounts = (BigDecimal) entityManager
+                .createNativeQuery("SELECT COALESCE(SUM(amount), 0) FROM payment"
+                                   + " WHERE customer_id = ? AND rental_id IS NOT NULL")
+                .setParameter(1, customer.getId())
+                .getSingleResult();
+        assertThat(history.sumAmounts()).isEqualByComparingTo(amounts);
+        log.debug("first page: {}", history.page(0, 10));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,187 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link RentalHistoryCache}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class RentalHistoryCacheTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final LocalDateTime BASE = LocalDateTime.of(2005, 5, 24, 22, 53, 30);
+
+    /**
+     * Returns a history of specified customer with specified number of rentals, each paid {@code 1.99}. Rental {@code
+     * i} is rented {@code i} days after {@link #BASE} and, if {@code i} is even, returned a day after.
+     */
+    private static RentalHistoryCache.History history(final int customerId, final int rentals) {
+        final RentalHistoryCache.History history = new RentalHistoryCache.History(customerId);
+        for (int i = 0; i < rentals; i++) {
+            final LocalDateTime rentalDate = BASE.plusDays(i);
+            history.append(i + 1, rentalDate, i % 2 == 0 ? rentalDate.plusDays(1L) : null, 100 + i, 200 + i,
+                           "FILM " + i);
+            history.pay(i + 1, 199L);
+        }
+        return history;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts pagination, sums and filters of a history.
+     */
+    @Test
+    void assertHistory() {
+        final RentalHistoryCache.History history = history(1, 10);
+        assertThat(history.size()).isEqualTo(10);
+        final List<RentalHistoryCache.Row> page = history.page(2, 3);
+        assertThat(page.stream().map(r -> r.rentalId).collect(toList())).containsExactly(8, 7, 6);
+        assertThat(page.get(0).rentalDate).isEqualTo(BASE.plusDays(7L));
+        assertThat(page.get(0).returnDate).isNull();
+        assertThat(page.get(1).returnDate).isEqualTo(BASE.plusDays(7L));
+        assertThat(page.get(0).amount).isEqualByComparingTo(new BigDecimal("1.99"));
+        assertThat(history.sumAmounts()).isEqualByComparingTo(new BigDecimal("19.90"));
+        assertThat(history.countNotReturned()).isEqualTo(5);
+        assertThat(history.filter((h, i) -> h.filmIds[i] < 203).stream().map(r -> r.filmId).collect(toList()))
+                .containsExactly(202, 201, 200);
+        history.append(11, BASE.minusDays(1L), null, 99, 99, "OLDEST");
+        assertThat(history.page(10, 1).get(0).title).isEqualTo("OLDEST");
+        assertThat(history.pay(12, 100L)).isFalse();
+        assertThat(history.returned(11, BASE)).isTrue();
+        assertThat(history.page(10, 1).get(0).returnDate).isEqualTo(BASE);
+    }
+
+    /**
+     * Asserts histories are loaded lazily and evicted in least-recently-used order by their sizes.
+     */
+    @Test
+    void assertLoadedLazilyAndEvicted() {
+        final AtomicInteger loads = new AtomicInteger();
+        final long bytes = history(0, 10).bytes();
+        final RentalHistoryCache cache = new RentalHistoryCache(bytes * 2, c -> {
+            loads.incrementAndGet();
+            return history(c, 10);
+        });
+        assertThat(cache.cached(1)).isEmpty();
+        cache.history(1);
+        cache.history(2);
+        cache.history(1);
+        assertThat(loads).hasValue(2);
+        assertThat(cache.bytes()).isEqualTo(bytes * 2);
+        cache.history(3); // evicts 2, the least recently used
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.cached(1)).isPresent();
+        assertThat(cache.cached(2)).isEmpty();
+        assertThat(cache.bytes()).isLessThanOrEqualTo(bytes * 2);
+        cache.history(2);
+        assertThat(loads).hasValue(4);
+    }
+
+    /**
+     * Asserts persisted rentals and payments are appended to cached histories only, once their transactions commit.
+     */
+    @Test
+    void assertAppendedOnPersist() {
+        final RentalHistoryCache cache = new RentalHistoryCache(Long.MAX_VALUE, c -> history(c, 1)).listen();
+        try {
+            final Customer customer = new Customer();
+            customer.setId(1);
+            final Film film = new Film();
+            film.setId(300);
+            film.setTitle("NEW");
+            final Inventory inventory = new Inventory();
+            inventory.setId(400);
+            inventory.setFilm(film);
+            final Rental rental = new Rental();
+            rental.setId(500);
+            rental.setRentalDate(BASE.plusYears(1L));
+            rental.setInventory(inventory);
+            rental.setCustomer(customer);
+            final RentalHistoryCache.Listener listener = new RentalHistoryCache.Listener();
+            listener.postPersist(rental); // not cached yet; ignored
+            final RentalHistoryCache.History history = cache.history(1);
+            assertThat(history.size()).isEqualTo(1);
+            AfterCommit.begun();
+            listener.postPersist(rental);
+            AfterCommit.rolledBack();
+            assertThat(history.size()).isEqualTo(1);
+            final Payment payment = new Payment();
+            payment.setCustomer(customer);
+            payment.setRental(rental);
+            payment.setAmount(new BigDecimal("4.99"));
+            AfterCommit.begun();
+            listener.postPersist(rental);
+            listener.postPersist(payment);
+            assertThat(history.size()).isEqualTo(1);
+            AfterCommit.committed();
+            assertThat(history.size()).isEqualTo(2);
+            final RentalHistoryCache.Row row = history.page(0, 1).get(0);
+            assertThat(row.rentalId).isEqualTo(500);
+            assertThat(row.title).isEqualTo("NEW");
+            assertThat(row.amount).isEqualByComparingTo(new BigDecimal("4.99"));
+            assertThat(history.countNotReturned()).isEqualTo(1);
+            rental.setReturnDate(BASE.plusYears(1L).plusDays(1L));
+            listener.postUpdate(rental);
+            assertThat(history.countNotReturned()).isZero();
+        } finally {
+            cache.unlisten();
+        }
+    }
+
+    /**
+     * Asserts a history loaded while a change of its customer commits is returned but not cached.
+     */
+    @Test
+    void assertNotCachedWhenChangedWhileLoading() {
+        final AtomicReference<RentalHistoryCache> reference = new AtomicReference<>();
+        final AtomicInteger loads = new AtomicInteger();
+        final RentalHistoryCache cache = new RentalHistoryCache(Long.MAX_VALUE, c -> {
+            if (loads.getAndIncrement() == 0) {
+                reference.get().paid(c, 1, 100L); // commits while the first load is reading
+            }
+            return history(c, 1);
+        });
+        reference.set(cache);
+        assertThat(cache.history(1).size()).isEqualTo(1);
+        assertThat(cache.cached(1)).isEmpty();
+        cache.paid(2, 1, 100L); // nor cached nor loading; ignored
+        final RentalHistoryCache.History history = cache.history(1);
+        assertThat(cache.cached(1)).containsSame(history);
+        assertThat(loads).hasValue(2);
+        cache.paid(1, 1, 100L);
+        assertThat(history.sumAmounts()).isEqualByComparingTo(new BigDecimal("2.99"));
+    }
+}
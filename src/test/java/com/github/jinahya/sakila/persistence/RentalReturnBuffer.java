@@ -0,0 +1,562 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.validation.constraints.NotNull;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A write-behind buffer of {@link Rental rental} returns.
+ * <p>
+ * An {@link #offer(int, LocalDateTime) offered} return is appended, and forced, to a local journal and kept in memory,
+ * coalesced with any earlier return of the same rental, before the method returns; no database round trip is made.
+ * Buffered returns are {@link #flush(EntityManager) flushed} as a single {@code UPDATE rental SET return_date = CASE
+ * ...} statement per, at most, {@value #MAX_PARAMETERS} rentals, in a single transaction, every period or as soon as
+ * a number of returns are buffered. Journal files are deleted only after their returns are committed; returns of any
+ * left journal files are {@link #RentalReturnBuffer(Path, int) recovered} when the buffer is opened again.
+ * <p>
+ * Flushed updates are native; the rentals are evicted from the shared cache and, after the transaction commits, the
+ * {@link #RETURNED entity listeners} of rentals, each of which is a {@link RentalReturnListener}, are notified of the
+ * rentals actually returned.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class RentalReturnBuffer implements Closeable {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The maximum number of rentals in a single update statement. The value is {@value}.
+     */
+    static final int MAX_PARAMETERS = 500;
+
+    /**
+     * The name of the current journal file. The value is {@value}.
+     */
+    static final String JOURNAL = "returns.journal";
+
+    /**
+     * The suffix of sealed journal files. The value is {@value}.
+     */
+    static final String SEALED_SUFFIX = ".sealed";
+
+    /**
+     * The number of bytes of each journal record; a rental id, epoch seconds and nanoseconds of the return date, and
+     * a CRC-32 of them. The value is {@value}.
+     */
+    static final int RECORD_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    /**
+     * The resource name of the mapping file whose entity listeners of {@link Rental} are notified of flushed returns.
+     * The value is {@value}.
+     */
+    static final String MAPPING_FILE = "META-INF/orm.xml";
+
+    /**
+     * The entity listeners of {@link Rental} in the {@link #MAPPING_FILE}, notified of flushed returns.
+     */
+    private static final List<RentalReturnListener> RETURNED = listeners(MAPPING_FILE);
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Instantiates the entity listeners of {@link Rental} in mapping files of specified resource name, each of which
+     * must be a {@link RentalReturnListener}.
+     *
+     * @param name the resource name of mapping files.
+     * @return a list of entity listeners of {@link Rental}.
+     * @throws IllegalStateException if failed to read the mapping files or an entity listener is not a {@link
+     *                               RentalReturnListener}.
+     */
+    static List<RentalReturnListener> listeners(@NotNull final String name) {
+        requireNonNull(name, "name is null");
+        final List<RentalReturnListener> listeners = new ArrayList<>();
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            final ClassLoader classLoader = RentalReturnBuffer.class.getClassLoader();
+            for (final URL url : Collections.list(classLoader.getResources(name))) {
+                final Document document;
+                try (InputStream stream = url.openStream()) {
+                    document = factory.newDocumentBuilder().parse(stream);
+                }
+                final NodeList entities = document.getElementsByTagNameNS("*", "entity");
+                for (int i = 0; i < entities.getLength(); i++) {
+                    final Element entity = (Element) entities.item(i);
+                    if (!Rental.class.getName().equals(entity.getAttribute("class"))) {
+                        continue;
+                    }
+                    final NodeList classes = entity.getElementsByTagNameNS("*", "entity-listener");
+                    for (int j = 0; j < classes.getLength(); j++) {
+                        final Class<?> listenerClass
+                                = Class.forName(((Element) classes.item(j)).getAttribute("class"), true, classLoader);
+                        if (!RentalReturnListener.class.isAssignableFrom(listenerClass)) {
+                            throw new IllegalStateException(
+                                    "entity listener " + listenerClass + " in " + url + " is not a "
+                                    + RentalReturnListener.class.getSimpleName());
+                        }
+                        listeners.add((RentalReturnListener) listenerClass.getConstructor().newInstance());
+                    }
+                }
+            }
+        } catch (final IOException | ParserConfigurationException | SAXException | ReflectiveOperationException e) {
+            throw new IllegalStateException("failed to read entity listeners of rentals in " + name, e);
+        }
+        return unmodifiableList(listeners);
+    }
+
+    /**
+     * Notifies the {@link #RETURNED entity listeners} of rentals of specified rental returned without its entity being
+     * updated. A listener which fails is logged and doesn't keep the others from being notified.
+     *
+     * @param rental the returned rental populated as specified by {@link RentalReturnListener#returned(Rental)}.
+     */
+    static void notifyReturned(@NotNull final Rental rental) {
+        requireNonNull(rental, "rental is null");
+        for (final RentalReturnListener listener : RETURNED) {
+            try {
+                listener.returned(rental);
+            } catch (final RuntimeException re) {
+                log.error("failed to notify the return of {}", rental, re);
+            }
+        }
+    }
+
+    /**
+     * Returns a select statement locking rentals, not yet returned, of specified number of rentals.
+     *
+     * @param size the number of rentals.
+     * @return a select statement of rental ids, inventory ids and customer ids whose parameters are rental ids.
+     */
+    static String select(final int size) {
+        return in(new StringBuilder(64 + size * 3)
+                          .append("SELECT ").append(Rental.COLUMN_NAME_RENTAL_ID)
+                          .append(", ").append(Rental.COLUMN_NAME_INVENTORY_ID)
+                          .append(", ").append(Rental.COLUMN_NAME_CUSTOMER_ID)
+                          .append(" FROM ").append(Rental.TABLE_NAME), size)
+                .append(" FOR UPDATE").toString();
+    }
+
+    /**
+     * Returns an update statement of specified number of rentals.
+     *
+     * @param size the number of rentals.
+     * @return an update statement whose parameters are, pairs of rental id and return date, followed by rental ids.
+     */
+    static String update(final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size(" + size + ") <= 0");
+        }
+        final StringBuilder builder = new StringBuilder(64 + size * 24)
+                .append("UPDATE ").append(Rental.TABLE_NAME)
+                .append(" SET ").append(Rental.COLUMN_NAME_RETURN_DATE).append(" = CASE ")
+                .append(Rental.COLUMN_NAME_RENTAL_ID);
+        for (int i = 0; i < size; i++) {
+            builder.append(" WHEN ? THEN ?");
+        }
+        return in(builder.append(" END"), size).toString();
+    }
+
+    private static StringBuilder in(final StringBuilder builder, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size(" + size + ") <= 0");
+        }
+        builder.append(" WHERE ").append(Rental.COLUMN_NAME_RENTAL_ID).append(" IN (?");
+        for (int i = 1; i < size; i++) {
+            builder.append(", ?");
+        }
+        return builder.append(") AND ").append(Rental.COLUMN_NAME_RETURN_DATE).append(" IS NULL");
+    }
+
+    private static Rental returned(final Object[] row, final LocalDateTime returnDate) {
+        final Rental rental = new Rental();
+        rental.setId(((Number) row[0]).intValue());
+        final Inventory inventory = new Inventory();
+        inventory.setId(((Number) row[1]).intValue());
+        rental.setInventory(inventory);
+        final Customer customer = new Customer();
+        customer.setId(((Number) row[2]).intValue());
+        rental.setCustomer(customer);
+        rental.setReturnDate(returnDate);
+        return rental;
+    }
+
+    private static int crc(final ByteBuffer record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), record.arrayOffset(), RECORD_BYTES - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    private static void merge(final Map<Integer, LocalDateTime> returns, final int rentalId,
+                              final LocalDateTime returnDate) {
+        returns.merge(rentalId, returnDate, (p, n) -> n.isBefore(p) ? n : p);
+    }
+
+    /**
+     * Reads returns recorded in specified journal file, stopping at any torn or corrupted record.
+     *
+     * @param file    the journal file.
+     * @param returns a map to which the returns are merged.
+     * @return the number of records read.
+     * @throws IOException if an I/O error occurs.
+     */
+    static int read(@NotNull final Path file, @NotNull final Map<Integer, LocalDateTime> returns) throws IOException {
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            while (true) {
+                record.clear();
+                while (record.hasRemaining() && channel.read(record) != -1) {
+                    // read fully
+                }
+                if (record.hasRemaining()) {
+                    if (record.position() > 0) {
+                        log.warn("torn record at {} of {}", channel.position() - record.position(), file);
+                    }
+                    break;
+                }
+                if (crc(record) != record.getInt(RECORD_BYTES - Integer.BYTES)) {
+                    log.warn("corrupted record at {} of {}", channel.position() - RECORD_BYTES, file);
+                    break;
+                }
+                merge(returns, record.getInt(0), LocalDateTime.ofEpochSecond(
+                        record.getLong(Integer.BYTES), record.getInt(Integer.BYTES + Long.BYTES), ZoneOffset.UTC));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Opens a buffer journaling in specified directory, recovering returns of any left journal files.
+     *
+     * @param directory the directory for journal files.
+     * @param maxEvents the number of buffered returns triggers a flush of a {@link #start(ScheduledExecutorService,
+     *                  EntityManagerFactory, long, TimeUnit) started} buffer.
+     * @throws IOException if an I/O error occurs.
+     */
+    RentalReturnBuffer(@NotNull final Path directory, final int maxEvents) throws IOException {
+        super();
+        this.directory = createDirectories(requireNonNull(directory, "directory is null"));
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException("maxEvents(" + maxEvents + ") <= 0");
+        }
+        this.maxEvents = maxEvents;
+        if (exists(directory.resolve(JOURNAL))) {
+            seal();
+        }
+        try (DirectoryStream<Path> stream = newDirectoryStream(directory, JOURNAL + ".*" + SEALED_SUFFIX)) {
+            for (final Path file : stream) {
+                sealed.add(file);
+            }
+        }
+        Collections.sort(sealed);
+        for (final Path file : sealed) {
+            log.debug("recovered {} return(s) from {}", read(file, pending), file);
+        }
+        journal = open();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Cancels the schedule, if {@link #start(ScheduledExecutorService, EntityManagerFactory, long, TimeUnit) started},
+     * and closes the journal; buffered returns are left to be recovered. Closing a closed buffer does nothing.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flusher = null;
+        final ScheduledFuture<?> schedule = this.schedule;
+        if (schedule != null) {
+            schedule.cancel(false);
+        }
+        journal.close();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Buffers a return of a rental of specified id, coalesced with any buffered return of the same rental.
+     *
+     * @param rentalId   the id of the rental.
+     * @param returnDate the return date.
+     * @throws IOException if failed to journal.
+     * @throws IllegalStateException if this buffer is closed.
+     */
+    void offer(final int rentalId, @NotNull final LocalDateTime returnDate) throws IOException {
+        requireNonNull(returnDate, "returnDate is null");
+        final int size;
+        synchronized (this) {
+            ensureOpen();
+            record.clear();
+            record.putInt(rentalId).putLong(returnDate.toEpochSecond(ZoneOffset.UTC)).putInt(returnDate.getNano());
+            record.putInt(crc(record)).flip();
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            journal.force(false);
+            merge(pending, rentalId, returnDate);
+            size = pending.size();
+        }
+        final Runnable flusher = this.flusher;
+        if (size >= maxEvents && flusher != null && flushing.compareAndSet(false, true)) {
+            executor.execute(flusher);
+        }
+    }
+
+    /**
+     * Returns the number of buffered returns.
+     *
+     * @return the number of buffered returns.
+     */
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Returns a snapshot of buffered returns.
+     *
+     * @return a map of rental ids and return dates.
+     */
+    synchronized Map<Integer, LocalDateTime> pending() {
+        return new HashMap<>(pending);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Updates all buffered returns in a transaction of specified entity manager, and deletes the journal files of them.
+     * The returns are buffered back when the transaction fails. Once the transaction commits, the {@link #RETURNED
+     * entity listeners} are notified of the rentals updated.
+     *
+     * @param entityManager the entity manager.
+     * @return the number of rentals updated; rentals already returned are not updated.
+     * @throws IOException if an I/O error occurs.
+     * @throws IllegalStateException if this buffer is closed.
+     */
+    int flush(@NotNull final EntityManager entityManager) throws IOException {
+        requireNonNull(entityManager, "entityManager is null");
+        final Map<Integer, LocalDateTime> returns;
+        final List<Path> files;
+        synchronized (this) {
+            ensureOpen();
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            returns = pending;
+            pending = new HashMap<>();
+            journal.close();
+            sealed.add(seal());
+            journal = open();
+            files = new ArrayList<>(sealed);
+            sealed.clear();
+        }
+        int updated = 0;
+        final List<Rental> rentals = new ArrayList<>();
+        try {
+            final EntityTransaction transaction = entityManager.getTransaction();
+            transaction.begin();
+            try {
+                final List<Map.Entry<Integer, LocalDateTime>> entries = new ArrayList<>(returns.entrySet());
+                for (int i = 0; i < entries.size(); i += MAX_PARAMETERS) {
+                    final List<Map.Entry<Integer, LocalDateTime>> chunk
+                            = entries.subList(i, Math.min(i + MAX_PARAMETERS, entries.size()));
+                    final Query select = entityManager.createNativeQuery(select(chunk.size()));
+                    for (int j = 0; j < chunk.size(); j++) {
+                        select.setParameter(j + 1, chunk.get(j).getKey());
+                    }
+                    @SuppressWarnings({"unchecked"})
+                    final List<Object[]> rows = select.getResultList();
+                    rows.forEach(r -> rentals.add(returned(r, returns.get(((Number) r[0]).intValue()))));
+                    final Query query = entityManager.createNativeQuery(update(chunk.size()));
+                    int position = 0;
+                    for (final Map.Entry<Integer, LocalDateTime> entry : chunk) {
+                        query.setParameter(++position, entry.getKey());
+                        query.setParameter(++position, Timestamp.valueOf(entry.getValue()));
+                    }
+                    for (final Map.Entry<Integer, LocalDateTime> entry : chunk) {
+                        query.setParameter(++position, entry.getKey());
+                    }
+                    updated += query.executeUpdate();
+                }
+                transaction.commit();
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        } catch (final RuntimeException re) {
+            synchronized (this) {
+                returns.forEach((k, v) -> merge(pending, k, v));
+                sealed.addAll(0, files);
+            }
+            throw re;
+        }
+        returns.keySet().forEach(k -> entityManager.getEntityManagerFactory().getCache().evict(Rental.class, k));
+        rentals.forEach(RentalReturnBuffer::notifyReturned);
+        for (final Path file : files) {
+            deleteIfExists(file);
+        }
+        log.debug("updated {} of {} return(s)", updated, returns.size());
+        return updated;
+    }
+
+    /**
+     * Schedules this buffer to flush with specified period, and whenever the number of buffered returns reaches the
+     * {@code maxEvents}. The schedule is cancelled when this buffer is {@link #close() closed}.
+     *
+     * @param executor             an executor.
+     * @param entityManagerFactory an entity manager factory.
+     * @param period               the period between flushes.
+     * @param unit                 the time unit of the {@code period}.
+     * @return a future of the schedule.
+     */
+    ScheduledFuture<?> start(@NotNull final ScheduledExecutorService executor,
+                             @NotNull final EntityManagerFactory entityManagerFactory, final long period,
+                             @NotNull final TimeUnit unit) {
+        requireNonNull(executor, "executor is null");
+        requireNonNull(entityManagerFactory, "entityManagerFactory is null");
+        final Runnable flusher = () -> {
+            try {
+                final EntityManager entityManager = entityManagerFactory.createEntityManager();
+                try {
+                    flush(entityManager);
+                } finally {
+                    entityManager.close();
+                }
+            } catch (final IOException | RuntimeException e) {
+                if (closed) {
+                    log.debug("not flushing returns of a closed buffer", e);
+                } else {
+                    log.error("failed to flush returns", e);
+                }
+            } finally {
+                flushing.set(false);
+            }
+        };
+        synchronized (this) {
+            ensureOpen();
+            this.executor = executor;
+            this.flusher = flusher;
+            return schedule = executor.scheduleAtFixedRate(() -> {
+                if (flushing.compareAndSet(false, true)) {
+                    flusher.run();
+                }
+            }, period, period, unit);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private Path seal() throws IOException {
+        final Path file = directory.resolve(JOURNAL + "." + System.currentTimeMillis() + "." + ++seals + SEALED_SUFFIX);
+        return move(directory.resolve(JOURNAL), file, ATOMIC_MOVE);
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(directory.resolve(JOURNAL), CREATE, WRITE, APPEND);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Path directory;
+
+    private final int maxEvents;
+
+    private final List<Path> sealed = new ArrayList<>();
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    private FileChannel journal;
+
+    private int seals;
+
+    private Map<Integer, LocalDateTime> pending = new HashMap<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private volatile Executor executor;
+
+    private volatile Runnable flusher;
+
+    private volatile ScheduledFuture<?> schedule;
+
+    private volatile boolean closed;
+}
@@ -0,0 +1,83 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link RentalReturnBuffer} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class RentalReturnBufferIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts a buffered return of an open rental is flushed; the rental is reopened afterwards.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertFlush(@TempDir final Path directory) throws IOException {
+        final Rental open = entityManager
+                .createQuery("SELECT r FROM Rental AS r WHERE r.returnDate IS NULL", Rental.class)
+                .setMaxResults(1)
+                .getSingleResult();
+        final LocalDateTime returnDate = open.getRentalDate().plusDays(1L);
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            buffer.offer(open.getId(), returnDate);
+            buffer.offer(open.getId(), returnDate.plusHours(1L));
+            try {
+                assertThat(buffer.flush(entityManager)).isEqualTo(1);
+                assertThat(buffer.size()).isZero();
+                entityManager.clear();
+                assertThat(entityManager.find(Rental.class, open.getId()).getReturnDate()).isEqualTo(returnDate);
+            } finally {
+                entityManager.getTransaction().begin();
+                entityManager.createNativeQuery("UPDATE rental SET return_date = NULL WHERE rental_id = ?")
+                        .setParameter(1, open.getId())
+                        .executeUpdate();
+                entityManager.getTransaction().commit();
+                entityManager.getEntityManagerFactory().getCache().evict(Rental.class, open.getId());
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
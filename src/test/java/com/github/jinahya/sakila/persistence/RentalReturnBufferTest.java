@@ -0,0 +1,245 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.transaction;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link RentalReturnBuffer}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class RentalReturnBufferTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake entity manager whose native queries see specified rentals not yet returned, and logs
+     * transactions to specified list.
+     */
+    private static EntityManager entityManager(final Map<Integer, Object[]> open, final List<String> transactions) {
+        final EntityTransaction transaction = transaction(transactions::add);
+        final Cache cache = fake(Cache.class, (p, n, a) -> "evict".equals(n) ? NULL : null);
+        final EntityManagerFactory entityManagerFactory
+                = fake(EntityManagerFactory.class, (p, n, a) -> "getCache".equals(n) ? cache : null);
+        return fake(EntityManager.class, (p, n, a) -> {
+            switch (n) {
+                case "getTransaction":
+                    return transaction;
+                case "getEntityManagerFactory":
+                    return entityManagerFactory;
+                case "createNativeQuery":
+                    break;
+                default:
+                    return null;
+            }
+            final boolean select = ((String) a[0]).startsWith("SELECT");
+            final List<Object> parameters = new ArrayList<>();
+            return fake(Query.class, (p2, n2, a2) -> {
+                switch (n2) {
+                    case "setParameter":
+                        parameters.add(a2[1]);
+                        return p2;
+                    case "getResultList":
+                        assertThat(select).isTrue();
+                        final List<Object[]> rows = new ArrayList<>();
+                        parameters.forEach(i -> {
+                            if (open.containsKey(i)) {
+                                rows.add(open.get(i));
+                            }
+                        });
+                        return rows;
+                    case "executeUpdate":
+                        assertThat(select).isFalse();
+                        return (int) parameters.subList(parameters.size() / 3 * 2, parameters.size())
+                                .stream().filter(open::containsKey).count();
+                    default:
+                        return null;
+                }
+            });
+        });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the update statement binds each rental twice, and the select statement locks the same rentals.
+     */
+    @Test
+    void assertUpdate() {
+        assertThat(RentalReturnBuffer.update(2)).isEqualTo(
+                "UPDATE rental SET return_date = CASE rental_id WHEN ? THEN ? WHEN ? THEN ? END"
+                + " WHERE rental_id IN (?, ?) AND return_date IS NULL");
+        assertThat(RentalReturnBuffer.select(2)).isEqualTo(
+                "SELECT rental_id, inventory_id, customer_id FROM rental"
+                + " WHERE rental_id IN (?, ?) AND return_date IS NULL FOR UPDATE");
+    }
+
+    /**
+     * Asserts the entity listeners of rentals notified of flushed returns are those in the mapping file, in order.
+     */
+    @Test
+    void assertListenersOfMappingFile() {
+        assertThat(RentalReturnBuffer.listeners(RentalReturnBuffer.MAPPING_FILE))
+                .extracting(l -> l.getClass().getName())
+                .containsExactly(RentalHistoryCache.Listener.class.getName(), OverdueTracker.Listener.class.getName(),
+                                 InventoryReservation.Listener.class.getName());
+        assertThat(RentalReturnBuffer.listeners("META-INF/none.xml")).isEmpty();
+    }
+
+    /**
+     * Asserts duplicate returns are coalesced to the earliest one and recovered from the journal after reopening.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertCoalesceAndRecover(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            buffer.offer(1, now);
+            buffer.offer(1, now.plusSeconds(1L));
+            buffer.offer(2, now.plusNanos(1L));
+            assertThat(buffer.size()).isEqualTo(2);
+        }
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            assertThat(buffer.pending()).hasSize(2).containsEntry(1, now).containsEntry(2, now.plusNanos(1L));
+            buffer.offer(3, now);
+        }
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            assertThat(buffer.pending()).hasSize(3).containsKeys(1, 2, 3);
+        }
+    }
+
+    /**
+     * Asserts a torn record at the tail of a journal is ignored.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertTornTail(@TempDir final Path directory) throws IOException {
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            buffer.offer(1, now);
+            buffer.offer(2, now);
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(RentalReturnBuffer.JOURNAL), WRITE)) {
+            channel.truncate(RentalReturnBuffer.RECORD_BYTES * 2 - 1);
+        }
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            assertThat(buffer.pending()).hasSize(1).containsEntry(1, now);
+        }
+    }
+
+    /**
+     * Asserts closing a buffer cancels its schedule and rejects further offers and flushes.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertClose(@TempDir final Path directory) throws IOException {
+        final EntityManagerFactory entityManagerFactory = fake(EntityManagerFactory.class, (p, n, a) -> null);
+        final EntityManager entityManager = fake(EntityManager.class, (p, n, a) -> null);
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100);
+            final ScheduledFuture<?> schedule = buffer.start(executor, entityManagerFactory, 1L, TimeUnit.HOURS);
+            buffer.offer(1, LocalDateTime.of(2019, 8, 1, 10, 0, 0));
+            buffer.close();
+            assertThat(schedule.isCancelled()).isTrue();
+            buffer.close();
+            assertThatThrownBy(() -> buffer.offer(2, LocalDateTime.of(2019, 8, 1, 10, 0, 0)))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> buffer.flush(entityManager)).isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> buffer.start(executor, entityManagerFactory, 1L, TimeUnit.HOURS))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            assertThat(buffer.pending()).containsOnlyKeys(1);
+        }
+    }
+
+    /**
+     * Asserts listeners of rentals are notified of flushed returns, only of rentals not yet returned, after the
+     * transaction commits.
+     *
+     * @param directory a temporary directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Test
+    void assertFlushNotifiesReturned(@TempDir final Path directory) throws IOException {
+        final Map<Integer, Object[]> open = new HashMap<>(); // rental id -> inventory id and customer id
+        open.put(1, new Object[] {1, 100, 5});
+        final List<String> transactions = new ArrayList<>();
+        final EntityManager entityManager = entityManager(open, transactions);
+        final LocalDateTime now = LocalDateTime.of(2019, 8, 1, 10, 0, 0);
+        final OverdueTracker tracker = new OverdueTracker(now, (r, d) -> log.debug("overdue: {}", r)).listen();
+        final InventoryReservation reservation = new InventoryReservation().listen();
+        try (RentalReturnBuffer buffer = new RentalReturnBuffer(directory, 100)) {
+            tracker.schedule(1, now.plusDays(3L));
+            tracker.schedule(2, now.plusDays(3L));
+            reservation.release(1, 10, 100);
+            assertThat(reservation.claim(1, 10)).isEqualTo(100);
+            buffer.offer(1, now);
+            buffer.offer(2, now); // already returned
+            assertThat(buffer.flush(entityManager)).isEqualTo(1);
+            assertThat(transactions).containsExactly("commit");
+            assertThat(tracker.isScheduled(1)).isFalse();
+            assertThat(tracker.isScheduled(2)).isTrue();
+            assertThat(reservation.available(1, 10)).isEqualTo(1L);
+        } finally {
+            tracker.unlisten();
+            reservation.unlisten();
+        }
+    }
+}
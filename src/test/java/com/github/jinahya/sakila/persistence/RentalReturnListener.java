@@ -0,0 +1,45 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * An entity listener of {@link Rental rentals} notified of returns made without the entity, such as by native updates
+ * of a {@link RentalReturnBuffer} or bulk updates of {@link OptimisticLocking}.
+ * <p>
+ * Every entity listener of {@link Rental} in {@code META-INF/orm.xml} implements this interface, so that returns made
+ * without the entity reach the same listeners as returns updated as entities.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+interface RentalReturnListener {
+
+    /**
+     * Notifies that specified rental is returned; invoked either after the transaction of the return commits, or while
+     * it's still in progress, so implementations apply what they capture through {@link AfterCommit#run(Runnable)}.
+     * Only the {@link Rental#getId() id}, the {@link Rental#getReturnDate() return date}, and the ids of the {@link
+     * Rental#getInventory() inventory} and the {@link Rental#getCustomer() customer} of the rental are populated.
+     *
+     * @param rental the returned rental.
+     */
+    void returned(@NotNull Rental rental);
+}
@@ -0,0 +1,418 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PostPersist;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSortedMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Pre-aggregated revenues in time buckets of {@link Payment#ATTRIBUTE_NAME_PAYMENT_DATE paymentDate}s.
+ * <p>
+ * Each payment is added, as cents, to a daily, a weekly, and a monthly bucket of its store, its staff, and the category
+ * of the rented film. The store of a payment is the store of the rented inventory, as the {@code sales_by_store} view
+ * does, or the store of the staff for a payment without a rental. A range query merges the largest buckets fitting
+ * in the range; a year is at most twelve monthly buckets, and any range is at most a few dozen daily buckets on the
+ * edges plus monthly buckets in between.
+ * <p>
+ * A rollup may {@link #listen() listen} to {@link Payment}s being persisted, through {@link Listener} registered in
+ * {@code META-INF/orm.xml}; payments are added once their transactions commit.
+ *
+ * @see AfterCommit
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class RevenueRollup {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Dimensions of revenues.
+     */
+    enum Dimension {
+        STORE,
+        STAFF,
+        CATEGORY
+    }
+
+    /**
+     * Granularities of buckets.
+     */
+    enum Granularity {
+
+        DAY {
+            @Override
+            long index(final LocalDate date) {
+                return date.toEpochDay();
+            }
+
+            @Override
+            LocalDate start(final long index) {
+                return LocalDate.ofEpochDay(index);
+            }
+        },
+
+        WEEK {
+            @Override
+            long index(final LocalDate date) {
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+            }
+
+            @Override
+            LocalDate start(final long index) {
+                return LocalDate.ofEpochDay(index);
+            }
+
+            @Override
+            long next(final long index) {
+                return index + 7L;
+            }
+        },
+
+        MONTH {
+            @Override
+            long index(final LocalDate date) {
+                return date.getYear() * 12L + date.getMonthValue() - 1;
+            }
+
+            @Override
+            LocalDate start(final long index) {
+                return LocalDate.of((int) (index / 12L), (int) (index % 12L) + 1, 1);
+            }
+        };
+
+        /**
+         * Returns the index of the bucket contains specified date.
+         */
+        abstract long index(LocalDate date);
+
+        /**
+         * Returns the first date of the bucket of specified index.
+         */
+        abstract LocalDate start(long index);
+
+        /**
+         * Returns the index of the bucket next to the bucket of specified index.
+         */
+        long next(final long index) {
+            return index + 1L;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Decomposes specified range into the fewest daily and monthly buckets.
+     *
+     * @param from the inclusive lower bound.
+     * @param to   the exclusive upper bound.
+     * @return a list of pairs of a granularity and a bucket index.
+     */
+    static List<Map.Entry<Granularity, Long>> decompose(@NotNull final LocalDate from, @NotNull final LocalDate to) {
+        final List<Map.Entry<Granularity, Long>> buckets = new ArrayList<>();
+        LocalDate date = from;
+        while (date.isBefore(to)) {
+            if (date.getDayOfMonth() == 1 && !date.plusMonths(1L).isAfter(to)) {
+                buckets.add(new AbstractMap.SimpleImmutableEntry<>(Granularity.MONTH, Granularity.MONTH.index(date)));
+                date = date.plusMonths(1L);
+            } else {
+                buckets.add(new AbstractMap.SimpleImmutableEntry<>(Granularity.DAY, Granularity.DAY.index(date)));
+                date = date.plusDays(1L);
+            }
+        }
+        return unmodifiableList(buckets);
+    }
+
+    /**
+     * The maximum id of a store, a staff, or a category, which fits in the 28 bits of a bucket key between the
+     * granularity and the index. The value is {@value}.
+     */
+    static final int MAX_ID = (1 << 28) - 1;
+
+    /**
+     * Returns the key of a bucket; the dimension in bits 62-63, the granularity in bits 60-61, the id in bits 32-59,
+     * and the index in bits 0-31.
+     */
+    private static long key(final Dimension dimension, final int id, final Granularity granularity,
+                            final long index) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("id(" + id + ") is out of range [0, " + MAX_ID + "]");
+        }
+        if ((int) index != index) {
+            throw new IllegalArgumentException("index(" + index + ") is out of the range of int");
+        }
+        return ((long) dimension.ordinal() << 62) | ((long) granularity.ordinal() << 60) | ((long) id << 32)
+               | (index & 0xFFFFFFFFL);
+    }
+
+    private static long cents(final BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * An entity listener adds persisted payments to listening rollups after their transactions commit.
+     */
+    public static class Listener {
+
+        /**
+         * Creates a new instance.
+         */
+        public Listener() {
+            super();
+        }
+
+        @PostPersist
+        void postPersist(final Payment payment) {
+            final LocalDateTime paymentDate = payment.getPaymentDate();
+            final long cents = cents(payment.getAmount());
+            final Staff staff = payment.getStaff();
+            final Integer staffId = staff == null ? null : staff.getId();
+            final Rental rental = payment.getRental();
+            final Inventory inventory = rental == null ? null : rental.getInventory();
+            final Integer filmId = inventory == null || inventory.getFilm() == null
+                                   ? null : inventory.getFilm().getId();
+            final Integer storeId;
+            if (inventory != null && inventory.getStore() != null) {
+                storeId = inventory.getStore().getId();
+            } else {
+                storeId = staff == null || staff.getStore() == null ? null : staff.getStore().getId();
+            }
+            LISTENING.afterCommit(r -> r.paid(paymentDate, cents, storeId, staffId, filmId));
+        }
+    }
+
+    private static final Listening<RevenueRollup> LISTENING = new Listening<>();
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads a rollup of all payments.
+     *
+     * @param entityManager an entity manager.
+     * @return a new rollup.
+     */
+    static @NotNull RevenueRollup load(@NotNull final EntityManager entityManager) {
+        final RevenueRollup rollup = new RevenueRollup();
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        {
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<FilmCategory> root = criteria.from(FilmCategory.class);
+            criteria.multiselect(root.get(FilmCategory_.film).get(BaseEntity_.id),
+                                 root.get(FilmCategory_.category).get(BaseEntity_.id));
+            for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+                rollup.filmCategories.put((Integer) tuple.get(0), (Integer) tuple.get(1));
+            }
+        }
+        {
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<Staff> root = criteria.from(Staff.class);
+            criteria.multiselect(root.get(BaseEntity_.id), root.get(Staff_.store).get(BaseEntity_.id));
+            for (final Tuple tuple : entityManager.createQuery(criteria).getResultList()) {
+                rollup.staffStores.put((Integer) tuple.get(0), (Integer) tuple.get(1));
+            }
+        }
+        final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        final Root<Payment> payment = criteria.from(Payment.class);
+        final Join<Payment, Rental> rental = payment.join(Payment_.rental, JoinType.LEFT);
+        final Join<Rental, Inventory> inventory = rental.join(Rental_.inventory, JoinType.LEFT);
+        final Join<Inventory, Store> store = inventory.join(Inventory_.store, JoinType.LEFT);
+        final Join<Inventory, Film> film = inventory.join(Inventory_.film, JoinType.LEFT);
+        criteria.multiselect(payment.get(Payment_.paymentDate), payment.get(Payment_.amount),
+                             payment.get(Payment_.staff).get(BaseEntity_.id), store.get(BaseEntity_.id),
+                             film.get(BaseEntity_.id));
+        try (Stream<Tuple> stream = entityManager.createQuery(criteria).getResultStream()) {
+            stream.forEach(t -> {
+                final Integer staffId = (Integer) t.get(2);
+                final Integer storeId = (Integer) t.get(3);
+                rollup.paid((LocalDateTime) t.get(0), cents((BigDecimal) t.get(1)),
+                            storeId != null ? storeId : rollup.staffStores.get(staffId), staffId, (Integer) t.get(4));
+            });
+        }
+        log.debug("loaded {} bucket(s)", rollup.buckets.size());
+        return rollup;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new empty instance.
+     */
+    RevenueRollup() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts listening to payments being persisted.
+     *
+     * @return this rollup.
+     */
+    RevenueRollup listen() {
+        LISTENING.add(this);
+        return this;
+    }
+
+    /**
+     * Stops listening to payments being persisted.
+     */
+    void unlisten() {
+        LISTENING.remove(this);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Adds an amount paid at specified date to buckets of specified store, staff and category.
+     *
+     * @param paymentDate the date of the payment.
+     * @param cents       the amount of the payment in cents.
+     * @param storeId     the id of the store; {@code null} if unknown.
+     * @param staffId     the id of the staff; {@code null} if unknown.
+     * @param categoryId  the id of the category; {@code null} if unknown.
+     */
+    synchronized void add(@NotNull final LocalDateTime paymentDate, final long cents, final Integer storeId,
+                          final Integer staffId, final Integer categoryId) {
+        final LocalDate date = paymentDate.toLocalDate();
+        for (final Granularity granularity : Granularity.values()) {
+            final long index = granularity.index(date);
+            if (storeId != null) {
+                buckets.merge(key(Dimension.STORE, storeId, granularity, index), cents, Long::sum);
+            }
+            if (staffId != null) {
+                buckets.merge(key(Dimension.STAFF, staffId, granularity, index), cents, Long::sum);
+            }
+            if (categoryId != null) {
+                buckets.merge(key(Dimension.CATEGORY, categoryId, granularity, index), cents, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Adds an amount paid at specified date to buckets of specified store, staff and the category of specified film.
+     *
+     * @param paymentDate the date of the payment.
+     * @param cents       the amount of the payment in cents.
+     * @param storeId     the id of the store; {@code null} if unknown.
+     * @param staffId     the id of the staff; {@code null} if unknown.
+     * @param filmId      the id of the rented film; {@code null} if unknown.
+     */
+    synchronized void paid(@NotNull final LocalDateTime paymentDate, final long cents, final Integer storeId,
+                           final Integer staffId, final Integer filmId) {
+        add(paymentDate, cents, storeId, staffId, filmId == null ? null : filmCategories.get(filmId));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the revenue, in cents, of specified dimension in specified range.
+     *
+     * @param dimension the dimension.
+     * @param id        the id of the store, the staff, or the category.
+     * @param from      the inclusive lower bound.
+     * @param to        the exclusive upper bound.
+     * @return the revenue in cents.
+     */
+    synchronized long cents(@NotNull final Dimension dimension, final int id, @NotNull final LocalDate from,
+                            @NotNull final LocalDate to) {
+        long sum = 0L;
+        for (final Map.Entry<Granularity, Long> bucket : decompose(from, to)) {
+            sum += buckets.getOrDefault(key(dimension, id, bucket.getKey(), bucket.getValue()), 0L);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the revenue of specified dimension in specified range.
+     *
+     * @param dimension the dimension.
+     * @param id        the id of the store, the staff, or the category.
+     * @param from      the inclusive lower bound.
+     * @param to        the exclusive upper bound.
+     * @return the revenue.
+     */
+    @NotNull BigDecimal amount(@NotNull final Dimension dimension, final int id, @NotNull final LocalDate from,
+                               @NotNull final LocalDate to) {
+        return BigDecimal.valueOf(cents(dimension, id, from, to), 2);
+    }
+
+    /**
+     * Returns revenues, in cents, of specified dimension for each bucket of specified granularity overlapping
+     * specified range.
+     *
+     * @param dimension   the dimension.
+     * @param id          the id of the store, the staff, or the category.
+     * @param granularity the granularity of buckets.
+     * @param from        the inclusive lower bound.
+     * @param to          the exclusive upper bound.
+     * @return a map of first dates of buckets and revenues in cents.
+     */
+    synchronized @NotNull SortedMap<LocalDate, Long> series(
+            @NotNull final Dimension dimension, final int id, @NotNull final Granularity granularity,
+            @NotNull final LocalDate from, @NotNull final LocalDate to) {
+        requireNonNull(granularity, "granularity is null");
+        final SortedMap<LocalDate, Long> series = new TreeMap<>();
+        if (!from.isBefore(to)) {
+            return series;
+        }
+        final long last = granularity.index(to.minus(1L, ChronoUnit.DAYS));
+        for (long index = granularity.index(from); index <= last; index = granularity.next(index)) {
+            series.put(granularity.start(index), buckets.getOrDefault(key(dimension, id, granularity, index), 0L));
+        }
+        return unmodifiableSortedMap(series);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Map<Long, Long> buckets = new HashMap<>();
+
+    private final Map<Integer, Integer> filmCategories = new HashMap<>();
+
+    private final Map<Integer, Integer> staffStores = new HashMap<>();
+}
@@ -0,0 +1,69 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link RevenueRollup} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class RevenueRollupIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the revenue of each store, for 2005, agrees with an equivalent SQL query.
+     */
+    @Test
+    void assertStoreRevenues() {
+        final RevenueRollup rollup = RevenueRollup.load(entityManager);
+        for (final int storeId : new int[] {1, 2}) {
+            final BigDecimal expected = (BigDecimal) entityManager.createNativeQuery(
+                    "SELECT COALESCE(SUM(p.amount), 0) FROM payment AS p"
+                    + " INNER JOIN rental AS r ON p.rental_id = r.rental_id"
+                    + " INNER JOIN inventory AS i ON r.inventory_id = i.inventory_id"
+                    + " WHERE i.store_id = ? AND p.payment_date >= '2005-01-01' AND p.payment_date < '2006-01-01'")
+                    .setParameter(1, storeId)
+                    .getSingleResult();
+            assertThat(rollup.amount(RevenueRollup.Dimension.STORE, storeId, LocalDate.of(2005, 1, 1),
+                                     LocalDate.of(2006, 1, 1)))
+                    .isEqualByComparingTo(expected);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,155 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.Map;
+
+import static com.github.jinahya.sakila.persistence.RevenueRollup.Dimension.CATEGORY;
+import static com.github.jinahya.sakila.persistence.RevenueRollup.Dimension.STAFF;
+import static com.github.jinahya.sakila.persistence.RevenueRollup.Dimension.STORE;
+import static com.github.jinahya.sakila.persistence.RevenueRollup.Granularity.DAY;
+import static com.github.jinahya.sakila.persistence.RevenueRollup.Granularity.MONTH;
+import static com.github.jinahya.sakila.persistence.RevenueRollup.Granularity.WEEK;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link RevenueRollup}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class RevenueRollupTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts {@link RevenueRollup#decompose(LocalDate, LocalDate)} uses monthly buckets wherever possible.
+     */
+    @Test
+    void assertDecompose() {
+        assertThat(RevenueRollup.decompose(LocalDate.of(2005, 1, 1), LocalDate.of(2006, 1, 1)))
+                .hasSize(12)
+                .allSatisfy(b -> assertThat(b.getKey()).isSameAs(MONTH));
+        assertThat(RevenueRollup.decompose(LocalDate.of(2005, 1, 30), LocalDate.of(2006, 1, 3)))
+                .hasSize(2 + 11 + 2);
+        assertThat(RevenueRollup.decompose(LocalDate.of(2005, 5, 3), LocalDate.of(2005, 5, 3))).isEmpty();
+    }
+
+    /**
+     * Asserts each granularity maps a bucket index back to its first date.
+     */
+    @Test
+    void assertGranularity() {
+        final LocalDate date = LocalDate.of(2005, 7, 27); // wednesday
+        assertThat(DAY.start(DAY.index(date))).isEqualTo(date);
+        assertThat(WEEK.start(WEEK.index(date))).isEqualTo(LocalDate.of(2005, 7, 25));
+        assertThat(MONTH.start(MONTH.index(date))).isEqualTo(LocalDate.of(2005, 7, 1));
+        assertThat(MONTH.start(MONTH.next(MONTH.index(LocalDate.of(2005, 12, 9))))).isEqualTo(LocalDate.of(2006, 1, 1));
+    }
+
+    /**
+     * Asserts ranges and series merge added amounts per dimension.
+     */
+    @Test
+    void assertCentsAndSeries() {
+        final RevenueRollup rollup = new RevenueRollup();
+        rollup.add(LocalDateTime.of(2005, 5, 31, 23, 59), 299L, 1, 1, 5);
+        rollup.add(LocalDateTime.of(2005, 6, 1, 0, 0), 499L, 1, 2, 5);
+        rollup.add(LocalDateTime.of(2005, 6, 15, 12, 0), 99L, 2, 2, null);
+        rollup.add(LocalDateTime.of(2005, 7, 1, 0, 0), 1000L, 1, 1, 6);
+        assertThat(rollup.cents(STORE, 1, LocalDate.of(2005, 1, 1), LocalDate.of(2006, 1, 1))).isEqualTo(1798L);
+        assertThat(rollup.cents(STORE, 1, LocalDate.of(2005, 6, 1), LocalDate.of(2005, 7, 1))).isEqualTo(499L);
+        assertThat(rollup.cents(STAFF, 2, LocalDate.of(2005, 5, 31), LocalDate.of(2005, 6, 16))).isEqualTo(598L);
+        assertThat(rollup.cents(CATEGORY, 5, LocalDate.of(2005, 5, 1), LocalDate.of(2005, 7, 2))).isEqualTo(798L);
+        assertThat(rollup.amount(CATEGORY, 6, LocalDate.of(2005, 7, 1), LocalDate.of(2005, 7, 2)))
+                .isEqualByComparingTo("10.00");
+        assertThat(rollup.series(STORE, 1, MONTH, LocalDate.of(2005, 5, 15), LocalDate.of(2005, 7, 15)))
+                .containsExactly(entry(LocalDate.of(2005, 5, 1), 299L), entry(LocalDate.of(2005, 6, 1), 499L),
+                                 entry(LocalDate.of(2005, 7, 1), 1000L));
+        assertThat(rollup.series(STORE, 1, WEEK, LocalDate.of(2005, 5, 30), LocalDate.of(2005, 6, 6)))
+                .containsExactly(entry(LocalDate.of(2005, 5, 30), 798L));
+        assertThat(rollup.series(STAFF, 2, DAY, LocalDate.of(2005, 6, 1), LocalDate.of(2005, 6, 3)))
+                .containsExactly(entry(LocalDate.of(2005, 6, 1), 499L), entry(LocalDate.of(2005, 6, 2), 0L));
+    }
+
+    /**
+     * Asserts ids up to {@link RevenueRollup#MAX_ID} don't collide with other dimensions and larger ids are rejected.
+     */
+    @Test
+    void assertIdRange() {
+        final RevenueRollup rollup = new RevenueRollup();
+        final LocalDate date = LocalDate.of(2005, 6, 1);
+        rollup.add(date.atStartOfDay(), 100L, RevenueRollup.MAX_ID, null, null);
+        assertThat(rollup.cents(STORE, RevenueRollup.MAX_ID, date, date.plusDays(1L))).isEqualTo(100L);
+        assertThat(rollup.cents(STAFF, RevenueRollup.MAX_ID, date, date.plusDays(1L))).isZero();
+        assertThat(rollup.cents(STORE, 0, date, date.plusDays(1L))).isZero();
+        assertThatThrownBy(() -> rollup.add(date.atStartOfDay(), 100L, RevenueRollup.MAX_ID + 1, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rollup.cents(CATEGORY, -1, date, date.plusDays(1L)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts the listener adds persisted payments only after their transactions commit.
+     */
+    @Test
+    void assertListenerAddsAfterCommit() {
+        final RevenueRollup rollup = new RevenueRollup().listen();
+        try {
+            final Store store = new Store();
+            store.setId(2);
+            final Staff staff = new Staff();
+            staff.setId(3);
+            staff.setStore(store);
+            final Payment payment = new Payment();
+            payment.setStaff(staff);
+            payment.setAmount(new BigDecimal("2.99"));
+            payment.setPaymentDate(LocalDateTime.of(2005, 6, 1, 12, 0));
+            final LocalDate from = LocalDate.of(2005, 6, 1);
+            final LocalDate to = LocalDate.of(2005, 7, 1);
+            final RevenueRollup.Listener listener = new RevenueRollup.Listener();
+            AfterCommit.begun();
+            listener.postPersist(payment);
+            assertThat(rollup.cents(STORE, 2, from, to)).isZero();
+            AfterCommit.rolledBack();
+            assertThat(rollup.cents(STORE, 2, from, to)).isZero();
+            AfterCommit.begun();
+            listener.postPersist(payment);
+            AfterCommit.committed();
+            assertThat(rollup.cents(STORE, 2, from, to)).isEqualTo(299L);
+            assertThat(rollup.cents(STAFF, 3, from, to)).isEqualTo(299L);
+        } finally {
+            rollup.unlisten();
+        }
+    }
+
+    private static Map.Entry<LocalDate, Long> entry(final LocalDate date, final long cents) {
+        return new AbstractMap.SimpleImmutableEntry<>(date, cents);
+    }
+}
@@ -0,0 +1,249 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A streaming reimplementation of the {@code rewards_report} stored procedure.
+ * <blockquote><pre>{@code
+ * SELECT customer_id FROM payment
+ *  WHERE DATE(payment_date) BETWEEN last_month_start AND last_month_end
+ *  GROUP BY customer_id
+ * HAVING SUM(amount) > min_dollar_amount_purchased AND COUNT(customer_id) > min_monthly_purchases
+ * }</pre></blockquote>
+ * Instead of a temporary table, payments in a window are read as {@code (payment_id, customer_id, amount)} tuples,
+ * in pages keyed by the last {@code payment_id} of the previous page, and accumulated into primitive arrays indexed by
+ * customer ids. Each page is a short, bounded query which doesn't hold a cursor open across the whole window, and the
+ * memory used is bounded by the largest customer id and the page size, not by the number of payments.
+ * <blockquote><pre>{@code
+ * SELECT payment_id, customer_id, amount FROM payment
+ *  WHERE payment_date >= ? AND payment_date < ? AND payment_id > ?
+ *  ORDER BY payment_id LIMIT ?
+ * }</pre></blockquote>
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://dev.mysql.com/doc/sakila/en/sakila-structure-procedures-rewards_report.html">The
+ * rewards_report Procedure (Sakila Sample Database, MySQL Documentation)</a>
+ */
+@Slf4j
+final class RewardsReport {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The maximum number of payments read by each page. The value is {@value}.
+     */
+    static final int PAGE_SIZE = 1024;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Per-customer accumulators of payment counts and amounts in cents.
+     */
+    static final class Accumulator {
+
+        Accumulator() {
+            super();
+        }
+
+        /**
+         * Accumulates a payment.
+         *
+         * @param customerId the id of the paying customer.
+         * @param cents      the amount of the payment in cents.
+         */
+        void accept(final int customerId, final long cents) {
+            if (customerId < 0) {
+                throw new IllegalArgumentException("customerId(" + customerId + ") < 0");
+            }
+            if (customerId >= counts.length) {
+                final int length = Math.max(customerId + 1, counts.length << 1);
+                counts = Arrays.copyOf(counts, length);
+                amounts = Arrays.copyOf(amounts, length);
+            }
+            counts[customerId]++;
+            amounts[customerId] += cents;
+        }
+
+        /**
+         * Returns the ids of customers whose payment count and amount are greater than specified values.
+         *
+         * @param minimumPurchases the exclusive minimum number of payments.
+         * @param minimumCents     the exclusive minimum amount in cents.
+         * @return an array of customer ids in ascending order.
+         */
+        int[] qualifying(final long minimumPurchases, final long minimumCents) {
+            final int[] ids = new int[counts.length];
+            int length = 0;
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > minimumPurchases && amounts[id] > minimumCents) {
+                    ids[length++] = id;
+                }
+            }
+            return Arrays.copyOf(ids, length);
+        }
+
+        long count(final int customerId) {
+            return customerId < counts.length ? counts[customerId] : 0L;
+        }
+
+        long cents(final int customerId) {
+            return customerId < amounts.length ? amounts[customerId] : 0L;
+        }
+
+        private long[] counts = new long[1024];
+
+        private long[] amounts = new long[1024];
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Accumulates payments made in specified window.
+     *
+     * @param entityManager an entity manager.
+     * @param from          the inclusive lower bound of {@link Payment#ATTRIBUTE_NAME_PAYMENT_DATE paymentDate}.
+     * @param to            the exclusive upper bound of {@link Payment#ATTRIBUTE_NAME_PAYMENT_DATE paymentDate}.
+     * @return an accumulator of payments.
+     */
+    static @NotNull Accumulator accumulate(@NotNull final EntityManager entityManager,
+                                           @NotNull final LocalDateTime from, @NotNull final LocalDateTime to) {
+        requireNonNull(from, "from is null");
+        requireNonNull(to, "to is null");
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+        final Root<Payment> payment = criteria.from(Payment.class);
+        final ParameterExpression<Integer> last = builder.parameter(Integer.class);
+        criteria.multiselect(payment.get(BaseEntity_.id), payment.get(Payment_.customer).get(BaseEntity_.id),
+                             payment.get(Payment_.amount));
+        criteria.where(builder.greaterThanOrEqualTo(payment.get(Payment_.paymentDate), from),
+                       builder.lessThan(payment.get(Payment_.paymentDate), to),
+                       builder.greaterThan(payment.get(BaseEntity_.id), last));
+        criteria.orderBy(builder.asc(payment.get(BaseEntity_.id)));
+        final TypedQuery<Tuple> query = entityManager.createQuery(criteria)
+                .setMaxResults(PAGE_SIZE)
+                .setHint("eclipselink.jdbc.fetch-size", PAGE_SIZE)
+                .setHint("eclipselink.read-only", Boolean.TRUE)
+                .setHint("org.hibernate.fetchSize", PAGE_SIZE)
+                .setHint("org.hibernate.readOnly", Boolean.TRUE);
+        final Accumulator accumulator = new Accumulator();
+        int lastId = 0;
+        for (List<Tuple> page; !(page = query.setParameter(last, lastId).getResultList()).isEmpty(); ) {
+            for (final Tuple t : page) {
+                lastId = (Integer) t.get(0);
+                accumulator.accept((Integer) t.get(1), cents((BigDecimal) t.get(2)));
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        return accumulator;
+    }
+
+    /**
+     * Returns specified amount in cents, discarding any fraction of a cent toward negative infinity; which, for the
+     * exclusive minimum amount, selects the same sums of two-digit amounts as the amount itself does.
+     *
+     * @param amount the amount.
+     * @return the amount in cents.
+     */
+    static long cents(final BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.FLOOR).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Finds customers who made more than specified number of payments amounting to more than specified value in
+     * specified window.
+     *
+     * @param entityManager    an entity manager.
+     * @param from             the inclusive lower bound of {@link Payment#ATTRIBUTE_NAME_PAYMENT_DATE paymentDate}.
+     * @param to               the exclusive upper bound of {@link Payment#ATTRIBUTE_NAME_PAYMENT_DATE paymentDate}.
+     * @param minimumPurchases the exclusive minimum number of payments.
+     * @param minimumAmount    the exclusive minimum amount.
+     * @return a list of qualifying customers ordered by their ids.
+     */
+    static @NotNull List<Customer> rewardsReport(@NotNull final EntityManager entityManager,
+                                                 @NotNull final LocalDateTime from, @NotNull final LocalDateTime to,
+                                                 @PositiveOrZero final int minimumPurchases,
+                                                 @NotNull final BigDecimal minimumAmount) {
+        if (minimumPurchases < 0) {
+            throw new IllegalArgumentException("minimumPurchases(" + minimumPurchases + ") < 0");
+        }
+        final int[] ids = accumulate(entityManager, from, to)
+                .qualifying(minimumPurchases, cents(requireNonNull(minimumAmount, "minimumAmount is null")));
+        log.debug("{} customer(s) qualified between {} and {}", ids.length, from, to);
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        final List<Integer> boxed = new ArrayList<>(ids.length);
+        for (final int id : ids) {
+            boxed.add(id);
+        }
+        final List<Customer> customers = new ArrayList<>(BaseEntity.list(
+                entityManager, Customer.class, (b, r) -> Arrays.asList(r.get(BaseEntity_.id).in(boxed)), q -> q));
+        customers.sort(BaseEntity.COMPARING_ID);
+        return customers;
+    }
+
+    /**
+     * Finds customers qualified in the month before specified month, as the {@code rewards_report} procedure does for
+     * the current month.
+     *
+     * @param entityManager    an entity manager.
+     * @param month            the month after the month to report.
+     * @param minimumPurchases the exclusive minimum number of payments.
+     * @param minimumAmount    the exclusive minimum amount.
+     * @return a list of qualifying customers ordered by their ids.
+     */
+    static @NotNull List<Customer> rewardsReport(@NotNull final EntityManager entityManager,
+                                                 @NotNull final YearMonth month,
+                                                 @PositiveOrZero final int minimumPurchases,
+                                                 @NotNull final BigDecimal minimumAmount) {
+        final YearMonth last = requireNonNull(month, "month is null").minusMonths(1L);
+        return rewardsReport(entityManager, last.atDay(1).atStartOfDay(), month.atDay(1).atStartOfDay(),
+                             minimumPurchases, minimumAmount);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private RewardsReport() {
+        super();
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link RewardsReport} against the database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class RewardsReportIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the report agrees with an equivalent SQL query for July, 2005.
+     */
+    @Test
+    void assertRewardsReport() {
+        final List<Customer> customers
+                = RewardsReport.rewardsReport(entityManager, YearMonth.of(2005, 8), 7, new BigDecimal("20.00"));
+        @SuppressWarnings({"unchecked"})
+        final List<Number> expected = entityManager.createNativeQuery(
+                "SELECT customer_id FROM payment"
+                + " WHERE payment_date >= '2005-07-01' AND payment_date < '2005-08-01'"
+                + " GROUP BY customer_id HAVING SUM(amount) > 20.00 AND COUNT(customer_id) > 7"
+                + " ORDER BY customer_id")
+                .getResultList();
+        assertThat(customers.stream().map(Customer::getId).collect(toList()))
+                .isNotEmpty()
+                .isEqualTo(expected.stream().map(Number::intValue).collect(toList()));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
@@ -0,0 +1,75 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link RewardsReport}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class RewardsReportTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts {@link RewardsReport.Accumulator#qualifying(long, long)} qualifies customers with exclusive minimums.
+     */
+    @Test
+    void assertAccumulatorQualifying() {
+        final RewardsReport.Accumulator accumulator = new RewardsReport.Accumulator();
+        for (int i = 0; i < 8; i++) {
+            accumulator.accept(1, 299L); // 8 payments, 23.92
+        }
+        for (int i = 0; i < 7; i++) {
+            accumulator.accept(2, 999L); // 7 payments, 69.93
+        }
+        accumulator.accept(5000, 2000L); // grows
+        assertThat(accumulator.count(1)).isEqualTo(8L);
+        assertThat(accumulator.cents(2)).isEqualTo(6993L);
+        assertThat(accumulator.count(9999)).isZero();
+        assertThat(accumulator.qualifying(7L, 2000L)).containsExactly(1);
+        assertThat(accumulator.qualifying(6L, 2000L)).containsExactly(1, 2);
+        assertThat(accumulator.qualifying(0L, 1999L)).containsExactly(1, 2, 5000);
+        assertThat(accumulator.qualifying(8L, 0L)).isEmpty();
+        assertThatThrownBy(() -> accumulator.accept(-1, 0L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts {@link RewardsReport#cents(java.math.BigDecimal)} accepts amounts with fractions of a cent.
+     */
+    @Test
+    void assertCents() {
+        assertThat(RewardsReport.cents(new BigDecimal("20"))).isEqualTo(2000L);
+        assertThat(RewardsReport.cents(new BigDecimal("20.00"))).isEqualTo(2000L);
+        assertThat(RewardsReport.cents(new BigDecimal("20.005"))).isEqualTo(2000L);
+        assertThat(RewardsReport.cents(new BigDecimal("1.999"))).isEqualTo(199L);
+        assertThat(RewardsReport.cents(new BigDecimal("-0.005"))).isEqualTo(-1L);
+    }
+}
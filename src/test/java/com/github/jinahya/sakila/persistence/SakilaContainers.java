@@ -0,0 +1,127 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonMap;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Starts containers of the sakila database image for tests which need more than a single database, such as shards or
+ * a primary and its replica. The image is {@value #DEFAULT_DOCKER_IMAGE} unless the {@value
+ * #SYSTEM_PROPERTY_DOCKER_IMAGE} system property is set.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class SakilaContainers {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The name of the system property for the docker image of the database.
+     */
+    static final String SYSTEM_PROPERTY_DOCKER_IMAGE = "sakila.docker.image";
+
+    /**
+     * The default docker image of the database.
+     */
+    static final String DEFAULT_DOCKER_IMAGE = "jinahya/sakila-db";
+
+    /**
+     * The port, in containers, of the database.
+     */
+    static final int MYSQL_PORT = 3306;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts specified number of containers, each of which has its own database; all started containers are stopped
+     * when any of them fails to start.
+     *
+     * @param count the number of containers.
+     * @return a list of started containers.
+     */
+    static List<GenericContainer<?>> start(final int count) {
+        final String image = System.getProperty(SYSTEM_PROPERTY_DOCKER_IMAGE, DEFAULT_DOCKER_IMAGE);
+        final List<GenericContainer<?>> containers = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                final GenericContainer<?> container = new GenericContainer<>(image)
+                        .withExposedPorts(MYSQL_PORT)
+                        .waitingFor(Wait.forLogMessage(".*ready for connections.*port: " + MYSQL_PORT + ".*\\n", 1));
+                container.start();
+                log.debug("started {} at {}", image, url(container));
+                containers.add(container);
+            }
+        } catch (final RuntimeException re) {
+            stop(containers);
+            throw re;
+        }
+        return unmodifiableList(containers);
+    }
+
+    /**
+     * Stops specified containers.
+     *
+     * @param containers the containers to stop.
+     */
+    static void stop(@NotNull final List<? extends GenericContainer<?>> containers) {
+        containers.forEach(GenericContainer::stop);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the JDBC url of the database of specified container.
+     *
+     * @param container the container.
+     * @return the JDBC url of the database.
+     */
+    static String url(@NotNull final GenericContainer<?> container) {
+        return "jdbc:mysql://" + container.getContainerIpAddress() + ":" + container.getMappedPort(MYSQL_PORT)
+               + "/sakila";
+    }
+
+    /**
+     * Returns properties, overriding the persistence unit, for the database of specified container.
+     *
+     * @param container the container.
+     * @return a map of properties.
+     */
+    static Map<String, Object> properties(@NotNull final GenericContainer<?> container) {
+        return singletonMap("javax.persistence.jdbc.url", url(container));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private SakilaContainers() {
+        super();
+    }
+}
@@ -0,0 +1,507 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.AttributeOverride;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Query;
+import javax.persistence.Table;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+import static com.github.jinahya.sakila.persistence.PersistenceProducer.PERSISTENCE_UNIT_NAME;
+import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseable;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Collections.unmodifiableSortedMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Routes persistence operations to shards, each of which is an entity manager factory, partitioned by store.
+ * <p>
+ * The store of an inventory is the only shard key; {@link Inventory} is routed to the shard of its store, {@link
+ * Rental} by the store of its inventory, and {@link Payment} by the store of its rental or, without a rental, of its
+ * staff. Every other entity, including {@link Store}, {@link Staff} and {@link Customer}, is reference data (see {@link
+ * #REFERENCE_CLASSES}) replicated to every shard, one after another, each in its own transaction, with the key
+ * assigned by the first shard; so that a customer may rent an inventory of any store without a foreign key across
+ * shards.
+ * <p>
+ * Reads spanning all stores, such as {@link #salesByStore(Executor)}, are scattered to every shard in parallel and the
+ * results are gathered keeping only rows of stores owned by each shard; so shards may be several databases, or, for
+ * testing, several entity manager factories of a single database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+final class ShardRouter implements AutoCloseable {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Entity classes of reference data replicated to every shard. {@link Customer}s are replicated since a rental
+     * refers both an inventory and a customer, possibly of different stores, and {@link Store}s and {@link Staff}s
+     * since a customer refers its store which refers its manager.
+     */
+    static final Set<Class<?>> REFERENCE_CLASSES = unmodifiableSet(new HashSet<>(Arrays.asList(
+            Actor.class, Address.class, Category.class, City.class, Country.class, Customer.class, Film.class,
+            FilmActor.class, FilmCategory.class, FilmText.class, Language.class, Staff.class, Store.class)));
+
+    /**
+     * Checks whether specified entity is of a reference entity class.
+     *
+     * @param entity the entity to check.
+     * @return {@code true} if {@code entity} is reference data; {@code false} otherwise.
+     */
+    static boolean isReference(@NotNull final Object entity) {
+        for (final Class<?> referenceClass : REFERENCE_CLASSES) {
+            if (referenceClass.isInstance(entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the id of the store to which specified entity belongs.
+     *
+     * @param entity the entity.
+     * @return the id of the store of {@code entity}.
+     * @throws IllegalArgumentException if {@code entity} doesn't belong to any store.
+     */
+    static int storeId(@NotNull final Object entity) {
+        if (entity instanceof Store) {
+            return ((Store) entity).getId();
+        }
+        if (entity instanceof Inventory) {
+            return storeId(((Inventory) entity).getStore());
+        }
+        if (entity instanceof Staff) {
+            return storeId(((Staff) entity).getStore());
+        }
+        if (entity instanceof Rental) {
+            return storeId(((Rental) entity).getInventory());
+        }
+        if (entity instanceof Payment) {
+            final Payment payment = (Payment) entity;
+            return payment.getRental() != null ? storeId(payment.getRental()) : storeId(payment.getStaff());
+        }
+        throw new IllegalArgumentException("no store for " + entity);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with entity manager factories of specified properties for each shard; e.g. different
+     * {@code javax.persistence.jdbc.url}s.
+     *
+     * @param shardProperties properties, overriding the persistence unit, of each shard.
+     * @param shardOfStore    a function maps store ids to shard indices.
+     * @return a new instance.
+     */
+    static ShardRouter of(@NotNull final List<? extends Map<String, ?>> shardProperties,
+                          @NotNull final IntUnaryOperator shardOfStore) {
+        final List<EntityManagerFactory> shards = new ArrayList<>(shardProperties.size());
+        for (final Map<String, ?> properties : shardProperties) {
+            shards.add(Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, properties));
+        }
+        return new ShardRouter(shards, shardOfStore);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance.
+     *
+     * @param shards       entity manager factories of shards.
+     * @param shardOfStore a function maps store ids to shard indices.
+     */
+    ShardRouter(@NotNull final List<? extends EntityManagerFactory> shards,
+                @NotNull final IntUnaryOperator shardOfStore) {
+        super();
+        if (requireNonNull(shards, "shards is null").isEmpty()) {
+            throw new IllegalArgumentException("shards is empty");
+        }
+        this.shards = unmodifiableList(new ArrayList<>(shards));
+        this.shardOfStore = requireNonNull(shardOfStore, "shardOfStore is null");
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Closes all entity manager factories of shards.
+     */
+    @Override
+    public void close() {
+        RuntimeException thrown = null;
+        for (final EntityManagerFactory shard : shards) {
+            try {
+                shard.close();
+            } catch (final RuntimeException re) {
+                if (thrown == null) {
+                    thrown = re;
+                } else {
+                    thrown.addSuppressed(re);
+                }
+            }
+        }
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the index of the shard of specified store.
+     *
+     * @param storeId the id of the store.
+     * @return the index of the shard of the store.
+     */
+    int shard(final int storeId) {
+        final int shard = shardOfStore.applyAsInt(storeId);
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalStateException("shard(" + shard + ") of store(" + storeId + ") not in [0, "
+                                            + shards.size() + ")");
+        }
+        return shard;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards.
+     */
+    int size() {
+        return shards.size();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Applies an entity manager of specified shard to specified function and returns the result.
+     *
+     * @param shard    the index of the shard.
+     * @param function the function to be applied with an entity manager.
+     * @param <R>      result type parameter
+     * @return the result of the {@code function}.
+     */
+    <R> R applyEntityManagerOfShard(final int shard,
+                                    @NotNull final Function<? super EntityManager, ? extends R> function) {
+        final EntityManager entityManager = shards.get(shard).createEntityManager();
+        try {
+            return requireNonNull(function, "function is null").apply(uncloseable(entityManager));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Applies an entity manager of the shard of specified store to specified function and returns the result.
+     *
+     * @param storeId  the id of the store.
+     * @param function the function to be applied with an entity manager.
+     * @param <R>      result type parameter
+     * @return the result of the {@code function}.
+     */
+    <R> R applyEntityManager(final int storeId, @NotNull final Function<? super EntityManager, ? extends R> function) {
+        return applyEntityManagerOfShard(shard(storeId), function);
+    }
+
+    /**
+     * Applies an entity manager of each shard to specified function, in parallel, and returns the results.
+     *
+     * @param executor the executor to run each shard.
+     * @param function the function to be applied with an entity manager.
+     * @param <R>      result type parameter
+     * @return a list of results, in the order of shards.
+     */
+    <R> List<R> scatter(@NotNull final Executor executor,
+                        @NotNull final Function<? super EntityManager, ? extends R> function) {
+        requireNonNull(function, "function is null");
+        final List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> applyEntityManagerOfShard(shard, function), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        final List<R> results = new ArrayList<>(futures.size());
+        futures.forEach(f -> results.add(f.join()));
+        return results;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Persists specified entity, in a transaction, to the shard of its store. Reference data is persisted to the first
+     * shard, which assigns its id, and then the persisted row is inserted, with the same key, into each of other shards
+     * by a native query; when any of other shards fails, the row is deleted from the shards already inserted, including
+     * the first one, and the failure is rethrown.
+     *
+     * @param entity the entity to persist.
+     * @throws IllegalStateException if a shard doesn't insert exactly the row of the first shard.
+     */
+    void persist(@NotNull final Object entity) {
+        if (!isReference(entity)) {
+            persist(shard(storeId(entity)), entity);
+            return;
+        }
+        persist(0, entity);
+        final String table = table(entity.getClass());
+        final Map<String, Object> keys = keys(entity, shards.get(0).getPersistenceUnitUtil());
+        int replicated = 1;
+        try {
+            final List<String> columns = applyEntityManagerOfShard(0, em -> columns(em, table));
+            final Object[] row = applyEntityManagerOfShard(0, em -> row(em, table, columns, keys));
+            for (; replicated < shards.size(); replicated++) {
+                replicate(replicated, table, columns, row, keys);
+            }
+        } catch (final RuntimeException re) {
+            for (int i = replicated - 1; i >= 0; i--) {
+                try {
+                    delete(i, table, keys);
+                } catch (final RuntimeException re2) {
+                    re.addSuppressed(re2);
+                }
+            }
+            throw re;
+        }
+    }
+
+    private void persist(final int shard, final Object entity) {
+        applyEntityManagerOfShard(shard, em -> {
+            final EntityTransaction transaction = em.getTransaction();
+            transaction.begin();
+            try {
+                em.persist(entity);
+                transaction.commit();
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+            return null;
+        });
+    }
+
+    private void replicate(final int shard, final String table, final List<String> columns, final Object[] row,
+                           final Map<String, Object> keys) {
+        applyEntityManagerOfShard(shard, em -> {
+            final EntityTransaction transaction = em.getTransaction();
+            transaction.begin();
+            try {
+                final StringBuilder insert = new StringBuilder("INSERT INTO `").append(table).append("` (");
+                final StringBuilder values = new StringBuilder(") VALUES (");
+                for (int i = 0; i < columns.size(); i++) {
+                    insert.append(i > 0 ? ", " : "").append('`').append(columns.get(i)).append('`');
+                    values.append(i > 0 ? ", " : "").append('?');
+                }
+                final Query query = em.createNativeQuery(insert.append(values).append(')').toString());
+                for (int i = 0; i < row.length; i++) {
+                    query.setParameter(i + 1, row[i]);
+                }
+                final int inserted = query.executeUpdate();
+                if (inserted != 1) {
+                    throw new IllegalStateException(inserted + " row(s) inserted into " + table + " of shard(" + shard
+                                                    + ")");
+                }
+                final Object[] replicated = row(em, table, columns, keys);
+                if (!Arrays.deepEquals(replicated, row)) { // byte[] of BLOB and GEOMETRY columns compare by content
+                    throw new IllegalStateException("row " + Arrays.deepToString(replicated) + " of shard(" + shard
+                                                    + ") doesn't match " + Arrays.deepToString(row));
+                }
+                transaction.commit();
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+            return null;
+        });
+    }
+
+    private void delete(final int shard, final String table, final Map<String, Object> keys) {
+        applyEntityManagerOfShard(shard, em -> {
+            final EntityTransaction transaction = em.getTransaction();
+            transaction.begin();
+            try {
+                final Query query = em.createNativeQuery("DELETE FROM `" + table + "`" + where(keys));
+                bind(query, keys, 1);
+                query.executeUpdate();
+                transaction.commit();
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+            return null;
+        });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the name of the table of specified entity class.
+     *
+     * @param entityClass the entity class.
+     * @return the name of the table.
+     */
+    static String table(@NotNull final Class<?> entityClass) {
+        final Table table = entityClass.getAnnotation(Table.class);
+        if (table == null || table.name().isEmpty()) {
+            throw new IllegalArgumentException("no table name for " + entityClass);
+        }
+        return table.name();
+    }
+
+    /**
+     * Returns the values of primary key columns of specified reference entity.
+     *
+     * @param entity the reference entity.
+     * @param util   a persistence unit util for identifiers not exposed by the entity.
+     * @return a map of column names and values of the primary key of {@code entity}.
+     */
+    static Map<String, Object> keys(@NotNull final Object entity, @NotNull final PersistenceUnitUtil util) {
+        final Map<String, Object> keys = new LinkedHashMap<>();
+        if (entity instanceof FilmActor) {
+            keys.put(FilmActor.COLUMN_NAME_ACTOR_ID, ((FilmActor) entity).getActor().getId());
+            keys.put(FilmActor.COLUMN_NAME_FILM_ID, ((FilmActor) entity).getFilm().getId());
+        } else if (entity instanceof FilmCategory) {
+            keys.put(FilmCategory.COLUMN_NAME_FILM_ID, ((FilmCategory) entity).getFilm().getId());
+            keys.put(FilmCategory.COLUMN_NAME_CATEGORY_ID, ((FilmCategory) entity).getCategory().getId());
+        } else {
+            final AttributeOverride override = entity.getClass().getAnnotation(AttributeOverride.class);
+            if (override == null || !BaseEntity.ATTRIBUTE_NAME_ID.equals(override.name())) {
+                throw new IllegalArgumentException("no key column for " + entity);
+            }
+            keys.put(override.column().name(), entity instanceof BaseEntity
+                                               ? ((BaseEntity) entity).getId() : util.getIdentifier(entity));
+        }
+        if (keys.containsValue(null)) {
+            throw new IllegalArgumentException("no key values for " + entity);
+        }
+        return keys;
+    }
+
+    private static List<String> columns(final EntityManager entityManager, final String table) {
+        @SuppressWarnings({"unchecked"})
+        final List<String> columns = entityManager.createNativeQuery(
+                "SELECT COLUMN_NAME FROM information_schema.COLUMNS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION")
+                .setParameter(1, table)
+                .getResultList();
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("no columns for " + table);
+        }
+        return columns;
+    }
+
+    private static Object[] row(final EntityManager entityManager, final String table, final List<String> columns,
+                                final Map<String, Object> keys) {
+        final StringBuilder select = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            select.append(i > 0 ? ", " : "").append('`').append(columns.get(i)).append('`');
+        }
+        final Query query = entityManager.createNativeQuery(
+                select.append(" FROM `").append(table).append('`').append(where(keys)).toString());
+        bind(query, keys, 1);
+        final Object row = query.getSingleResult();
+        return row instanceof Object[] ? (Object[]) row : new Object[] {row};
+    }
+
+    private static String where(final Map<String, Object> keys) {
+        final StringBuilder where = new StringBuilder(" WHERE ");
+        int i = 0;
+        for (final String column : keys.keySet()) {
+            where.append(i++ > 0 ? " AND " : "").append('`').append(column).append("` = ?");
+        }
+        return where.toString();
+    }
+
+    private static void bind(final Query query, final Map<String, Object> keys, final int position) {
+        int i = position;
+        for (final Object value : keys.values()) {
+            query.setParameter(i++, value);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns total sales of each store, as the {@code sales_by_store} view does, by scattering to every shard.
+     *
+     * @param executor the executor to run each shard.
+     * @return a map of store ids and total sales.
+     */
+    @NotNull SortedMap<Integer, BigDecimal> salesByStore(@NotNull final Executor executor) {
+        final List<List<Tuple>> gathered = scatter(executor, em -> {
+            final CriteriaBuilder builder = em.getCriteriaBuilder();
+            final CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+            final Root<Payment> payment = criteria.from(Payment.class);
+            final Join<Rental, Inventory> inventory = payment.join(Payment_.rental).join(Rental_.inventory);
+            final Path<Integer> storeId = inventory.get(Inventory_.store).get(BaseEntity_.id);
+            criteria.multiselect(storeId, builder.sum(payment.get(Payment_.amount)));
+            criteria.groupBy(storeId);
+            return em.createQuery(criteria).getResultList();
+        });
+        final SortedMap<Integer, BigDecimal> sales = new TreeMap<>();
+        for (int shard = 0; shard < gathered.size(); shard++) {
+            for (final Tuple tuple : gathered.get(shard)) {
+                final int storeId = (Integer) tuple.get(0);
+                if (shard(storeId) != shard) {
+                    log.debug("ignoring store {} from shard {}", storeId, shard);
+                    continue;
+                }
+                sales.merge(storeId, (BigDecimal) tuple.get(1), BigDecimal::add);
+            }
+        }
+        return unmodifiableSortedMap(sales);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final List<EntityManagerFactory> shards;
+
+    private final IntUnaryOperator shardOfStore;
+}
@@ -0,0 +1,168 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link ShardRouter} against two databases, each in its own container, so that each shard has
+ * its own auto increments and foreign keys.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see SakilaContainers
+ */
+@Slf4j
+class ShardRouterContainersIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    @BeforeAll
+    static void startShards() {
+        containers = SakilaContainers.start(2);
+        router = ShardRouter.of(containers.stream().map(SakilaContainers::properties).collect(toList()), s -> s % 2);
+    }
+
+    @AfterAll
+    static void stopShards() {
+        try {
+            if (router != null) {
+                router.close();
+            }
+        } finally {
+            if (containers != null) {
+                SakilaContainers.stop(containers);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static void execute(final int shard, final String sql, final Object... parameters) {
+        router.applyEntityManagerOfShard(shard, em -> {
+            final EntityTransaction transaction = em.getTransaction();
+            transaction.begin();
+            try {
+                final Query query = em.createNativeQuery(sql);
+                for (int i = 0; i < parameters.length; i++) {
+                    query.setParameter(i + 1, parameters[i]);
+                }
+                query.executeUpdate();
+                transaction.commit();
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+            return null;
+        });
+    }
+
+    // bypasses the shared cache of each shard which doesn't see native deletes
+    @SuppressWarnings({"unchecked"})
+    private static List<Object> select(final int shard, final String sql, final Object... parameters) {
+        return router.applyEntityManagerOfShard(shard, em -> {
+            final Query query = em.createNativeQuery(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                query.setParameter(i + 1, parameters[i]);
+            }
+            return (List<Object>) query.getResultList();
+        });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts reference data keeps the key of the first shard on a shard whose auto increment is ahead.
+     */
+    @Test
+    void assertReplicatedKeyDespiteDivergedAutoIncrement() {
+        execute(1, "INSERT INTO category (name) VALUES (?)", "Diverging");
+        execute(1, "DELETE FROM category WHERE name = ?", "Diverging");
+        final Category category = new Category();
+        category.setName("Replicated");
+        router.persist(category);
+        assertThat(category.getId()).isNotNull();
+        for (int shard = 0; shard < router.size(); shard++) {
+            assertThat(select(shard, "SELECT name FROM category WHERE category_id = ?", category.getId()))
+                    .containsExactly("Replicated");
+        }
+    }
+
+    /**
+     * Asserts reference data is deleted from the first shard when the key conflicts on another shard.
+     */
+    @Test
+    void assertCompensatesOnConflictingKey() {
+        final int id = 1000;
+        execute(0, "ALTER TABLE category AUTO_INCREMENT = " + id);
+        execute(1, "INSERT INTO category (category_id, name) VALUES (?, ?)", id, "Conflicting");
+        final Category category = new Category();
+        category.setName("Compensated");
+        assertThatThrownBy(() -> router.persist(category)).isInstanceOf(PersistenceException.class);
+        assertThat(category.getId()).isEqualTo(id);
+        assertThat(select(0, "SELECT name FROM category WHERE category_id = ?", id)).isEmpty();
+        assertThat(select(1, "SELECT name FROM category WHERE category_id = ?", id)).containsExactly("Conflicting");
+    }
+
+    /**
+     * Asserts a customer of a store rents an inventory of another store, on a different shard, without violating
+     * foreign keys; the rental goes only to the shard of the inventory.
+     */
+    @Test
+    void assertRentalAcrossStores() {
+        final Rental rental = router.applyEntityManager(2, em -> {
+            final Rental r = new Rental();
+            r.setRentalDate(LocalDateTime.now().withNano(0));
+            r.setInventory(em.createQuery("SELECT i FROM Inventory i WHERE i.store.id = 2", Inventory.class)
+                                   .setMaxResults(1).getSingleResult());
+            r.setCustomer(em.createQuery("SELECT c FROM Customer c WHERE c.store.id = 1", Customer.class)
+                                  .setMaxResults(1).getSingleResult());
+            r.setStaff(em.createQuery("SELECT s FROM Staff s WHERE s.store.id = 2", Staff.class)
+                               .setMaxResults(1).getSingleResult());
+            return r;
+        });
+        assertThat(router.shard(rental.getCustomer().getStore().getId()))
+                .isNotEqualTo(router.shard(ShardRouter.storeId(rental)));
+        router.persist(rental);
+        final String sql = "SELECT rental_id FROM rental WHERE rental_id = ?";
+        assertThat(select(router.shard(2), sql, rental.getId())).hasSize(1);
+        assertThat(select(router.shard(1), sql, rental.getId())).isEmpty();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static List<GenericContainer<?>> containers;
+
+    private static ShardRouter router;
+}
@@ -0,0 +1,81 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.weld.junit5.WeldJunit5Extension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ShardRouter} against the database; each shard is a separate entity manager factory of
+ * the same database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@ExtendWith({WeldJunit5Extension.class})
+@Slf4j
+class ShardRouterIT {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts the scattered sales by store agree with the {@code sales_by_store} view.
+     */
+    @Test
+    void assertSalesByStore() {
+        final List<Map<String, ?>> properties = Arrays.asList(emptyMap(), emptyMap());
+        final ExecutorService executor = Executors.newFixedThreadPool(properties.size());
+        try (ShardRouter router = ShardRouter.of(properties, s -> s % 2)) {
+            final SortedMap<Integer, BigDecimal> sales = router.salesByStore(executor);
+            @SuppressWarnings({"unchecked"})
+            final List<Object[]> rows = entityManager.createNativeQuery(
+                    "SELECT i.store_id, SUM(p.amount) FROM payment AS p"
+                    + " INNER JOIN rental AS r ON p.rental_id = r.rental_id"
+                    + " INNER JOIN inventory AS i ON r.inventory_id = i.inventory_id"
+                    + " GROUP BY i.store_id")
+                    .getResultList();
+            final SortedMap<Integer, BigDecimal> expected = new TreeMap<>();
+            rows.forEach(r -> expected.put(((Number) r[0]).intValue(), (BigDecimal) r[1]));
+            assertThat(sales).isEqualTo(expected);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Inject
+    private EntityManager entityManager;
+}
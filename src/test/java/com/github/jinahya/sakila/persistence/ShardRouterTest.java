@@ -0,0 +1,262 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.NULL;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.fake;
+import static com.github.jinahya.sakila.persistence.PersistenceFakes.transaction;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link ShardRouter}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class ShardRouterTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a fake entity manager factory whose entity managers know only their shard, as a property, and count
+     * their closes.
+     */
+    private static EntityManagerFactory shard(final int index, final AtomicInteger closed) {
+        return fake(EntityManagerFactory.class, (p, n, a) -> {
+            switch (n) {
+                case "createEntityManager":
+                    return fake(EntityManager.class, (p2, n2, a2) -> {
+                        switch (n2) {
+                            case "getProperties":
+                                return singletonMap("shard", index);
+                            case "close":
+                                closed.incrementAndGet();
+                                return NULL;
+                            default:
+                                return null;
+                        }
+                    });
+                case "close":
+                    return NULL;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Returns a fake entity manager factory whose entity managers assign {@code id} to persisted entities, answer
+     * native queries of a table of {@code actor_id} and {@code first_name}, and log statements and transactions to
+     * specified list; inserts fail when {@code failing} is {@code true}.
+     */
+    private static EntityManagerFactory database(final int id, final boolean failing, final List<String> log) {
+        return database(id, failing, log, () -> "A");
+    }
+
+    /**
+     * Returns a fake entity manager factory like {@link #database(int, boolean, List)} whose rows take their second
+     * column from specified supplier, asked anew for each read.
+     */
+    private static EntityManagerFactory database(final int id, final boolean failing, final List<String> log,
+                                                 final Supplier<Object> column) {
+        final EntityTransaction transaction = transaction(log::add);
+        return fake(EntityManagerFactory.class, (p, n, a) -> {
+            switch (n) {
+                case "createEntityManager":
+                    break;
+                case "getPersistenceUnitUtil":
+                case "close":
+                    return NULL;
+                default:
+                    return null;
+            }
+            return fake(EntityManager.class, (p2, n2, a2) -> {
+                switch (n2) {
+                    case "getTransaction":
+                        return transaction;
+                    case "persist":
+                        ((BaseEntity) a2[0]).setId(id);
+                        log.add("persist");
+                        return NULL;
+                    case "createNativeQuery":
+                        break;
+                    case "close":
+                        return NULL;
+                    default:
+                        return null;
+                }
+                final String sql = (String) a2[0];
+                final List<Object> parameters = new ArrayList<>();
+                return fake(Query.class, (p3, n3, a3) -> {
+                    switch (n3) {
+                        case "setParameter":
+                            parameters.add(a3[1]);
+                            return p3;
+                        case "getResultList":
+                            return Arrays.asList("actor_id", "first_name");
+                        case "getSingleResult":
+                            return new Object[] {parameters.get(0), column.get()};
+                        case "executeUpdate":
+                            log.add(sql + " " + parameters);
+                            if (failing && sql.startsWith("INSERT")) {
+                                throw new PersistenceException("failing");
+                            }
+                            return 1;
+                        default:
+                            return null;
+                    }
+                });
+            });
+        });
+    }
+
+    private static Store store(final int id) {
+        final Store store = new Store();
+        store.setId(id);
+        return store;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts entities resolve to the stores they belong to.
+     */
+    @Test
+    void assertStoreId() {
+        final Store store = store(2);
+        final Inventory inventory = new Inventory();
+        inventory.setStore(store);
+        final Rental rental = new Rental();
+        rental.setInventory(inventory);
+        final Payment payment = new Payment();
+        payment.setRental(rental);
+        assertThat(ShardRouter.storeId(store)).isEqualTo(2);
+        assertThat(ShardRouter.storeId(rental)).isEqualTo(2);
+        assertThat(ShardRouter.storeId(payment)).isEqualTo(2);
+        final Staff staff = new Staff();
+        staff.setStore(store(1));
+        final Payment unrented = new Payment();
+        unrented.setStaff(staff);
+        assertThat(ShardRouter.storeId(unrented)).isEqualTo(1);
+        assertThat(ShardRouter.isReference(new Film())).isTrue();
+        assertThat(ShardRouter.isReference(new Customer())).isTrue();
+        assertThat(ShardRouter.isReference(new Store())).isTrue();
+        assertThat(ShardRouter.isReference(new Rental())).isFalse();
+        assertThatThrownBy(() -> ShardRouter.storeId(new Film())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Asserts stores route to their shards and scatters reach every shard.
+     */
+    @Test
+    void assertRouteAndScatter() {
+        final AtomicInteger closed = new AtomicInteger();
+        final List<EntityManagerFactory> shards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            shards.add(shard(i, closed));
+        }
+        final ShardRouter router = new ShardRouter(shards, s -> s % 3);
+        final Object shard = router.applyEntityManager(4, em -> em.getProperties().get("shard"));
+        assertThat(shard).isEqualTo(1);
+        assertThatThrownBy(() -> new ShardRouter(shards, s -> s).shard(3)).isInstanceOf(IllegalStateException.class);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final List<Object> scattered = router.scatter(executor, em -> em.getProperties().get("shard"));
+            assertThat(scattered).containsExactly(0, 1, 2);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(closed).hasValue(4);
+        router.close();
+    }
+
+    /**
+     * Asserts reference data is inserted into other shards with the key assigned by the first shard.
+     */
+    @Test
+    void assertPersistReplicatesKey() {
+        final List<String> first = new ArrayList<>();
+        final List<String> second = new ArrayList<>();
+        final ShardRouter router = new ShardRouter(
+                Arrays.asList(database(7, false, first), database(8, false, second)), s -> s % 2);
+        final Actor actor = new Actor();
+        router.persist(actor);
+        assertThat(actor.getId()).isEqualTo(7);
+        assertThat(first).containsExactly("persist", "commit");
+        assertThat(second).containsExactly(
+                "INSERT INTO `actor` (`actor_id`, `first_name`) VALUES (?, ?) [7, A]", "commit");
+    }
+
+    /**
+     * Asserts reference rows with binary columns, such as {@code address.location}, are replicated; each read yields
+     * an equal but distinct array.
+     */
+    @Test
+    void assertPersistReplicatesBinaryColumn() {
+        final List<String> first = new ArrayList<>();
+        final List<String> second = new ArrayList<>();
+        final ShardRouter router = new ShardRouter(
+                Arrays.asList(database(7, false, first, () -> new byte[] {1, 2}),
+                              database(8, false, second, () -> new byte[] {1, 2})),
+                s -> s % 2);
+        final Actor actor = new Actor();
+        router.persist(actor);
+        assertThat(first).containsExactly("persist", "commit");
+        assertThat(second).hasSize(2).endsWith("commit");
+    }
+
+    /**
+     * Asserts reference data is deleted from the shards already inserted when a later shard fails.
+     */
+    @Test
+    void assertPersistCompensates() {
+        final List<String> first = new ArrayList<>();
+        final List<String> second = new ArrayList<>();
+        final List<String> third = new ArrayList<>();
+        final ShardRouter router = new ShardRouter(
+                Arrays.asList(database(7, false, first), database(8, false, second), database(9, true, third)),
+                s -> s % 3);
+        assertThatThrownBy(() -> router.persist(new Actor())).isInstanceOf(PersistenceException.class);
+        final String delete = "DELETE FROM `actor` WHERE `actor_id` = ? [7]";
+        assertThat(first).containsExactly("persist", "commit", delete, "commit");
+        assertThat(second).endsWith(delete, "commit");
+        assertThat(third).containsExactly(
+                "INSERT INTO `actor` (`actor_id`, `first_name`) VALUES (?, ?) [7, A]", "rollback");
+    }
+}
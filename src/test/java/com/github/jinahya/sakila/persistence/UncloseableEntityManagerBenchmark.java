@@ -0,0 +1,141 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.jinahya.sakila.persistence.PersistenceProducer.PERSISTENCE_UNIT_NAME;
+import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseable;
+import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseableProxy;
+
+/**
+ * A benchmark for comparing the per-call overhead of {@link PersistenceUtil#uncloseable(EntityManager)} with that of
+ * {@link PersistenceUtil#uncloseableProxy(EntityManager)}.
+ * <p>
+ * Each benchmark invokes cheap, in-memory, methods so that the wrapping cost dominates. Run {@link #main(String...)}
+ * against a running database.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+@Slf4j
+public class UncloseableEntityManagerBenchmark {
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args command line arguments.
+     * @throws RunnerException if failed to run.
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UncloseableEntityManagerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Setup(Level.Trial)
+    public void openEntityManager() {
+        entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
+        entityManager = entityManagerFactory.createEntityManager();
+        delegate = uncloseable(entityManager);
+        proxy = uncloseableProxy(entityManager);
+        actor = entityManager.find(Actor.class, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeEntityManager() {
+        try {
+            entityManager.close();
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Benchmark
+    public boolean containsDirect() {
+        return entityManager.contains(actor);
+    }
+
+    @Benchmark
+    public boolean containsDelegate() {
+        return delegate.contains(actor);
+    }
+
+    @Benchmark
+    public boolean containsProxy() {
+        return proxy.contains(actor);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Benchmark
+    public void findDirect(final Blackhole blackhole) {
+        blackhole.consume(entityManager.find(Actor.class, 1));
+    }
+
+    @Benchmark
+    public void findDelegate(final Blackhole blackhole) {
+        blackhole.consume(delegate.find(Actor.class, 1));
+    }
+
+    @Benchmark
+    public void findProxy(final Blackhole blackhole) {
+        blackhole.consume(proxy.find(Actor.class, 1));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private EntityManager delegate;
+
+    private EntityManager proxy;
+
+    private Actor actor;
+}
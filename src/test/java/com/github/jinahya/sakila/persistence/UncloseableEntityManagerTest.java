@@ -0,0 +1,97 @@
+package com.github.jinahya.sakila.persistence;
+
+/*-
+ * #%L
+ * sakila-entities
+ * %%
+ * Copyright (C) 2019 Jinahya, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseable;
+import static com.github.jinahya.sakila.persistence.PersistenceUtil.uncloseableProxy;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link UncloseableEntityManager}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class UncloseableEntityManagerTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @BeforeEach
+    void prepareEntityManager() {
+        invoked = new ArrayList<>();
+        entityManager = (EntityManager) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] {EntityManager.class},
+                (proxy, method, args) -> {
+                    invoked.add(method.getName());
+                    return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+                });
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Asserts {@link UncloseableEntityManager#close()} method throws an {@link UnsupportedOperationException} without
+     * closing the delegate.
+     */
+    @Test
+    void assertCloseUnsupported() {
+        assertThrows(UnsupportedOperationException.class, () -> uncloseable(entityManager).close());
+        assertThrows(UnsupportedOperationException.class, () -> uncloseableProxy(entityManager).close());
+        assertThat(invoked).isEmpty();
+    }
+
+    /**
+     * Asserts methods other than {@link EntityManager#close()} are delegated.
+     */
+    @Test
+    void assertDelegated() {
+        final EntityManager uncloseable = uncloseable(entityManager);
+        uncloseable.flush();
+        assertThat(uncloseable.isOpen()).isTrue();
+        uncloseable.find(Actor.class, 1, LockModeType.NONE);
+        assertThat(invoked).containsExactly("flush", "isOpen", "find");
+    }
+
+    /**
+     * Asserts {@link PersistenceUtil#uncloseable(EntityManager)} does not wrap an already uncloseable entity manager.
+     */
+    @Test
+    void assertNotWrappedTwice() {
+        final EntityManager uncloseable = uncloseable(entityManager);
+        assertThat(uncloseable(uncloseable)).isSameAs(uncloseable);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private List<String> invoked;
+
+    private EntityManager entityManager;
+}